@@ -0,0 +1,126 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package ome.util.mem;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A concurrent registry sharing immutable values by key. The registry only
+ * holds weak references to the values, so a value is discarded as soon as
+ * no one else uses it, and the entries of the discarded values are removed
+ * the next time the registry is accessed.
+ * <p>
+ * The values must not be modified once registered, and the keys must not
+ * reference their values, otherwise the values would never be discarded.
+ * </p>
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ * @since 5.5
+ */
+public class WeakValueRegistry<K, V> {
+
+    /** A weak reference to a value, remembering its key. */
+    private static final class Entry<K, V> extends WeakReference<V> {
+
+        /** The key of the value. */
+        private final K key;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key of the value.
+         * @param value The value.
+         * @param queue The queue the reference is registered with.
+         */
+        Entry(K key, V value, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    /** The registered values. */
+    private final ConcurrentMap<K, Entry<K, V>> entries =
+            new ConcurrentHashMap<K, Entry<K, V>>();
+
+    /** The references to the discarded values. */
+    private final ReferenceQueue<V> queue;
+
+    /** Creates a new instance. */
+    public WeakValueRegistry() {
+        this(new ReferenceQueue<V>());
+    }
+
+    /**
+     * Creates a new instance whose discarded values are enqueued in the
+     * specified queue.
+     *
+     * @param queue The queue polled for the discarded values.
+     */
+    WeakValueRegistry(ReferenceQueue<V> queue) {
+        this.queue = queue;
+    }
+
+    /** Removes the entries of the discarded values. */
+    @SuppressWarnings("unchecked")
+    private void expunge() {
+        Entry<K, V> e;
+        while ((e = (Entry<K, V>) queue.poll()) != null) {
+            entries.remove(e.key, e);
+        }
+    }
+
+    /**
+     * Returns the value registered with the specified key.
+     *
+     * @param key The key of the value.
+     * @return See above or <code>null</code> if no value is registered.
+     */
+    public V get(K key) {
+        expunge();
+        Entry<K, V> e = entries.get(key);
+        return e == null ? null : e.get();
+    }
+
+    /**
+     * Registers the specified value unless a value is already registered with
+     * the same key. The value registered is returned, the callers should use
+     * it in place of the specified one.
+     *
+     * @param key The key of the value.
+     * @param value The value to register.
+     * @return See above.
+     */
+    public V intern(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("No key or value.");
+        }
+        expunge();
+        Entry<K, V> e = new Entry<K, V>(key, value, queue);
+        while (true) {
+            Entry<K, V> existing = entries.putIfAbsent(key, e);
+            if (existing == null) return value;
+            V v = existing.get();
+            if (v != null) return v;
+            // The value was discarded but its entry not yet removed.
+            if (entries.replace(key, existing, e)) return value;
+        }
+    }
+
+    /**
+     * Returns the number of entries, including the ones whose value was
+     * discarded but not yet removed.
+     *
+     * @return See above.
+     */
+    public int size() {
+        expunge();
+        return entries.size();
+    }
+}
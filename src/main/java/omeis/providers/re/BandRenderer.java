@@ -0,0 +1,27 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import omeis.providers.re.quantum.QuantizationException;
+
+/**
+ * Renders a band of rows of a plane. Implementations must allow distinct
+ * bands to be rendered concurrently; this is the unit of work scheduled by
+ * the {@link RenderingExecutor}.
+ *
+ * @since 5.5
+ */
+interface BandRenderer {
+
+    /**
+     * Renders the rows <code>[x2Start, x2End)</code> along the <i>X2</i>-axis.
+     *
+     * @param x2Start The first row to render.
+     * @param x2End The row after the last row to render.
+     * @throws QuantizationException
+     *             If an error occurs while quantizing a pixels intensity value.
+     */
+    void renderBand(int x2Start, int x2End) throws QuantizationException;
+}
@@ -0,0 +1,93 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signals that a render is no longer needed, either because it was
+ * {@link #cancel() cancelled} or because its deadline has passed. The
+ * renderer checks the token before reading the data of each channel and
+ * before rendering each band of rows, and stops the render with a
+ * {@link RenderingCancelledException} once the token is cancelled. A token
+ * can be shared by several renders, e.g. all the tiles of a view.
+ *
+ * @since 5.5
+ */
+public class CancellationToken {
+
+    /** The value of {@link System#nanoTime()} at the deadline. */
+    private final long deadline;
+
+    /** Whether or not a deadline is set. */
+    private final boolean hasDeadline;
+
+    /** Set once the token is cancelled. */
+    private volatile boolean cancelled;
+
+    /** Creates a new instance without deadline. */
+    public CancellationToken()
+    {
+        deadline = 0;
+        hasDeadline = false;
+    }
+
+    /**
+     * Creates a new instance cancelled once the specified time has elapsed.
+     *
+     * @param timeout The time before the deadline.
+     * @param unit The unit of <code>timeout</code>.
+     */
+    public CancellationToken(long timeout, TimeUnit unit)
+    {
+        deadline = System.nanoTime() + unit.toNanos(timeout);
+        hasDeadline = true;
+    }
+
+    /** Cancels the renders using this token. */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Returns <code>true</code> if the token was cancelled or its deadline
+     * has passed, <code>false</code> otherwise.
+     *
+     * @return See above.
+     */
+    public boolean isCancelled()
+    {
+        return cancelled || isExpired();
+    }
+
+    /**
+     * Returns <code>true</code> if the deadline has passed,
+     * <code>false</code> otherwise.
+     *
+     * @return See above.
+     */
+    private boolean isExpired()
+    {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Throws an exception if the token is cancelled.
+     *
+     * @throws RenderingCancelledException If the token was cancelled or its
+     *                                     deadline has passed.
+     */
+    public void check()
+    {
+        if (cancelled) {
+            throw new RenderingCancelledException("Rendering cancelled.");
+        }
+        if (isExpired()) {
+            throw new RenderingCancelledException(
+                    "Rendering deadline exceeded.");
+        }
+    }
+}
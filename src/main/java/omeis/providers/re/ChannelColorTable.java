@@ -0,0 +1,299 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import ome.util.PixelData;
+import omeis.providers.re.lut.LutReader;
+import omeis.providers.re.quantum.BinaryMaskQuantizer;
+import omeis.providers.re.quantum.QuantizationException;
+import omeis.providers.re.quantum.QuantumStrategy;
+
+/**
+ * The contribution of a channel to the rendered image, compiled once per
+ * rendering. The quantization, the codomain transformations, the color or
+ * lookup table and the alpha component of the channel are folded into a table
+ * mapping a pixel intensity value onto a packed <code>0x00RRGGBB</code>
+ * contribution. The contributions of the channels are then composited with a
+ * {@link #add(int, int) saturating add}.
+ * <p>
+ * If the quantum strategy has a lookup table, the table is indexed by the pixel
+ * intensity value directly. Otherwise, or if the value is not covered by the
+ * table, the value is quantized and the contribution looked up in a table
+ * indexed by the quantized value.
+ * </p>
+ * <p>
+ * A contribution with the sign bit set, i.e. <code>0xFFRRGGBB</code>, is a
+ * mask value: it replaces the existing pixel instead of being added to it.
+ * </p>
+ *
+ * @since 5.5
+ */
+class ChannelColorTable {
+
+    /** Identifies the tables used to render into a banded byte buffer. */
+    static final int BANDED = 0;
+
+    /** Identifies the tables used to render into a packed <i>ARGB</i> buffer. */
+    static final int PACKED_ARGB = 1;
+
+    /** Identifies the tables used to render into a packed <i>RGBA</i> buffer. */
+    static final int PACKED_RGBA = 2;
+
+    /** The number of quantized values. */
+    private static final int SIZE = QuantumStrategy.MAX + 1;
+
+    /** Masks the most significant bit of each color component. */
+    private static final int HIGH_BITS = 0x808080;
+
+    /** Masks the other bits of each color component. */
+    private static final int LOW_BITS = 0x7F7F7F;
+
+    /** How to quantize the values not covered by {@link #raw}. */
+    private final QuantumStrategy qs;
+
+    /** The contributions indexed by the quantized value. */
+    private final int[] quantized;
+
+    /** The version of the strategy {@link #quantized} was composed from. */
+    private final int strategyVersion;
+
+    /**
+     * The contributions indexed by the pixel intensity value minus
+     * {@link #rawMin} or <code>null</code>. Only {@link #get(double)} reads
+     * it, so it is composed on first use.
+     */
+    private volatile int[] raw;
+
+    /** Whether or not {@link #raw} was composed. */
+    private volatile boolean rawComposed;
+
+    /** The pixel intensity value of the first element of {@link #raw}. */
+    private int rawMin;
+
+    /**
+     * Adds two packed <code>0x00RRGGBB</code> values, clamping each color
+     * component to 255.
+     *
+     * @param a The first value.
+     * @param b The second value.
+     * @return See above.
+     */
+    static int add(int a, int b)
+    {
+        // Add the components without their high bit so that no carry crosses
+        // a component, then restore the high bit and saturate the components
+        // that overflowed.
+        int sum = (a & LOW_BITS) + (b & LOW_BITS);
+        int high = (a ^ b) & HIGH_BITS;
+        int overflow = ((a & b) | (high & sum)) & HIGH_BITS;
+        return ((sum ^ high) | ((overflow << 1) - (overflow >> 7))) & 0xFFFFFF;
+    }
+
+    /**
+     * Returns the offset of the color component that is 0xFF.
+     *
+     * @param color The color to check.
+     * @return An integer color offset in bits.
+     */
+    private static int getColorOffset(int[] color)
+    {
+        if (color[ColorsFactory.RED_INDEX] == 255)
+            return 16;
+        if (color[ColorsFactory.GREEN_INDEX] == 255)
+            return 8;
+        if (color[ColorsFactory.BLUE_INDEX] == 255)
+            return 0;
+        throw new IllegalArgumentException(
+                "Unable to find color component offset in color.");
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param mapping The mapping of the channel onto the codomain.
+     * @param color The color components of the channel.
+     * @param reader The lookup table of the channel or <code>null</code>.
+     * @param optimizations The optimizations turned on by the renderer.
+     * @param type One of the constants defined by this class.
+     */
+    ChannelColorTable(ChannelMapping mapping, int[] color,
+            LutReader reader, Optimizations optimizations, int type)
+    {
+        qs = mapping.getStrategy();
+        strategyVersion = mapping.getStrategyVersion();
+        quantized = new int[SIZE];
+        for (int q = 0; q < SIZE; q++) {
+            int discreteValue = mapping.lookup((byte) q);
+            if (type == BANDED) {
+                quantized[q] = banded(discreteValue, color, reader);
+            } else {
+                quantized[q] = packed(discreteValue, color, reader,
+                        optimizations, type == PACKED_ARGB
+                        && qs instanceof BinaryMaskQuantizer);
+            }
+        }
+    }
+
+    /**
+     * Returns the contributions indexed by the pixel intensity value,
+     * composing them on first use. Concurrent callers may compose the same
+     * table twice, which is harmless.
+     *
+     * @return See above or <code>null</code> if the strategy has no lookup
+     *         table.
+     */
+    private int[] getRawTable()
+    {
+        if (!rawComposed) {
+            // The table of a strategy changed since must not be mixed with
+            // the contributions composed from its former settings.
+            if (qs.getVersion() == strategyVersion) {
+                int[] table = qs.composeTable(quantized);
+                rawMin = qs.getTableMin();
+                raw = table;
+            }
+            rawComposed = true;
+        }
+        return raw;
+    }
+
+    /**
+     * Returns the contribution of the specified value for a banded buffer.
+     *
+     * @param discreteValue The transformed quantized value.
+     * @param color The color components of the channel.
+     * @param reader The lookup table of the channel or <code>null</code>.
+     * @return See above.
+     */
+    private static int banded(int discreteValue, int[] color,
+            LutReader reader)
+    {
+        if (reader != null) {
+            return (reader.getRed(discreteValue) & 0xFF) << 16
+                    | (reader.getGreen(discreteValue) & 0xFF) << 8
+                    | reader.getBlue(discreteValue) & 0xFF;
+        }
+        float alpha = new Float(
+                color[ColorsFactory.ALPHA_INDEX]).floatValue() / 65025;// 255*255
+        float v = discreteValue * alpha;
+        int r = clamp((int) (color[ColorsFactory.RED_INDEX] * v));
+        int g = clamp((int) (color[ColorsFactory.GREEN_INDEX] * v));
+        int b = clamp((int) (color[ColorsFactory.BLUE_INDEX] * v));
+        return r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Returns the contribution of the specified value for a packed buffer.
+     *
+     * @param discreteValue The transformed quantized value.
+     * @param color The color components of the channel.
+     * @param reader The lookup table of the channel or <code>null</code>.
+     * @param optimizations The optimizations turned on by the renderer.
+     * @param isMask Pass <code>true</code> if the channel is a mask replacing
+     *               the pixels it covers, <code>false</code> otherwise.
+     * @return See above.
+     */
+    private static int packed(int discreteValue, int[] color,
+            LutReader reader, Optimizations optimizations, boolean isMask)
+    {
+        if (reader != null) {
+            return (reader.getRed(discreteValue) & 0xFF) << 16
+                    | (reader.getGreen(discreteValue) & 0xFF) << 8
+                    | reader.getBlue(discreteValue) & 0xFF;
+        }
+        // Primary colour optimization is in effect, the value is shifted
+        // into the correct colour component slot.
+        if (optimizations.isPrimaryColorEnabled()) {
+            return discreteValue << getColorOffset(color);
+        }
+        double redRatio = color[ColorsFactory.RED_INDEX] > 0 ?
+                color[ColorsFactory.RED_INDEX] / 255.0 : 0.0;
+        double greenRatio = color[ColorsFactory.GREEN_INDEX] > 0 ?
+                color[ColorsFactory.GREEN_INDEX] / 255.0 : 0.0;
+        double blueRatio = color[ColorsFactory.BLUE_INDEX] > 0 ?
+                color[ColorsFactory.BLUE_INDEX] / 255.0 : 0.0;
+        int r = (int) (redRatio * discreteValue);
+        int g = (int) (greenRatio * discreteValue);
+        int b = (int) (blueRatio * discreteValue);
+
+        // Pre-multiply the alpha for each colour component if the image has a
+        // non-1.0 alpha component.
+        if (!optimizations.isAlphalessRendering()) {
+            float alpha = new Integer(
+                    color[ColorsFactory.ALPHA_INDEX]).floatValue() / 255;
+            r *= alpha;
+            g *= alpha;
+            b *= alpha;
+        }
+        int value = clamp(r) << 16 | clamp(g) << 8 | clamp(b);
+        if (isMask && discreteValue == 255) {
+            // Since the mask is a hard value, we do not want to compromise
+            // on colour fidelity.
+            return 0xFF000000 | value;
+        }
+        return value;
+    }
+
+    /**
+     * Clamps the specified color component to <code>[0, 255]</code>.
+     *
+     * @param v The value to handle.
+     * @return See above.
+     */
+    private static int clamp(int v)
+    {
+        if (v < 0) return 0;
+        if (v > 255) return 255;
+        return v;
+    }
+
+    /**
+     * Returns the contribution of the specified pixel intensity value.
+     *
+     * @param value The pixel intensity value.
+     * @return See above.
+     * @throws QuantizationException
+     *             If an error occurs while quantizing the value.
+     */
+    int get(double value) throws QuantizationException
+    {
+        int[] table = getRawTable();
+        if (table != null) {
+            int i = (int) value - rawMin;
+            if (i >= 0 && i < table.length) {
+                return table[i];
+            }
+        }
+        return quantized[qs.quantize(value)];
+    }
+
+    /**
+     * Quantizes the specified run of pixel intensity values.
+     *
+     * @param data The pixel data.
+     * @param offset The index of the first value.
+     * @param length The number of values.
+     * @param dst The array receiving the quantized values.
+     * @throws QuantizationException
+     *             If an error occurs while quantizing the values.
+     */
+    void quantize(PixelData data, int offset, int length, byte[] dst)
+        throws QuantizationException
+    {
+        qs.quantize(data, offset, length, dst, 0);
+    }
+
+    /**
+     * Returns the contribution of the specified quantized value.
+     *
+     * @param q The quantized value, as returned by
+     *          {@link #quantize(PixelData, int, int, byte[])}.
+     * @return See above.
+     */
+    int lookup(byte q)
+    {
+        return quantized[q & 0xFF];
+    }
+}
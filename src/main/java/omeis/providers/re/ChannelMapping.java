@@ -0,0 +1,144 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import ome.util.PixelData;
+import omeis.providers.re.codomain.CodomainChain;
+import omeis.providers.re.quantum.QuantizationException;
+import omeis.providers.re.quantum.QuantumStrategy;
+
+/**
+ * The mapping of the pixel intensity values of a channel onto the codomain:
+ * the quantization followed by the codomain transformations. As the
+ * transformations only map the <code>[0, 255]</code> codomain, they are
+ * composed into a table indexed by the quantized value, so that a value is
+ * transformed with a single lookup.
+ * <p>
+ * An instance is a snapshot of the settings of the strategy and of the chain;
+ * the {@link QuantumManager} keeps one per channel and replaces it when
+ * {@link #isCurrent(QuantumStrategy, CodomainChain)} returns
+ * <code>false</code>.
+ * </p>
+ *
+ * @since 5.5
+ */
+final class ChannelMapping {
+
+    /** The number of quantized values. */
+    private static final int SIZE = QuantumStrategy.MAX + 1;
+
+    /** How to quantize a pixel intensity value. */
+    private final QuantumStrategy qs;
+
+    /** The codomain transformations or <code>null</code>. */
+    private final CodomainChain cc;
+
+    /** The version of the strategy the mapping was composed from. */
+    private final int strategyVersion;
+
+    /** The version of the chain the mapping was composed from. */
+    private final int chainVersion;
+
+    /** The transformed values indexed by the quantized value. */
+    private final int[] codomain;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param qs How to quantize a pixel intensity value.
+     * @param cc The codomain transformations or <code>null</code>.
+     */
+    ChannelMapping(QuantumStrategy qs, CodomainChain cc)
+    {
+        this.qs = qs;
+        this.cc = cc;
+        // Read the versions first so that a concurrent change is detected.
+        strategyVersion = qs.getVersion();
+        chainVersion = cc == null ? 0 : cc.getVersion();
+        codomain = new int[SIZE];
+        boolean hasMap = cc != null && cc.hasMapContext();
+        for (int q = 0; q < SIZE; q++) {
+            codomain[q] = hasMap ? cc.transform(q) : q;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the mapping was composed from the
+     * specified strategy and chain in their current state, <code>false</code>
+     * otherwise.
+     *
+     * @param qs The strategy to check.
+     * @param cc The chain to check or <code>null</code>.
+     * @return See above.
+     */
+    boolean isCurrent(QuantumStrategy qs, CodomainChain cc)
+    {
+        return this.qs == qs && this.cc == cc
+                && strategyVersion == qs.getVersion()
+                && (cc == null || chainVersion == cc.getVersion());
+    }
+
+    /**
+     * Returns the strategy used to quantize the values.
+     *
+     * @return See above.
+     */
+    QuantumStrategy getStrategy()
+    {
+        return qs;
+    }
+
+    /**
+     * Returns the version of the strategy the mapping was composed from.
+     *
+     * @return See above.
+     * @see QuantumStrategy#getVersion()
+     */
+    int getStrategyVersion()
+    {
+        return strategyVersion;
+    }
+
+    /**
+     * Quantizes the specified run of pixel intensity values.
+     *
+     * @param data The pixel data.
+     * @param offset The index of the first value.
+     * @param length The number of values.
+     * @param dst The array receiving the quantized values.
+     * @throws QuantizationException
+     *             If an error occurs while quantizing the values.
+     */
+    void quantize(PixelData data, int offset, int length, byte[] dst)
+        throws QuantizationException
+    {
+        qs.quantize(data, offset, length, dst, 0);
+    }
+
+    /**
+     * Returns the transformed value of the specified quantized value.
+     *
+     * @param q The quantized value, as returned by
+     *          {@link #quantize(PixelData, int, int, byte[])}.
+     * @return See above.
+     */
+    int lookup(byte q)
+    {
+        return codomain[q & 0xFF];
+    }
+
+    /**
+     * Maps the specified pixel intensity value onto the codomain.
+     *
+     * @param value The pixel intensity value.
+     * @return See above.
+     * @throws QuantizationException
+     *             If an error occurs while quantizing the value.
+     */
+    int map(double value) throws QuantizationException
+    {
+        return codomain[qs.quantize(value)];
+    }
+}
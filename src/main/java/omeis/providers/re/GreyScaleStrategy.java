@@ -5,24 +5,23 @@
 package omeis.providers.re;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import ome.conditions.ResourceError;
-import ome.io.nio.PixelBuffer;
 import ome.model.core.Pixels;
 import ome.model.display.ChannelBinding;
 
-import omeis.providers.re.codomain.CodomainChain;
-import omeis.providers.re.data.PlaneFactory;
 import omeis.providers.re.data.Plane2D;
 import omeis.providers.re.data.PlaneDef;
 import omeis.providers.re.quantum.QuantizationException;
-import omeis.providers.re.quantum.QuantumStrategy;
 
 /**
- * Transforms a plane within a given pixels set into a greyscale image.
+ * Transforms a plane within a given pixels set into a greyscale image. Only
+ * the first active channel is rendered; the rows of the plane are rendered
+ * concurrently by the shared {@link RenderingExecutor}.
  * 
  * @author Jean-Marie Burel &nbsp;&nbsp;&nbsp;&nbsp; <a
  *         href="mailto:j.burel@dundee.ac.uk">j.burel@dundee.ac.uk</a>
@@ -44,6 +43,16 @@ class GreyScaleStrategy extends RenderingStrategy {
     /** The channel binding we're using */
     private ChannelBinding channelBinding;
 
+    /**
+     * Creates a new instance.
+     *
+     * @param executor The threads used to render concurrently.
+     */
+    GreyScaleStrategy(RenderingExecutor executor)
+    {
+        super(executor);
+    }
+
     /**
      * Implemented as specified by the superclass.
      * 
@@ -56,216 +65,175 @@ class GreyScaleStrategy extends RenderingStrategy {
         renderer = ctx;
         // Initialize sizeX1 and sizeX2 according to the plane definition and
         // create the RGB buffer.
-        Pixels metadata = renderer.getMetadata();
-        initAxesSize(planeDef, metadata);
-        if (!findFirstActiveChannelBinding())
-        {
-            return getRgbBuffer();
-        }
-        PixelBuffer pixels = renderer.getPixels();
-        RenderingStats performanceStats = renderer.getStats();
-        QuantumStrategy qs = 
-        	renderer.getQuantumManager().getStrategyFor(channel);
-        CodomainChain cc = renderer.getCodomainChain(channel);
-        
-        // Retrieve the planar data to render
-        performanceStats.startIO(channel);
-        Plane2D plane =
-        	PlaneFactory.createPlane(planeDef, channel, metadata, pixels);
-        performanceStats.endIO(channel);
-
+        initAxesSize(planeDef, renderer.getMetadata());
         RGBBuffer buf = getRgbBuffer();
-        
-        byte value;
-        float alpha = channelBinding.getAlpha().floatValue() / 255;
-
-        int x1, x2, discreteValue, pixelIndex;
-        byte[] r = buf.getRedBand();
-        byte[] g = buf.getBlueBand();
-        byte[] b = buf.getGreenBand();
-        boolean hasMapContext = cc.hasMapContext();
-        if (plane.isXYPlanar())
-        {
-        	int planeSize = sizeX1 * sizeX2;
-            for (int i = 0; i < planeSize; i++)
-            {
-                for (x1 = 0; x1 < sizeX1; ++x1)
-                {
-                    discreteValue = qs.quantize(plane.getPixelValue(i));
-                    if (hasMapContext) {
-                        discreteValue = cc.transform(discreteValue);
-                    }
-                    value = (byte) (discreteValue * alpha);
-                    r[i] = value;
-                    g[i] = value;
-                    b[i] = value;
-                }
+        boolean rendered = false;
+        try {
+            render(RenderTarget.of(buf), planeDef);
+            rendered = true;
+        } finally {
+            if (!rendered) {
+                // Failed or cancelled, the buffer is not handed out.
+                renderer.releaseBuffer(buf);
             }
         }
-        else
-        {
-        	for (x2 = 0; x2 < sizeX2; ++x2) {
-        		for (x1 = 0; x1 < sizeX1; ++x1) {
-        			pixelIndex = sizeX1 * x2 + x1;
-        			discreteValue = qs.quantize(plane.getPixelValue(x1, x2));
-        			if (hasMapContext) {
-                        discreteValue = cc.transform(discreteValue);
-                    }
-        			value = (byte) (discreteValue * alpha);
-        			r[pixelIndex] = value;
-        			g[pixelIndex] = value;
-        			b[pixelIndex] = value;
-        		}
-        	}
-        }
         return buf;
     }
-    
+
     /**
-	 * Implemented as specified by the superclass.
-	 * 
-	 * @see RenderingStrategy#render(Renderer ctx, PlaneDef planeDef)
-	 */
-	@Override
-	RGBIntBuffer renderAsPackedInt(Renderer ctx, PlaneDef planeDef)
-	        throws IOException, QuantizationException {
+     * Implemented as specified by the superclass.
+     * 
+     * @see RenderingStrategy#renderAsPackedInt(Renderer ctx, PlaneDef planeDef)
+     */
+    @Override
+    RGBIntBuffer renderAsPackedInt(Renderer ctx, PlaneDef planeDef)
+            throws IOException, QuantizationException {
         // Set the context and retrieve objects we're gonna use.
         renderer = ctx;
         // Initialize sizeX1 and sizeX2 according to the plane definition and
         // create the RGB buffer.
-        Pixels metadata = renderer.getMetadata();
-        initAxesSize(planeDef, metadata);
-        if (!findFirstActiveChannelBinding())
-        {
-            return getIntBuffer();
-        }
-        PixelBuffer pixels = renderer.getPixels();
-        RenderingStats performanceStats = renderer.getStats();
-        QuantumStrategy qs = 
-        	renderer.getQuantumManager().getStrategyFor(channel);
-        CodomainChain cc = renderer.getCodomainChain(channel);
-        
-        // Retrieve the planar data to render
-        
-        Plane2D plane;
+        initAxesSize(planeDef, renderer.getMetadata());
+        RGBIntBuffer buf = getIntBuffer();
+        boolean rendered = false;
         try {
-        	performanceStats.startIO(channel);
-        	plane = PlaneFactory.createPlane(planeDef, channel, metadata, pixels);
-        	performanceStats.endIO(channel);
-		} finally
-		{
-			try
-            {
-                pixels.close();
-            } 
-            catch (IOException e)
-            {
-                log.error("Pixels could not be closed successfully.", e);
-    			throw new ResourceError(
-    					e.getMessage() + " Please check server log.");
+            render(RenderTarget.of(buf), planeDef);
+            rendered = true;
+        } finally {
+            if (!rendered) {
+                // Failed or cancelled, the buffer is not handed out.
+                renderer.releaseBuffer(buf);
             }
-		}
-       
-	    RGBIntBuffer dataBuf = getIntBuffer();
-	    
-        int alpha = channelBinding.getAlpha();
-        int[] buf = ((RGBIntBuffer) dataBuf).getDataBuffer();
-        int x1, x2, discreteValue, pixelIndex;
-        boolean hasMapContext = cc.hasMapContext();
-        if (plane.isXYPlanar())
-        {
-        	int planeSize = sizeX1 * sizeX2;
-        	for (int i = 0; i < planeSize; i++)
-        	{
-                discreteValue = qs.quantize(plane.getPixelValue(i));
-                if (hasMapContext) {
-                    discreteValue = cc.transform(discreteValue);
-                }
-                buf[i] = alpha << 24 | discreteValue << 16
-                        | discreteValue << 8 | discreteValue;
-        	}
         }
-        else
-        {
-        	for (x2 = 0; x2 < sizeX2; ++x2) {
-        		pixelIndex = sizeX1 * x2;
-        		for (x1 = 0; x1 < sizeX1; ++x1) {
-        			discreteValue = qs.quantize(plane.getPixelValue(x1, x2));
-        			if (hasMapContext) {
-                        discreteValue = cc.transform(discreteValue);
-                    }
-        			buf[pixelIndex + x1] = alpha << 24 | discreteValue << 16
-        			| discreteValue << 8 | discreteValue;
-        		}
-        	}
-        }
-	    return dataBuf;
-	}
+        return buf;
+    }
 
-	/**
-	 * Implemented as specified by the superclass.
-	 * 
-	 * @see RenderingStrategy#renderAsPackedIntAsRGBA(Renderer ctx, PlaneDef planeDef)
-	 */
-	@Override
-	RGBAIntBuffer renderAsPackedIntAsRGBA(Renderer ctx, PlaneDef planeDef)
-	        throws IOException, QuantizationException {
+    /**
+     * Implemented as specified by the superclass.
+     * 
+     * @see RenderingStrategy#renderAsPackedIntAsRGBA(Renderer ctx, PlaneDef planeDef)
+     */
+    @Override
+    RGBAIntBuffer renderAsPackedIntAsRGBA(Renderer ctx, PlaneDef planeDef)
+            throws IOException, QuantizationException {
         // Set the context and retrieve objects we're gonna use.
         renderer = ctx;
         // Initialize sizeX1 and sizeX2 according to the plane definition and
         // create the RGB buffer.
-        Pixels metadata = renderer.getMetadata();
-        initAxesSize(planeDef, metadata);
+        initAxesSize(planeDef, renderer.getMetadata());
+        RGBAIntBuffer buf = getRGBAIntBuffer();
+        boolean rendered = false;
+        try {
+            render(RenderTarget.of(buf), planeDef);
+            rendered = true;
+        } finally {
+            if (!rendered) {
+                // Failed or cancelled, the buffer is not handed out.
+                renderer.releaseBuffer(buf);
+            }
+        }
+        return buf;
+    }
+
+    /**
+     * Implemented as specified by the superclass.
+     *
+     * @see RenderingStrategy#renderInto(Renderer, PlaneDef, RenderTarget)
+     */
+    @Override
+    void renderInto(Renderer ctx, PlaneDef planeDef, RenderTarget target)
+            throws IOException, QuantizationException {
+        renderer = ctx;
+        initAxesSize(planeDef, renderer.getMetadata());
+        target.checkBounds(sizeX1, sizeX2);
+        render(target, planeDef);
+    }
+
+    /**
+     * Renders the first active channel into the specified target. The rows
+     * of the plane are rendered in bands by the shared
+     * {@link RenderingExecutor}. The image is transparent black if no
+     * channel is active.
+     *
+     * @param target Where to store the image.
+     * @param planeDef The plane to render.
+     * @throws QuantizationException
+     *             If an error occurs while quantizing a pixels intensity value.
+     */
+    private void render(RenderTarget target, PlaneDef planeDef)
+        throws QuantizationException
+    {
         if (!findFirstActiveChannelBinding())
         {
-            return getRGBAIntBuffer();
+            target.clear(sizeX1, sizeX2);
+            return;
+        }
+        RenderingStats performanceStats = renderer.getStats();
+        ChannelMapping mapping = renderer.getChannelMapping(channel);
+        // Only read and quantize the plane if not done with these settings.
+        Plane2D plane = null;
+        byte[] quantized = renderer.getQuantizedPlane(planeDef, channel,
+                mapping);
+        boolean fill = quantized == null
+                && renderer.isKeepingQuantizedPlane(planeDef);
+        if (quantized == null) {
+            plane = getPlane(planeDef);
+            if (fill) {
+                quantized = new byte[sizeX1 * sizeX2];
+            }
+        }
+        RenderGreyScaleRegionTask task = new RenderGreyScaleRegionTask(target,
+                plane, quantized, mapping, channelBinding.getAlpha(), sizeX1);
+        performanceStats.startRendering();
+        executor.render(task, sizeX2, RowBandTask.grainSize(sizeX1, 1),
+                renderer.getCancellationToken());
+        performanceStats.endRendering();
+        if (fill) {
+            renderer.putQuantizedPlane(planeDef, channel, mapping, quantized);
         }
-        PixelBuffer pixels = renderer.getPixels();
+    }
+
+    /**
+     * Retrieves the planar data of the channel to render and closes the pixel
+     * buffer.
+     *
+     * @param planeDef The plane to render.
+     * @return See above.
+     */
+    private Plane2D getPlane(PlaneDef planeDef)
+    {
         RenderingStats performanceStats = renderer.getStats();
-        QuantumStrategy qs = 
-        	renderer.getQuantumManager().getStrategyFor(channel);
-        CodomainChain cc = renderer.getCodomainChain(channel);
-        
-        // Retrieve the planar data to render
-        performanceStats.startIO(channel);
-        Plane2D plane =
-        	PlaneFactory.createPlane(planeDef, channel, metadata, pixels);
-        performanceStats.endIO(channel);
-	
-	    RGBAIntBuffer dataBuf = getRGBAIntBuffer();
-	    
-        int alpha = channelBinding.getAlpha();
-        int[] buf = ((RGBAIntBuffer) dataBuf).getDataBuffer();
-        int x1, x2, discreteValue, pixelIndex;
-        boolean hasMapContext = cc.hasMapContext();
-        if (plane.isXYPlanar())
+        try
         {
-        	int planeSize = sizeX1 * sizeX2;
-        	for (int i = 0; i < planeSize; i++)
-        	{
-                discreteValue = qs.quantize(plane.getPixelValue(i));
-                if (hasMapContext) {
-                    discreteValue = cc.transform(discreteValue);
-                }
-                buf[i] = alpha | discreteValue << 24
-                        | discreteValue << 16 | discreteValue << 8;
-        	}
+            performanceStats.startIO(channel);
+            Plane2D plane = renderer.readPlane(planeDef, channel);
+            performanceStats.endIO(channel);
+            return plane;
         }
-        else
+        finally
         {
-        	for (x2 = 0; x2 < sizeX2; ++x2) {
-        		pixelIndex = sizeX1 * x2;
-        		for (x1 = 0; x1 < sizeX1; ++x1) {
-        			discreteValue = qs.quantize(plane.getPixelValue(x1, x2));
-        			discreteValue = cc.transform(discreteValue);
-        			buf[pixelIndex + x1] = alpha | discreteValue << 24
-        			| discreteValue << 16 | discreteValue << 8;
-        		}
-        	}
+            // Make sure that the pixel buffer is cleansed properly.
+            renderer.closePixels();
         }
-	    return dataBuf;
-	}
+    }
 
+    /**
+     * Overridden to only read the first active channel.
+     *
+     * @see RenderingStrategy#getChannelsToRead(Renderer)
+     */
+    @Override
+    List<Integer> getChannelsToRead(Renderer ctx)
+    {
+        ChannelBinding[] channelBindings = ctx.getChannelBindings();
+        for (int i = 0; i < channelBindings.length; i++)
+        {
+            if (channelBindings[i].getActive())
+            {
+                return Collections.singletonList(i);
+            }
+        }
+        return Collections.emptyList();
+    }
 
 	/**
 	 * Initializes the first active channel binding for the current rendering
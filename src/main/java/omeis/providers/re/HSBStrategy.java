@@ -10,28 +10,20 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import ome.conditions.ResourceError;
-import ome.io.nio.PixelBuffer;
 import ome.model.core.Pixels;
 import ome.model.display.ChannelBinding;
 import ome.model.display.QuantumDef;
 import ome.model.enums.PixelsType;
 import ome.util.PixelData;
-import omeis.providers.re.codomain.CodomainChain;
-import omeis.providers.re.data.PlaneFactory;
 import omeis.providers.re.data.Plane2D;
 import omeis.providers.re.data.PlaneDef;
 import omeis.providers.re.lut.LutReader;
 import omeis.providers.re.quantum.BinaryMaskQuantizer;
 import omeis.providers.re.quantum.QuantizationException;
-import omeis.providers.re.quantum.QuantumStrategy;
 
 /**
  * Transforms a plane within a given pixels set into an <i>RGB</i> image. As
@@ -39,9 +31,11 @@ import omeis.providers.re.quantum.QuantumStrategy;
  * each wavelength is mapped to a color. All these things are specified by the
  * rendering context.
  * <p>
- * This strategy renders the in "regions", dividing the planar data up based
- * on {@link #maxTasks} and assigning each task to its own thread. This should
- * result in parallel rendering on multi-processor machines.
+ * This strategy renders the plane in bands of rows scheduled on the shared
+ * {@link RenderingExecutor}. The size of the bands depends on the width of the
+ * plane and the number of channels, and idle threads steal bands from busy
+ * ones. This should result in parallel rendering on multi-processor machines
+ * whatever the height of the plane.
  * </p>
  * <p>
  * Thread-safety relies on the fact that the rendering context is not going to
@@ -62,44 +56,62 @@ class HSBStrategy extends RenderingStrategy {
 	
     /** The logger for this particular class */
     private static Logger log = LoggerFactory.getLogger(HSBStrategy.class);
-    
+
     /**
-     * Retrieves the maximum number of reasonable tasks to schedule based on
-     * image size and <i>maxTasks</i>.
-     * 
-     * @param size The width along the X2 axis.
-     * @return the number of tasks to schedule.
+     * Creates a new instance.
+     *
+     * @param executor The threads used to render the regions concurrently.
      */
-    private int numTasks(int size) {
-        for (int i = maxTasks; i > 0; i--) {
-            if (size % i == 0) {
-                return i;
-            }
-        }
-        return 1;
+    HSBStrategy(RenderingExecutor executor)
+    {
+        super(executor);
     }
 
     /**
      * Retrieves the wavelength data for all the active channels and overlays.
+     * The data of the channels whose plane was already quantized with the
+     * current settings is not read, their element is <code>null</code> and
+     * their quantized values are set in <code>quantized</code>. The
+     * quantized values of the planes read are kept if the renderer is set to
+     * do so, in which case an array to fill in is allocated and the element
+     * of <code>fill</code> set.
      * 
+     * @param pDef The plane to render.
+     * @param mappings The mapping of each active channel and overlay.
+     * @param quantized The quantized values of each wavelength.
+     * @param fill Set for the wavelengths whose quantized values are to be
+     *             kept.
      * @return the wavelength data.
      */
-    private List<Plane2D> getWavelengthData(PlaneDef pDef) {
+    private List<Plane2D> getWavelengthData(PlaneDef pDef,
+            List<ChannelMapping> mappings, byte[][] quantized,
+            boolean[] fill) {
         ChannelBinding[] channelBindings = renderer.getChannelBindings();
         Pixels metadata = renderer.getMetadata();
-        PixelBuffer pixels = renderer.getPixels();
         List<Plane2D> wData = null;
         try
         {
         	RenderingStats performanceStats = renderer.getStats();
         	wData = new ArrayList<Plane2D>();
 
+        	boolean keep = renderer.isKeepingQuantizedPlane(pDef);
         	for (int w = 0; w < channelBindings.length; w++) {
         		if (channelBindings[w].getActive()) {
+        			int i = wData.size();
+        			quantized[i] = renderer.getQuantizedPlane(pDef, w,
+        					mappings.get(i));
+        			if (quantized[i] != null) {
+        				wData.add(null);
+        				continue;
+        			}
         			performanceStats.startIO(w);
-        			wData.add(PlaneFactory.createPlane(pDef, w, metadata, 
-        					pixels));
+        			Plane2D plane = renderer.readPlane(pDef, w);
         			performanceStats.endIO(w);
+        			wData.add(plane);
+        			if (keep && plane != null && plane.isXYPlanar()) {
+        				quantized[i] = new byte[sizeX1 * sizeX2];
+        				fill[i] = true;
+        			}
         		}
         	}
         	Map<byte[], Integer> overlays = renderer.getOverlays();
@@ -116,40 +128,12 @@ class HSBStrategy extends RenderingStrategy {
         finally
         {
             // Make sure that the pixel buffer is cleansed properly.
-            try
-            {
-                pixels.close();
-            } 
-            catch (IOException e)
-            {
-                log.error("Pixels could not be closed successfully.", e);
-    			throw new ResourceError(
-    					e.getMessage() + " Please check server log.");
-            }        	
+            renderer.closePixels();
         }
 
         return wData;
     }
 
-    /**
-     * Returns the collection of chains.
-     *
-     * @return See above.
-     */
-    private List<CodomainChain> getChains()
-    {
-        List<CodomainChain> chains = renderer.getCodomainChains();
-        ChannelBinding[] channelBindings = renderer.getChannelBindings();
-        List<CodomainChain> list = new ArrayList<CodomainChain>();
-        for (int w = 0; w < channelBindings.length; w++) {
-            ChannelBinding cb = channelBindings[w];
-            if (cb.getActive()) {
-                list.add(chains.get(w));
-            }
-        }
-        return list;
-    }
-
     /**
      * Retrieves the color for each active channels.
      * 
@@ -183,18 +167,18 @@ class HSBStrategy extends RenderingStrategy {
     }
 
     /**
-     * Retrieves the quantum strategy for each active channels
+     * Retrieves the mapping onto the codomain of each active channel, then
+     * of each overlay.
      * 
-     * @return the active channel color data.
+     * @return See above.
      */
-    private List<QuantumStrategy> getStrategies() {
+    private List<ChannelMapping> getMappings() {
         ChannelBinding[] channelBindings = renderer.getChannelBindings();
-        QuantumManager qManager = renderer.getQuantumManager();
-        List<QuantumStrategy> strats = new ArrayList<QuantumStrategy>();
+        List<ChannelMapping> mappings = new ArrayList<ChannelMapping>();
 
         for (int w = 0; w < channelBindings.length; w++) {
             if (channelBindings[w].getActive()) {
-                strats.add(qManager.getStrategyFor(w));
+                mappings.add(renderer.getChannelMapping(w));
             }
         }
     	Map<byte[], Integer> overlays = renderer.getOverlays();
@@ -208,48 +192,52 @@ class HSBStrategy extends RenderingStrategy {
     		pixels.setPixelsType(bitType);
     		for (int i = 0; i < overlays.size(); i++)
     		{
-    			strats.add(new BinaryMaskQuantizer(def, pixels));
+    			// Overlays have no codomain chain.
+    			mappings.add(new ChannelMapping(
+    					new BinaryMaskQuantizer(def, pixels), null));
     		}
     	}
-        return strats;
+        return mappings;
     }
 
     /**
-     * Creates a set of rendering tasks for the image based on the calling
-     * buffer type.
+     * Creates the task rendering the plane into the specified target. The
+     * contribution of each channel is compiled into a
+     * {@link ChannelColorTable} suitable for the type of the target.
      * 
-     * @param planeDef
+     * @param def
      *            The plane to render.
-     * @param buf
-     *            The buffer to render into.
-     * @return An array containing the tasks.
+     * @param target
+     *            Where to store the image.
+     * @param mappings
+     *            The mapping of each active channel and overlay.
+     * @param quantized
+     *            The quantized values of each wavelength.
+     * @param fill
+     *            Set for the wavelengths whose quantized values are to be
+     *            kept.
+     * @return See above.
      */
-    private RenderingTask[] makeRenderingTasks(PlaneDef def, RGBBuffer buf) {
-        List<RenderHSBRegionTask> tasks = new ArrayList<RenderHSBRegionTask>();
-
-        //RenderingStats performanceStats = renderer.getStats();
-        List<Plane2D> wData = getWavelengthData(def);
+    private RenderHSBRegionTask makeRenderingTask(PlaneDef def,
+            RenderTarget target, List<ChannelMapping> mappings,
+            byte[][] quantized,
+            boolean[] fill) {
+        List<Plane2D> wData = getWavelengthData(def, mappings, quantized,
+                fill);
         List<int[]> colors = getColors();
         List<LutReader> readers = renderer.getLutProvider().getLutReaders(
                 renderer.getChannelBindings());
-        List<QuantumStrategy> strategies = getStrategies();
-        // Create a number of rendering tasks.
-        int taskCount = numTasks(sizeX2);
-        int delta = sizeX2/taskCount;
-        int x1Start = 0;
-        int x1End = sizeX1;
-        int x2Start, x2End;
-        log.info("taskCount: "+taskCount+" delta: "+delta);
-        for (int i = 0; i < taskCount; i++) {
-            x2Start = i*delta;
-            x2End = (i+1)*delta;
-            tasks.add(new RenderHSBRegionTask(buf, wData, strategies,
-                    getChains(), colors, renderer.getOptimizations(),
-                    x1Start, x1End, x2Start, x2End, readers));
+        Optimizations optimizations = renderer.getOptimizations();
+        int type = target.getTableType();
+        List<ChannelColorTable> tables = new ArrayList<ChannelColorTable>();
+        for (int i = 0; i < wData.size(); i++) {
+            // Overlays have no lookup table.
+            LutReader reader = i < readers.size() ? readers.get(i) : null;
+            tables.add(new ChannelColorTable(mappings.get(i), colors.get(i),
+                    reader, optimizations, type));
         }
-
-        // Turn the list into an array an return it.
-        return tasks.toArray(new RenderingTask[tasks.size()]);
+        return new RenderHSBRegionTask(target, wData, quantized, tables,
+                0, sizeX1, 0, sizeX2);
     }
 
     /**
@@ -269,7 +257,16 @@ class HSBStrategy extends RenderingStrategy {
         // create the RGB buffer.
         initAxesSize(planeDef, metadata);
         RGBBuffer buf = getRgbBuffer();
-        render(buf, planeDef);
+        boolean rendered = false;
+        try {
+            render(RenderTarget.of(buf), planeDef);
+            rendered = true;
+        } finally {
+            if (!rendered) {
+                // Failed or cancelled, the buffer is not handed out.
+                renderer.releaseBuffer(buf);
+            }
+        }
         return buf;
     }
     
@@ -289,7 +286,16 @@ class HSBStrategy extends RenderingStrategy {
         // create the RGB buffer.
         initAxesSize(planeDef, metadata);
         RGBIntBuffer buf = getIntBuffer();
-        render(buf, planeDef);
+        boolean rendered = false;
+        try {
+            render(RenderTarget.of(buf), planeDef);
+            rendered = true;
+        } finally {
+            if (!rendered) {
+                // Failed or cancelled, the buffer is not handed out.
+                renderer.releaseBuffer(buf);
+            }
+        }
         return buf;
     }
 
@@ -309,54 +315,72 @@ class HSBStrategy extends RenderingStrategy {
         // create the RGB buffer.
         initAxesSize(planeDef, metadata);
         RGBAIntBuffer buf = getRGBAIntBuffer();
-
-        render(buf, planeDef);
+        boolean rendered = false;
+        try {
+            render(RenderTarget.of(buf), planeDef);
+            rendered = true;
+        } finally {
+            if (!rendered) {
+                // Failed or cancelled, the buffer is not handed out.
+                renderer.releaseBuffer(buf);
+            }
+        }
         return buf;
     }
 
     /**
      * Implemented as specified by the superclass.
-     * 
-     * @see RenderingStrategy#render(Renderer ctx, PlaneDef planeDef)
+     *
+     * @see RenderingStrategy#renderInto(Renderer, PlaneDef, RenderTarget)
      */
-    private void render(RGBBuffer buf, PlaneDef planeDef) throws IOException,
-            QuantizationException {
+    @Override
+    void renderInto(Renderer ctx, PlaneDef planeDef, RenderTarget target)
+            throws IOException, QuantizationException {
+        renderer = ctx;
+        initAxesSize(planeDef, renderer.getMetadata());
+        target.checkBounds(sizeX1, sizeX2);
+        render(target, planeDef);
+    }
+
+    /**
+     * Renders the active channels and the overlays into the specified
+     * target.
+     *
+     * @param target Where to store the image.
+     * @param planeDef The plane to render.
+     * @throws IOException If the pixels data could not be read.
+     * @throws QuantizationException
+     *             If an error occurs while quantizing a pixels intensity value.
+     */
+    private void render(RenderTarget target, PlaneDef planeDef)
+            throws IOException, QuantizationException {
         RenderingStats performanceStats = renderer.getStats();
-        // Process each active wavelength. If their number N > 1, then
-        // process N-1 async and one in the current thread. If N = 1,
-        // just use the current thread.
-        RenderingTask[] tasks = makeRenderingTasks(planeDef, buf);
+        List<ChannelMapping> mappings = getMappings();
+        byte[][] quantized = new byte[mappings.size()][];
+        boolean[] fill = new boolean[mappings.size()];
+        RenderHSBRegionTask task = makeRenderingTask(planeDef, target,
+                mappings, quantized, fill);
+        int channels = Math.max(1, task.getChannelCount());
         performanceStats.startRendering();
-        int n = tasks.length;
-        Future[] rndTskFutures = new Future[n]; // [0] unused.
-        ExecutorService processor = Executors.newCachedThreadPool();
-
-        while (0 < --n) {
-            rndTskFutures[n] = processor.submit(tasks[n]);
-        }
+        executor.render(task, sizeX2,
+                RowBandTask.grainSize(sizeX1, channels),
+                renderer.getCancellationToken());
 
-        // Call the task in the current thread.
-        if (n == 0) {
-            tasks[0].call();
-        }
+        // End the performance metrics for this rendering event.
+        performanceStats.endRendering();
 
-        // Wait for all forked tasks (if any) to complete.
-        for (n = 1; n < rndTskFutures.length; ++n) {
-            try {
-                rndTskFutures[n].get();
-            } catch (Exception e) {
-                if (e instanceof QuantizationException) {
-                    throw (QuantizationException) e;
+        // Keep the planes quantized, overlays come after the channels.
+        ChannelBinding[] channelBindings = renderer.getChannelBindings();
+        int i = 0;
+        for (int w = 0; w < channelBindings.length; w++) {
+            if (channelBindings[w].getActive()) {
+                if (fill[i]) {
+                    renderer.putQuantizedPlane(planeDef, w, mappings.get(i),
+                            quantized[i]);
                 }
-                throw new RuntimeException(e);
+                i++;
             }
         }
-
-        // Shutdown the task processor
-        processor.shutdown();
-
-        // End the performance metrics for this rendering event.
-        performanceStats.endRendering();
     }
 
     /**
@@ -0,0 +1,385 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ome.io.nio.PixelBuffer;
+import omeis.providers.re.data.PlaneCache;
+import omeis.providers.re.data.PlaneDef;
+import omeis.providers.re.data.RegionDef;
+import omeis.providers.re.quantum.QuantizationException;
+
+/**
+ * Renders every tile of every resolution level of a plane with the current
+ * settings of a {@link Renderer} and streams them to a {@link TileSink},
+ * e.g. to generate the tiles of a viewer at import time. The tiles of a row
+ * are rendered as a {@link Renderer#renderBatch(List, RenderedPlaneHandler)
+ * batch}, the data of the next tile being read while the current one is
+ * rendered by the {@link RenderingExecutor}, and each tile is written as
+ * soon as it is rendered. The progress of an export can be polled from
+ * another thread.
+ * <p>
+ * As the pixel buffer of a renderer is set to one resolution level at a
+ * time and cannot be read concurrently, the levels are exported one after
+ * the other and the tiles one at a time, only the rows of a tile being
+ * rendered in parallel. The export changes the resolution level of the
+ * renderer while it runs and restores it afterwards, so the renderer must
+ * be dedicated to the export: it must not be used for anything else
+ * meanwhile, and exporting it again before the export completes fails. To
+ * export several planes or images in parallel, use a renderer per export.
+ * The tiles are neither looked up in nor added to the result cache and the
+ * plane cache of the renderer.
+ * </p>
+ *
+ * @since 5.5
+ */
+public class PyramidExporter {
+
+    /** The logger for this particular class */
+    private static Logger log = LoggerFactory.getLogger(PyramidExporter.class);
+
+    /** The size of the tiles if the pixel buffer is not tiled. */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /** The renderers being exported. */
+    private static final Set<Renderer> exporting = Collections.newSetFromMap(
+            new IdentityHashMap<Renderer, Boolean>());
+
+    /** The renderer. */
+    private final Renderer renderer;
+
+    /** The size of the tiles or <code>null</code> to use the buffer's. */
+    private Dimension tileSize;
+
+    /** The number of tiles of the current export. */
+    private volatile long tileCount;
+
+    /** The number of tiles written by the current export. */
+    private volatile long tilesWritten;
+
+    /** The number of pixels written by the current export. */
+    private volatile long pixelsWritten;
+
+    /** The value of {@link System#nanoTime()} when the export started. */
+    private volatile long startTime;
+
+    /** The duration of the last export, in nanoseconds. */
+    private volatile long duration;
+
+    /** Whether or not an export is running. */
+    private volatile boolean running;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param renderer The renderer. Mustn't be <code>null</code>.
+     */
+    public PyramidExporter(Renderer renderer)
+    {
+        if (renderer == null) {
+            throw new NullPointerException("No renderer.");
+        }
+        this.renderer = renderer;
+    }
+
+    /**
+     * Sets the size of the exported tiles.
+     *
+     * @param tileSize The size of the tiles or <code>null</code> to use the
+     *                 tile size of the pixel buffer at each level.
+     */
+    public void setTileSize(Dimension tileSize)
+    {
+        if (tileSize != null && (tileSize.width <= 0 || tileSize.height <= 0))
+        {
+            throw new IllegalArgumentException("Invalid tile size.");
+        }
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Returns the size of the exported tiles.
+     *
+     * @return See above or <code>null</code> if the tile size of the pixel
+     *         buffer is used.
+     */
+    public Dimension getTileSize()
+    {
+        return tileSize;
+    }
+
+    /**
+     * Returns the size of the tiles of the current resolution level.
+     *
+     * @return See above.
+     */
+    private Dimension getLevelTileSize()
+    {
+        if (tileSize != null) return tileSize;
+        Dimension d = renderer.getTileSize();
+        if (d == null || d.width <= 0 || d.height <= 0) {
+            return new Dimension(DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE);
+        }
+        return d;
+    }
+
+    /**
+     * Renders all the tiles of the specified plane and writes them to the
+     * sink, the smallest resolution level first.
+     *
+     * @param z The selected z-section.
+     * @param t The selected timepoint.
+     * @param sink Receives the tiles.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository or if the sink failed.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws IllegalStateException
+     *             If the renderer is already being exported.
+     */
+    public void export(int z, int t, TileSink sink)
+        throws IOException, QuantizationException
+    {
+        if (sink == null) {
+            throw new NullPointerException("No sink.");
+        }
+        synchronized (exporting) {
+            if (!exporting.add(renderer)) {
+                throw new IllegalStateException(
+                        "The renderer is already being exported.");
+            }
+        }
+        try
+        {
+            exportPlane(z, t, sink);
+        }
+        finally
+        {
+            synchronized (exporting) {
+                exporting.remove(renderer);
+            }
+        }
+    }
+
+    /**
+     * Renders all the tiles of the specified plane and writes them to the
+     * sink, the smallest resolution level first.
+     *
+     * @param z The selected z-section.
+     * @param t The selected timepoint.
+     * @param sink Receives the tiles.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository or if the sink failed.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     */
+    private void exportPlane(int z, int t, TileSink sink)
+        throws IOException, QuantizationException
+    {
+        PixelBuffer buffer = renderer.getPixels();
+        int levels = renderer.getResolutionLevels();
+        int[] order = new int[levels];
+        int[] sizeX = new int[levels];
+        int[] sizeY = new int[levels];
+        Dimension[] tiles = new Dimension[levels];
+        int original = renderer.getResolutionLevel();
+        // Each tile is rendered once: caching the tiles or their data would
+        // only evict the images and planes of the interactive renders.
+        RenderedImageCache resultCache = renderer.getResultCache();
+        PlaneCache planeCache = renderer.getPlaneCache();
+        renderer.setResultCache(null);
+        renderer.setPlaneCache(null);
+        tilesWritten = 0;
+        pixelsWritten = 0;
+        duration = 0;
+        startTime = System.nanoTime();
+        running = true;
+        try
+        {
+            long count = 0;
+            for (int level = 0; level < levels; level++) {
+                renderer.setResolutionLevel(level);
+                sizeX[level] = buffer.getSizeX();
+                sizeY[level] = buffer.getSizeY();
+                tiles[level] = getLevelTileSize();
+                count += (long) columns(sizeX[level], tiles[level].width)
+                        * columns(sizeY[level], tiles[level].height);
+                order[level] = level;
+            }
+            tileCount = count;
+            // Smallest level first, whatever the numbering of the buffer.
+            for (int i = 1; i < levels; i++) {
+                for (int j = i; j > 0 && (long) sizeX[order[j]]
+                        * sizeY[order[j]] < (long) sizeX[order[j - 1]]
+                        * sizeY[order[j - 1]]; j--) {
+                    int tmp = order[j];
+                    order[j] = order[j - 1];
+                    order[j - 1] = tmp;
+                }
+            }
+            for (int level : order) {
+                renderer.setResolutionLevel(level);
+                exportLevel(z, t, level, sizeX[level], sizeY[level],
+                        tiles[level], sink);
+            }
+        }
+        finally
+        {
+            duration = System.nanoTime() - startTime;
+            running = false;
+            renderer.setResolutionLevel(original);
+            renderer.setResultCache(resultCache);
+            renderer.setPlaneCache(planeCache);
+        }
+    }
+
+    /**
+     * Returns the number of tiles needed to cover the specified length.
+     *
+     * @param length The length to cover.
+     * @param tile The length of a tile.
+     * @return See above.
+     */
+    private static int columns(int length, int tile)
+    {
+        return (length + tile - 1) / tile;
+    }
+
+    /**
+     * Renders all the tiles of the current resolution level.
+     *
+     * @param z The selected z-section.
+     * @param t The selected timepoint.
+     * @param level The resolution level.
+     * @param sizeX The number of pixels along the <i>X</i>-axis.
+     * @param sizeY The number of pixels along the <i>Y</i>-axis.
+     * @param tile The size of the tiles.
+     * @param sink Receives the tiles.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository or if the sink failed.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     */
+    private void exportLevel(int z, int t, final int level, int sizeX,
+            int sizeY, Dimension tile, final TileSink sink)
+        throws IOException, QuantizationException
+    {
+        long start = System.nanoTime();
+        long pixels = pixelsWritten;
+        sink.startLevel(level, sizeX, sizeY, tile.width, tile.height);
+        int rows = columns(sizeY, tile.height);
+        int cols = columns(sizeX, tile.width);
+        for (int r = 0; r < rows; r++) {
+            final int row = r;
+            List<PlaneDef> planes = new ArrayList<PlaneDef>(cols);
+            for (int col = 0; col < cols; col++) {
+                int x = col * tile.width;
+                int y = row * tile.height;
+                PlaneDef pd = new PlaneDef(PlaneDef.XY, t);
+                pd.setZ(z);
+                pd.setRegion(new RegionDef(x, y,
+                        Math.min(tile.width, sizeX - x),
+                        Math.min(tile.height, sizeY - y)));
+                planes.add(pd);
+            }
+            renderer.renderBatch(planes, new RenderedPlaneHandler() {
+                public void handlePlane(int col, PlaneDef pd, int[] image)
+                    throws IOException
+                {
+                    RegionDef region = pd.getRegion();
+                    sink.writeTile(level, col, row, region, image);
+                    renderer.releaseBuffer(image);
+                    tilesWritten++;
+                    pixelsWritten += (long) region.getWidth()
+                            * region.getHeight();
+                }
+            });
+        }
+        long elapsed = Math.max(System.nanoTime() - start, 1L);
+        log.info(String.format(
+                "Exported level %d (%dx%d): %d tiles in %d ms, %.2f MP/s",
+                level, sizeX, sizeY, (long) rows * cols, elapsed / 1000000,
+                (pixelsWritten - pixels) * 1000.0 / elapsed));
+    }
+
+    /**
+     * Returns the number of tiles of the current or last export.
+     *
+     * @return See above.
+     */
+    public long getTileCount()
+    {
+        return tileCount;
+    }
+
+    /**
+     * Returns the number of tiles written by the current or last export.
+     *
+     * @return See above.
+     */
+    public long getTilesWritten()
+    {
+        return tilesWritten;
+    }
+
+    /**
+     * Returns the number of pixels written by the current or last export.
+     *
+     * @return See above.
+     */
+    public long getPixelsWritten()
+    {
+        return pixelsWritten;
+    }
+
+    /**
+     * Returns the fraction of the tiles written by the current or last
+     * export.
+     *
+     * @return A value between <code>0</code> and <code>1</code>.
+     */
+    public double getProgress()
+    {
+        long count = tileCount;
+        return count == 0 ? 0 : (double) tilesWritten / count;
+    }
+
+    /**
+     * Returns the time elapsed since the current export started or the
+     * duration of the last export, in milliseconds.
+     *
+     * @return See above.
+     */
+    public long getElapsedTime()
+    {
+        long elapsed = running ? System.nanoTime() - startTime : duration;
+        return elapsed / 1000000;
+    }
+
+    /**
+     * Returns the number of pixels written per second by the current or
+     * last export.
+     *
+     * @return See above.
+     */
+    public double getThroughput()
+    {
+        long elapsed = getElapsedTime();
+        return elapsed == 0 ? 0 : pixelsWritten * 1000.0 / elapsed;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import omeis.providers.re.data.PlaneCache;
+import omeis.providers.re.quantum.QuantumStrategy;
+
+/**
+ * Keeps the quantized values of the channels of the last rendered planes of a
+ * {@link Renderer}, so that a plane is only composited again when the colour,
+ * the alpha, the lookup table or the active state of a channel changes.
+ * <p>
+ * A quantized plane is only returned if the quantum strategy of its channel
+ * has not changed since the plane was quantized. The {@link Renderer} also
+ * removes the planes of a channel when its quantization settings change.
+ * </p>
+ *
+ * @since 5.5
+ */
+final class QuantizedPlaneCache {
+
+    /** A quantized plane and the settings it was quantized with. */
+    private static final class QuantizedPlane {
+
+        /** The strategy used to quantize the plane. */
+        private final QuantumStrategy qs;
+
+        /** The version of the strategy used to quantize the plane. */
+        private final int version;
+
+        /** The quantized values, one per pixel. */
+        private final byte[] data;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param mapping The mapping used to quantize the plane.
+         * @param data The quantized values, one per pixel.
+         */
+        QuantizedPlane(ChannelMapping mapping, byte[] data)
+        {
+            qs = mapping.getStrategy();
+            version = mapping.getStrategyVersion();
+            this.data = data;
+        }
+    }
+
+    /** The maximum number of planes kept. */
+    private final int maxPlanes;
+
+    /** The quantized planes of each channel, in access order. */
+    private final LinkedHashMap<PlaneCache.Key, QuantizedPlane> entries;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxPlanes The maximum number of planes kept. Must be positive.
+     * @param channels The number of channels of the pixels set.
+     */
+    QuantizedPlaneCache(int maxPlanes, int channels)
+    {
+        if (maxPlanes <= 0) {
+            throw new IllegalArgumentException("Expecting a positive size.");
+        }
+        this.maxPlanes = maxPlanes;
+        final int maxEntries = maxPlanes * Math.max(1, channels);
+        entries = new LinkedHashMap<PlaneCache.Key, QuantizedPlane>(16,
+                0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<PlaneCache.Key, QuantizedPlane> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of planes kept.
+     *
+     * @return See above.
+     */
+    int getMaxPlanes()
+    {
+        return maxPlanes;
+    }
+
+    /**
+     * Returns the quantized plane of a channel if it was quantized with the
+     * current settings of the specified mapping.
+     *
+     * @param key Identifies the plane and the channel.
+     * @param mapping The current mapping of the channel.
+     * @return See above or <code>null</code>.
+     */
+    synchronized byte[] get(PlaneCache.Key key, ChannelMapping mapping)
+    {
+        QuantizedPlane e = entries.get(key);
+        if (e == null) return null;
+        if (e.qs != mapping.getStrategy()
+                || e.version != mapping.getStrategyVersion()) {
+            entries.remove(key);
+            return null;
+        }
+        return e.data;
+    }
+
+    /**
+     * Keeps the quantized plane of a channel.
+     *
+     * @param key Identifies the plane and the channel.
+     * @param mapping The mapping used to quantize the plane.
+     * @param data The quantized values, one per pixel. Must not be modified
+     *             afterwards.
+     */
+    synchronized void put(PlaneCache.Key key, ChannelMapping mapping,
+            byte[] data)
+    {
+        entries.put(key, new QuantizedPlane(mapping, data));
+    }
+
+    /**
+     * Removes the quantized planes of the specified channel.
+     *
+     * @param channel The channel index.
+     */
+    synchronized void invalidate(int channel)
+    {
+        Iterator<PlaneCache.Key> i = entries.keySet().iterator();
+        while (i.hasNext()) {
+            if (i.next().getChannel() == channel) {
+                i.remove();
+            }
+        }
+    }
+
+    /** Removes all the quantized planes. */
+    synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of quantized planes kept, counting each channel.
+     *
+     * @return See above.
+     */
+    synchronized int size()
+    {
+        return entries.size();
+    }
+}
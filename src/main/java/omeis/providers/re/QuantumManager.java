@@ -16,6 +16,7 @@ import ome.model.display.ChannelBinding;
 import ome.model.display.QuantumDef;
 import ome.model.stats.StatsInfo;
 
+import omeis.providers.re.codomain.CodomainChain;
 import omeis.providers.re.metadata.StatsFactory;
 import omeis.providers.re.quantum.QuantumFactory;
 import omeis.providers.re.quantum.QuantumStrategy;
@@ -44,6 +45,12 @@ class QuantumManager {
     /** A quantum factory instance for looking up enumerations. */
     private final QuantumFactory factory;
 
+    /**
+     * The mapping composed for each wavelength, <code>null</code> if not
+     * composed yet. Indexed like {@link #wavesStg}.
+     */
+    private final ChannelMapping[] mappings;
+
     /**
      * Creates a new instance.
      * 
@@ -54,6 +61,7 @@ class QuantumManager {
         this.factory = factory;
         this.metadata = metadata;
         wavesStg = new QuantumStrategy[metadata.getSizeC().intValue()];
+        mappings = new ChannelMapping[wavesStg.length];
     }
 
     /**
@@ -122,4 +130,26 @@ class QuantumManager {
         return wavesStg[w];
     }
 
+    /**
+     * Returns the mapping of the specified wavelength, i.e. its strategy
+     * composed with the specified codomain transformations. The mapping is
+     * composed again only if the strategy or the chain changed since it was
+     * last composed.
+     * 
+     * @param w
+     *            The wavelength index in the <i>OME</i> 5D-pixels file.
+     * @param cc
+     *            The codomain transformations of the wavelength.
+     * @return See above.
+     */
+    synchronized ChannelMapping getMappingFor(int w, CodomainChain cc) {
+        QuantumStrategy qs = wavesStg[w];
+        ChannelMapping mapping = mappings[w];
+        if (mapping == null || !mapping.isCurrent(qs, cc)) {
+            mapping = new ChannelMapping(qs, cc);
+            mappings[w] = mapping;
+        }
+        return mapping;
+    }
+
 }
@@ -0,0 +1,179 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import omeis.providers.re.data.RegionDef;
+
+/**
+ * Groups the regions of a plane requested together so that each group is
+ * read and rendered as its bounding region. Two groups are merged if their
+ * bounding region is not larger than the regions it covers, i.e. if they
+ * are adjacent or overlap, and if it does not exceed a maximum number of
+ * pixels. The images of the regions are then cropped out of the image of
+ * the bounding region.
+ * <p>
+ * If the plane is downsampled, the images of the regions only match the
+ * image of the bounding region if they are offset by whole strides from
+ * one another, so that the other regions are not merged.
+ * </p>
+ *
+ * @since 5.5
+ */
+final class RegionCoalescer {
+
+    /** Regions rendered together. */
+    static final class Group {
+
+        /** The indices of the regions, in ascending order. */
+        private final List<Integer> indices = new ArrayList<Integer>();
+
+        /** The bounds of the regions. */
+        private int x0, y0, x1, y1;
+
+        /** The sum of the number of pixels of the regions. */
+        private long area;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param index The index of the region.
+         * @param region The region.
+         */
+        Group(int index, RegionDef region)
+        {
+            indices.add(index);
+            x0 = region.getX();
+            y0 = region.getY();
+            x1 = x0 + region.getWidth();
+            y1 = y0 + region.getHeight();
+            area = (long) region.getWidth() * region.getHeight();
+        }
+
+        /**
+         * Returns the number of pixels of the bounding region of this group
+         * and the specified one.
+         *
+         * @param other The other group.
+         * @return See above.
+         */
+        private long getUnionArea(Group other)
+        {
+            long w = Math.max(x1, other.x1) - Math.min(x0, other.x0);
+            long h = Math.max(y1, other.y1) - Math.min(y0, other.y0);
+            return w * h;
+        }
+
+        /**
+         * Adds the regions of the specified group to this group.
+         *
+         * @param other The group to add.
+         */
+        private void merge(Group other)
+        {
+            indices.addAll(other.indices);
+            Collections.sort(indices);
+            x0 = Math.min(x0, other.x0);
+            y0 = Math.min(y0, other.y0);
+            x1 = Math.max(x1, other.x1);
+            y1 = Math.max(y1, other.y1);
+            area += other.area;
+        }
+
+        /**
+         * Returns the indices of the regions, in ascending order.
+         *
+         * @return See above.
+         */
+        List<Integer> getIndices()
+        {
+            return indices;
+        }
+
+        /**
+         * Returns the bounding region of the group.
+         *
+         * @return See above.
+         */
+        RegionDef getBounds()
+        {
+            return new RegionDef(x0, y0, x1 - x0, y1 - y0);
+        }
+    }
+
+    /** Prevents instantiation. */
+    private RegionCoalescer() {}
+
+    /**
+     * Groups the specified regions.
+     *
+     * @param regions The regions.
+     * @param maxPixels The maximum number of pixels of a bounding region
+     *                  covering several regions.
+     * @param step The distance between the pixels rendered, i.e. the
+     *             stride plus one.
+     * @return The groups, ordered by the index of their first region.
+     */
+    static List<Group> coalesce(List<RegionDef> regions, long maxPixels,
+            int step)
+    {
+        List<Group> groups = new ArrayList<Group>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            groups.add(new Group(i, regions.get(i)));
+        }
+        boolean merged;
+        do {
+            merged = false;
+            for (int i = 0; i < groups.size(); i++) {
+                Group g = groups.get(i);
+                for (int j = i + 1; j < groups.size(); j++) {
+                    Group other = groups.get(j);
+                    if ((g.x0 - other.x0) % step != 0
+                            || (g.y0 - other.y0) % step != 0) {
+                        continue;
+                    }
+                    long union = g.getUnionArea(other);
+                    if (union <= maxPixels && union <= g.area + other.area) {
+                        g.merge(other);
+                        groups.remove(j);
+                        merged = true;
+                        j = i;
+                    }
+                }
+            }
+        } while (merged);
+        return groups;
+    }
+
+    /**
+     * Copies the pixels of a region out of the image of a region containing
+     * it, the region being offset by whole strides from the containing one.
+     *
+     * @param image The packed image of the containing region.
+     * @param bounds The containing region.
+     * @param region The region to copy.
+     * @param step The distance between the pixels rendered, i.e. the
+     *             stride plus one.
+     * @return See above.
+     */
+    static int[] crop(int[] image, RegionDef bounds, RegionDef region,
+            int step)
+    {
+        // The images are downsampled: so are the offsets and sizes.
+        int sizeX = bounds.getWidth() / step;
+        int w = region.getWidth() / step;
+        int h = region.getHeight() / step;
+        int[] pixels = new int[w * h];
+        int offset = (region.getY() - bounds.getY()) / step * sizeX
+                + (region.getX() - bounds.getX()) / step;
+        for (int row = 0; row < h; row++) {
+            System.arraycopy(image, offset + row * sizeX, pixels, row * w, w);
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of the buffers the images are rendered into, so that rendering
+ * images of the same size again and again does not allocate a new buffer
+ * each time. The buffers are pooled by type and dimensions and are cleared
+ * before being handed out again. The instances are safe for concurrent use
+ * and can be shared by several renderers.
+ * <p>
+ * A buffer is only reused once it has been {@link #release(RGBBuffer)
+ * released}: the caller must not access it afterwards. The data array of a
+ * packed buffer handed out can be released on its own with
+ * {@link #release(int[])}. The number of bytes of the idle buffers is
+ * bounded by the capacity, the buffers of the least recently used sizes
+ * being dropped first. Buffers that are never released are simply left to
+ * the garbage collector.
+ * </p>
+ *
+ * @since 5.5
+ */
+public class RenderBufferPool {
+
+    /** Identifies the banded buffers. */
+    private static final String BANDED = "rgb:";
+
+    /** Identifies the packed <i>ARGB</i> buffers. */
+    private static final String PACKED_ARGB = "argb:";
+
+    /** Identifies the packed <i>RGBA</i> buffers. */
+    private static final String PACKED_RGBA = "rgba:";
+
+    /** The idle buffers by size class, least recently used first. */
+    private final LinkedHashMap<String, ArrayDeque<RGBBuffer>> idle =
+            new LinkedHashMap<String, ArrayDeque<RGBBuffer>>(16, 0.75f, true);
+
+    /**
+     * The packed buffers handed out, by data array, oldest first. Arrays
+     * use the identity to be compared.
+     */
+    private final LinkedHashMap<int[], RGBBuffer> leased =
+            new LinkedHashMap<int[], RGBBuffer>();
+
+    /** The maximum number of bytes of the idle buffers. */
+    private final long capacity;
+
+    /** The number of bytes of the idle buffers. */
+    private long weight;
+
+    /** The number of bytes of the packed buffers handed out. */
+    private long leasedWeight;
+
+    /** The number of buffers handed out from the pool. */
+    private long hits;
+
+    /** The number of buffers allocated. */
+    private long allocations;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The maximum number of bytes of the idle buffers. Must
+     *                 be positive.
+     */
+    public RenderBufferPool(long capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Expecting a positive size.");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the size class of a buffer.
+     *
+     * @param type The type of buffer.
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     * @return See above.
+     */
+    private static String getSizeClass(String type, int sizeX1, int sizeX2)
+    {
+        return type + sizeX1 + "x" + sizeX2;
+    }
+
+    /**
+     * Returns the type of the specified buffer.
+     *
+     * @param buf The buffer.
+     * @return See above.
+     */
+    private static String getType(RGBBuffer buf)
+    {
+        if (buf instanceof RGBIntBuffer) return PACKED_ARGB;
+        if (buf instanceof RGBAIntBuffer) return PACKED_RGBA;
+        return BANDED;
+    }
+
+    /**
+     * Returns the number of bytes of the specified buffer.
+     *
+     * @param buf The buffer.
+     * @return See above.
+     */
+    private static long getWeight(RGBBuffer buf)
+    {
+        long pixels = (long) buf.getSizeX1() * buf.getSizeX2();
+        return getType(buf) == BANDED ? 3 * pixels : 4 * pixels;
+    }
+
+    /**
+     * Returns the data array of the specified packed buffer.
+     *
+     * @param buf The buffer.
+     * @return See above or <code>null</code> if the buffer is banded.
+     */
+    private static int[] getDataBuffer(RGBBuffer buf)
+    {
+        if (buf instanceof RGBIntBuffer) {
+            return ((RGBIntBuffer) buf).getDataBuffer();
+        }
+        if (buf instanceof RGBAIntBuffer) {
+            return ((RGBAIntBuffer) buf).getDataBuffer();
+        }
+        return null;
+    }
+
+    /**
+     * Takes an idle buffer of the specified size class out of the pool.
+     *
+     * @param sizeClass The size class.
+     * @param stats The statistics of the render or <code>null</code>.
+     * @return See above or <code>null</code> if there is none, in which
+     *         case the caller allocates a new buffer.
+     */
+    private RGBBuffer take(String sizeClass, RenderingStats stats)
+    {
+        RGBBuffer buf;
+        synchronized (this) {
+            ArrayDeque<RGBBuffer> buffers = idle.get(sizeClass);
+            buf = buffers == null ? null : buffers.pollLast();
+            if (buf == null) {
+                allocations++;
+            } else {
+                if (buffers.isEmpty()) {
+                    idle.remove(sizeClass);
+                }
+                weight -= getWeight(buf);
+                hits++;
+            }
+        }
+        if (stats != null) {
+            if (buf == null) {
+                stats.allocateBuffer();
+            } else {
+                stats.reuseBuffer();
+            }
+        }
+        return buf;
+    }
+
+    /**
+     * Records that the specified packed buffer is handed out. The oldest
+     * buffers are forgotten if the buffers handed out weigh more than the
+     * capacity, so that the buffers that are never released do not stay
+     * reachable.
+     *
+     * @param buf The buffer.
+     */
+    private synchronized void lease(RGBBuffer buf)
+    {
+        int[] data = getDataBuffer(buf);
+        if (data == null || leased.put(data, buf) != null) return;
+        leasedWeight += getWeight(buf);
+        Iterator<RGBBuffer> i = leased.values().iterator();
+        while (leasedWeight > capacity && i.hasNext()) {
+            leasedWeight -= getWeight(i.next());
+            i.remove();
+        }
+    }
+
+    /**
+     * Returns a cleared banded buffer of the specified dimensions.
+     *
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     * @return See above.
+     */
+    public RGBBuffer getRGBBuffer(int sizeX1, int sizeX2)
+    {
+        return getRGBBuffer(sizeX1, sizeX2, null);
+    }
+
+    /**
+     * Returns a cleared banded buffer of the specified dimensions and counts
+     * it in the statistics of the render.
+     *
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     * @param stats The statistics of the render or <code>null</code>.
+     * @return See above.
+     */
+    RGBBuffer getRGBBuffer(int sizeX1, int sizeX2, RenderingStats stats)
+    {
+        RGBBuffer buf = take(getSizeClass(BANDED, sizeX1, sizeX2), stats);
+        if (buf == null) {
+            return new RGBBuffer(sizeX1, sizeX2);
+        }
+        Arrays.fill(buf.getRedBand(), (byte) 0);
+        Arrays.fill(buf.getGreenBand(), (byte) 0);
+        Arrays.fill(buf.getBlueBand(), (byte) 0);
+        return buf;
+    }
+
+    /**
+     * Returns a cleared packed <i>ARGB</i> buffer of the specified
+     * dimensions.
+     *
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     * @return See above.
+     */
+    public RGBIntBuffer getIntBuffer(int sizeX1, int sizeX2)
+    {
+        return getIntBuffer(sizeX1, sizeX2, null);
+    }
+
+    /**
+     * Returns a cleared packed <i>ARGB</i> buffer of the specified
+     * dimensions and counts it in the statistics of the render.
+     *
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     * @param stats The statistics of the render or <code>null</code>.
+     * @return See above.
+     */
+    RGBIntBuffer getIntBuffer(int sizeX1, int sizeX2, RenderingStats stats)
+    {
+        RGBIntBuffer buf = (RGBIntBuffer) take(
+                getSizeClass(PACKED_ARGB, sizeX1, sizeX2), stats);
+        if (buf == null) {
+            buf = new RGBIntBuffer(sizeX1, sizeX2);
+        } else {
+            Arrays.fill(buf.getDataBuffer(), 0);
+        }
+        lease(buf);
+        return buf;
+    }
+
+    /**
+     * Returns a cleared packed <i>RGBA</i> buffer of the specified
+     * dimensions.
+     *
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     * @return See above.
+     */
+    public RGBAIntBuffer getRGBAIntBuffer(int sizeX1, int sizeX2)
+    {
+        return getRGBAIntBuffer(sizeX1, sizeX2, null);
+    }
+
+    /**
+     * Returns a cleared packed <i>RGBA</i> buffer of the specified
+     * dimensions and counts it in the statistics of the render.
+     *
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     * @param stats The statistics of the render or <code>null</code>.
+     * @return See above.
+     */
+    RGBAIntBuffer getRGBAIntBuffer(int sizeX1, int sizeX2,
+            RenderingStats stats)
+    {
+        RGBAIntBuffer buf = (RGBAIntBuffer) take(
+                getSizeClass(PACKED_RGBA, sizeX1, sizeX2), stats);
+        if (buf == null) {
+            buf = new RGBAIntBuffer(sizeX1, sizeX2);
+        } else {
+            Arrays.fill(buf.getDataBuffer(), 0);
+        }
+        lease(buf);
+        return buf;
+    }
+
+    /**
+     * Returns the specified buffer to the pool. The buffer must not be
+     * accessed afterwards.
+     *
+     * @param buf The buffer to return.
+     */
+    public synchronized void release(RGBBuffer buf)
+    {
+        int[] data = getDataBuffer(buf);
+        if (data != null && leased.remove(data) != null) {
+            leasedWeight -= getWeight(buf);
+        }
+        long w = getWeight(buf);
+        if (w > capacity) return;
+        String sizeClass = getSizeClass(getType(buf), buf.getSizeX1(),
+                buf.getSizeX2());
+        ArrayDeque<RGBBuffer> buffers = idle.get(sizeClass);
+        if (buffers == null) {
+            buffers = new ArrayDeque<RGBBuffer>();
+            idle.put(sizeClass, buffers);
+        }
+        for (RGBBuffer b : buffers) {
+            // Already returned.
+            if (b == buf) return;
+        }
+        buffers.addLast(buf);
+        weight += w;
+        // Drop the buffers of the least recently used sizes first.
+        Iterator<Map.Entry<String, ArrayDeque<RGBBuffer>>> i =
+                idle.entrySet().iterator();
+        while (weight > capacity && i.hasNext()) {
+            ArrayDeque<RGBBuffer> eldest = i.next().getValue();
+            while (weight > capacity && !eldest.isEmpty()) {
+                weight -= getWeight(eldest.pollFirst());
+            }
+            if (eldest.isEmpty()) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the packed buffer whose data array is specified to the pool.
+     * The array must not be accessed afterwards.
+     *
+     * @param data The data array of a packed buffer handed out by this pool.
+     * @return <code>true</code> if the buffer was returned,
+     *         <code>false</code> if the array is not known to the pool.
+     */
+    public boolean release(int[] data)
+    {
+        RGBBuffer buf;
+        synchronized (this) {
+            buf = leased.get(data);
+        }
+        if (buf == null) return false;
+        release(buf);
+        return true;
+    }
+
+    /** Drops all the idle buffers. */
+    public synchronized void clear()
+    {
+        idle.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the maximum number of bytes of the idle buffers.
+     *
+     * @return See above.
+     */
+    public long getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of bytes of the idle buffers.
+     *
+     * @return See above.
+     */
+    public synchronized long getWeight()
+    {
+        return weight;
+    }
+
+    /**
+     * Returns the number of buffers handed out from the pool.
+     *
+     * @return See above.
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of buffers allocated because none of the requested
+     * size was idle.
+     *
+     * @return See above.
+     */
+    public synchronized long getAllocations()
+    {
+        return allocations;
+    }
+}
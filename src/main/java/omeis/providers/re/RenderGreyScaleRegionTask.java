@@ -0,0 +1,125 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import omeis.providers.re.data.Plane2D;
+import omeis.providers.re.quantum.QuantizationException;
+import omeis.providers.re.quantum.QuantumStrategy;
+
+/**
+ * Renders bands of rows of a single channel as a greyscale image. This task
+ * is used by the {@link GreyScaleStrategy}; distinct bands are rendered
+ * concurrently by the {@link RenderingExecutor}. Each pixel is quantized
+ * exactly once, a row at a time, then transformed with a single lookup into
+ * the {@link ChannelMapping} of the channel.
+ *
+ * @since 5.5
+ */
+class RenderGreyScaleRegionTask implements BandRenderer {
+
+    /** Where to store the output image's data. */
+    private final RenderTarget target;
+
+    /**
+     * The planar data of the channel or <code>null</code> if the plane was
+     * already quantized into {@link #quantized}.
+     */
+    private final Plane2D plane;
+
+    /**
+     * The quantized values of the plane, one per pixel, or <code>null</code>
+     * if they are not kept. Read from if {@link #plane} is <code>null</code>,
+     * filled in otherwise.
+     */
+    private final byte[] quantized;
+
+    /**
+     * The mapping of the channel onto the codomain, i.e. the quantization and
+     * the spatial transformations to apply to the quantized data.
+     */
+    private final ChannelMapping mapping;
+
+    /** The alpha component of the channel, between 0 and 255. */
+    private final int alpha;
+
+    /** The number of pixels along the <i>X1</i>-axis. */
+    private final int sizeX1;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param target Where to store the output image's data.
+     * @param plane The planar data of the channel or <code>null</code> if
+     *              the plane was already quantized.
+     * @param quantized The quantized values of the plane, to read from if
+     *                  <code>plane</code> is <code>null</code> and to fill
+     *                  in otherwise, or <code>null</code>.
+     * @param mapping The mapping of the channel onto the codomain.
+     * @param alpha The alpha component of the channel, between 0 and 255.
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     */
+    RenderGreyScaleRegionTask(RenderTarget target, Plane2D plane,
+            byte[] quantized, ChannelMapping mapping, int alpha, int sizeX1)
+    {
+        this.target = target;
+        this.plane = plane;
+        this.quantized = quantized;
+        this.mapping = mapping;
+        this.alpha = alpha;
+        this.sizeX1 = sizeX1;
+    }
+
+    /**
+     * Quantizes the specified row, or copies it if the plane was already
+     * quantized. The rows of a <i>XY</i> plane are quantized in bulk.
+     *
+     * @param x2 The position along the <i>X2</i>-axis.
+     * @param row The array receiving the quantized values.
+     * @param xyPlanar Pass <code>true</code> if the plane is a <i>XY</i>
+     *                 plane, <code>false</code> otherwise.
+     * @throws QuantizationException If a value could not be quantized.
+     */
+    private void quantizeRow(int x2, byte[] row, boolean xyPlanar)
+        throws QuantizationException
+    {
+        if (plane == null) {
+            System.arraycopy(quantized, sizeX1 * x2, row, 0, sizeX1);
+            return;
+        }
+        if (xyPlanar) {
+            mapping.quantize(plane.getData(), sizeX1 * x2, sizeX1, row);
+        } else {
+            QuantumStrategy qs = mapping.getStrategy();
+            for (int x1 = 0; x1 < sizeX1; ++x1) {
+                row[x1] = (byte) qs.quantize(plane.getPixelValue(x1, x2));
+            }
+        }
+        if (quantized != null) {
+            System.arraycopy(row, 0, quantized, sizeX1 * x2, sizeX1);
+        }
+    }
+
+    /**
+     * Renders the rows <code>[start, end)</code> of the plane.
+     *
+     * @see BandRenderer#renderBand(int, int)
+     */
+    public void renderBand(int start, int end) throws QuantizationException
+    {
+        boolean xyPlanar = plane == null || plane.isXYPlanar();
+        byte[] row = new byte[sizeX1];
+        int[] argb = new int[sizeX1];
+        int discreteValue;
+        for (int x2 = start; x2 < end; ++x2) {
+            quantizeRow(x2, row, xyPlanar);
+            for (int x1 = 0; x1 < sizeX1; ++x1) {
+                discreteValue = mapping.lookup(row[x1]);
+                argb[x1] = alpha << 24 | discreteValue << 16
+                        | discreteValue << 8 | discreteValue;
+            }
+            target.setRow(x2, argb, sizeX1);
+        }
+    }
+}
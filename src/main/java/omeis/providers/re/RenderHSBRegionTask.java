@@ -10,17 +10,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ome.util.PixelData;
-import omeis.providers.re.codomain.CodomainChain;
 import omeis.providers.re.data.Plane2D;
-import omeis.providers.re.lut.LutReader;
-import omeis.providers.re.quantum.BinaryMaskQuantizer;
 import omeis.providers.re.quantum.QuantizationException;
-import omeis.providers.re.quantum.QuantumStrategy;
 
 /**
  * A task object to render an image region asynchronously. This task is used by
- * the {@link HSBStrategy} to do concurrent rendering if more than one region
- * has to be processed.
+ * the {@link HSBStrategy} to do concurrent rendering: the
+ * {@link RenderingExecutor} splits the region into bands of rows that are
+ * rendered by distinct threads. Each channel contributes to the pixels through
+ * its {@link ChannelColorTable}, compiled before the rendering. The rows of the
+ * <i>XY</i> planes are quantized in bulk before being composited; the
+ * quantized values can be kept so that the plane is only composited again
+ * the next time.
  * 
  * @author Chris Allan &nbsp;&nbsp;&nbsp;&nbsp; <a
  *         href="mailto:callan@blackcat.ca">callan@blackat.ca</a>
@@ -28,31 +29,33 @@ import omeis.providers.re.quantum.QuantumStrategy;
  *          2005/06/17 12:57:33 $) </small>
  * @since OMERO3.0
  */
-class RenderHSBRegionTask implements RenderingTask {
+class RenderHSBRegionTask implements RenderingTask, BandRenderer {
 	
     /** The logger for this particular class */
     private static Logger log = LoggerFactory.getLogger(RenderHSBRegionTask.class);
 
-    /** Buffer to hold the output image's data. */
-    private RGBBuffer dataBuffer;
+    /** Where to store the output image's data. */
+    private RenderTarget target;
 
-    /** The wavelength data. */
+    /**
+     * The wavelength data. The element is <code>null</code> if the plane of
+     * the wavelength was already quantized.
+     */
     private List<Plane2D> wData;
 
-    /** How to quantize a pixel intensity value. */
-    private List<QuantumStrategy> strategies;
-
     /**
-     * The spatial transformations to apply to the quantized data.
-     * One per channel.
+     * The quantized values of the plane of each wavelength, one per pixel, or
+     * <code>null</code> if they are not kept. Read from if the wavelength
+     * data is <code>null</code>, filled in otherwise. One per element of
+     * {@link #wData}.
      */
-    private List<CodomainChain> chains;
+    private byte[][] quantized;
 
     /**
-     * The color components used when mapping a quantized value onto the color
-     * space.
+     * The contribution of each wavelength to the image. One per element of
+     * {@link #wData}.
      */
-    private List<int[]> colors;
+    private List<ChannelColorTable> tables;
 
     /** The <i>X1</i>-axis start */
     private int x1Start;
@@ -65,27 +68,21 @@ class RenderHSBRegionTask implements RenderingTask {
 
     /** The <i>X2</i>-axis end */
     private int x2End;
-    
-    /** The optimizations that the renderer has turned on for us. */
-    private Optimizations optimizations;
-
-    /** The collection of readers.*/
-    private List<LutReader> readers;
 
     /**
      * Creates a new instance to render a wavelength.
      * 
-     * @param dataBuffer
-     *            Buffer to hold the output image's data.
+     * @param target
+     *            Where to store the output image's data.
      * @param wData
-     *            The wavelength data.
-     * @param strategies
-     *            The quantum strategy for each wavelength.
-     * @param cc
-     *            The spatial transformations to apply to the quantized data.
-     * @param colors
-     *            The color components to use when mapping quantized values onto
-     *            the color space.
+     *            The wavelength data, <code>null</code> for the wavelengths
+     *            already quantized.
+     * @param quantized
+     *            The quantized values of each wavelength, to read from if
+     *            the wavelength data is <code>null</code> and to fill in
+     *            otherwise, or <code>null</code>.
+     * @param tables
+     *            The contribution of each wavelength to the image.
      * @param x1Start
      *            The <i>X1</i>-axis start
      * @param x1End
@@ -94,24 +91,27 @@ class RenderHSBRegionTask implements RenderingTask {
      *            The <i>X2</i>-axis start
      * @param x2End
      *            The <i>X2</i>-axis end
-     * @param readers The lookup table readers.
      */
-    RenderHSBRegionTask(RGBBuffer dataBuffer, List<Plane2D> wData,
-            List<QuantumStrategy> strategies, List<CodomainChain> chains,
-            List<int[]> colors, Optimizations optimizations,
-            int x1Start, int x1End, int x2Start, int x2End,
-            List<LutReader> readers) {
-        this.dataBuffer = dataBuffer;
+    RenderHSBRegionTask(RenderTarget target, List<Plane2D> wData,
+            byte[][] quantized, List<ChannelColorTable> tables,
+            int x1Start, int x1End, int x2Start, int x2End) {
+        this.target = target;
         this.wData = wData;
-        this.strategies = strategies;
-        this.chains = chains;
-        this.colors = colors;
-        this.optimizations = optimizations;
+        this.quantized = quantized;
+        this.tables = tables;
         this.x1Start = x1Start;
         this.x1End = x1End;
         this.x2Start = x2Start;
         this.x2End = x2End;
-        this.readers = readers;
+    }
+
+    /**
+     * Returns the number of channels and overlays composited per pixel.
+     *
+     * @return See above.
+     */
+    int getChannelCount() {
+        return wData.size();
     }
 
     /**
@@ -121,410 +121,146 @@ class RenderHSBRegionTask implements RenderingTask {
      *             If an error occurs while quantizing a pixels intensity value.
      */
     public Object call() throws QuantizationException {
-    	log.debug("Buffer type: "+dataBuffer);
-        if (dataBuffer instanceof RGBIntBuffer) {
-            renderPackedInt();
-        } else if (dataBuffer instanceof RGBAIntBuffer){
-            renderPackedIntAsRGBA();
-        } else {
-	      //renderPackedInt();
-          renderBanded(); // cf. ticket #1646
-    	}
+    	log.debug("Target type: "+target);
+        renderBand(x2Start, x2End);
         return null;
     }
 
     /**
-     * Renders into a banded byte buffer.
+     * Returns the planar data of the wavelengths which can be read directly,
+     * i.e. <i>XY</i> planes, <code>null</code> for the other ones.
      * 
-     * @throws QuantizationException
-     *             if there is an error during pixel value quantization.
+     * @return See above.
      */
-    private void renderBanded() throws QuantizationException {
-        int discreteValue, pix;
-        int rValue, gValue, bValue;
-        float v;
-
-        int width = x1End - x1Start;
-        int i = 0;
-        byte[] r = dataBuffer.getRedBand();
-        byte[] g = dataBuffer.getGreenBand();
-        byte[] b = dataBuffer.getBlueBand();
-        LutReader reader;
-        CodomainChain cc;
-        for (Plane2D plane : wData) {
-            int[] color = colors.get(i);
-            reader = readers.get(i);
-            cc = chains.get(i);
-            boolean hasMap = cc.hasMapContext();
-            QuantumStrategy qs = strategies.get(i);
-            int rColor = color[ColorsFactory.RED_INDEX];
-            int gColor = color[ColorsFactory.GREEN_INDEX];
-            int bColor = color[ColorsFactory.BLUE_INDEX];
-
-            float alpha = new Float(
-                    color[ColorsFactory.ALPHA_INDEX]).floatValue() / 65025;// 255*255
-            for (int x2 = x2Start; x2 < x2End; ++x2) {
-                for (int x1 = x1Start; x1 < x1End; ++x1) {
-                    pix = width * x2 + x1;
-                    discreteValue = qs.quantize(plane.getPixelValue(x1, x2));
-                    if (hasMap) {
-                        discreteValue = cc.transform(discreteValue);
-                    }
-
-                    if (reader != null) {
-                        int r1 = ((r[pix] & 0x00FF0000) >> 16);
-                        int r2 = reader.getRed(discreteValue) & 0xFF;
-                        int g1 = ((g[pix] & 0x0000FF00) >> 8);
-                        int g2 = reader.getGreen(discreteValue) & 0xFF;
-                        int b1 = (b[pix] & 0x000000FF);
-                        int b2 = reader.getBlue(discreteValue) & 0xFF;
-                        r[pix] = (byte) (r1+r2);
-                        g[pix] = (byte) (g1+g2);
-                        b[pix] = (byte) (b1+b2);
-                        continue;
-                    }
-                    // Pre-multiply the alpha component and add the existing
-                    // colour value to the new colour value.
-                    v = discreteValue * alpha;
-                    rValue = (int) (rColor * v) + r[pix];
-                    gValue = (int) (gColor * v) + g[pix];
-                    bValue = (int) (bColor * v) + b[pix];
-
-                    // Ensure that each colour component value is between 0 and
-                    // 255 (byte). We must make *certain* that values to not
-                    // wrap over 255 otherwise there will be corruption
-                    // introduced into the rendered image.
-                    if (rValue > 255) {
-                        rValue = 255;
-                    }
-                    if (gValue > 255) {
-                        gValue = 255;
-                    }
-                    if (bValue > 255) {
-                        bValue = 255;
-                    }
-                    r[pix] = (byte) (rValue & 0xFF);
-                    g[pix] = (byte) (gValue & 0xFF);
-                    b[pix] = (byte) (bValue & 0xFF);
-                }
+    private PixelData[] getDirectData() {
+        PixelData[] direct = new PixelData[wData.size()];
+        for (int k = 0; k < direct.length; k++) {
+            Plane2D plane = wData.get(k);
+            if (plane != null && plane.isXYPlanar()) {
+                direct[k] = plane.getData();
             }
-
-            i++;
         }
+        return direct;
     }
 
     /**
-     * Renders into a packed integer array.
+     * Allocates a row of quantized values for each wavelength which can be
+     * read directly or was already quantized.
      * 
-     * @throws QuantizationException
-     *             if there is an error during pixel value quantization.
+     * @param direct The data to read directly or <code>null</code>.
+     * @param quantized The quantized values of each wavelength or
+     *                  <code>null</code>.
+     * @param width The number of pixels in a row.
+     * @return See above.
      */
-    private void renderPackedInt() throws QuantizationException {
-        int discreteValue, pix;
-        double redRatio, greenRatio, blueRatio;
-        int rValue, gValue, bValue;
-        int newRValue, newGValue, newBValue;
-        int colorOffset = 24;  // Only used when we're doing primary color.
-
-        int width = x1End - x1Start;
-        int i = 0;
-        int[] buf = ((RGBIntBuffer) dataBuffer).getDataBuffer();
-        boolean isPrimaryColor = optimizations.isPrimaryColorEnabled();
-        boolean isAlphaless = optimizations.isAlphalessRendering();
-        LutReader reader;
-        CodomainChain cc;
-
-        for (Plane2D plane : wData) {
-            int[] color = colors.get(i);
-            reader = readers.get(i);
-            cc = chains.get(i);
-            boolean hasMap = cc.hasMapContext();
-            QuantumStrategy qs = strategies.get(i);
-            boolean isMask = qs instanceof BinaryMaskQuantizer? true : false;
-            redRatio = color[ColorsFactory.RED_INDEX] > 0 ? 
-                    color[ColorsFactory.RED_INDEX] / 255.0 : 0.0;
-            greenRatio = color[ColorsFactory.GREEN_INDEX] > 0 ? 
-                     color[ColorsFactory.GREEN_INDEX] / 255.0 : 0.0;
-            blueRatio = color[ColorsFactory.BLUE_INDEX] > 0 ? 
-                     color[ColorsFactory.BLUE_INDEX] / 255.0 : 0.0;
-            boolean isXYPlanar = plane.isXYPlanar();
-            PixelData data = plane.getData();
-            int bytesPerPixel = data.bytesPerPixel();
-
-            // Get our color offset if we've got the primary color optimization
-            // enabled.
-            if (isPrimaryColor && reader == null)
-                colorOffset = getColorOffset(color);
-
-            float alpha = new Integer(
-                    color[ColorsFactory.ALPHA_INDEX]).floatValue() / 255;
-            for (int x2 = x2Start; x2 < x2End; ++x2) {
-                for (int x1 = x1Start; x1 < x1End; ++x1) {
-                    pix = width * x2 + x1;
-                    if (isXYPlanar)
-                        discreteValue =
-                        qs.quantize(
-                                data.getPixelValueDirect(pix * bytesPerPixel));
-                    else
-                        discreteValue =
-                            qs.quantize(plane.getPixelValue(x1, x2));
-                    if (hasMap) {
-                        discreteValue = cc.transform(discreteValue);
-                    }
-                    if (reader != null) {
-                        int r1 = ((buf[pix] & 0x00FF0000) >> 16);
-                        int r2 = reader.getRed(discreteValue) & 0xFF;
-                        int g1 = ((buf[pix] & 0x0000FF00) >> 8);
-                        int g2 = reader.getGreen(discreteValue) & 0xFF;
-                        int b1 = (buf[pix] & 0x000000FF);
-                        int b2 = reader.getBlue(discreteValue) & 0xFF;
-                        int r = r1+r2;
-                        if (r > 255) {
-                            r = 255;
-                        }
-                        int g = g1+g2;
-                        if (g > 255) {
-                            g = 255;
-                        }
-                        int b = b1+b2;
-                        if (b > 255) {
-                            b = 255;
-                        }
-                        buf[pix] = 0xFF000000 | r << 16 | g << 8 | b;
-                        continue;
-                    }
-                    // Primary colour optimization is in effect, we don't need
-                    // to do any of the sillyness below just shift the value
-                    // into the correct colour component slot and move on to
-                    // the next pixel value.
-                    if (colorOffset != 24)
-                    {
-                        buf[pix] |= 0xFF000000;  // Alpha.
-                        buf[pix] |= discreteValue << colorOffset;
-                        continue;
-                    }
-                    newRValue = (int) (redRatio * discreteValue);
-                    newGValue = (int) (greenRatio * discreteValue);
-                    newBValue = (int) (blueRatio * discreteValue);
-                    
-                    // Pre-multiply the alpha for each colour component if the
-                    // image has a non-1.0 alpha component.
-                    if (!isAlphaless)
-                    {
-                    	newRValue *= alpha;
-                    	newGValue *= alpha;
-                    	newBValue *= alpha;
-                    }
-
-                    if (isMask && discreteValue == 255) {
-                    	// Since the mask is a hard value, we do not want to
-                    	// compromise on colour fidelity. Packed each colour
-                    	// component along with a 1.0 alpha into the buffer so
-                    	// that buffered images that use this buffer can be
-                    	// type 1 (3 bands, pre-multiplied alpha) or type 2
-                        // (4 bands, alpha component included).
-                        buf[pix] = 0xFF000000 | newRValue << 16
-                                   | newGValue << 8 | newBValue;
-                        continue;
-                    }
-                    // Add the existing colour component values to the new
-                    // colour component values.
-                    rValue = ((buf[pix] & 0x00FF0000) >> 16) + newRValue;
-                    gValue = ((buf[pix] & 0x0000FF00) >> 8) + newGValue;
-                    bValue = (buf[pix] & 0x000000FF) + newBValue;
-
-                    // Ensure that each colour component value is between 0 and
-                    // 255 (byte). We must make *certain* that values do not
-                    // wrap over 255 otherwise there will be corruption
-                    // introduced into the rendered image. The value may be over
-                    // 255 if we have mapped two high intensity channels to
-                    // the same color.
-                    if (rValue > 255) {
-                        rValue = 255;
-                    }
-                    if (gValue > 255) {
-                        gValue = 255;
-                    }
-                    if (bValue > 255) {
-                        bValue = 255;
-                    }
-
-                    // Packed each colour component along with a 1.0 alpha into
-                    // the buffer so that buffered images that use this buffer
-                    // can be type 1 (3 bands, pre-multiplied alpha) or type 2
-                    // (4 bands, alpha component included).
-                    buf[pix] = 0xFF000000 | rValue << 16 | gValue << 8 | bValue;
-                }
+    private static byte[][] allocateRows(PixelData[] direct,
+            byte[][] quantized, int width) {
+        byte[][] rows = new byte[direct.length][];
+        for (int k = 0; k < direct.length; k++) {
+            if (direct[k] != null || quantized[k] != null) {
+                rows[k] = new byte[width];
             }
-            i++;
         }
+        return rows;
     }
 
     /**
-     * Renders into a packed integer array.
+     * Quantizes a row of each wavelength which can be read directly, in bulk,
+     * and copies the row of each wavelength already quantized.
      * 
+     * @param direct The data to read directly or <code>null</code>.
+     * @param quantized The quantized values of each wavelength or
+     *                  <code>null</code>.
+     * @param colorTables The contribution of each wavelength.
+     * @param rows The rows receiving the quantized values.
+     * @param offset The index of the first pixel of the row.
      * @throws QuantizationException
      *             if there is an error during pixel value quantization.
      */
-    private void renderPackedIntAsRGBA() throws QuantizationException {
-        int discreteValue, pix;
-        double redRatio, greenRatio, blueRatio;
-        int rValue, gValue, bValue;
-        int newRValue, newGValue, newBValue;
-        int colorOffset = 32;  // Only used when we're doing primary color.
-
-        int width = x1End - x1Start;
-        int i = 0;
-        int[] buf = ((RGBAIntBuffer) dataBuffer).getDataBuffer();
-        boolean isPrimaryColor = optimizations.isPrimaryColorEnabled();
-        boolean isAlphaless = optimizations.isAlphalessRendering();
-        LutReader reader;
-        CodomainChain cc;
-        for (Plane2D plane : wData) {
-            int[] color = colors.get(i);
-            reader = readers.get(i);
-            cc = chains.get(i);
-            boolean hasMap = cc.hasMapContext();
-            QuantumStrategy qs = strategies.get(i);
-            redRatio = color[ColorsFactory.RED_INDEX] > 0 ? 
-                    color[ColorsFactory.RED_INDEX] / 255.0 : 0.0;
-            greenRatio = color[ColorsFactory.GREEN_INDEX] > 0 ? 
-                    color[ColorsFactory.GREEN_INDEX] / 255.0 : 0.0;
-            blueRatio = color[ColorsFactory.BLUE_INDEX] > 0 ? 
-                    color[ColorsFactory.BLUE_INDEX] / 255.0 : 0.0;
-            boolean isXYPlanar = plane.isXYPlanar();
-            PixelData data = plane.getData();
-            int bytesPerPixel = data.bytesPerPixel();
-
-            // Get our color offset if we've got the primary color optimization
-            // enabled.
-            if (isPrimaryColor)
-                colorOffset = getColorOffsetAsRGBA(color);
-
-            float alpha = new Integer(color[ColorsFactory.ALPHA_INDEX]).floatValue() / 255;
-            for (int x2 = x2Start; x2 < x2End; ++x2) {
-                for (int x1 = x1Start; x1 < x1End; ++x1) {
-                    pix = width * x2 + x1;
-                    if (isXYPlanar)
-                        discreteValue =
-                        qs.quantize(
-                                data.getPixelValueDirect(pix * bytesPerPixel));
-                    else
-                        discreteValue =
-                            qs.quantize(plane.getPixelValue(x1, x2));
-                    if (hasMap) {
-                        discreteValue = cc.transform(discreteValue);
-                    }
-                    if (reader != null) {
-                        int r1 = ((buf[pix] & 0xFF000000) >> 24);
-                        int r2 = reader.getRed(discreteValue) & 0xFF;
-                        int g1 = ((buf[pix] & 0x00FF0000) >> 16);
-                        int g2 = reader.getGreen(discreteValue) & 0xFF;
-                        int b1 = ((buf[pix] & 0x0000FF00) >> 8);
-                        int b2 = reader.getBlue(discreteValue) & 0xFF;
-                        int r = r1+r2;
-                        if (r > 255) {
-                            r = 255;
-                        }
-                        int g = g1+g2;
-                        if (g > 255) {
-                            g = 255;
-                        }
-                        int b = b1+b2;
-                        if (b > 255) {
-                            b = 255;
-                        }
-                        buf[pix] = 0x000000FF | r << 24 | g << 16 | b << 8;
-                        continue;
-                    }
-                    // Primary colour optimization is in effect, we just shift
-                    // the value into the correct colour component slot and
-                    // move on to the next pixel value.
-                    if (colorOffset != 32)
-                    {
-                        buf[pix] |= 0x000000FF;  // Alpha.
-                        buf[pix] |= discreteValue << colorOffset;
-                        continue;
-                    }
-                    newRValue = (int) (redRatio * discreteValue);
-                    newGValue = (int) (greenRatio * discreteValue);
-                    newBValue = (int) (blueRatio * discreteValue);
-
-                    // Pre-multiply the alpha for each colour component if the
-                    // image has a non-1.0 alpha component.
-                    if (!isAlphaless)
-                    {
-                        newRValue *= alpha;
-                        newGValue *= alpha;
-                        newBValue *= alpha;
-                    }
-
-                    // Add the existing colour component values to the new
-                    // colour component values.
-                    rValue = ((buf[pix] & 0xFF000000) >> 24) + newRValue;
-                    gValue = ((buf[pix] & 0x00FF0000) >> 16) + newGValue;
-                    bValue = ((buf[pix] & 0x0000FF00) >> 8) + newBValue;
-
-                    // Ensure that each colour component value is between 0 and
-                    // 255 (byte). We must make *certain* that values do not
-                    // wrap over 255 otherwise there will be corruption
-                    // introduced into the rendered image. The value may be over
-                    // 255 if we have mapped two high intensity channels to
-                    // the same color.
-                    if (rValue > 255) {
-                        rValue = 255;
-                    }
-                    if (gValue > 255) {
-                        gValue = 255;
-                    }
-                    if (bValue > 255) {
-                        bValue = 255;
-                    }
-
-                    // Packed each colour component along with a 1.0 alpha into
-                    // the buffer so that buffered images that use this buffer
-                    // can be type 1 (3 bands, pre-multiplied alpha) or type 2
-                    // (4 bands, alpha component included).
-                    buf[pix] = 0x000000FF | rValue << 24 | gValue << 16 | bValue<<8;
+    private static void quantizeRows(PixelData[] direct, byte[][] quantized,
+            ChannelColorTable[] colorTables, byte[][] rows, int offset)
+            throws QuantizationException {
+        for (int k = 0; k < direct.length; k++) {
+            byte[] row = rows[k];
+            if (direct[k] != null) {
+                colorTables[k].quantize(direct[k], offset, row.length, row);
+                if (quantized[k] != null) {
+                    System.arraycopy(row, 0, quantized[k], offset,
+                            row.length);
                 }
+            } else if (quantized[k] != null) {
+                System.arraycopy(quantized[k], offset, row, 0, row.length);
             }
-
-            i++;
         }
     }
-    
+
     /**
-     * Returns a color offset based on which color component is 0xFF.
-     * @param color the color to check.
-     * @return an integer color offset in bits.
+     * Returns the contributions of all the wavelengths to the specified pixel
+     * added to the specified value.
+     * 
+     * @param value The packed <code>0x00RRGGBB</code> value to add to.
+     * @param planes The wavelength data.
+     * @param rows The quantized rows of the wavelengths read directly,
+     *             <code>null</code> for the other ones.
+     * @param colorTables The contribution of each wavelength.
+     * @param x1 The position along the <i>X1</i>-axis.
+     * @param x2 The position along the <i>X2</i>-axis.
+     * @param i The index of the pixel in the quantized rows.
+     * @return See above.
+     * @throws QuantizationException
+     *             if there is an error during pixel value quantization.
      */
-    private int getColorOffset(int[] color)
-    {
-    	if (color[ColorsFactory.RED_INDEX] == 255)
-    		return 16;
-    	if (color[ColorsFactory.GREEN_INDEX] == 255)
-    		return 8;
-    	if (color[ColorsFactory.BLUE_INDEX] == 255)
-    		return 0;
-    	throw new IllegalArgumentException(
-    			"Unable to find color component offset in color.");
+    private static int composite(int value, Plane2D[] planes,
+            byte[][] rows, ChannelColorTable[] colorTables,
+            int x1, int x2, int i) throws QuantizationException {
+        int c;
+        for (int k = 0; k < planes.length; k++) {
+            byte[] row = rows[k];
+            if (row != null) {
+                c = colorTables[k].lookup(row[i]);
+            } else {
+                c = colorTables[k].get(planes[k].getPixelValue(x1, x2));
+            }
+            if (c < 0) {
+                // Mask value, replaces the pixel.
+                value = c & 0x00FFFFFF;
+            } else {
+                value = ChannelColorTable.add(value, c);
+            }
+        }
+        return value;
     }
 
     /**
-     * Returns a color offset based on which color component is 0xFF.
-     * @param color the color to check. This is for colour components
-	 * of RGBA, rather than java colour components which are ARGB.
-     * @return an integer color offset in bits.
+     * Renders the rows <code>[start, end)</code> of the region. All the
+     * wavelengths are composited for a pixel before it is stored; the pixels
+     * where no wavelength is rendered are transparent black.
+     * 
+     * @see BandRenderer#renderBand(int, int)
      */
-    private int getColorOffsetAsRGBA(int[] color)
-    {
-    	if (color[ColorsFactory.RED_INDEX] == 255)
-    		return 24;
-    	if (color[ColorsFactory.GREEN_INDEX] == 255)
-    		return 16;
-    	if (color[ColorsFactory.BLUE_INDEX] == 255)
-    		return 8;
-    	throw new IllegalArgumentException(
-    			"Unable to find color component offset in color.");
+    public void renderBand(int start, int end) throws QuantizationException {
+        int width = x1End - x1Start;
+        int[] argb = new int[width];
+        if (wData.isEmpty()) {
+            for (int x2 = start; x2 < end; ++x2) {
+                target.setRow(x2, argb, width);
+            }
+            return;
+        }
+        Plane2D[] planes = wData.toArray(new Plane2D[wData.size()]);
+        ChannelColorTable[] colorTables =
+                tables.toArray(new ChannelColorTable[tables.size()]);
+        PixelData[] direct = getDirectData();
+        byte[][] rows = allocateRows(direct, quantized, width);
+        for (int x2 = start; x2 < end; ++x2) {
+            quantizeRows(direct, quantized, colorTables, rows,
+                    width * x2 + x1Start);
+            for (int x1 = x1Start; x1 < x1End; ++x1) {
+                // The colour components are stored along with a 1.0 alpha.
+                argb[x1 - x1Start] = 0xFF000000 | composite(0, planes, rows,
+                        colorTables, x1, x2, x1 - x1Start);
+            }
+            target.setRow(x2, argb, width);
+        }
     }
 }
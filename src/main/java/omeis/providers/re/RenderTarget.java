@@ -0,0 +1,374 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Destination of the rows rendered by the {@link RenderHSBRegionTask} and
+ * {@link RenderGreyScaleRegionTask}. The tasks produce each row as packed
+ * <i>ARGB</i> values that the target stores in its own layout, the row
+ * <code>x2</code> starting at <code>offset + x2 * scanlineStride</code> so
+ * that images can be rendered directly into a region of a larger canvas.
+ * Distinct rows may be stored concurrently.
+ *
+ * @since 5.5
+ */
+abstract class RenderTarget {
+
+    /** The index of the first pixel of the image. */
+    final int offset;
+
+    /** The number of elements between the starts of two rows. */
+    final int scanlineStride;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param offset The index of the first pixel of the image.
+     * @param scanlineStride The number of elements between the starts of
+     *                       two rows.
+     */
+    RenderTarget(int offset, int scanlineStride)
+    {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset: " + offset);
+        }
+        if (scanlineStride <= 0) {
+            throw new IllegalArgumentException(
+                    "The stride must be positive: " + scanlineStride);
+        }
+        this.offset = offset;
+        this.scanlineStride = scanlineStride;
+    }
+
+    /**
+     * Checks that an image of the specified dimensions fits into an array of
+     * the specified length.
+     *
+     * @param length The number of elements of the array.
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     */
+    void checkBounds(long length, int sizeX1, int sizeX2)
+    {
+        if (sizeX1 > scanlineStride) {
+            throw new IllegalArgumentException("The stride " + scanlineStride
+                    + " is smaller than the width " + sizeX1);
+        }
+        long end = offset + (long) (sizeX2 - 1) * scanlineStride + sizeX1;
+        if (sizeX2 > 0 && end > length) {
+            throw new IllegalArgumentException("The image " + sizeX1 + "x"
+                    + sizeX2 + " does not fit into " + length + " elements.");
+        }
+    }
+
+    /**
+     * Returns the type of the {@link ChannelColorTable} suitable for this
+     * target.
+     *
+     * @return See above.
+     */
+    abstract int getTableType();
+
+    /**
+     * Checks that an image of the specified dimensions fits into the target.
+     *
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     * @throws IllegalArgumentException If the image does not fit.
+     */
+    abstract void checkBounds(int sizeX1, int sizeX2);
+
+    /**
+     * Stores a rendered row.
+     *
+     * @param x2 The position of the row along the <i>X2</i>-axis.
+     * @param argb The packed <i>ARGB</i> values of the row.
+     * @param length The number of pixels of the row.
+     */
+    abstract void setRow(int x2, int[] argb, int length);
+
+    /**
+     * Stores transparent black rows, i.e. an image where nothing is
+     * rendered.
+     *
+     * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+     * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+     */
+    void clear(int sizeX1, int sizeX2)
+    {
+        int[] row = new int[sizeX1];
+        for (int x2 = 0; x2 < sizeX2; x2++) {
+            setRow(x2, row, sizeX1);
+        }
+    }
+
+    /**
+     * Returns the target writing into the specified buffer.
+     *
+     * @param buf The buffer.
+     * @return See above.
+     */
+    static RenderTarget of(RGBBuffer buf)
+    {
+        if (buf instanceof RGBIntBuffer) {
+            return new PackedARGB(((RGBIntBuffer) buf).getDataBuffer(), 0,
+                    buf.getSizeX1());
+        }
+        if (buf instanceof RGBAIntBuffer) {
+            return new PackedRGBA(((RGBAIntBuffer) buf).getDataBuffer(), 0,
+                    buf.getSizeX1());
+        }
+        return new Banded(buf.getRedBand(), buf.getGreenBand(),
+                buf.getBlueBand(), 0, buf.getSizeX1());
+    }
+
+    /** Writes into a packed <i>ARGB</i> integer array. */
+    static final class PackedARGB extends RenderTarget {
+
+        /** The array to write into. */
+        private final int[] data;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data The array to write into.
+         * @param offset The index of the first pixel of the image.
+         * @param scanlineStride The number of elements between the starts of
+         *                       two rows.
+         */
+        PackedARGB(int[] data, int offset, int scanlineStride)
+        {
+            super(offset, scanlineStride);
+            this.data = data;
+        }
+
+        @Override
+        int getTableType()
+        {
+            return ChannelColorTable.PACKED_ARGB;
+        }
+
+        @Override
+        void checkBounds(int sizeX1, int sizeX2)
+        {
+            checkBounds(data.length, sizeX1, sizeX2);
+        }
+
+        @Override
+        void setRow(int x2, int[] argb, int length)
+        {
+            System.arraycopy(argb, 0, data, offset + x2 * scanlineStride,
+                    length);
+        }
+    }
+
+    /** Writes into a packed <i>RGBA</i> integer array. */
+    static final class PackedRGBA extends RenderTarget {
+
+        /** The array to write into. */
+        private final int[] data;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data The array to write into.
+         * @param offset The index of the first pixel of the image.
+         * @param scanlineStride The number of elements between the starts of
+         *                       two rows.
+         */
+        PackedRGBA(int[] data, int offset, int scanlineStride)
+        {
+            super(offset, scanlineStride);
+            this.data = data;
+        }
+
+        @Override
+        int getTableType()
+        {
+            return ChannelColorTable.PACKED_RGBA;
+        }
+
+        @Override
+        void checkBounds(int sizeX1, int sizeX2)
+        {
+            checkBounds(data.length, sizeX1, sizeX2);
+        }
+
+        @Override
+        void setRow(int x2, int[] argb, int length)
+        {
+            int pix = offset + x2 * scanlineStride;
+            for (int i = 0; i < length; i++, pix++) {
+                int v = argb[i];
+                data[pix] = v << 8 | v >>> 24;
+            }
+        }
+    }
+
+    /**
+     * Writes into three byte arrays, one per color band. The color
+     * components are multiplied by the alpha component.
+     */
+    static final class Banded extends RenderTarget {
+
+        /** The red band. */
+        private final byte[] red;
+
+        /** The green band. */
+        private final byte[] green;
+
+        /** The blue band. */
+        private final byte[] blue;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param red The red band.
+         * @param green The green band.
+         * @param blue The blue band.
+         * @param offset The index of the first pixel of the image.
+         * @param scanlineStride The number of elements between the starts of
+         *                       two rows.
+         */
+        Banded(byte[] red, byte[] green, byte[] blue, int offset,
+                int scanlineStride)
+        {
+            super(offset, scanlineStride);
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+        }
+
+        @Override
+        int getTableType()
+        {
+            return ChannelColorTable.BANDED;
+        }
+
+        @Override
+        void checkBounds(int sizeX1, int sizeX2)
+        {
+            checkBounds(red.length, sizeX1, sizeX2);
+            checkBounds(green.length, sizeX1, sizeX2);
+            checkBounds(blue.length, sizeX1, sizeX2);
+        }
+
+        @Override
+        void setRow(int x2, int[] argb, int length)
+        {
+            int pix = offset + x2 * scanlineStride;
+            for (int i = 0; i < length; i++, pix++) {
+                int v = argb[i];
+                int alpha = v >>> 24;
+                if (alpha == 0xFF) {
+                    red[pix] = (byte) (v >> 16);
+                    green[pix] = (byte) (v >> 8);
+                    blue[pix] = (byte) v;
+                } else {
+                    float ratio = (float) alpha / 255;
+                    red[pix] = (byte) (((v >> 16) & 0xFF) * ratio);
+                    green[pix] = (byte) (((v >> 8) & 0xFF) * ratio);
+                    blue[pix] = (byte) ((v & 0xFF) * ratio);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes four bytes per pixel into a byte buffer, in the order of the
+     * components selected by one of the <code>BYTES_</code> constants
+     * defined by the {@link Renderer}. The offset and the stride are
+     * expressed in bytes.
+     */
+    static final class Bytes extends RenderTarget {
+
+        /** The buffer to write into, in big endian order. */
+        private final ByteBuffer data;
+
+        /** The order of the components. */
+        private final int layout;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data The buffer to write into.
+         * @param offset The index of the first byte of the image.
+         * @param scanlineStride The number of bytes between the starts of
+         *                       two rows.
+         * @param layout The order of the components, one of the
+         *               <code>BYTES_</code> constants defined by the
+         *               {@link Renderer}.
+         */
+        Bytes(ByteBuffer data, int offset, int scanlineStride, int layout)
+        {
+            super(offset, scanlineStride);
+            if (data.isReadOnly()) {
+                throw new IllegalArgumentException("Read-only buffer.");
+            }
+            switch (layout) {
+                case Renderer.BYTES_RGBA:
+                case Renderer.BYTES_BGRA:
+                case Renderer.BYTES_ARGB:
+                case Renderer.BYTES_ABGR:
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Unknown layout: " + layout);
+            }
+            // A view so that the position, the limit and the order of the
+            // caller's buffer are kept, spanning the whole buffer.
+            ByteBuffer view = data.duplicate();
+            view.clear();
+            this.data = view.order(ByteOrder.BIG_ENDIAN);
+            this.layout = layout;
+        }
+
+        @Override
+        int getTableType()
+        {
+            return ChannelColorTable.PACKED_ARGB;
+        }
+
+        @Override
+        void checkBounds(int sizeX1, int sizeX2)
+        {
+            checkBounds(data.limit(), 4 * sizeX1, sizeX2);
+        }
+
+        @Override
+        void setRow(int x2, int[] argb, int length)
+        {
+            int pix = offset + x2 * scanlineStride;
+            int v;
+            switch (layout) {
+                case Renderer.BYTES_RGBA:
+                    for (int i = 0; i < length; i++, pix += 4) {
+                        v = argb[i];
+                        data.putInt(pix, v << 8 | v >>> 24);
+                    }
+                    break;
+                case Renderer.BYTES_BGRA:
+                    for (int i = 0; i < length; i++, pix += 4) {
+                        data.putInt(pix, Integer.reverseBytes(argb[i]));
+                    }
+                    break;
+                case Renderer.BYTES_ARGB:
+                    for (int i = 0; i < length; i++, pix += 4) {
+                        data.putInt(pix, argb[i]);
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < length; i++, pix += 4) {
+                        v = argb[i];
+                        data.putInt(pix, Integer.reverseBytes(
+                                v << 8 | v >>> 24));
+                    }
+            }
+        }
+    }
+}
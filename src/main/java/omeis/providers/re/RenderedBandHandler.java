@@ -0,0 +1,34 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.io.IOException;
+
+/**
+ * Receives the bands of rows of a plane rendered by
+ * {@link Renderer#renderBands(omeis.providers.re.data.PlaneDef, int,
+ * RenderedBandHandler)}, from top to bottom, e.g. to encode or send them
+ * as they are produced instead of holding the whole image in memory.
+ *
+ * @since 5.5
+ */
+public interface RenderedBandHandler {
+
+    /**
+     * Handles a band of rows. The array is reused for the next band: its
+     * content must be copied if it is needed once this method returns.
+     *
+     * @param x2 The position of the first row of the band in the image.
+     * @param sizeX1 The number of pixels of a row.
+     * @param sizeX2 The number of rows of the band.
+     * @param argb The packed <i>ARGB</i> values of the band, row after row,
+     *             starting at index <code>0</code>. The array may be larger
+     *             than the band.
+     * @throws IOException If the band cannot be handled, in which case the
+     *                     render stops.
+     */
+    void handleBand(int x2, int sizeX1, int sizeX2, int[] argb)
+        throws IOException;
+}
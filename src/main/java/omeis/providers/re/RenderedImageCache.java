@@ -0,0 +1,274 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache of rendered images keyed by the
+ * {@link Renderer#getFingerprint(PlaneDef) fingerprint} of the rendering
+ * settings, so that an image requested again with the same settings is not
+ * rendered again. As the fingerprint identifies the pixels set, an instance
+ * can be shared by several renderers.
+ * <p>
+ * The least recently used images are evicted once the total number of bytes
+ * cached exceeds the capacity; images larger than the capacity are never
+ * cached. Copies of the images are cached and returned so that the callers
+ * are free to modify them.
+ * </p>
+ *
+ * @since 5.5
+ */
+public class RenderedImageCache {
+
+    /** Prefix of the keys of the packed integer images. */
+    private static final String PACKED_INT = "argb:";
+
+    /** Prefix of the keys of the banded images. */
+    private static final String BANDED = "rgb:";
+
+    /** A cached image. */
+    private static final class Image {
+
+        /** The pixels, an <code>int</code> array or the bands. */
+        private final Object data;
+
+        /** The number of pixels along the <i>X1</i>-axis. */
+        private final int sizeX1;
+
+        /** The number of pixels along the <i>X2</i>-axis. */
+        private final int sizeX2;
+
+        /** The number of bytes of the image. */
+        private final long weight;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param data The pixels.
+         * @param sizeX1 The number of pixels along the <i>X1</i>-axis.
+         * @param sizeX2 The number of pixels along the <i>X2</i>-axis.
+         * @param weight The number of bytes of the image.
+         */
+        Image(Object data, int sizeX1, int sizeX2, long weight)
+        {
+            this.data = data;
+            this.sizeX1 = sizeX1;
+            this.sizeX2 = sizeX2;
+            this.weight = weight;
+        }
+    }
+
+    /** The cached images, in access order. */
+    private final LinkedHashMap<String, Image> entries =
+            new LinkedHashMap<String, Image>(16, 0.75f, true);
+
+    /** The maximum number of bytes cached. */
+    private final long capacity;
+
+    /** The number of bytes cached. */
+    private long weight;
+
+    /** The number of lookups that found the image. */
+    private long hits;
+
+    /** The number of lookups that did not find the image. */
+    private long misses;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The maximum number of bytes cached. Must be positive.
+     */
+    public RenderedImageCache(long capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Expecting a positive size.");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the image cached with the specified key.
+     *
+     * @param key The key of the image.
+     * @return See above or <code>null</code> if the image is not cached.
+     */
+    private synchronized Image get(String key)
+    {
+        Image image = entries.get(key);
+        if (image == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return image;
+    }
+
+    /**
+     * Caches the specified image.
+     *
+     * @param key The key of the image.
+     * @param image The image to cache.
+     */
+    private synchronized void put(String key, Image image)
+    {
+        if (image.weight > capacity) return;
+        Image previous = entries.put(key, image);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += image.weight;
+        Iterator<Image> i = entries.values().iterator();
+        while (weight > capacity && i.hasNext()) {
+            weight -= i.next().weight;
+            i.remove();
+        }
+    }
+
+    /**
+     * Returns a copy of the packed integer image rendered with the specified
+     * settings.
+     *
+     * @param fingerprint The fingerprint of the settings.
+     * @return See above or <code>null</code> if the image is not cached.
+     */
+    public int[] getPackedInt(String fingerprint)
+    {
+        Image image = get(PACKED_INT + fingerprint);
+        return image == null ? null : ((int[]) image.data).clone();
+    }
+
+    /**
+     * Caches a copy of the specified packed integer image.
+     *
+     * @param fingerprint The fingerprint of the settings the image was
+     *                    rendered with.
+     * @param pixels The image.
+     */
+    public void putPackedInt(String fingerprint, int[] pixels)
+    {
+        put(PACKED_INT + fingerprint, new Image(pixels.clone(), 0, 0,
+                4L * pixels.length));
+    }
+
+    /**
+     * Returns <code>true</code> if the packed integer image rendered with
+     * the specified settings is cached, <code>false</code> otherwise. The
+     * lookup is counted neither as a hit nor as a miss.
+     *
+     * @param fingerprint The fingerprint of the settings.
+     * @return See above.
+     */
+    public synchronized boolean containsPackedInt(String fingerprint)
+    {
+        return entries.containsKey(PACKED_INT + fingerprint);
+    }
+
+    /**
+     * Returns <code>true</code> if the banded image rendered with the
+     * specified settings is cached, <code>false</code> otherwise. The lookup
+     * is counted neither as a hit nor as a miss.
+     *
+     * @param fingerprint The fingerprint of the settings.
+     * @return See above.
+     */
+    public synchronized boolean containsRGBBuffer(String fingerprint)
+    {
+        return entries.containsKey(BANDED + fingerprint);
+    }
+
+    /**
+     * Returns a copy of the banded image rendered with the specified
+     * settings.
+     *
+     * @param fingerprint The fingerprint of the settings.
+     * @return See above or <code>null</code> if the image is not cached.
+     */
+    public RGBBuffer getRGBBuffer(String fingerprint)
+    {
+        Image image = get(BANDED + fingerprint);
+        if (image == null) return null;
+        byte[][] bands = (byte[][]) image.data;
+        RGBBuffer buf = new RGBBuffer(image.sizeX1, image.sizeX2);
+        System.arraycopy(bands[0], 0, buf.getRedBand(), 0, bands[0].length);
+        System.arraycopy(bands[1], 0, buf.getGreenBand(), 0, bands[1].length);
+        System.arraycopy(bands[2], 0, buf.getBlueBand(), 0, bands[2].length);
+        return buf;
+    }
+
+    /**
+     * Caches a copy of the specified banded image.
+     *
+     * @param fingerprint The fingerprint of the settings the image was
+     *                    rendered with.
+     * @param buf The image.
+     */
+    public void putRGBBuffer(String fingerprint, RGBBuffer buf)
+    {
+        byte[][] bands = new byte[][] { buf.getRedBand().clone(),
+                buf.getGreenBand().clone(), buf.getBlueBand().clone() };
+        put(BANDED + fingerprint, new Image(bands, buf.getSizeX1(),
+                buf.getSizeX2(), 3L * bands[0].length));
+    }
+
+    /** Removes all the cached images. */
+    public synchronized void clear()
+    {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the maximum number of bytes cached.
+     *
+     * @return See above.
+     */
+    public long getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of bytes cached.
+     *
+     * @return See above.
+     */
+    public synchronized long getWeight()
+    {
+        return weight;
+    }
+
+    /**
+     * Returns the number of images cached.
+     *
+     * @return See above.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found the image.
+     *
+     * @return See above.
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find the image.
+     *
+     * @return See above.
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.io.IOException;
+
+import omeis.providers.re.data.PlaneDef;
+
+/**
+ * Receives the images of a batch rendered by
+ * {@link Renderer#renderBatch(java.util.List, RenderedPlaneHandler)}, in the
+ * order of the planes, as soon as each one is rendered, e.g. to write them
+ * out instead of holding the images of the whole batch in memory.
+ *
+ * @since 5.5
+ */
+public interface RenderedPlaneHandler {
+
+    /**
+     * Handles the image of a plane. The image belongs to the handler, which
+     * can give it back to the renderer with
+     * {@link Renderer#releaseBuffer(int[])} once done with it.
+     *
+     * @param index The index of the plane in the batch.
+     * @param pd The plane.
+     * @param argb The packed <i>ARGB</i> values of the image.
+     * @throws IOException If the image cannot be handled, in which case the
+     *                     batch stops.
+     */
+    void handlePlane(int index, PlaneDef pd, int[] argb) throws IOException;
+}
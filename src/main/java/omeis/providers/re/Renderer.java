@@ -6,11 +6,26 @@ package omeis.providers.re;
 
 import java.awt.Dimension;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -29,8 +44,11 @@ import ome.model.enums.RenderingModel;
 import omeis.providers.re.codomain.CodomainChain;
 import omeis.providers.re.codomain.CodomainMapContext;
 import omeis.providers.re.codomain.ReverseIntensityContext;
+import omeis.providers.re.data.PlaneCache;
+import omeis.providers.re.data.Plane2D;
 import omeis.providers.re.data.PlaneDef;
 import omeis.providers.re.data.PlaneFactory;
+import omeis.providers.re.data.PlanePyramid;
 import omeis.providers.re.data.RegionDef;
 import omeis.providers.re.lut.LutProvider;
 import omeis.providers.re.quantum.QuantizationException;
@@ -81,6 +99,61 @@ public class Renderer {
     
     /** The maximum number of channels. */
     public static final int		MAX_CHANNELS = 8;
+
+    /**
+     * Identifies the images written as bytes in the order red, green, blue
+     * and alpha, i.e. packed <i>RGBA</i> integers in big endian order or
+     * packed <i>ABGR</i> integers in little endian order.
+     */
+    public static final int BYTES_RGBA = 0;
+
+    /**
+     * Identifies the images written as bytes in the order blue, green, red
+     * and alpha, i.e. packed <i>ARGB</i> integers in little endian order.
+     */
+    public static final int BYTES_BGRA = 1;
+
+    /**
+     * Identifies the images written as bytes in the order alpha, red, green
+     * and blue, i.e. packed <i>ARGB</i> integers in big endian order.
+     */
+    public static final int BYTES_ARGB = 2;
+
+    /**
+     * Identifies the images written as bytes in the order alpha, blue, green
+     * and red, i.e. packed <i>RGBA</i> integers in little endian order.
+     */
+    public static final int BYTES_ABGR = 3;
+
+    /**
+     * The maximum number of pixels of a region rendered in place of several
+     * requested regions.
+     */
+    private static final long MAX_COALESCED_PIXELS = 2048L * 2048L;
+
+    /**
+     * Orders the overlays by the content of their masks, then by colour, as
+     * the masks are compared by identity in the map of the overlays.
+     */
+    private static final Comparator<Map.Entry<byte[], Integer>>
+        OVERLAY_ORDER = new Comparator<Map.Entry<byte[], Integer>>() {
+            public int compare(Map.Entry<byte[], Integer> a,
+                    Map.Entry<byte[], Integer> b)
+            {
+                byte[] x = a.getKey();
+                byte[] y = b.getKey();
+                int n = Math.min(x.length, y.length);
+                for (int i = 0; i < n; i++) {
+                    if (x[i] != y[i]) {
+                        return (x[i] & 0xFF) - (y[i] & 0xFF);
+                    }
+                }
+                if (x.length != y.length) {
+                    return x.length - y.length;
+                }
+                return a.getValue().compareTo(b.getValue());
+            }
+        };
     
     /** Identifies the type used to store model values. */
     public static final String MODEL_GREYSCALE = RenderingModel.VALUE_GREYSCALE;
@@ -140,6 +213,73 @@ public class Renderer {
     /** Lookup table provider. */
     private LutProvider lutProvider;
 
+    /** The threads used to render concurrently. */
+    private final RenderingExecutor executor;
+
+    /**
+     * The cache of the raw pixel data, usually shared by all the renderers of
+     * the process, or <code>null</code> to always read the data.
+     */
+    private PlaneCache planeCache = PlaneCache.getDefault();
+
+    /**
+     * Bins the downsampled planes of the buffers without resolution levels
+     * or <code>null</code> to decimate them.
+     */
+    private PlanePyramid planePyramid;
+
+    /**
+     * The quantized planes of the last rendered planes or <code>null</code>
+     * if they are not kept.
+     */
+    private QuantizedPlaneCache quantizedPlanes;
+
+    /**
+     * The cache of the rendered images or <code>null</code> if the images
+     * are always rendered.
+     */
+    private RenderedImageCache resultCache;
+
+    /**
+     * Reads the pixels data, one read at a time, on the
+     * {@link #getIOExecutor() I/O executor} while a batch of planes is
+     * rendered or <code>null</code> if no batch is being rendered. During a
+     * batch, the pixel buffer is only accessed through this executor.
+     */
+    private SerialExecutor batchReader;
+
+    /** The plane whose data was read ahead of rendering. */
+    private PlaneDef prefetchedDef;
+
+    /** The data read ahead of rendering, by channel index. */
+    private Map<Integer, Plane2D> prefetchedPlanes;
+
+    /** The executor reading the pixels data ahead of rendering. */
+    private Executor ioExecutor = RenderingExecutor.getDefaultIOExecutor();
+
+    /** The executor rendering the images of the asynchronous renders. */
+    private Executor cpuExecutor;
+
+    /**
+     * Completes once the last asynchronous render requested has stopped
+     * running. The asynchronous renders are run one after the other, in the
+     * order they were requested.
+     */
+    private CompletableFuture<?> lastRequest =
+            CompletableFuture.completedFuture(null);
+
+    /**
+     * The token checked while rendering or <code>null</code> if the renders
+     * cannot be cancelled.
+     */
+    private CancellationToken cancellationToken;
+
+    /**
+     * The pool of the buffers the images are rendered into or
+     * <code>null</code> if a new buffer is allocated for each image.
+     */
+    private RenderBufferPool bufferPool;
+
     /**
      * Returns a copy of a list of channel bindings with one element removed;
      * the so called "other" channel bindings for the image.
@@ -354,6 +494,28 @@ public class Renderer {
     		List<RenderingModel> renderingModels, Pixels pixelsObj,
             RenderingDef renderingDefObj, PixelBuffer bufferObj,
             LutProvider lutProvider) {
+        this(quantumFactory, renderingModels, pixelsObj, renderingDefObj,
+                bufferObj, lutProvider, RenderingExecutor.getDefault());
+    }
+
+    /**
+     * Creates a new instance to render the specified pixels set and get this
+     * new instance ready for rendering.
+     * 
+     * @param quantumFactory a populated quantum factory.
+     * @param renderingModels an enumerated list of all rendering models.
+     * @param pixelsObj Pixels object.
+     * @param renderingDefObj Rendering definition object.
+     * @param bufferObj PixelBuffer object.
+     * @param lutProvider provider of the available lookup tables.
+     * @param executor the threads used to render concurrently, usually shared
+     * by all the renderers of the process.
+     * @throws NullPointerException If <code>null</code> parameters are passed.
+     */
+    public Renderer(QuantumFactory quantumFactory,
+            List<RenderingModel> renderingModels, Pixels pixelsObj,
+            RenderingDef renderingDefObj, PixelBuffer bufferObj,
+            LutProvider lutProvider, RenderingExecutor executor) {
         metadata = pixelsObj;
         rndDef = renderingDefObj;
         buffer = bufferObj;
@@ -364,7 +526,11 @@ public class Renderer {
             throw new NullPointerException("Expecting not null rndDef");
         } else if (buffer == null) {
             throw new NullPointerException("Expecting not null buffer");
+        } else if (executor == null) {
+            throw new NullPointerException("Expecting not null executor");
         }
+        this.executor = executor;
+        cpuExecutor = executor;
 
    
         // Create and configure the quantum strategies.
@@ -396,231 +562,1487 @@ public class Renderer {
         }
 
         // Create an appropriate rendering strategy.
-        renderingStrategy = RenderingStrategy.makeNew(rndDef.getModel());
+        renderingStrategy = RenderingStrategy.makeNew(rndDef.getModel(),
+                executor);
         
         // Examine the metadata we've been given and enable optimizations.
         checkOptimizations();
     }
 
     /**
-     * Returns the current lookup table provider.
+     * Returns the threads used to render concurrently.
      *
      * @return See above.
      */
-    LutProvider getLutProvider()
+    public RenderingExecutor getExecutor()
     {
-        return lutProvider;
+        return executor;
     }
 
     /**
-     * Specifies the model that dictates how transformed raw data has to be
-     * mapped onto a color space. This class delegates the actual rendering to a
-     * {@link RenderingStrategy}, which is selected depending on that model. So
-     * setting the model also results in changing the rendering strategy.
-     * 
-     * @param model
-     *            Identifies the color space model.
+     * Returns the pool of the buffers the images are rendered into.
+     *
+     * @return See above or <code>null</code> if a new buffer is allocated
+     *         for each image.
      */
-    public void setModel(RenderingModel model)
+    public RenderBufferPool getBufferPool()
     {
-        rndDef.setModel(model);
-        renderingStrategy = RenderingStrategy.makeNew(model);
+        return bufferPool;
     }
 
     /**
-     * Sets the index of the default focal section. This index is used to define
-     * a default plane.
-     * 
-     * @param z
-     *            The stack index.
-     * @see #setDefaultT(int)
+     * Sets the pool of the buffers the images are rendered into. The images
+     * returned by the renderer are then taken from the pool and should be
+     * returned to it with {@link #releaseBuffer(int[])} or
+     * {@link #releaseBuffer(RGBBuffer)} once they are no longer used.
+     *
+     * @param bufferPool The pool to use or <code>null</code> to allocate a
+     *                   new buffer for each image.
      */
-    public void setDefaultZ(int z)
+    public void setBufferPool(RenderBufferPool bufferPool)
     {
-        rndDef.setDefaultZ(Integer.valueOf(z));
+        this.bufferPool = bufferPool;
     }
 
     /**
-     * Sets the default timepoint index. This index is used to define a default
-     * plane.
-     * 
-     * @param t
-     *            The timepoint index.
-     * @see #setDefaultZ(int)
+     * Returns a packed image rendered by this renderer to the
+     * {@link #getBufferPool() buffer pool}. The image must not be accessed
+     * afterwards. Does nothing if there is no pool or the image does not
+     * come from the pool, e.g. if it was cached.
+     *
+     * @param image The image to return.
      */
-    public void setDefaultT(int t) {
-        rndDef.setDefaultT(Integer.valueOf(t));
+    public void releaseBuffer(int[] image)
+    {
+        RenderBufferPool pool = bufferPool;
+        if (pool != null && image != null) {
+            pool.release(image);
+        }
     }
-    
+
     /**
-     * Sets a map of overlays to be rendered.
-     * @param overlays Overlay to color map.
+     * Returns an image rendered by this renderer to the
+     * {@link #getBufferPool() buffer pool}. The image must not be accessed
+     * afterwards. Does nothing if there is no pool.
+     *
+     * @param image The image to return.
      */
-    public void setOverlays(Map<byte[], Integer> overlays) {
-    	this.overlays = overlays;
-    	checkOptimizations();
+    public void releaseBuffer(RGBBuffer image)
+    {
+        RenderBufferPool pool = bufferPool;
+        if (pool != null && image != null) {
+            pool.release(image);
+        }
     }
-    
+
     /**
-     * Returns the current set of overlays to be rendered.
-     * @return Overlay to color map.
+     * Returns the token checked while rendering.
+     *
+     * @return See above or <code>null</code> if the renders cannot be
+     *         cancelled.
      */
-    public Map<byte[], Integer> getOverlays() {
-    	return overlays;
+    public CancellationToken getCancellationToken()
+    {
+        return cancellationToken;
     }
 
     /**
-     * Updates the {@link QuantumManager} and configures it according to the
-     * current quantum definition.
+     * Sets the token checked by the subsequent synchronous renders, before
+     * reading the data of each channel and before rendering each band of
+     * rows. Once the token is cancelled, the renders throw a
+     * {@link RenderingCancelledException}.
+     *
+     * @param cancellationToken The token to check or <code>null</code> if
+     *                          the renders cannot be cancelled.
      */
-    public void updateQuantumManager() {
-        QuantumDef qd = rndDef.getQuantization();
-        ChannelBinding[] cb = getChannelBindings();
-        quantumManager.initStrategies(qd, cb);
+    public void setCancellationToken(CancellationToken cancellationToken)
+    {
+        this.cancellationToken = cancellationToken;
     }
 
     /**
-     * Renders the data selected by <code>pd</code> according to the current
-     * rendering settings. The passed argument selects a plane orthogonal to one
-     * of the <i>X</i>, <i>Y</i>, or <i>Z</i> axes. How many wavelengths are
-     * rendered and what color model is used depends on the current rendering
-     * settings.
-     * 
-     * @param pd
-     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
-     *            or <i>Z</i> axes.
-     * @return An <i>RGB</i> image ready to be displayed on screen.
-     * @throws IOException
-     *             If an error occurred while trying to pull out data from the
-     *             pixels data repository.
-     * @throws QuantizationException
-     *             If an error occurred while quantizing the pixels raw data.
-     * @throws NullPointerException
-     *             If <code>pd</code> is <code>null</code>.
+     * Returns the executor reading the pixels data ahead of rendering.
+     *
+     * @return See above.
      */
-    public RGBBuffer render(PlaneDef pd) throws IOException,
-            QuantizationException {
-        if (pd == null) {
-            throw new NullPointerException("No plane definition.");
-        }
-        checkRegionDef(pd.getRegion());
-        stats = new RenderingStats(this, pd);
-        log.info("Using: '" + renderingStrategy.getClass().getName()
-                + "' rendering strategy.");
-        RGBBuffer img = renderingStrategy.render(this, pd);
-        stats.stop();
-        // TODO: Commenting this out for now. -- callan
-        //log.info(stats.getStats());
-        return img;
+    public Executor getIOExecutor()
+    {
+        return ioExecutor;
     }
 
     /**
-     * Renders the data selected by <code>pd</code> according to the current
-     * rendering settings. The passed argument selects a plane orthogonal to one
-     * of the <i>X</i>, <i>Y</i>, or <i>Z</i> axes. How many wavelengths are
-     * rendered and what color model is used depends on the current rendering
-     * settings.
-     * 
-     * @param pd
-     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
-     *            or <i>Z</i> axes.
-     * @param newBuffer
-     *             The pixel buffer to use in place of the one currently
-     *             defined in the renderer. This will not change the state
-     *             of the Renderer. If <code>null</code> is passed the existing
-     *             pixel buffer will be used.
-     * @return An <i>RGB</i> image ready to be displayed on screen.
-     * @throws IOException
-     *             If an error occurred while trying to pull out data from the
-     *             pixels data repository.
-     * @throws QuantizationException
-     *             If an error occurred while quantizing the pixels raw data.
-     * @throws NullPointerException
-     *             If <code>pd</code> is <code>null</code>.
+     * Sets the executor reading the pixels data ahead of rendering, by
+     * default the {@link RenderingExecutor#getDefaultIOExecutor() shared}
+     * one. The new executor is used by the renders requested afterwards.
+     *
+     * @param ioExecutor The executor to use.
      */
-    public int[] renderAsPackedInt(PlaneDef pd, PixelBuffer newBuffer)
-        throws IOException, QuantizationException
+    public void setIOExecutor(Executor ioExecutor)
     {
-        if (pd == null) {
-            throw new NullPointerException("No plane definition.");
-        }
-        checkRegionDef(pd.getRegion());
-        stats = new RenderingStats(this, pd);
-        log.info("Using: '" + renderingStrategy.getClass().getName()
-                + "' rendering strategy.");
-        PixelBuffer oldBuffer = buffer;
-        try
-        {
-            if (newBuffer != null)
-            {
-                buffer = newBuffer;
-            }
-            RGBIntBuffer img = renderingStrategy.renderAsPackedInt(this, pd);
-            stats.stop();
-            // TODO: Commenting this out for now. -- callan
-            //log.info(stats.getStats());
-            return img.getDataBuffer();
-        }
-        finally
-        {
-            buffer = oldBuffer;
+        if (ioExecutor == null) {
+            throw new NullPointerException("Expecting not null executor");
         }
+        this.ioExecutor = ioExecutor;
     }
 
     /**
-     * Returns the size, in bytes, of the {@link RGBBuffer} that would be
-     * rendered from the plane selected by <code>pd</code>. Note that the
-     * returned value also depends on the current rendering strategy which is
-     * selected by the {@link #setModel(RenderingModel) setModel} method. So a
-     * subsequent invocation of this method may return a different value if the
-     * {@link #setModel(RenderingModel) setModel} method has been called since
-     * the first call to this method.
-     * 
-     * @param pd
-     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
-     *            or <i>Z</i> axes.
+     * Returns the executor rendering the images of the asynchronous renders.
+     *
      * @return See above.
-     * @throws NullPointerException
-     *             If <code>pd</code> is <code>null</code>.
      */
-    public int getImageSize(PlaneDef pd) {
-        if (pd == null) {
-            throw new NullPointerException("No plane definition.");
-        }
-        return renderingStrategy.getImageSize(pd, metadata);
+    public Executor getCPUExecutor()
+    {
+        return cpuExecutor;
     }
 
     /**
-     * Returns a string with the dimensions of the specified plane. The returned
-     * string has the format <code>AxB</code>, where <code>A</code> is the
-     * number of pixels on the <i>X1</i>-axis and <code>B</code> the the
-     * number of pixels on the the <i>X2</i>-axis. The <i>X1</i>-axis is the
-     * <i>X</i>-axis in the case of an <i>XY</i> or <i>XZ</i> plane.
-     * Otherwise it is the <i>Z</i>-axis &#151; <i>ZY</i> plane. The <i>X2</i>-axis
-     * is the <i>Y</i>-axis in the case of an <i>XY</i> or <i>ZY</i> plane.
-     * Otherwise it is the <i>Z</i>-axis &#151; <i>XZ</i> plane.
-     * 
-     * @param pd
-     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
-     *            or <i>Z</i> axes.
-     * @return See above.
-     * @throws NullPointerException
-     *             If <code>pd</code> is <code>null</code>.
+     * Sets the executor rendering the images of the asynchronous renders,
+     * by default the {@link #getExecutor() rendering executor}. The new
+     * executor is used by the renders requested afterwards.
+     *
+     * @param cpuExecutor The executor to use.
      */
-    public String getPlaneDimsAsString(PlaneDef pd) {
-        if (pd == null) {
-            throw new NullPointerException("No plane definition.");
+    public void setCPUExecutor(Executor cpuExecutor)
+    {
+        if (cpuExecutor == null) {
+            throw new NullPointerException("Expecting not null executor");
         }
-        return renderingStrategy.getPlaneDimsAsString(pd, metadata);
+        this.cpuExecutor = cpuExecutor;
     }
 
     /**
-     * Returns an array containing the channel bindings. The dimension of the
-     * array equals the number of channels.
-     * 
-     * @return See above.
+     * Returns the cache of the raw pixel data.
+     *
+     * @return See above or <code>null</code> if the data is not cached.
      */
-    public ChannelBinding[] getChannelBindings() {
+    public PlaneCache getPlaneCache()
+    {
+        return planeCache;
+    }
+
+    /**
+     * Sets the cache of the raw pixel data. The
+     * {@link PlaneCache#getDefault() default} cache, disabled unless
+     * configured, is used unless this method is invoked.
+     *
+     * @param planeCache The cache to use or <code>null</code> to always read
+     *                   the data from the pixel buffer.
+     */
+    public void setPlaneCache(PlaneCache planeCache)
+    {
+        this.planeCache = planeCache;
+    }
+
+    /**
+     * Returns the pyramid binning the downsampled planes.
+     *
+     * @return See above or <code>null</code> if the planes are decimated.
+     */
+    public PlanePyramid getPlanePyramid()
+    {
+        return planePyramid;
+    }
+
+    /**
+     * Sets the pyramid computing the <i>XY</i> planes read with a stride by
+     * mean binning, if the pixel buffer has no resolution levels. The planes
+     * are decimated unless this method is invoked.
+     *
+     * @param planePyramid The pyramid to use or <code>null</code> to
+     *                     decimate the planes.
+     */
+    public void setPlanePyramid(PlanePyramid planePyramid)
+    {
+        this.planePyramid = planePyramid;
+        if (quantizedPlanes != null) {
+            quantizedPlanes.clear();
+        }
+    }
+
+    /**
+     * Returns the cache of the rendered images.
+     *
+     * @return See above or <code>null</code> if the images are not cached.
+     */
+    public RenderedImageCache getResultCache()
+    {
+        return resultCache;
+    }
+
+    /**
+     * Sets the cache of the rendered images, keyed by the
+     * {@link #getFingerprint(PlaneDef) fingerprint} of the settings. The
+     * images are always rendered unless this method is invoked.
+     *
+     * @param resultCache The cache to use or <code>null</code> to always
+     *                    render the images.
+     */
+    public void setResultCache(RenderedImageCache resultCache)
+    {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Returns the cache of the rendered images if the images of the pixels
+     * set can be cached, i.e. if the pixels set has an identifier.
+     *
+     * @return See above or <code>null</code>.
+     * @see #getFingerprint(PlaneDef)
+     */
+    private RenderedImageCache getUsableResultCache()
+    {
+        return metadata.getId() == null ? null : resultCache;
+    }
+
+    /**
+     * Returns a fingerprint of everything determining the image rendered
+     * from the specified plane: the pixels set, the rendering model, the
+     * quantum definition, the settings of the active channels, their
+     * codomain transformations, the overlays, the resolution level, whether
+     * the downsampled planes are binned and the plane itself. Two renderings
+     * with the same fingerprint produce the same image as long as the pixels
+     * are not modified, so the fingerprint can for example be used as an
+     * <i>HTTP</i> entity tag.
+     * <p>
+     * The pixels set is identified by its identifier only: the fingerprints
+     * of the pixels sets not saved yet, which have none, do not identify
+     * their images and must not be used as keys. The images of these pixels
+     * sets are never cached by the renderer.
+     * </p>
+     *
+     * @param pd The plane to render.
+     * @return The <i>SHA-1</i> digest of the settings, in hexadecimal.
+     * @throws NullPointerException If <code>pd</code> is <code>null</code>.
+     */
+    public String getFingerprint(PlaneDef pd)
+    {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        RenderingFingerprint f = new RenderingFingerprint();
+        f.add(metadata.getId());
+        f.add(rndDef.getModel().getValue());
+        QuantumDef qd = rndDef.getQuantization();
+        f.add(qd.getBitResolution()).add(qd.getCdStart()).add(qd.getCdEnd());
+        f.add(optimizations.isPrimaryColorEnabled());
+        f.add(optimizations.isAlphalessRendering());
+        f.add(getResolutionLevel());
+        ChannelBinding[] cb = getChannelBindings();
+        for (int w = 0; w < cb.length; w++) {
+            // The settings of the inactive channels do not matter.
+            boolean active = cb[w].getActive();
+            f.add(active);
+            if (!active) continue;
+            f.add(cb[w].getInputStart()).add(cb[w].getInputEnd());
+            f.add(cb[w].getFamily().getValue());
+            f.add(cb[w].getCoefficient()).add(cb[w].getNoiseReduction());
+            f.add(cb[w].getRed()).add(cb[w].getGreen());
+            f.add(cb[w].getBlue()).add(cb[w].getAlpha());
+            f.add(cb[w].getLookupTable());
+            // The transformations are identified by the values they map to.
+            CodomainChain cc = getCodomainChain(w);
+            f.add(cc.hasMapContext());
+            if (cc.hasMapContext()) {
+                int end = cc.getIntervalEnd();
+                for (int x = cc.getIntervalStart(); x <= end; x++) {
+                    f.add(cc.transform(x));
+                }
+            }
+        }
+        f.add(overlays == null ? 0 : overlays.size());
+        if (overlays != null) {
+            // The same overlays must give the same fingerprint, whatever
+            // the iteration order of the map.
+            List<Map.Entry<byte[], Integer>> entries =
+                    new ArrayList<Map.Entry<byte[], Integer>>(
+                            overlays.entrySet());
+            Collections.sort(entries, OVERLAY_ORDER);
+            for (Map.Entry<byte[], Integer> e : entries) {
+                f.add(e.getKey()).add(e.getValue());
+            }
+        }
+        f.add(pd.getSlice()).add(pd.getZ()).add(pd.getT());
+        f.add(pd.getStride()).add(planePyramid != null);
+        RegionDef region = pd.getRegion();
+        f.add(region != null);
+        if (region != null) {
+            f.add(region.getX()).add(region.getY());
+            f.add(region.getWidth()).add(region.getHeight());
+        }
+        return f.finish();
+    }
+
+    /**
+     * Sets the number of planes whose quantized values are kept for each
+     * channel, so that changing the colour, the alpha, the lookup table or
+     * the active state of the channels does not read nor quantize the pixels
+     * again. Only the <i>XY</i> planes are kept. Each plane kept costs a byte
+     * per pixel and channel. No plane is kept unless this method is invoked.
+     *
+     * @param planes The number of planes to keep, <code>0</code> to keep
+     *               none.
+     * @throws IllegalArgumentException If the number is negative.
+     */
+    public void setQuantizedPlaneCacheSize(int planes)
+    {
+        if (planes < 0) {
+            throw new IllegalArgumentException("Negative number of planes.");
+        }
+        if (planes == 0) {
+            quantizedPlanes = null;
+        } else if (quantizedPlanes == null
+                || quantizedPlanes.getMaxPlanes() != planes) {
+            quantizedPlanes = new QuantizedPlaneCache(planes,
+                    metadata.getSizeC());
+        }
+    }
+
+    /**
+     * Returns the number of planes whose quantized values are kept for each
+     * channel.
+     *
+     * @return See above.
+     * @see #setQuantizedPlaneCacheSize(int)
+     */
+    public int getQuantizedPlaneCacheSize()
+    {
+        return quantizedPlanes == null ? 0 : quantizedPlanes.getMaxPlanes();
+    }
+
+    /**
+     * Returns the key identifying the quantized plane of a channel or
+     * <code>null</code> if the plane is not to be kept.
+     *
+     * @param pd The plane.
+     * @param channel The channel index.
+     * @return See above.
+     */
+    private PlaneCache.Key getQuantizedPlaneKey(PlaneDef pd, int channel)
+    {
+        if (quantizedPlanes == null || pd.getSlice() != PlaneDef.XY) {
+            return null;
+        }
+        // The cache belongs to this renderer, no need to identify the pixels.
+        return new PlaneCache.Key(0L, buffer.getResolutionLevel(), pd,
+                channel);
+    }
+
+    /**
+     * Returns <code>true</code> if the quantized values of the specified
+     * plane are to be kept, <code>false</code> otherwise.
+     *
+     * @param pd The plane.
+     * @return See above.
+     */
+    boolean isKeepingQuantizedPlane(PlaneDef pd)
+    {
+        return quantizedPlanes != null && pd.getSlice() == PlaneDef.XY;
+    }
+
+    /**
+     * Returns the quantized values of the specified plane and channel if
+     * they were kept and quantized with the current settings of the channel.
+     *
+     * @param pd The plane.
+     * @param channel The channel index.
+     * @param mapping The current mapping of the channel.
+     * @return See above or <code>null</code>.
+     */
+    byte[] getQuantizedPlane(PlaneDef pd, int channel, ChannelMapping mapping)
+    {
+        PlaneCache.Key key = getQuantizedPlaneKey(pd, channel);
+        return key == null ? null : quantizedPlanes.get(key, mapping);
+    }
+
+    /**
+     * Keeps the quantized values of the specified plane and channel.
+     *
+     * @param pd The plane.
+     * @param channel The channel index.
+     * @param mapping The mapping used to quantize the values.
+     * @param data The quantized values, one per pixel.
+     */
+    void putQuantizedPlane(PlaneDef pd, int channel, ChannelMapping mapping,
+            byte[] data)
+    {
+        PlaneCache.Key key = getQuantizedPlaneKey(pd, channel);
+        if (key != null) {
+            quantizedPlanes.put(key, mapping, data);
+        }
+    }
+
+    /**
+     * Returns the channels whose data is needed to render the specified
+     * plane with the current settings: none if the image is found in the
+     * {@link #getResultCache() result cache}, otherwise the channels to
+     * render whose quantized values were not kept.
+     *
+     * @param pd The plane.
+     * @param packed Pass <code>true</code> if the image is rendered as packed
+     *               integers, <code>false</code> if it is rendered in bands.
+     * @return See above.
+     */
+    private List<Integer> getChannelsToRead(PlaneDef pd, boolean packed)
+    {
+        RenderedImageCache cache = getUsableResultCache();
+        if (cache != null) {
+            String fingerprint = getFingerprint(pd);
+            if (packed ? cache.containsPackedInt(fingerprint)
+                    : cache.containsRGBBuffer(fingerprint)) {
+                return Collections.emptyList();
+            }
+        }
+        List<Integer> channels = renderingStrategy.getChannelsToRead(this);
+        if (!isKeepingQuantizedPlane(pd)) return channels;
+        List<Integer> missing = new ArrayList<Integer>(channels.size());
+        for (Integer channel : channels) {
+            if (getQuantizedPlane(pd, channel, getChannelMapping(channel))
+                    == null) {
+                missing.add(channel);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Returns the data of the specified plane and channel. During a batch,
+     * the data read ahead of rendering is returned if available, otherwise
+     * the data is read by the thread reading the batch.
+     *
+     * @param pd The plane.
+     * @param channel The channel index.
+     * @return See above.
+     */
+    Plane2D readPlane(final PlaneDef pd, final int channel)
+    {
+        if (pd == prefetchedDef && prefetchedPlanes.containsKey(channel)) {
+            return prefetchedPlanes.get(channel);
+        }
+        if (batchReader == null) {
+            return readPlanes(pd, Collections.singletonList(channel),
+                    metadata, buffer, planeCache, planePyramid,
+                    cancellationToken).get(channel);
+        }
+        List<Integer> channels = Collections.singletonList(channel);
+        try {
+            return await(prefetch(pd, channels)).get(channel);
+        } catch (IOException e) {
+            throw new ResourceError(e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the pixel buffer once the data of a plane has been read. The
+     * buffer is left open while a batch is rendered and closed at the end
+     * of the batch.
+     */
+    void closePixels()
+    {
+        if (batchReader != null) return;
+        try
+        {
+            buffer.close();
+        }
+        catch (IOException e)
+        {
+            log.error("Pixels could not be closed successfully.", e);
+            throw new ResourceError(
+                    e.getMessage() + " Please check server log.");
+        }
+    }
+
+    /**
+     * Submits the reading of the data of the specified plane and channels to
+     * the executor reading the batch.
+     *
+     * @param pd The plane.
+     * @param channels The indices of the channels to read.
+     * @return The data, by channel index.
+     */
+    private Future<Map<Integer, Plane2D>> prefetch(final PlaneDef pd,
+            final List<Integer> channels)
+    {
+        final Pixels pixels = metadata;
+        final PixelBuffer source = buffer;
+        final PlaneCache cache = planeCache;
+        final PlanePyramid pyramid = planePyramid;
+        final CancellationToken token = cancellationToken;
+        return CompletableFuture.supplyAsync(
+                new Supplier<Map<Integer, Plane2D>>() {
+            public Map<Integer, Plane2D> get()
+            {
+                return readPlanes(pd, channels, pixels, source, cache,
+                        pyramid, token);
+            }
+        }, batchReader);
+    }
+
+    /**
+     * Reads the data of the specified plane and channels.
+     *
+     * @param pd The plane.
+     * @param channels The indices of the channels to read.
+     * @param pixels The pixels set.
+     * @param source The buffer to read from.
+     * @param cache The cache of the raw data or <code>null</code>.
+     * @param pyramid Bins the downsampled planes or <code>null</code>.
+     * @param token The token checked before reading each channel or
+     *              <code>null</code>.
+     * @return The data, by channel index.
+     */
+    private static Map<Integer, Plane2D> readPlanes(PlaneDef pd,
+            List<Integer> channels, Pixels pixels, PixelBuffer source,
+            PlaneCache cache, PlanePyramid pyramid, CancellationToken token)
+    {
+        Map<Integer, Plane2D> planes = new HashMap<Integer, Plane2D>();
+        for (Integer channel : channels) {
+            if (token != null) {
+                token.check();
+            }
+            planes.put(channel, PlaneFactory.createPlane(pd, channel, pixels,
+                    source, cache, pyramid));
+        }
+        return planes;
+    }
+
+    /**
+     * Waits for the data read by the thread reading the batch.
+     *
+     * @param future The pending result.
+     * @return See above.
+     * @throws IOException If the current thread was interrupted or the data
+     *                     could not be read.
+     */
+    private static <T> T await(Future<T> future) throws IOException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            InterruptedIOException ie = new InterruptedIOException(
+                    "Interrupted while reading the pixels data.");
+            ie.initCause(e);
+            throw ie;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the current lookup table provider.
+     *
+     * @return See above.
+     */
+    LutProvider getLutProvider()
+    {
+        return lutProvider;
+    }
+
+    /**
+     * Specifies the model that dictates how transformed raw data has to be
+     * mapped onto a color space. This class delegates the actual rendering to a
+     * {@link RenderingStrategy}, which is selected depending on that model. So
+     * setting the model also results in changing the rendering strategy.
+     * 
+     * @param model
+     *            Identifies the color space model.
+     */
+    public void setModel(RenderingModel model)
+    {
+        rndDef.setModel(model);
+        renderingStrategy = RenderingStrategy.makeNew(model, executor);
+    }
+
+    /**
+     * Sets the index of the default focal section. This index is used to define
+     * a default plane.
+     * 
+     * @param z
+     *            The stack index.
+     * @see #setDefaultT(int)
+     */
+    public void setDefaultZ(int z)
+    {
+        rndDef.setDefaultZ(Integer.valueOf(z));
+    }
+
+    /**
+     * Sets the default timepoint index. This index is used to define a default
+     * plane.
+     * 
+     * @param t
+     *            The timepoint index.
+     * @see #setDefaultZ(int)
+     */
+    public void setDefaultT(int t) {
+        rndDef.setDefaultT(Integer.valueOf(t));
+    }
+    
+    /**
+     * Sets a map of overlays to be rendered.
+     * @param overlays Overlay to color map.
+     */
+    public void setOverlays(Map<byte[], Integer> overlays) {
+    	this.overlays = overlays;
+    	checkOptimizations();
+    }
+    
+    /**
+     * Returns the current set of overlays to be rendered.
+     * @return Overlay to color map.
+     */
+    public Map<byte[], Integer> getOverlays() {
+    	return overlays;
+    }
+
+    /**
+     * Updates the {@link QuantumManager} and configures it according to the
+     * current quantum definition.
+     */
+    public void updateQuantumManager() {
+        QuantumDef qd = rndDef.getQuantization();
+        ChannelBinding[] cb = getChannelBindings();
+        quantumManager.initStrategies(qd, cb);
+        if (quantizedPlanes != null) {
+            quantizedPlanes.clear();
+        }
+    }
+
+    /**
+     * Renders the data selected by <code>pd</code> according to the current
+     * rendering settings. The passed argument selects a plane orthogonal to one
+     * of the <i>X</i>, <i>Y</i>, or <i>Z</i> axes. How many wavelengths are
+     * rendered and what color model is used depends on the current rendering
+     * settings.
+     * 
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @return An <i>RGB</i> image ready to be displayed on screen.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws NullPointerException
+     *             If <code>pd</code> is <code>null</code>.
+     */
+    public RGBBuffer render(PlaneDef pd) throws IOException,
+            QuantizationException {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        checkRegionDef(pd.getRegion());
+        if (cancellationToken != null) {
+            cancellationToken.check();
+        }
+        stats = new RenderingStats(this, pd);
+        RenderedImageCache cache = getUsableResultCache();
+        String fingerprint = null;
+        if (cache != null) {
+            fingerprint = getFingerprint(pd);
+            RGBBuffer img = cache.getRGBBuffer(fingerprint);
+            if (img != null) {
+                stats.stop();
+                return img;
+            }
+        }
+        log.info("Using: '" + renderingStrategy.getClass().getName()
+                + "' rendering strategy.");
+        RGBBuffer img = renderingStrategy.render(this, pd);
+        stats.stop();
+        // TODO: Commenting this out for now. -- callan
+        //log.info(stats.getStats());
+        if (fingerprint != null) {
+            cache.putRGBBuffer(fingerprint, img);
+        }
+        return img;
+    }
+
+    /**
+     * Renders the data selected by <code>pd</code> according to the current
+     * rendering settings. The passed argument selects a plane orthogonal to one
+     * of the <i>X</i>, <i>Y</i>, or <i>Z</i> axes. How many wavelengths are
+     * rendered and what color model is used depends on the current rendering
+     * settings.
+     * 
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @param newBuffer
+     *             The pixel buffer to use in place of the one currently
+     *             defined in the renderer. This will not change the state
+     *             of the Renderer. If <code>null</code> is passed the existing
+     *             pixel buffer will be used.
+     * @return An <i>RGB</i> image ready to be displayed on screen.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws NullPointerException
+     *             If <code>pd</code> is <code>null</code>.
+     */
+    public int[] renderAsPackedInt(PlaneDef pd, PixelBuffer newBuffer)
+        throws IOException, QuantizationException
+    {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        checkRegionDef(pd.getRegion());
+        if (cancellationToken != null) {
+            cancellationToken.check();
+        }
+        stats = new RenderingStats(this, pd);
+        // The images of another buffer are not identified by the settings.
+        RenderedImageCache cache = getUsableResultCache();
+        String fingerprint = null;
+        if (cache != null && newBuffer == null) {
+            fingerprint = getFingerprint(pd);
+            int[] img = cache.getPackedInt(fingerprint);
+            if (img != null) {
+                stats.stop();
+                return img;
+            }
+        }
+        log.info("Using: '" + renderingStrategy.getClass().getName()
+                + "' rendering strategy.");
+        PixelBuffer oldBuffer = buffer;
+        PlaneCache oldCache = planeCache;
+        QuantizedPlaneCache oldPlanes = quantizedPlanes;
+        try
+        {
+            if (newBuffer != null)
+            {
+                buffer = newBuffer;
+                // The data of the other buffer must not be cached as the
+                // data of the pixels set.
+                planeCache = null;
+                quantizedPlanes = null;
+            }
+            RGBIntBuffer img = renderingStrategy.renderAsPackedInt(this, pd);
+            stats.stop();
+            // TODO: Commenting this out for now. -- callan
+            //log.info(stats.getStats());
+            if (fingerprint != null) {
+                cache.putPackedInt(fingerprint, img.getDataBuffer());
+            }
+            return img.getDataBuffer();
+        }
+        finally
+        {
+            buffer = oldBuffer;
+            planeCache = oldCache;
+            quantizedPlanes = oldPlanes;
+        }
+    }
+
+    /**
+     * Renders the data selected by <code>pd</code> according to the current
+     * rendering settings directly into the specified packed <i>ARGB</i>
+     * array, e.g. a region of a larger canvas. The pixel
+     * <code>(x1, x2)</code> of the image is stored at
+     * <code>offset + x2 * scanlineStride + x1</code>; the other elements are
+     * left untouched. The images are not looked up in nor added to the
+     * {@link #getResultCache() result cache}.
+     *
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @param dst The array to render into.
+     * @param offset The index of the first pixel of the image.
+     * @param scanlineStride The number of elements between the starts of
+     *                       two rows.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws NullPointerException
+     *             If <code>pd</code> or <code>dst</code> is
+     *             <code>null</code>.
+     * @throws IllegalArgumentException
+     *             If the image does not fit into the array.
+     */
+    public void renderInto(PlaneDef pd, int[] dst, int offset,
+            int scanlineStride)
+        throws IOException, QuantizationException
+    {
+        if (dst == null) {
+            throw new NullPointerException("No destination.");
+        }
+        renderInto(pd, new RenderTarget.PackedARGB(dst, offset,
+                scanlineStride));
+    }
+
+    /**
+     * Renders the data selected by <code>pd</code> according to the current
+     * rendering settings directly into the specified bands, as
+     * {@link #renderInto(PlaneDef, int[], int, int)} does into a packed
+     * array.
+     *
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @param red The red band.
+     * @param green The green band.
+     * @param blue The blue band.
+     * @param offset The index of the first pixel of the image in each band.
+     * @param scanlineStride The number of elements between the starts of
+     *                       two rows.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws NullPointerException
+     *             If <code>pd</code> or a band is <code>null</code>.
+     * @throws IllegalArgumentException
+     *             If the image does not fit into the bands.
+     */
+    public void renderInto(PlaneDef pd, byte[] red, byte[] green,
+            byte[] blue, int offset, int scanlineStride)
+        throws IOException, QuantizationException
+    {
+        if (red == null || green == null || blue == null) {
+            throw new NullPointerException("No destination.");
+        }
+        renderInto(pd, new RenderTarget.Banded(red, green, blue, offset,
+                scanlineStride));
+    }
+
+    /**
+     * Renders the data selected by <code>pd</code> according to the current
+     * rendering settings directly into the specified buffer, four bytes per
+     * pixel, e.g. a direct buffer ready to be written to a channel. The
+     * pixel <code>(x1, x2)</code> of the image starts at the index
+     * <code>offset + x2 * scanlineStride + 4 * x1</code>. The indices are
+     * relative to the start of the buffer, up to its capacity: the position,
+     * the limit and the byte order of the buffer are ignored and left
+     * unchanged, as are the other bytes.
+     *
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @param dst The buffer to render into.
+     * @param offset The index of the first byte of the image.
+     * @param scanlineStride The number of bytes between the starts of two
+     *                       rows.
+     * @param layout The order of the components of a pixel, one of the
+     *               <code>BYTES_</code> constants defined by this class.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws NullPointerException
+     *             If <code>pd</code> or <code>dst</code> is
+     *             <code>null</code>.
+     * @throws IllegalArgumentException
+     *             If the image does not fit into the buffer, the buffer is
+     *             read-only or the layout is not supported.
+     */
+    public void renderInto(PlaneDef pd, ByteBuffer dst, int offset,
+            int scanlineStride, int layout)
+        throws IOException, QuantizationException
+    {
+        if (dst == null) {
+            throw new NullPointerException("No destination.");
+        }
+        renderInto(pd, new RenderTarget.Bytes(dst, offset, scanlineStride,
+                layout));
+    }
+
+    /**
+     * Renders the data selected by <code>pd</code> into the specified
+     * target.
+     *
+     * @param pd The plane to render.
+     * @param target Where to store the image.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     */
+    private void renderInto(PlaneDef pd, RenderTarget target)
+        throws IOException, QuantizationException
+    {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        checkRegionDef(pd.getRegion());
+        if (cancellationToken != null) {
+            cancellationToken.check();
+        }
+        stats = new RenderingStats(this, pd);
+        log.info("Using: '" + renderingStrategy.getClass().getName()
+                + "' rendering strategy.");
+        renderingStrategy.renderInto(this, pd, target);
+        stats.stop();
+    }
+
+    /**
+     * Asynchronously renders the data selected by <code>pd</code>, as
+     * {@link #render(PlaneDef)} would. The data is read by the
+     * {@link #getIOExecutor() I/O executor} and the image rendered by the
+     * {@link #getCPUExecutor() CPU executor}, so the calling thread does not
+     * wait. The asynchronous renders of a renderer run one after the other,
+     * in the order they were requested; the settings must not be changed
+     * nor the synchronous methods called while renders are pending.
+     *
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @return The pending image. The errors, e.g. a
+     *         {@link QuantizationException}, complete it exceptionally.
+     */
+    public CompletableFuture<RGBBuffer> renderAsync(PlaneDef pd)
+    {
+        return renderAsync(pd, new CancellationToken());
+    }
+
+    /**
+     * Asynchronously renders the data selected by <code>pd</code>, as
+     * {@link #renderAsync(PlaneDef)} does, checking the specified token
+     * instead of the {@link #getCancellationToken() renderer's token}.
+     * Cancelling the returned future cancels the token; the renders
+     * requested afterwards only start once the cancelled one has stopped.
+     *
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @param token The token to check.
+     * @return The pending image.
+     */
+    public CompletableFuture<RGBBuffer> renderAsync(final PlaneDef pd,
+            CancellationToken token)
+    {
+        return submitRender(pd, token, false, new Callable<RGBBuffer>() {
+            public RGBBuffer call() throws Exception
+            {
+                return render(pd);
+            }
+        });
+    }
+
+    /**
+     * Asynchronously renders the data selected by <code>pd</code>, as
+     * {@link #renderAsPackedInt(PlaneDef, PixelBuffer)} would with the
+     * current pixel buffer.
+     *
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @return The pending image. The errors, e.g. a
+     *         {@link QuantizationException}, complete it exceptionally.
+     * @see #renderAsync(PlaneDef)
+     */
+    public CompletableFuture<int[]> renderAsPackedIntAsync(PlaneDef pd)
+    {
+        return renderAsPackedIntAsync(pd, new CancellationToken());
+    }
+
+    /**
+     * Asynchronously renders the data selected by <code>pd</code>, as
+     * {@link #renderAsPackedIntAsync(PlaneDef)} does, checking the specified
+     * token instead of the {@link #getCancellationToken() renderer's token}.
+     * Cancelling the returned future cancels the token.
+     *
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @param token The token to check.
+     * @return The pending image.
+     */
+    public CompletableFuture<int[]> renderAsPackedIntAsync(final PlaneDef pd,
+            CancellationToken token)
+    {
+        return submitRender(pd, token, true, new Callable<int[]>() {
+            public int[] call() throws Exception
+            {
+                return renderAsPackedInt(pd, null);
+            }
+        });
+    }
+
+    /**
+     * Queues an asynchronous render after the previously requested ones.
+     *
+     * @param pd The plane to render.
+     * @param token The token to check.
+     * @param packed Pass <code>true</code> if the image is rendered as packed
+     *               integers, <code>false</code> if it is rendered in bands.
+     * @param task Renders the plane once its data has been read.
+     * @return The pending image.
+     */
+    private synchronized <T> CompletableFuture<T> submitRender(
+            final PlaneDef pd, final CancellationToken token,
+            final boolean packed, final Callable<T> task)
+    {
+        if (token == null) {
+            throw new NullPointerException("Expecting not null token");
+        }
+        CompletableFuture<T> pipeline = lastRequest.handle(
+                new BiFunction<Object, Throwable, PlaneDef>() {
+            public PlaneDef apply(Object value, Throwable t)
+            {
+                // The failure of the previous render is reported by its own
+                // future.
+                return pd;
+            }
+        }).thenApplyAsync(new Function<PlaneDef, Map<Integer, Plane2D>>() {
+            public Map<Integer, Plane2D> apply(PlaneDef def)
+            {
+                return readAhead(def, token, packed);
+            }
+        }, ioExecutor).thenApplyAsync(
+                new Function<Map<Integer, Plane2D>, T>() {
+            public T apply(Map<Integer, Plane2D> planes)
+            {
+                CancellationToken previous = cancellationToken;
+                cancellationToken = token;
+                prefetchedDef = pd;
+                prefetchedPlanes = planes;
+                try {
+                    return task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                } finally {
+                    prefetchedDef = null;
+                    prefetchedPlanes = null;
+                    cancellationToken = previous;
+                }
+            }
+        }, cpuExecutor);
+        // Cancelling the future of the caller completes it at once but the
+        // stages keep running until they check the token, so the next render
+        // waits for the stages instead.
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        result.whenComplete(new BiConsumer<T, Throwable>() {
+            public void accept(T value, Throwable t)
+            {
+                if (t instanceof CancellationException) {
+                    token.cancel();
+                }
+            }
+        });
+        pipeline.whenComplete(new BiConsumer<T, Throwable>() {
+            public void accept(T value, Throwable t)
+            {
+                if (t == null) {
+                    if (!result.complete(value)) {
+                        // Cancelled once rendered, nobody gets the image.
+                        releaseImage(value);
+                    }
+                } else {
+                    result.completeExceptionally(t);
+                }
+            }
+        });
+        lastRequest = pipeline;
+        return result;
+    }
+
+    /**
+     * Returns an image rendered asynchronously to the
+     * {@link #getBufferPool() buffer pool}.
+     *
+     * @param image The packed or banded image.
+     */
+    private void releaseImage(Object image)
+    {
+        if (image instanceof int[]) {
+            releaseBuffer((int[]) image);
+        } else if (image instanceof RGBBuffer) {
+            releaseBuffer((RGBBuffer) image);
+        }
+    }
+
+    /**
+     * Reads the data needed to render the specified plane with the current
+     * settings, skipping the channels already quantized and all of them if
+     * the image is already rendered.
+     *
+     * @param pd The plane.
+     * @param token The token checked before reading each channel.
+     * @param packed Pass <code>true</code> if the image is rendered as packed
+     *               integers, <code>false</code> if it is rendered in bands.
+     * @return The data, by channel index.
+     */
+    private Map<Integer, Plane2D> readAhead(PlaneDef pd,
+            CancellationToken token, boolean packed)
+    {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        checkRegionDef(pd.getRegion());
+        List<Integer> channels = getChannelsToRead(pd, packed);
+        if (channels.isEmpty()) {
+            return new HashMap<Integer, Plane2D>();
+        }
+        try {
+            return readPlanes(pd, channels, metadata, buffer, planeCache,
+                    planePyramid, token);
+        } finally {
+            closePixels();
+        }
+    }
+
+    /**
+     * Renders the specified planes according to the current rendering
+     * settings, as {@link #renderAsPackedInt(PlaneDef, PixelBuffer)} would.
+     * The images of the whole batch are returned together, see
+     * {@link #renderBatch(List, RenderedPlaneHandler)} to handle them as
+     * they are rendered instead.
+     *
+     * @param planes The planes to render.
+     * @return The images, in the order of the planes.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws NullPointerException
+     *             If a plane definition is <code>null</code>.
+     */
+    public List<int[]> renderBatch(List<PlaneDef> planes)
+        throws IOException, QuantizationException
+    {
+        final List<int[]> images = new ArrayList<int[]>(planes.size());
+        renderBatch(planes, new RenderedPlaneHandler() {
+            public void handlePlane(int index, PlaneDef pd, int[] argb)
+            {
+                images.add(argb);
+            }
+        });
+        return images;
+    }
+
+    /**
+     * Renders the specified planes according to the current rendering
+     * settings, as {@link #renderAsPackedInt(PlaneDef, PixelBuffer)} would,
+     * and hands each image to the specified handler as soon as it is
+     * rendered. The data of the next plane is read on the
+     * {@link #getIOExecutor() I/O executor} while the current plane is
+     * quantized and composited, only one plane being read ahead so that the
+     * raw data in flight is bounded to two planes. The data of the planes
+     * found in the {@link #getResultCache() result cache} and of the
+     * channels whose quantized values were kept is not read. The pixel buffer is
+     * closed once all the planes are rendered.
+     *
+     * @param planes The planes to render.
+     * @param handler Receives the images, in the order of the planes.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository or if the handler failed.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws NullPointerException
+     *             If a plane definition or the handler is <code>null</code>.
+     */
+    public void renderBatch(List<PlaneDef> planes,
+            RenderedPlaneHandler handler)
+        throws IOException, QuantizationException
+    {
+        if (handler == null) {
+            throw new NullPointerException("No handler.");
+        }
+        for (PlaneDef pd : planes) {
+            if (pd == null) {
+                throw new NullPointerException("No plane definition.");
+            }
+            checkRegionDef(pd.getRegion());
+        }
+        if (planes.isEmpty()) return;
+        SerialExecutor reader = new SerialExecutor(ioExecutor);
+        batchReader = reader;
+        Future<Map<Integer, Plane2D>> next = null;
+        try
+        {
+            next = prefetch(planes.get(0),
+                    getChannelsToRead(planes.get(0), true));
+            for (int i = 0; i < planes.size(); i++) {
+                PlaneDef pd = planes.get(i);
+                Map<Integer, Plane2D> data = await(next);
+                next = null;
+                if (i + 1 < planes.size()) {
+                    PlaneDef nextDef = planes.get(i + 1);
+                    next = prefetch(nextDef,
+                            getChannelsToRead(nextDef, true));
+                }
+                prefetchedDef = pd;
+                prefetchedPlanes = data;
+                int[] image = renderAsPackedInt(pd, null);
+                prefetchedDef = null;
+                prefetchedPlanes = null;
+                handler.handlePlane(i, pd, image);
+            }
+        }
+        finally
+        {
+            batchReader = null;
+            prefetchedDef = null;
+            prefetchedPlanes = null;
+            // Skip a read not started yet and wait for a pending one before
+            // closing the buffer.
+            if (next != null) {
+                next.cancel(false);
+            }
+            try {
+                reader.awaitIdle();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closePixels();
+        }
+    }
+
+    /**
+     * Renders the specified regions of a plane according to the current
+     * rendering settings, as {@link #renderAsPackedInt(PlaneDef, PixelBuffer)}
+     * would. Adjacent or overlapping regions of an <i>XY</i> plane are read
+     * and rendered together as their bounding region, from which the image
+     * of each region is copied. With a stride, only the regions offset by
+     * whole strides from one another are rendered together.
+     *
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes. Its region is ignored.
+     * @param regions The regions to render.
+     * @return The images, in the order of the regions.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws NullPointerException
+     *             If <code>pd</code> or a region is <code>null</code>.
+     */
+    public List<int[]> renderRegions(PlaneDef pd, List<RegionDef> regions)
+        throws IOException, QuantizationException
+    {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        for (RegionDef rd : regions) {
+            if (rd == null) {
+                throw new NullPointerException("No region definition.");
+            }
+            checkRegionDef(rd);
+        }
+        int[][] images = new int[regions.size()][];
+        String[] fingerprints = new String[regions.size()];
+        List<RegionDef> missing = new ArrayList<RegionDef>();
+        List<Integer> positions = new ArrayList<Integer>();
+        RegionDef region = pd.getRegion();
+        RenderedImageCache original = resultCache;
+        RenderedImageCache cache = getUsableResultCache();
+        try
+        {
+            for (int i = 0; i < regions.size(); i++) {
+                if (cache != null) {
+                    pd.setRegion(regions.get(i));
+                    fingerprints[i] = getFingerprint(pd);
+                    images[i] = cache.getPackedInt(fingerprints[i]);
+                }
+                if (images[i] == null) {
+                    missing.add(regions.get(i));
+                    positions.add(i);
+                }
+            }
+            // The regions of the other planes are not read as tiles.
+            long maxPixels = pd.getSlice() == PlaneDef.XY ?
+                    MAX_COALESCED_PIXELS : 0;
+            int step = Math.max(pd.getStride(), 0) + 1;
+            // Only the images of the requested regions are cached.
+            resultCache = null;
+            for (RegionCoalescer.Group group :
+                RegionCoalescer.coalesce(missing, maxPixels, step)) {
+                RegionDef bounds = group.getBounds();
+                pd.setRegion(bounds);
+                int[] image = renderAsPackedInt(pd, null);
+                for (Integer index : group.getIndices()) {
+                    RegionDef rd = missing.get(index);
+                    int i = positions.get(index);
+                    images[i] = group.getIndices().size() == 1 ? image :
+                        RegionCoalescer.crop(image, bounds, rd, step);
+                    if (cache != null) {
+                        cache.putPackedInt(fingerprints[i], images[i]);
+                    }
+                }
+                if (group.getIndices().size() > 1) {
+                    // Only the cropped images are returned.
+                    releaseBuffer(image);
+                }
+            }
+        }
+        finally
+        {
+            resultCache = original;
+            pd.setRegion(region);
+        }
+        List<int[]> result = new ArrayList<int[]>(images.length);
+        Collections.addAll(result, images);
+        return result;
+    }
+
+    /**
+     * Renders the <i>XY</i> plane selected by <code>pd</code> according to
+     * the current rendering settings in bands of rows, handing each band
+     * over to the specified handler before rendering the next one. Each band
+     * is read and rendered as a region of its own, so that the memory used
+     * depends on the size of a band and not on the size of the plane, and
+     * planes too large to be rendered into a single array can be rendered.
+     * With a stride, the rows of a band are read at full resolution and
+     * downsampled as the whole plane would be. Neither the data read nor
+     * the rendered bands are cached.
+     *
+     * @param pd
+     *            Selects an <i>XY</i> plane. If a region is set, only that
+     *            region is rendered.
+     * @param bandHeight The number of rows of a band, except for the last
+     *                   band that may have fewer rows.
+     * @param handler Receives the bands, from top to bottom.
+     * @throws IOException
+     *             If an error occurred while trying to pull out data from the
+     *             pixels data repository or if the handler failed.
+     * @throws QuantizationException
+     *             If an error occurred while quantizing the pixels raw data.
+     * @throws NullPointerException
+     *             If <code>pd</code> or <code>handler</code> is
+     *             <code>null</code>.
+     * @throws IllegalArgumentException
+     *             If the plane is not an <i>XY</i> plane or if a band does
+     *             not fit into an array.
+     */
+    public void renderBands(PlaneDef pd, int bandHeight,
+            RenderedBandHandler handler)
+        throws IOException, QuantizationException
+    {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        if (handler == null) {
+            throw new NullPointerException("No handler.");
+        }
+        if (pd.getSlice() != PlaneDef.XY) {
+            throw new IllegalArgumentException(
+                    "Only XY planes are rendered in bands.");
+        }
+        if (bandHeight <= 0) {
+            throw new IllegalArgumentException(
+                    "The band height must be positive: " + bandHeight);
+        }
+        RegionDef region = pd.getRegion();
+        RegionDef bounds;
+        if (region == null) {
+            bounds = new RegionDef(0, 0, buffer.getSizeX(),
+                    buffer.getSizeY());
+        } else {
+            checkRegionDef(region);
+            bounds = region;
+        }
+        int stride = Math.max(pd.getStride(), 0) + 1;
+        int sizeX1 = bounds.getWidth() / stride;
+        int sizeX2 = bounds.getHeight() / stride;
+        if (sizeX1 == 0 || sizeX2 == 0) return;
+        int rows = Math.min(bandHeight, sizeX2);
+        if ((long) sizeX1 * rows > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A band of " + sizeX1 + "x"
+                    + rows + " pixels does not fit into an array.");
+        }
+        int[] band = new int[sizeX1 * rows];
+        // The bands are not the regions rendered again: their data would
+        // only evict the cached planes.
+        PlaneCache oldCache = planeCache;
+        QuantizedPlaneCache oldPlanes = quantizedPlanes;
+        planeCache = null;
+        quantizedPlanes = null;
+        try
+        {
+            for (int x2 = 0; x2 < sizeX2; x2 += rows) {
+                int n = Math.min(rows, sizeX2 - x2);
+                // The band covers whole strides of the source rows.
+                pd.setRegion(new RegionDef(bounds.getX(),
+                        bounds.getY() + x2 * stride, bounds.getWidth(),
+                        n * stride));
+                renderInto(pd, new RenderTarget.PackedARGB(band, 0, sizeX1));
+                handler.handleBand(x2, sizeX1, n, band);
+            }
+        }
+        finally
+        {
+            planeCache = oldCache;
+            quantizedPlanes = oldPlanes;
+            pd.setRegion(region);
+        }
+    }
+
+    /**
+     * Returns the size, in bytes, of the {@link RGBBuffer} that would be
+     * rendered from the plane selected by <code>pd</code>. Note that the
+     * returned value also depends on the current rendering strategy which is
+     * selected by the {@link #setModel(RenderingModel) setModel} method. So a
+     * subsequent invocation of this method may return a different value if the
+     * {@link #setModel(RenderingModel) setModel} method has been called since
+     * the first call to this method.
+     * 
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @return See above.
+     * @throws NullPointerException
+     *             If <code>pd</code> is <code>null</code>.
+     */
+    public int getImageSize(PlaneDef pd) {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        return renderingStrategy.getImageSize(pd, metadata);
+    }
+
+    /**
+     * Returns a string with the dimensions of the specified plane. The returned
+     * string has the format <code>AxB</code>, where <code>A</code> is the
+     * number of pixels on the <i>X1</i>-axis and <code>B</code> the the
+     * number of pixels on the the <i>X2</i>-axis. The <i>X1</i>-axis is the
+     * <i>X</i>-axis in the case of an <i>XY</i> or <i>XZ</i> plane.
+     * Otherwise it is the <i>Z</i>-axis &#151; <i>ZY</i> plane. The <i>X2</i>-axis
+     * is the <i>Y</i>-axis in the case of an <i>XY</i> or <i>ZY</i> plane.
+     * Otherwise it is the <i>Z</i>-axis &#151; <i>XZ</i> plane.
+     * 
+     * @param pd
+     *            Selects a plane orthogonal to one of the <i>X</i>, <i>Y</i>,
+     *            or <i>Z</i> axes.
+     * @return See above.
+     * @throws NullPointerException
+     *             If <code>pd</code> is <code>null</code>.
+     */
+    public String getPlaneDimsAsString(PlaneDef pd) {
+        if (pd == null) {
+            throw new NullPointerException("No plane definition.");
+        }
+        return renderingStrategy.getPlaneDimsAsString(pd, metadata);
+    }
+
+    /**
+     * Returns an array containing the channel bindings. The dimension of the
+     * array equals the number of channels.
+     * 
+     * @return See above.
+     */
+    public ChannelBinding[] getChannelBindings() {
         List<ChannelBinding> bindings = rndDef.collectWaveRendering(null);
         return (ChannelBinding[]) bindings.toArray(new ChannelBinding[bindings
                 .size()]);
@@ -713,6 +2135,20 @@ public class Renderer {
         return codomainChains.get(channel);
     }
 
+    /**
+     * Returns the mapping of the pixel intensity values of the specified
+     * channel onto the codomain, composed from its quantum strategy and its
+     * codomain chain.
+     * 
+     * @param channel
+     *            The channel to handle.
+     * @return See above.
+     */
+    ChannelMapping getChannelMapping(int channel) {
+        return quantumManager.getMappingFor(channel,
+                getCodomainChain(channel));
+    }
+
     /**
      * Returns a {@link RenderingStats} object that the rendering strategy can
      * use to track performance. A new stats object is created upon each
@@ -793,6 +2229,9 @@ public class Renderer {
     public void setChannelWindow(int w, double start, double end) {
         QuantumStrategy qs = getQuantumManager().getStrategyFor(w);
         qs.setWindow(start, end);
+        if (quantizedPlanes != null) {
+            quantizedPlanes.invalidate(w);
+        }
         ChannelBinding[] cb = getChannelBindings();
         cb[w].setInputStart(new Double(start));
         cb[w].setInputEnd(new Double(end));
@@ -815,6 +2254,9 @@ public class Renderer {
             boolean noiseReduction) {
         QuantumStrategy qs = getQuantumManager().getStrategyFor(w);
         qs.setQuantizationMap(family, coefficient, noiseReduction);
+        if (quantizedPlanes != null) {
+            quantizedPlanes.invalidate(w);
+        }
         ChannelBinding[] cb = getChannelBindings();
         cb[w].setFamily(family);
         cb[w].setCoefficient(qs.getCurveCoefficient());
@@ -0,0 +1,27 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+/**
+ * Thrown to stop a render whose {@link CancellationToken} was cancelled or
+ * whose deadline has passed.
+ *
+ * @since 5.5
+ */
+public class RenderingCancelledException extends RuntimeException {
+
+    /** Required for serialization. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param message The detail message.
+     */
+    public RenderingCancelledException(String message)
+    {
+        super(message);
+    }
+}
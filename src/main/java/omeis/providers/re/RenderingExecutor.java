@@ -0,0 +1,473 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import omeis.providers.re.quantum.QuantizationException;
+
+/**
+ * Process-wide pool of threads used by the rendering strategies to render
+ * the regions of a plane concurrently.
+ * <p>
+ * The pool is a work-stealing {@link ForkJoinPool} with a fixed number of
+ * named threads. Planes are rendered in {@link RowBandTask row bands} that
+ * idle threads steal from each other. The number of submissions waiting or
+ * running in the pool is bounded: beyond that, the work is run by the
+ * submitting thread instead of being rejected so that the load is throttled
+ * rather than failed. The
+ * {@link #getDefault() default} instance is configured through the
+ * {@link #THREADS_PROPERTY} and {@link #QUEUE_SIZE_PROPERTY} system
+ * properties; other instances can be injected into a {@link Renderer}.
+ * </p>
+ *
+ * @since 5.5
+ */
+public class RenderingExecutor implements Executor {
+
+    /** The logger for this particular class */
+    private static Logger log = LoggerFactory.getLogger(RenderingExecutor.class);
+
+    /** System property holding the number of rendering threads. */
+    public static final String THREADS_PROPERTY = "omero.render.threads";
+
+    /** System property holding the maximum number of queued tasks. */
+    public static final String QUEUE_SIZE_PROPERTY = "omero.render.queue_size";
+
+    /** The default maximum number of queued tasks. */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /** System property holding the number of threads reading pixels data. */
+    public static final String IO_THREADS_PROPERTY = "omero.render.io_threads";
+
+    /** The default number of threads reading pixels data. */
+    public static final int DEFAULT_IO_THREADS = 4;
+
+    /** The prefix of the name of the threads of the default instance. */
+    private static final String DEFAULT_NAME = "omero-render";
+
+    /** The shared instance, lazily created. */
+    private static RenderingExecutor defaultExecutor;
+
+    /** The shared threads reading pixels data, lazily created. */
+    private static ExecutorService defaultIOExecutor;
+
+    /** The threads doing the work. */
+    private final ForkJoinPool pool;
+
+    /** Bounds the number of submissions waiting or running in the pool. */
+    private final Semaphore admissions;
+
+    /** The maximum number of submissions waiting or running in the pool. */
+    private final int queueSize;
+
+    /** The number of threads. */
+    private final int parallelism;
+
+    /** The number of tasks submitted to the pool. */
+    private final AtomicLong submitted = new AtomicLong();
+
+    /** The number of tasks run by the submitting thread. */
+    private final AtomicLong callerRuns = new AtomicLong();
+
+    /** The number of submitted tasks that have completed. */
+    private final AtomicLong completed = new AtomicLong();
+
+    /**
+     * Creates the named threads of the pool.
+     */
+    private static class RenderingThreadFactory
+        implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        /** The prefix of the name of the threads. */
+        private final String prefix;
+
+        /** Used to number the threads. */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Creates a new instance.
+         *
+         * @param prefix The prefix of the name of the threads.
+         */
+        RenderingThreadFactory(String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+        {
+            ForkJoinWorkerThread t = new ForkJoinWorkerThread(pool) {};
+            t.setName(prefix + "-" + count.incrementAndGet());
+            return t;
+        }
+    }
+
+    /**
+     * Reads a positive integer from the system properties.
+     *
+     * @param name The name of the property.
+     * @param defaultValue The value to use if the property is not set or not
+     *                     valid.
+     * @return See above.
+     */
+    private static int getIntProperty(String name, int defaultValue)
+    {
+        String value = System.getProperty(name);
+        if (value == null) return defaultValue;
+        try {
+            int v = Integer.parseInt(value.trim());
+            if (v > 0) return v;
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        log.warn("Invalid value '" + value + "' for " + name + ", using "
+                + defaultValue);
+        return defaultValue;
+    }
+
+    /**
+     * Returns the shared instance, creating it from the system properties on
+     * first use.
+     *
+     * @return See above.
+     */
+    public static synchronized RenderingExecutor getDefault()
+    {
+        if (defaultExecutor == null) {
+            int threads = getIntProperty(THREADS_PROPERTY,
+                    Runtime.getRuntime().availableProcessors());
+            int queueSize = getIntProperty(QUEUE_SIZE_PROPERTY,
+                    DEFAULT_QUEUE_SIZE);
+            defaultExecutor = new RenderingExecutor(threads, queueSize,
+                    DEFAULT_NAME);
+            log.info("Created rendering executor: " + defaultExecutor);
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Returns the shared threads reading the pixels data ahead of rendering,
+     * creating them from the system properties on first use. The threads
+     * block on I/O, so they are kept apart from the rendering threads.
+     *
+     * @return See above.
+     */
+    public static synchronized ExecutorService getDefaultIOExecutor()
+    {
+        if (defaultIOExecutor == null) {
+            int threads = getIntProperty(IO_THREADS_PROPERTY,
+                    DEFAULT_IO_THREADS);
+            final AtomicInteger count = new AtomicInteger();
+            defaultIOExecutor = Executors.newFixedThreadPool(threads,
+                    new ThreadFactory() {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r,
+                            DEFAULT_NAME + "-io-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            log.info("Created " + threads + " pixels reading threads.");
+        }
+        return defaultIOExecutor;
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param parallelism The number of threads. Must be positive.
+     * @param queueSize The maximum number of submissions waiting or running
+     *                  in the pool. Must be positive.
+     * @param name The prefix of the name of the threads.
+     */
+    public RenderingExecutor(int parallelism, int queueSize, String name)
+    {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "The parallelism must be positive: " + parallelism);
+        }
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException(
+                    "The queue size must be positive: " + queueSize);
+        }
+        this.parallelism = parallelism;
+        this.queueSize = queueSize;
+        admissions = new Semaphore(queueSize);
+        pool = new ForkJoinPool(parallelism, new RenderingThreadFactory(name),
+                null, false);
+    }
+
+    /**
+     * Returns <code>true</code> if the current thread is one of the threads
+     * of this executor, <code>false</code> otherwise.
+     *
+     * @return See above.
+     */
+    boolean isOwnThread()
+    {
+        Thread t = Thread.currentThread();
+        return t instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) t).getPool() == pool;
+    }
+
+    /**
+     * Submits a task.
+     *
+     * @param task The task to run.
+     * @return The pending result of the task.
+     */
+    public <T> Future<T> submit(final Callable<T> task)
+    {
+        submitted.incrementAndGet();
+        if (!admissions.tryAcquire()) {
+            callerRuns.incrementAndGet();
+            FutureTask<T> f = new FutureTask<T>(task);
+            f.run();
+            completed.incrementAndGet();
+            return f;
+        }
+        try {
+            return pool.submit(new Callable<T>() {
+                public T call() throws Exception {
+                    try {
+                        return task.call();
+                    } finally {
+                        admissions.release();
+                        completed.incrementAndGet();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            admissions.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the specified command, in the pool unless it is saturated in which
+     * case the calling thread runs it.
+     *
+     * @see Executor#execute(Runnable)
+     */
+    public void execute(Runnable command)
+    {
+        submit(Executors.callable(command));
+    }
+
+    /**
+     * Renders the rows <code>[0, sizeX2)</code> of a plane in bands of at most
+     * <code>grain</code> rows and waits for all of them to be rendered. The
+     * bands are rendered by the pool, unless the pool is saturated in which
+     * case they are all rendered by the calling thread.
+     *
+     * @param renderer Renders the bands.
+     * @param sizeX2 The number of rows.
+     * @param grain The maximum number of rows rendered by a single task.
+     * @throws QuantizationException If a value could not be quantized.
+     */
+    void render(BandRenderer renderer, int sizeX2, int grain)
+        throws QuantizationException
+    {
+        if (sizeX2 <= 0) return;
+        RowBandTask task = new RowBandTask(renderer, 0, sizeX2, grain);
+        submitted.incrementAndGet();
+        try {
+            if (sizeX2 <= grain) {
+                // Not worth a thread switch.
+                callerRuns.incrementAndGet();
+                renderer.renderBand(0, sizeX2);
+            } else if (isOwnThread()) {
+                task.invoke();
+            } else if (admissions.tryAcquire()) {
+                try {
+                    pool.invoke(task);
+                } finally {
+                    admissions.release();
+                }
+            } else {
+                callerRuns.incrementAndGet();
+                for (int x2 = 0; x2 < sizeX2; x2 += grain) {
+                    renderer.renderBand(x2, Math.min(x2 + grain, sizeX2));
+                }
+            }
+        } catch (RuntimeException e) {
+            QuantizationException qe =
+                    RowBandTask.findQuantizationException(e);
+            if (qe != null) {
+                throw qe;
+            }
+            throw e;
+        } finally {
+            completed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Renders the rows of a plane as {@link #render(BandRenderer, int, int)}
+     * does, checking the specified token before rendering each band.
+     *
+     * @param renderer Renders the bands.
+     * @param sizeX2 The number of rows.
+     * @param grain The maximum number of rows rendered by a single task.
+     * @param token The token to check or <code>null</code>.
+     * @throws QuantizationException If a value could not be quantized.
+     * @throws RenderingCancelledException If the token is cancelled.
+     */
+    void render(final BandRenderer renderer, int sizeX2, int grain,
+            final CancellationToken token)
+        throws QuantizationException
+    {
+        if (token == null) {
+            render(renderer, sizeX2, grain);
+            return;
+        }
+        render(new BandRenderer() {
+            public void renderBand(int x2Start, int x2End)
+                throws QuantizationException
+            {
+                token.check();
+                renderer.renderBand(x2Start, x2End);
+            }
+        }, sizeX2, grain);
+    }
+
+    /**
+     * Returns the number of threads.
+     *
+     * @return See above.
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Returns an estimate of the number of tasks, submitted or forked,
+     * waiting to be run.
+     *
+     * @return See above.
+     */
+    public int getQueueDepth()
+    {
+        long n = pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+        return (int) Math.min(Integer.MAX_VALUE, n);
+    }
+
+    /**
+     * Returns the number of submissions that can be added before work is
+     * run by the submitting threads.
+     *
+     * @return See above.
+     */
+    public int getRemainingCapacity()
+    {
+        return admissions.availablePermits();
+    }
+
+    /**
+     * Returns the maximum number of submissions waiting or running in the
+     * pool.
+     *
+     * @return See above.
+     */
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    /**
+     * Returns an estimate of the number of threads running a task.
+     *
+     * @return See above.
+     */
+    public int getActiveCount()
+    {
+        return pool.getActiveThreadCount();
+    }
+
+    /**
+     * Returns an estimate of the number of tasks stolen by a thread from the
+     * queue of another one.
+     *
+     * @return See above.
+     */
+    public long getStealCount()
+    {
+        return pool.getStealCount();
+    }
+
+    /**
+     * Returns the number of submitted tasks that have completed.
+     *
+     * @return See above.
+     */
+    public long getCompletedTaskCount()
+    {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of tasks submitted to the pool.
+     *
+     * @return See above.
+     */
+    public long getSubmittedTaskCount()
+    {
+        return submitted.get();
+    }
+
+    /**
+     * Returns the number of submitted tasks that were run by the submitting
+     * thread because the pool was saturated or the task was too small.
+     *
+     * @return See above.
+     */
+    public long getCallerRunsCount()
+    {
+        return callerRuns.get();
+    }
+
+    /**
+     * Stops the threads once the queued tasks have been run. The
+     * {@link #getDefault() default} instance should not be shut down.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Overrides the toString method.
+     *
+     * @see Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return String.format(
+                "RenderingExecutor[threads=%d, active=%d, queued=%d, " +
+                "completed=%d, submitted=%d, callerRuns=%d, steals=%d]",
+                parallelism, getActiveCount(), getQueueDepth(),
+                getCompletedTaskCount(), getSubmittedTaskCount(),
+                getCallerRunsCount(), getStealCount());
+    }
+}
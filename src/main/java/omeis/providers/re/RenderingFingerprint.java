@@ -0,0 +1,148 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Accumulates the values determining a rendered image into a
+ * <i>SHA-1</i> digest. Each value is written with a fixed width or a length
+ * prefix so that distinct sequences of values cannot produce the same
+ * input to the digest.
+ *
+ * @since 5.5
+ */
+final class RenderingFingerprint {
+
+    /** The digits of the hexadecimal representation. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** The digest the values are written to. */
+    private final MessageDigest digest;
+
+    /** Used to write the fixed width values. */
+    private final byte[] scratch = new byte[8];
+
+    /** Creates a new instance. */
+    RenderingFingerprint()
+    {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds the specified value.
+     *
+     * @param value The value to add.
+     * @return This object.
+     */
+    RenderingFingerprint add(long value)
+    {
+        for (int i = 7; i >= 0; i--) {
+            scratch[i] = (byte) value;
+            value >>>= 8;
+        }
+        digest.update(scratch, 0, 8);
+        return this;
+    }
+
+    /**
+     * Adds the specified value.
+     *
+     * @param value The value to add.
+     * @return This object.
+     */
+    RenderingFingerprint add(int value)
+    {
+        scratch[0] = (byte) (value >>> 24);
+        scratch[1] = (byte) (value >>> 16);
+        scratch[2] = (byte) (value >>> 8);
+        scratch[3] = (byte) value;
+        digest.update(scratch, 0, 4);
+        return this;
+    }
+
+    /**
+     * Adds the specified value.
+     *
+     * @param value The value to add.
+     * @return This object.
+     */
+    RenderingFingerprint add(boolean value)
+    {
+        digest.update((byte) (value ? 1 : 0));
+        return this;
+    }
+
+    /**
+     * Adds the specified value, <code>null</code> being distinct from any
+     * number.
+     *
+     * @param value The value to add or <code>null</code>.
+     * @return This object.
+     */
+    RenderingFingerprint add(Number value)
+    {
+        if (value == null) {
+            return add(false);
+        }
+        add(true);
+        return add(Double.doubleToLongBits(value.doubleValue()));
+    }
+
+    /**
+     * Adds the specified value, <code>null</code> being distinct from any
+     * string.
+     *
+     * @param value The value to add or <code>null</code>.
+     * @return This object.
+     */
+    RenderingFingerprint add(String value)
+    {
+        if (value == null) {
+            return add(-1);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        add(bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    /**
+     * Adds the specified values.
+     *
+     * @param values The values to add.
+     * @return This object.
+     */
+    RenderingFingerprint add(byte[] values)
+    {
+        add(values.length);
+        digest.update(values);
+        return this;
+    }
+
+    /**
+     * Completes the digest and returns its hexadecimal representation. This
+     * object must not be used afterwards.
+     *
+     * @return See above.
+     */
+    String finish()
+    {
+        byte[] hash = digest.digest();
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -44,6 +44,12 @@ public class RenderingStats
      */
     private Map<Integer, Long> ioTime;
 
+    /** The number of rendering buffers allocated. */
+    private int allocatedBuffers;
+
+    /** The number of rendering buffers taken from a pool. */
+    private int pooledBuffers;
+
     /** The time that it took to transform the pixels data into an image. */
     private long renderingTime;
 
@@ -114,6 +120,34 @@ public class RenderingStats
         mallocTime += System.currentTimeMillis();
     }
 
+    /** Notifies the allocation of a new rendering buffer. */
+    public void allocateBuffer() {
+        allocatedBuffers++;
+    }
+
+    /** Notifies that a rendering buffer was taken from a pool. */
+    public void reuseBuffer() {
+        pooledBuffers++;
+    }
+
+    /**
+     * Returns the number of rendering buffers allocated.
+     *
+     * @return See above.
+     */
+    public int getAllocatedBuffers() {
+        return allocatedBuffers;
+    }
+
+    /**
+     * Returns the number of rendering buffers taken from a pool.
+     *
+     * @return See above.
+     */
+    public int getPooledBuffers() {
+        return pooledBuffers;
+    }
+
     // NOTE: The startMalloc/endMalloc can be called multiple times in the
     // HSBStrategy -- if several RGB buffers are allocated.
     // So we're tracking the series:
@@ -202,9 +236,12 @@ public class RenderingStats
     				context.getImageSize(plane),
     				context.getRenderingDef().getModel().getValue());
     	a += String.format(
-    			"TIMES (ms) ---- Memory Allocation: %d I/O: %s " +
+    			"TIMES (ms) ---- Memory Allocation: %d (buffers " +
+    			"allocated: %d pooled: %d) I/O: %s " +
     			"Rendering: %d Total: %d\n",
     				mallocTime,
+    				allocatedBuffers,
+    				pooledBuffers,
     				getIoTimeString(),
     				renderingTime,
     				totalTime);
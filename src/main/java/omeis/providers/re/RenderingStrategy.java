@@ -8,11 +8,14 @@
 package omeis.providers.re;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ome.model.core.Pixels;
+import ome.model.display.ChannelBinding;
 import ome.model.enums.RenderingModel;
 
 import omeis.providers.re.data.PlaneDef;
@@ -65,10 +68,8 @@ abstract class RenderingStrategy {
      */
     protected int sizeX2;
     
-    /**
-     * The maximum number of tasks that we will be using during rendering.
-     */
-    protected int maxTasks;
+    /** The threads used to render the regions of a plane concurrently. */
+    protected final RenderingExecutor executor;
 
     /**
      * Checks if the passed region is valid.
@@ -148,16 +149,24 @@ abstract class RenderingStrategy {
 
     /**
      * Constructs a strategy.
+     *
+     * @param executor The threads used to render concurrently.
+     *                 Mustn't be <code>null</code>.
      */
-    protected RenderingStrategy()
+    protected RenderingStrategy(RenderingExecutor executor)
     {
-    	maxTasks = Runtime.getRuntime().availableProcessors();
+        if (executor == null) {
+            throw new NullPointerException("No rendering executor.");
+        }
+        this.executor = executor;
     }
 
     /**
      * Returns an RGB buffer for usage. Note that the buffer is reallocated
-     * upon each call. Should only be called within the context of a
-     * "render" operation as it requires a {@link renderer}.
+     * upon each call unless the renderer has a
+     * {@link Renderer#getBufferPool() buffer pool}. Should only be called
+     * within the context of a "render" operation as it requires a
+     * {@link renderer}.
      * 
      * @param x1 The size to allocate along the X1-axis.
      * @param x2 The size to allocate along the X2-axis.
@@ -166,40 +175,63 @@ abstract class RenderingStrategy {
     protected RGBBuffer getRgbBuffer()
     {
     	RenderingStats stats = renderer.getStats();
+    	RenderBufferPool pool = renderer.getBufferPool();
     	stats.startMalloc();
-    	RGBBuffer buf = new RGBBuffer(sizeX1, sizeX2);
+    	RGBBuffer buf;
+    	if (pool != null) {
+    	    buf = pool.getRGBBuffer(sizeX1, sizeX2, stats);
+    	} else {
+    	    buf = new RGBBuffer(sizeX1, sizeX2);
+    	    stats.allocateBuffer();
+    	}
 		stats.endMalloc();
 		return buf;
     }
 
 	/**
      * Returns an RGB integer buffer for usage. Note that the buffer is
-     * reallocated upon each call. Should only be called within the context of
-     * a "render" operation as it requires a {@link renderer}.
+     * reallocated upon each call unless the renderer has a buffer pool.
+     * Should only be called within the context of a "render" operation as it
+     * requires a {@link renderer}.
      * 
      * @return See above.
      */
 	protected RGBIntBuffer getIntBuffer()
     {
     	RenderingStats stats = renderer.getStats();
+    	RenderBufferPool pool = renderer.getBufferPool();
     	stats.startMalloc();
-    	RGBIntBuffer buf =  new RGBIntBuffer(sizeX1, sizeX2);
+    	RGBIntBuffer buf;
+    	if (pool != null) {
+    	    buf = pool.getIntBuffer(sizeX1, sizeX2, stats);
+    	} else {
+    	    buf = new RGBIntBuffer(sizeX1, sizeX2);
+    	    stats.allocateBuffer();
+    	}
     	stats.endMalloc();
     	return buf;
     }
 	
     /**
      * Returns an RGBA integer buffer for usage. Note that the buffer is
-     * reallocated upon each call. Should only be called within the context of
-     * a "render" operation as it requires a {@link renderer}.
+     * reallocated upon each call unless the renderer has a buffer pool.
+     * Should only be called within the context of a "render" operation as it
+     * requires a {@link renderer}.
      * 
      * @return See above.
      */
 	protected RGBAIntBuffer getRGBAIntBuffer()
     {
     	RenderingStats stats = renderer.getStats();
+    	RenderBufferPool pool = renderer.getBufferPool();
     	stats.startMalloc();
-    	RGBAIntBuffer buf =  new RGBAIntBuffer(sizeX1, sizeX2);
+    	RGBAIntBuffer buf;
+    	if (pool != null) {
+    	    buf = pool.getRGBAIntBuffer(sizeX1, sizeX2, stats);
+    	} else {
+    	    buf = new RGBAIntBuffer(sizeX1, sizeX2);
+    	    stats.allocateBuffer();
+    	}
     	stats.endMalloc();
     	return buf;
     }
@@ -215,17 +247,34 @@ abstract class RenderingStrategy {
      * @return A strategy suitable for the specified model.
      */
     static RenderingStrategy makeNew(RenderingModel model) {
+        return makeNew(model, RenderingExecutor.getDefault());
+    }
+
+    /**
+     * Factory method to retrieve a concrete strategy. The strategy is selected
+     * according to the model that dictates how transformed raw data is to be
+     * mapped into a color space. This model is identified by the passed
+     * argument.
+     * 
+     * @param model
+     *            Identifies the color space model.
+     * @param executor
+     *            The threads used by the strategy to render concurrently.
+     * @return A strategy suitable for the specified model.
+     */
+    static RenderingStrategy makeNew(RenderingModel model,
+            RenderingExecutor executor) {
         String value = model.getValue();
         if (value.equals(Renderer.MODEL_GREYSCALE)) {
-            return new GreyScaleStrategy();
+            return new GreyScaleStrategy(executor);
         } else if (value.equals(Renderer.MODEL_HSB)) {
-            return new HSBStrategy();
+            return new HSBStrategy(executor);
         } else if (value.equals(Renderer.MODEL_RGB)) {
         	//return new RGBStrategy();
-        	return new HSBStrategy();
+        	return new HSBStrategy(executor);
         }
         log.warn("WARNING: Unknown model '" + value + "' using greyscale.");
-        return new GreyScaleStrategy();
+        return new GreyScaleStrategy(executor);
     }
 
     /**
@@ -322,6 +371,24 @@ abstract class RenderingStrategy {
     throws IOException, QuantizationException;
 
 
+    /**
+     * Renders the plane selected by <code>pd</code> into the specified
+     * target, as {@link #renderAsPackedInt(Renderer, PlaneDef)} does into a
+     * new buffer.
+     *
+     * @param ctx The renderer.
+     * @param pd Selects the plane to render.
+     * @param target Where to store the image.
+     * @throws IOException If an error occurred while trying to pull out data
+     *                     from the pixels data repository.
+     * @throws QuantizationException If an error occurred while quantizing
+     *                               the pixels raw data.
+     * @throws IllegalArgumentException If the image does not fit into the
+     *                                  target.
+     */
+    abstract void renderInto(Renderer ctx, PlaneDef pd, RenderTarget target)
+        throws IOException, QuantizationException;
+
     /**
      * Returns the size, in bytes, of the {@link RGBBuffer} that would be
      * rendered from the plane selected by <code>pd</code> in a pixels set
@@ -355,4 +422,24 @@ abstract class RenderingStrategy {
      */
     abstract String getPlaneDimsAsString(PlaneDef pd, Pixels pixels);
 
+    /**
+     * Returns the indices of the channels whose data is read to render a
+     * plane with the current settings of the rendering context. All the
+     * active channels are read by default.
+     *
+     * @param ctx The rendering context.
+     * @return See above.
+     */
+    List<Integer> getChannelsToRead(Renderer ctx)
+    {
+        ChannelBinding[] channelBindings = ctx.getChannelBindings();
+        List<Integer> channels = new ArrayList<Integer>();
+        for (int i = 0; i < channelBindings.length; i++) {
+            if (channelBindings[i].getActive()) {
+                channels.add(i);
+            }
+        }
+        return channels;
+    }
+
 }
@@ -0,0 +1,126 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.util.concurrent.RecursiveAction;
+
+import omeis.providers.re.quantum.QuantizationException;
+
+/**
+ * Fork/join decomposition of the rows of a plane. The band is halved until
+ * it is no bigger than the grain size, so that remainder rows are absorbed
+ * by the split and idle workers can steal the pending halves.
+ *
+ * @since 5.5
+ */
+class RowBandTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of pixel values (pixels times channels) a leaf task should
+     * process to pay for the cost of scheduling it.
+     */
+    static final int TARGET_WORK = 1 << 15;
+
+    /** Renders the bands. */
+    private final BandRenderer renderer;
+
+    /** The first row of the band. */
+    private final int x2Start;
+
+    /** The row after the last row of the band. */
+    private final int x2End;
+
+    /** The maximum number of rows rendered by a leaf task. */
+    private final int grain;
+
+    /**
+     * Wraps a {@link QuantizationException} so that it can be thrown out of
+     * {@link #compute()}.
+     */
+    static class QuantizationFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param cause The exception to wrap.
+         */
+        QuantizationFailure(QuantizationException cause)
+        {
+            super(cause);
+        }
+    }
+
+    /**
+     * Returns the number of rows a leaf task should render.
+     *
+     * @param sizeX1 The number of pixels in a row.
+     * @param channels The number of channels composited per pixel.
+     * @return See above.
+     */
+    static int grainSize(int sizeX1, int channels)
+    {
+        long work = (long) Math.max(1, sizeX1) * Math.max(1, channels);
+        return (int) Math.max(1, TARGET_WORK / work);
+    }
+
+    /**
+     * Looks for a {@link QuantizationException} in the causes of the
+     * specified exception.
+     *
+     * @param e The exception to handle.
+     * @return The exception or <code>null</code> if none.
+     */
+    static QuantizationException findQuantizationException(Throwable e)
+    {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof QuantizationException) {
+                return (QuantizationException) t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param renderer Renders the bands.
+     * @param x2Start The first row of the band.
+     * @param x2End The row after the last row of the band.
+     * @param grain The maximum number of rows rendered by a leaf task.
+     */
+    RowBandTask(BandRenderer renderer, int x2Start, int x2End, int grain)
+    {
+        this.renderer = renderer;
+        this.x2Start = x2Start;
+        this.x2End = x2End;
+        this.grain = Math.max(1, grain);
+    }
+
+    /**
+     * Renders the band or splits it in two.
+     *
+     * @see RecursiveAction#compute()
+     */
+    @Override
+    protected void compute()
+    {
+        int rows = x2End - x2Start;
+        if (rows <= grain) {
+            try {
+                renderer.renderBand(x2Start, x2End);
+            } catch (QuantizationException e) {
+                throw new QuantizationFailure(e);
+            }
+            return;
+        }
+        int middle = x2Start + rows / 2;
+        invokeAll(new RowBandTask(renderer, x2Start, middle, grain),
+                new RowBandTask(renderer, middle, x2End, grain));
+    }
+}
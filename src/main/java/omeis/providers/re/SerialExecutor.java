@@ -0,0 +1,98 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the tasks submitted to it one after the other, in the order they were
+ * submitted, on the threads of another executor, e.g. to read a pixel
+ * buffer, which is not thread-safe, with the threads shared by all the
+ * renderers instead of a thread of its own.
+ *
+ * @since 5.5
+ */
+final class SerialExecutor implements Executor {
+
+    /** The executor running the tasks. */
+    private final Executor executor;
+
+    /** The tasks waiting to run. */
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+    /** Whether or not a task is submitted to the executor. */
+    private boolean running;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param executor The executor running the tasks.
+     */
+    SerialExecutor(Executor executor)
+    {
+        if (executor == null) {
+            throw new NullPointerException("No executor.");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Queues the specified task after the ones already submitted.
+     *
+     * @param task The task to run.
+     */
+    public synchronized void execute(Runnable task)
+    {
+        if (task == null) {
+            throw new NullPointerException("No task.");
+        }
+        tasks.add(task);
+        if (!running) {
+            scheduleNext();
+        }
+    }
+
+    /** Submits the next task to the executor, if any. */
+    private synchronized void scheduleNext()
+    {
+        final Runnable task = tasks.poll();
+        running = task != null;
+        if (!running) {
+            notifyAll();
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run()
+                {
+                    try {
+                        task.run();
+                    } finally {
+                        scheduleNext();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // The executor rejected the task, the others will not run.
+            tasks.clear();
+            running = false;
+            notifyAll();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until all the tasks submitted have run.
+     *
+     * @throws InterruptedException If the current thread was interrupted.
+     */
+    synchronized void awaitIdle() throws InterruptedException
+    {
+        while (running) {
+            wait();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re;
+
+import java.io.IOException;
+
+import omeis.providers.re.data.RegionDef;
+
+/**
+ * Receives the tiles rendered by a {@link PyramidExporter}, e.g. to write
+ * them to a viewer cache. The levels are exported one after the other and
+ * the tiles of a level row after row, from left to right.
+ *
+ * @since 5.5
+ */
+public interface TileSink {
+
+    /**
+     * Signals that the tiles of the specified resolution level are about to
+     * be exported.
+     *
+     * @param level The resolution level.
+     * @param sizeX The number of pixels along the <i>X</i>-axis.
+     * @param sizeY The number of pixels along the <i>Y</i>-axis.
+     * @param tileWidth The width of the tiles, except for the last column.
+     * @param tileHeight The height of the tiles, except for the last row.
+     * @throws IOException If the level cannot be handled, in which case the
+     *                     export stops.
+     */
+    void startLevel(int level, int sizeX, int sizeY, int tileWidth,
+            int tileHeight)
+        throws IOException;
+
+    /**
+     * Handles a rendered tile. The image must not be accessed once this
+     * method returns as its array may be reused.
+     *
+     * @param level The resolution level.
+     * @param column The column of the tile.
+     * @param row The row of the tile.
+     * @param region The region of the level covered by the tile.
+     * @param argb The packed <i>ARGB</i> image of the tile.
+     * @throws IOException If the tile cannot be handled, in which case the
+     *                     export stops.
+     */
+    void writeTile(int level, int column, int row, RegionDef region,
+            int[] argb)
+        throws IOException;
+}
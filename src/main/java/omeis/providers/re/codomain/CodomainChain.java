@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import ome.util.mem.WeakValueRegistry;
 import omeis.providers.re.quantum.QuantumStrategy;
 
 /**
@@ -40,7 +41,14 @@ import omeis.providers.re.quantum.QuantumStrategy;
  */
 public class CodomainChain {
 
-    /** Codomain lookup table. */
+    /**
+     * The lookup tables shared by the chains, by codomain interval and
+     * sequence of transformations.
+     */
+    private static final WeakValueRegistry<List<Object>, int[]> LUTS =
+            new WeakValueRegistry<List<Object>, int[]>();
+
+    /** Codomain lookup table. Shared, so never modified once built. */
     private int[] LUT;
 
     /**
@@ -55,9 +63,42 @@ public class CodomainChain {
     /** The upper bound of the codomain interval. */
     private int intervalEnd;
 
+    /** Changed every time the lookup table is built. */
+    private volatile int version;
+
+    /**
+     * Returns the key identifying the lookup table of this chain or
+     * <code>null</code> if the table cannot be shared. The table can be
+     * shared if the transformations have no parameters other than the
+     * codomain interval.
+     *
+     * @return See above.
+     */
+    private List<Object> getSharingKey() {
+        List<Object> key = new ArrayList<Object>(chain.size() + 2);
+        key.add(intervalStart);
+        key.add(intervalEnd);
+        for (CodomainMapContext ctx : chain) {
+            if (ctx.getClass() != ReverseIntensityContext.class) {
+                return null;
+            }
+            key.add(ctx.getClass());
+        }
+        return key;
+    }
+
     /** Builds the lookup table. */
     private void buildLUT() {
-        LUT = new int[intervalEnd - intervalStart + 1];
+        version++;
+        List<Object> key = getSharingKey();
+        if (key != null) {
+            int[] shared = LUTS.get(key);
+            if (shared != null) {
+                LUT = shared;
+                return;
+            }
+        }
+        int[] lut = new int[intervalEnd - intervalStart + 1];
         CodomainMap map;
         CodomainMapContext ctx;
         int v;
@@ -71,8 +112,9 @@ public class CodomainChain {
                 map.setContext(ctx);
                 v = map.transform(v);
             }
-            LUT[x - intervalStart] = v;
+            lut[x - intervalStart] = v;
         }
+        LUT = key == null ? lut : LUTS.intern(key, lut);
     }
 
     /**
@@ -326,6 +368,16 @@ public class CodomainChain {
         return LUT[y - intervalStart];
     }
 
+    /**
+     * Returns a number changed every time the interval or the sequence of
+     * transformations changes, i.e. every time the lookup table is built.
+     * 
+     * @return See above.
+     */
+    public int getVersion() {
+        return version;
+    }
+
     /**
      * Returns <code>true</code> if some transformations need to be applied,
      * <code>false</code> otherwise.
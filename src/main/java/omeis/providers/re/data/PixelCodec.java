@@ -0,0 +1,177 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import ome.util.PixelData;
+import ome.model.enums.PixelsType;
+
+/**
+ * Lossless codec for the pixel data of the 8-bit and 16-bit integer types.
+ * Each value is replaced by its difference with the previous one, mapped
+ * onto the positive integers (<i>zigzag</i> encoding) so that small
+ * differences of either sign are small numbers, and written in as few
+ * half-bytes as needed, three bits per half-byte, the fourth bit indicating
+ * whether more half-bytes follow. Neighbouring pixels having close values,
+ * most differences fit in one or two half-bytes.
+ *
+ * @since 5.5
+ */
+final class PixelCodec {
+
+    /** The data compressed by the codec. */
+    static final class Encoded {
+
+        /** The type of the pixels. */
+        private final String type;
+
+        /** The byte order of the pixel data. */
+        private final ByteOrder order;
+
+        /** The number of bytes of the pixel data. */
+        private final int size;
+
+        /** The compressed values. */
+        private final byte[] bytes;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param type The type of the pixels.
+         * @param order The byte order of the pixel data.
+         * @param size The number of bytes of the pixel data.
+         * @param bytes The compressed values.
+         */
+        Encoded(String type, ByteOrder order, int size, byte[] bytes)
+        {
+            this.type = type;
+            this.order = order;
+            this.size = size;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the number of bytes of the compressed values.
+         *
+         * @return See above.
+         */
+        int getWeight()
+        {
+            return bytes.length;
+        }
+    }
+
+    /** Prevents instantiation. */
+    private PixelCodec() {}
+
+    /**
+     * Returns <code>true</code> if the codec supports the specified type,
+     * <code>false</code> otherwise.
+     *
+     * @param type The type of the pixels.
+     * @return See above.
+     */
+    static boolean supports(String type)
+    {
+        return PixelsType.VALUE_INT8.equals(type)
+                || PixelsType.VALUE_UINT8.equals(type)
+                || PixelsType.VALUE_INT16.equals(type)
+                || PixelsType.VALUE_UINT16.equals(type);
+    }
+
+    /**
+     * Writes a half-byte, the high half of a byte first.
+     *
+     * @param out The array to write to.
+     * @param pos The index of the half-byte.
+     * @param nibble The value of the half-byte.
+     * @return The index of the next half-byte.
+     */
+    private static int write(byte[] out, int pos, int nibble)
+    {
+        if ((pos & 1) == 0) {
+            out[pos >> 1] = (byte) (nibble << 4);
+        } else {
+            out[pos >> 1] |= nibble;
+        }
+        return pos + 1;
+    }
+
+    /**
+     * Compresses the specified pixel data.
+     *
+     * @param data The data to compress.
+     * @return See above or <code>null</code> if the type is not supported
+     *         or the data does not compress.
+     */
+    static Encoded encode(PixelData data)
+    {
+        String type = data.getPixelsType();
+        if (!supports(type)) return null;
+        ByteBuffer src = data.getData();
+        int bpp = data.bytesPerPixel();
+        boolean signed = data.isSigned();
+        int n = src.capacity() / bpp;
+        // A difference takes at most three half-bytes for 8-bit data, six
+        // for 16-bit data.
+        byte[] out = new byte[(n * 3 * bpp + 1) / 2];
+        int pos = 0, previous = 0, v;
+        for (int i = 0; i < n; i++) {
+            if (bpp == 1) {
+                v = signed ? src.get(i) : src.get(i) & 0xFF;
+            } else {
+                v = signed ? src.getShort(2 * i) : src.getShort(2 * i) & 0xFFFF;
+            }
+            int d = v - previous;
+            previous = v;
+            int z = (d << 1) ^ (d >> 31);
+            while ((z & ~0x7) != 0) {
+                pos = write(out, pos, 0x8 | (z & 0x7));
+                z >>>= 3;
+            }
+            pos = write(out, pos, z);
+        }
+        int length = (pos + 1) / 2;
+        if (length >= src.capacity()) return null;
+        return new Encoded(type, src.order(), src.capacity(),
+                Arrays.copyOf(out, length));
+    }
+
+    /**
+     * Decompresses the specified data into a new buffer.
+     *
+     * @param encoded The compressed data.
+     * @return See above.
+     */
+    static PixelData decode(Encoded encoded)
+    {
+        ByteBuffer dst = ByteBuffer.allocate(encoded.size);
+        dst.order(encoded.order);
+        PixelData data = new PixelData(encoded.type, dst);
+        int bpp = data.bytesPerPixel();
+        int n = encoded.size / bpp;
+        byte[] in = encoded.bytes;
+        int pos = 0, value = 0;
+        for (int i = 0; i < n; i++) {
+            int z = 0, shift = 0, b;
+            do {
+                b = (in[pos >> 1] >> ((~pos & 1) << 2)) & 0xF;
+                pos++;
+                z |= (b & 0x7) << shift;
+                shift += 3;
+            } while (b > 0x7);
+            value += (z >>> 1) ^ -(z & 1);
+            if (bpp == 1) {
+                dst.put(i, (byte) value);
+            } else {
+                dst.putShort(2 * i, (short) value);
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re.data;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import loci.formats.FormatTools;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+
+/**
+ * Downsamples the raw data of a plane by replacing each square box of
+ * <code>factor x factor</code> pixels by the mean of its values, the pixels
+ * of the incomplete boxes along the right and bottom edges being dropped as
+ * a stride would. Boxes of equal size being averaged, binning by
+ * <code>2</code> twice gives the same values as binning by <code>4</code>
+ * as long as the intermediate means are not rounded, so that the levels of
+ * a pyramid kept as {@link #EXACT_TYPE doubles} can be computed from one
+ * another. The bands of rows are binned in parallel.
+ *
+ * @since 5.5
+ */
+final class PlaneBinning {
+
+    /**
+     * The type of the data holding the means of integer values without
+     * rounding them.
+     */
+    static final String EXACT_TYPE = PixelsType.VALUE_DOUBLE;
+
+    /** The number of values a band of rows should read. */
+    private static final int TARGET_WORK = 1 << 16;
+
+    /** Prevents instantiation. */
+    private PlaneBinning() {}
+
+    /**
+     * Writes a value.
+     *
+     * @param dst The buffer to write into.
+     * @param index The index of the first byte of the value.
+     * @param bpp The number of bytes per value.
+     * @param isFloat Whether or not the values are floating point.
+     * @param value The value to write.
+     */
+    private static void write(ByteBuffer dst, int index, int bpp,
+            boolean isFloat, double value)
+    {
+        if (isFloat) {
+            if (bpp == 4) {
+                dst.putFloat(index, (float) value);
+            } else {
+                dst.putDouble(index, value);
+            }
+            return;
+        }
+        // The mean of integers fits in their type, rounding included.
+        long v = Math.round(value);
+        switch (bpp) {
+            case 1:
+                dst.put(index, (byte) v);
+                break;
+            case 2:
+                dst.putShort(index, (short) v);
+                break;
+            default:
+                dst.putInt(index, (int) v);
+        }
+    }
+
+    /**
+     * Bins the rows <code>[y0, y1)</code> of the destination.
+     *
+     * @param src The data to bin.
+     * @param dst The binned data.
+     * @param srcSizeX The number of pixels of a row of the source.
+     * @param sizeX The number of pixels of a row of the destination.
+     * @param factor The size of a box.
+     * @param y0 The first row of the destination to bin.
+     * @param y1 The row after the last row to bin.
+     */
+    private static void binRows(PixelData src, PixelData dst, int srcSizeX,
+            int sizeX, int factor, int y0, int y1)
+    {
+        ByteBuffer buf = dst.getData();
+        int bpp = dst.bytesPerPixel();
+        boolean isFloat = dst.isFloat();
+        double area = factor * factor;
+        for (int y = y0; y < y1; y++) {
+            for (int x = 0; x < sizeX; x++) {
+                double sum = 0;
+                int row = y * factor * srcSizeX + x * factor;
+                for (int j = 0; j < factor; j++, row += srcSizeX) {
+                    for (int i = 0; i < factor; i++) {
+                        sum += src.getPixelValue(row + i);
+                    }
+                }
+                write(buf, (y * sizeX + x) * bpp, bpp, isFloat, sum / area);
+            }
+        }
+    }
+
+    /**
+     * Bins the specified data. The calling thread bins bands of rows along
+     * with the threads of the executor, so that the data is binned even if
+     * the executor does not run the tasks submitted.
+     *
+     * @param src The data of a plane.
+     * @param sizeX The number of pixels along the <i>X</i>-axis.
+     * @param sizeY The number of pixels along the <i>Y</i>-axis.
+     * @param factor The size of a box.
+     * @param type The pixels type of the binned data, e.g. the type of the
+     *             source or the {@link #EXACT_TYPE exact} one.
+     * @param executor Bins bands of rows in parallel or <code>null</code> to
+     *                 bin all the rows in the calling thread.
+     * @return The binned data, of
+     *         <code>(sizeX / factor) x (sizeY / factor)</code> pixels, in
+     *         the byte order of the source.
+     */
+    static PixelData bin(final PixelData src, final int sizeX, int sizeY,
+            final int factor, String type, Executor executor)
+    {
+        final int binnedX = sizeX / factor;
+        final int binnedY = sizeY / factor;
+        ByteBuffer buf = ByteBuffer.allocate(binnedX * binnedY
+                * FormatTools.getBytesPerPixel(
+                        FormatTools.pixelTypeFromString(type)));
+        buf.order(src.getData().order());
+        final PixelData dst = new PixelData(type, buf);
+        long rowWork = Math.max(1L, (long) binnedX * factor * factor);
+        final int grain = (int) Math.max(1,
+                Math.min(binnedY, TARGET_WORK / rowWork));
+        final int bands = (binnedY + grain - 1) / grain;
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(bands);
+        final AtomicReference<RuntimeException> failure =
+                new AtomicReference<RuntimeException>();
+        Runnable worker = new Runnable() {
+            public void run()
+            {
+                int band;
+                while ((band = next.getAndIncrement()) < bands) {
+                    try {
+                        int y0 = band * grain;
+                        binRows(src, dst, sizeX, binnedX, factor, y0,
+                                Math.min(y0 + grain, binnedY));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+        if (executor != null) {
+            int helpers = Math.min(bands,
+                    Runtime.getRuntime().availableProcessors()) - 1;
+            try {
+                for (int i = 0; i < helpers; i++) {
+                    executor.execute(worker);
+                }
+            } catch (RejectedExecutionException e) {
+                // The calling thread bins the remaining bands.
+            }
+        }
+        worker.run();
+        // Only the bands taken by the other threads may still be binned.
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return dst;
+    }
+}
@@ -0,0 +1,720 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re.data;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ome.util.PixelData;
+
+/**
+ * Process-wide cache of the raw pixel data read by the {@link PlaneFactory},
+ * so that re-rendering a plane after a change of the rendering settings does
+ * not read the pixels again.
+ * <p>
+ * The data is keyed by pixels set, resolution level, plane, channel and
+ * region. The least recently used entries are evicted once the total number
+ * of bytes cached exceeds the capacity; data larger than the capacity is
+ * never cached. The cached data is shared between the renderers and must
+ * therefore never be modified.
+ * </p>
+ * <p>
+ * The cache is not notified when pixels are written: whoever modifies the
+ * pixels of a set must {@link #invalidate(long) invalidate} its data. The
+ * {@link #getDefault() default} instance is therefore disabled unless its
+ * capacity is set through the {@link #SIZE_PROPERTY} system property.
+ * </p>
+ * <p>
+ * The cache can have a second tier holding the evicted data compressed by a
+ * lossless {@link PixelCodec codec}, so that many more planes of the 8-bit and
+ * 16-bit integer types are kept in the same memory. The evicted data is
+ * compressed by a background thread, not by the renderer evicting it, and
+ * can still be found while it waits to be compressed. The data found in the
+ * second tier is decompressed into a new buffer and moved back to the first
+ * tier. The second tier is disabled if the first one is.
+ * The {@link #getDefault() default} instance is configured through the
+ * {@link #SIZE_PROPERTY} and {@link #COMPRESSED_SIZE_PROPERTY} system
+ * properties.
+ * </p>
+ *
+ * @since 5.5
+ */
+public class PlaneCache {
+
+    /** The logger for this particular class */
+    private static Logger log = LoggerFactory.getLogger(PlaneCache.class);
+
+    /** System property holding the capacity of the cache in megabytes. */
+    public static final String SIZE_PROPERTY = "omero.render.plane_cache_size";
+
+    /**
+     * The default capacity of the cache in megabytes, <code>0</code> as the
+     * cache must be opted in.
+     */
+    public static final int DEFAULT_SIZE = 0;
+
+    /**
+     * System property holding the capacity of the compressed tier of the
+     * cache in megabytes.
+     */
+    public static final String COMPRESSED_SIZE_PROPERTY =
+            "omero.render.plane_cache_compressed_size";
+
+    /** The default capacity of the compressed tier in megabytes. */
+    public static final int DEFAULT_COMPRESSED_SIZE = 256;
+
+    /** The shared instance, lazily created. */
+    private static PlaneCache defaultCache;
+
+    /** The shared thread compressing the evicted data, lazily created. */
+    private static Executor defaultCompressor;
+
+    /** The cached data, in access order. */
+    private final LinkedHashMap<Key, PixelData> entries =
+            new LinkedHashMap<Key, PixelData>(16, 0.75f, true);
+
+    /** The compressed data, in access order. */
+    private final LinkedHashMap<Key, PixelCodec.Encoded> compressed =
+            new LinkedHashMap<Key, PixelCodec.Encoded>(16, 0.75f, true);
+
+    /**
+     * The evicted data waiting to be compressed, until the compressed data
+     * replaces it.
+     */
+    private final Map<Key, PixelData> pending = new HashMap<Key, PixelData>();
+
+    /**
+     * The generation of the data of the pixels sets invalidated, by pixels
+     * set. The data read from a tier outside of the lock is only put back if
+     * the generation of its pixels set did not change meanwhile.
+     */
+    private final Map<Long, Long> generations = new HashMap<Long, Long>();
+
+    /** The generation of the data of all the pixels sets when cleared. */
+    private long clearGeneration;
+
+    /** The last generation given out. */
+    private long lastGeneration;
+
+    /** Compresses the evicted data. */
+    private final Executor compressor;
+
+    /** The maximum number of bytes cached. */
+    private final long capacity;
+
+    /** The maximum number of compressed bytes cached. */
+    private final long compressedCapacity;
+
+    /** The number of bytes cached. */
+    private long weight;
+
+    /** The number of compressed bytes cached. */
+    private long compressedWeight;
+
+    /** The number of bytes waiting to be compressed. */
+    private long pendingWeight;
+
+    /** The number of lookups that found the data. */
+    private long hits;
+
+    /** The number of lookups that found the data compressed. */
+    private long compressedHits;
+
+    /** The number of lookups that did not find the data. */
+    private long misses;
+
+    /** The time spent decompressing the data, in nanoseconds. */
+    private long decompressionTime;
+
+    /**
+     * Identifies the data read for a plane. The <i>z</i>-section is not part
+     * of the key of the <i>XZ</i> and <i>ZY</i> planes as the whole stack is
+     * read for them.
+     */
+    public static final class Key {
+
+        /** The identifier of the pixels set. */
+        private final long pixelsId;
+
+        /** The resolution level. */
+        private final int level;
+
+        /** The values identifying the plane and the region. */
+        private final int z, c, t, slice, stride, x, y, width, height;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param pixelsId The identifier of the pixels set.
+         * @param level The resolution level.
+         * @param planeDef The plane.
+         * @param channel The channel.
+         */
+        public Key(long pixelsId, int level, PlaneDef planeDef, int channel)
+        {
+            this.pixelsId = pixelsId;
+            this.level = level;
+            slice = planeDef.getSlice();
+            z = slice == PlaneDef.XY ? planeDef.getZ() : -1;
+            c = channel;
+            t = planeDef.getT();
+            stride = Math.max(0, planeDef.getStride());
+            RegionDef region = planeDef.getRegion();
+            if (region != null) {
+                x = region.getX();
+                y = region.getY();
+                width = region.getWidth();
+                height = region.getHeight();
+            } else {
+                x = 0;
+                y = 0;
+                width = -1;
+                height = -1;
+            }
+        }
+
+        /**
+         * Returns the identifier of the pixels set.
+         *
+         * @return See above.
+         */
+        public long getPixelsId()
+        {
+            return pixelsId;
+        }
+
+        /**
+         * Returns the channel.
+         *
+         * @return See above.
+         */
+        public int getChannel()
+        {
+            return c;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return pixelsId == k.pixelsId && level == k.level && z == k.z
+                    && c == k.c && t == k.t && slice == k.slice
+                    && stride == k.stride && x == k.x && y == k.y
+                    && width == k.width && height == k.height;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int h = (int) (pixelsId ^ (pixelsId >>> 32));
+            h = 31 * h + level;
+            h = 31 * h + z;
+            h = 31 * h + c;
+            h = 31 * h + t;
+            h = 31 * h + slice;
+            h = 31 * h + stride;
+            h = 31 * h + x;
+            h = 31 * h + y;
+            h = 31 * h + width;
+            return 31 * h + height;
+        }
+    }
+
+    /**
+     * Reads a capacity in megabytes from the system properties.
+     *
+     * @param name The name of the property.
+     * @param defaultValue The value to use if the property is not set or not
+     *                     valid.
+     * @return The capacity in bytes.
+     */
+    private static long getCapacityProperty(String name, int defaultValue)
+    {
+        int size = defaultValue;
+        String value = System.getProperty(name);
+        if (value != null) {
+            try {
+                size = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value '" + value + "' for " + name
+                        + ", using " + size);
+            }
+        }
+        return Math.max(0, size) * 1024L * 1024L;
+    }
+
+    /**
+     * Returns the shared instance, creating it from the system properties on
+     * first use.
+     *
+     * @return See above.
+     */
+    public static synchronized PlaneCache getDefault()
+    {
+        if (defaultCache == null) {
+            defaultCache = new PlaneCache(
+                    getCapacityProperty(SIZE_PROPERTY, DEFAULT_SIZE),
+                    getCapacityProperty(COMPRESSED_SIZE_PROPERTY,
+                            DEFAULT_COMPRESSED_SIZE));
+            log.info("Created plane cache: " + defaultCache);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Returns the shared thread compressing the evicted data, creating it on
+     * first use.
+     *
+     * @return See above.
+     */
+    private static synchronized Executor getDefaultCompressor()
+    {
+        if (defaultCompressor == null) {
+            defaultCompressor = Executors.newSingleThreadExecutor(
+                    new ThreadFactory() {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "plane-cache-compressor");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                }
+            });
+        }
+        return defaultCompressor;
+    }
+
+    /**
+     * Creates a new instance without compressed tier.
+     *
+     * @param capacity The maximum number of bytes cached. <code>0</code>
+     *                 disables the cache.
+     */
+    public PlaneCache(long capacity)
+    {
+        this(capacity, 0);
+    }
+
+    /**
+     * Creates a new instance compressing the evicted data on a shared
+     * background thread.
+     *
+     * @param capacity The maximum number of bytes cached. <code>0</code>
+     *                 disables the cache.
+     * @param compressedCapacity The maximum number of compressed bytes
+     *                           cached. <code>0</code> disables the
+     *                           compressed tier.
+     */
+    public PlaneCache(long capacity, long compressedCapacity)
+    {
+        this(capacity, compressedCapacity, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The maximum number of bytes cached. <code>0</code>
+     *                 disables the cache, the compressed tier included.
+     * @param compressedCapacity The maximum number of compressed bytes
+     *                           cached. <code>0</code> disables the
+     *                           compressed tier.
+     * @param compressor Compresses the evicted data or <code>null</code> to
+     *                   use a shared background thread.
+     */
+    public PlaneCache(long capacity, long compressedCapacity,
+            Executor compressor)
+    {
+        if (capacity < 0 || compressedCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity.");
+        }
+        this.capacity = capacity;
+        this.compressedCapacity = capacity == 0 ? 0 : compressedCapacity;
+        if (compressor == null && this.compressedCapacity > 0) {
+            compressor = getDefaultCompressor();
+        }
+        this.compressor = compressor;
+    }
+
+    /**
+     * Returns the number of bytes of the specified data.
+     *
+     * @param data The data.
+     * @return See above.
+     */
+    private static long weigh(PixelData data)
+    {
+        return data.getData().capacity();
+    }
+
+    /**
+     * Returns the generation of the data of the specified pixels set.
+     *
+     * @param pixelsId The identifier of the pixels set.
+     * @return See above.
+     */
+    private long getGeneration(long pixelsId)
+    {
+        Long generation = generations.get(pixelsId);
+        return generation == null ? clearGeneration
+                : Math.max(generation, clearGeneration);
+    }
+
+    /**
+     * Returns the cached data for the specified key, decompressing it if it
+     * is only found in the compressed tier.
+     *
+     * @param key The key of the data.
+     * @return See above or <code>null</code> if the data is not cached.
+     */
+    PixelData get(Key key)
+    {
+        PixelCodec.Encoded encoded;
+        PixelData data;
+        long generation;
+        synchronized (this) {
+            data = entries.get(key);
+            if (data != null) {
+                hits++;
+                return data;
+            }
+            generation = getGeneration(key.getPixelsId());
+            data = pending.remove(key);
+            if (data != null) {
+                // Evicted but not compressed yet, the compression is dropped.
+                hits++;
+                pendingWeight -= weigh(data);
+                encoded = null;
+            } else {
+                encoded = compressed.remove(key);
+                if (encoded == null) {
+                    misses++;
+                    return null;
+                }
+                compressedHits++;
+                compressedWeight -= encoded.getWeight();
+            }
+        }
+        if (encoded != null) {
+            // Decompress without holding the lock.
+            long start = System.nanoTime();
+            data = PixelCodec.decode(encoded);
+            long time = System.nanoTime() - start;
+            synchronized (this) {
+                decompressionTime += time;
+            }
+        }
+        return put(key, data, generation);
+    }
+
+    /**
+     * Caches the specified data unless data is already cached for the key.
+     * The data cached is returned, the callers should use it in place of the
+     * specified one. The data evicted is moved to the compressed tier.
+     *
+     * @param key The key of the data.
+     * @param data The data to cache.
+     * @return See above.
+     */
+    PixelData put(Key key, PixelData data)
+    {
+        return put(key, data, -1);
+    }
+
+    /**
+     * Caches the specified data unless data is already cached for the key or
+     * the pixels set was invalidated since the specified generation.
+     *
+     * @param key The key of the data.
+     * @param data The data to cache.
+     * @param generation The generation of the pixels set when the data was
+     *                   read or <code>-1</code> to ignore it.
+     * @return See above.
+     */
+    private PixelData put(Key key, PixelData data, long generation)
+    {
+        final List<Map.Entry<Key, PixelData>> evicted =
+                new ArrayList<Map.Entry<Key, PixelData>>();
+        synchronized (this) {
+            if (generation >= 0
+                    && generation != getGeneration(key.getPixelsId())) {
+                // Invalidated while the data was read.
+                return data;
+            }
+            PixelData existing = entries.get(key);
+            if (existing != null) return existing;
+            long w = weigh(data);
+            if (w > capacity) {
+                evict(key, data, evicted);
+            } else {
+                entries.put(key, data);
+                weight += w;
+                Iterator<Map.Entry<Key, PixelData>> i =
+                        entries.entrySet().iterator();
+                while (weight > capacity && i.hasNext()) {
+                    Map.Entry<Key, PixelData> e = i.next();
+                    weight -= weigh(e.getValue());
+                    i.remove();
+                    evict(e.getKey(), e.getValue(), evicted);
+                }
+            }
+        }
+        for (final Map.Entry<Key, PixelData> e : evicted) {
+            compressor.execute(new Runnable() {
+                public void run()
+                {
+                    compress(e.getKey(), e.getValue());
+                }
+            });
+        }
+        return data;
+    }
+
+    /**
+     * Queues the specified evicted data to be compressed if the compressed
+     * tier is enabled and supports it. At most the capacity of the cache is
+     * kept waiting, more data is dropped. To be called with the lock held.
+     *
+     * @param key The key of the data.
+     * @param data The evicted data.
+     * @param evicted The data to compress.
+     */
+    private void evict(Key key, PixelData data,
+            List<Map.Entry<Key, PixelData>> evicted)
+    {
+        if (compressedCapacity == 0
+                || !PixelCodec.supports(data.getPixelsType())) {
+            return;
+        }
+        long w = weigh(data);
+        if (pendingWeight > 0 && pendingWeight + w > capacity) return;
+        PixelData previous = pending.put(key, data);
+        if (previous != null) {
+            pendingWeight -= weigh(previous);
+        }
+        pendingWeight += w;
+        evicted.add(new SimpleImmutableEntry<Key, PixelData>(key, data));
+    }
+
+    /**
+     * Adds the specified evicted data to the compressed tier if it can be
+     * compressed and is still waiting to be, i.e. it was neither read back
+     * nor invalidated meanwhile.
+     *
+     * @param key The key of the data.
+     * @param data The data to compress.
+     */
+    private void compress(Key key, PixelData data)
+    {
+        // Compress without holding the lock.
+        PixelCodec.Encoded encoded = null;
+        try {
+            encoded = PixelCodec.encode(data);
+        } catch (RuntimeException e) {
+            log.warn("Cannot compress the data of " + key, e);
+        }
+        synchronized (this) {
+            if (pending.get(key) != data) return;
+            pending.remove(key);
+            pendingWeight -= weigh(data);
+            if (encoded == null || encoded.getWeight() > compressedCapacity) {
+                return;
+            }
+            PixelCodec.Encoded previous = compressed.put(key, encoded);
+            if (previous != null) {
+                compressedWeight -= previous.getWeight();
+            }
+            compressedWeight += encoded.getWeight();
+            Iterator<PixelCodec.Encoded> i = compressed.values().iterator();
+            while (compressedWeight > compressedCapacity && i.hasNext()) {
+                compressedWeight -= i.next().getWeight();
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the data cached for the specified pixels set. To be called
+     * when the pixels of the set are modified.
+     *
+     * @param pixelsId The identifier of the pixels set.
+     */
+    public synchronized void invalidate(long pixelsId)
+    {
+        generations.put(pixelsId, ++lastGeneration);
+        Iterator<Map.Entry<Key, PixelData>> i = entries.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<Key, PixelData> e = i.next();
+            if (e.getKey().getPixelsId() == pixelsId) {
+                weight -= weigh(e.getValue());
+                i.remove();
+            }
+        }
+        Iterator<Map.Entry<Key, PixelCodec.Encoded>> j =
+                compressed.entrySet().iterator();
+        while (j.hasNext()) {
+            Map.Entry<Key, PixelCodec.Encoded> e = j.next();
+            if (e.getKey().getPixelsId() == pixelsId) {
+                compressedWeight -= e.getValue().getWeight();
+                j.remove();
+            }
+        }
+        Iterator<Map.Entry<Key, PixelData>> k =
+                pending.entrySet().iterator();
+        while (k.hasNext()) {
+            Map.Entry<Key, PixelData> e = k.next();
+            if (e.getKey().getPixelsId() == pixelsId) {
+                pendingWeight -= weigh(e.getValue());
+                k.remove();
+            }
+        }
+    }
+
+    /** Removes all the cached data. */
+    public synchronized void clear()
+    {
+        entries.clear();
+        weight = 0;
+        compressed.clear();
+        compressedWeight = 0;
+        pending.clear();
+        pendingWeight = 0;
+        generations.clear();
+        clearGeneration = ++lastGeneration;
+    }
+
+    /**
+     * Returns the maximum number of bytes cached.
+     *
+     * @return See above.
+     */
+    public long getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Returns the maximum number of compressed bytes cached.
+     *
+     * @return See above, <code>0</code> if the compressed tier is disabled.
+     */
+    public long getCompressedCapacity()
+    {
+        return compressedCapacity;
+    }
+
+    /**
+     * Returns the number of bytes cached.
+     *
+     * @return See above.
+     */
+    public synchronized long getWeight()
+    {
+        return weight;
+    }
+
+    /**
+     * Returns the number of compressed bytes cached.
+     *
+     * @return See above.
+     */
+    public synchronized long getCompressedWeight()
+    {
+        return compressedWeight;
+    }
+
+    /**
+     * Returns the number of entries cached.
+     *
+     * @return See above.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of evicted entries waiting to be compressed.
+     *
+     * @return See above.
+     */
+    public synchronized int pendingSize()
+    {
+        return pending.size();
+    }
+
+    /**
+     * Returns the number of entries cached compressed.
+     *
+     * @return See above.
+     */
+    public synchronized int compressedSize()
+    {
+        return compressed.size();
+    }
+
+    /**
+     * Returns the number of lookups that found the data.
+     *
+     * @return See above.
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that found the data compressed.
+     *
+     * @return See above.
+     */
+    public synchronized long getCompressedHits()
+    {
+        return compressedHits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find the data.
+     *
+     * @return See above.
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the time spent decompressing the data, in nanoseconds.
+     *
+     * @return See above.
+     */
+    public synchronized long getDecompressionTime()
+    {
+        return decompressionTime;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "PlaneCache[capacity=" + capacity + ", weight=" + weight
+                + ", entries=" + entries.size() + ", compressedCapacity="
+                + compressedCapacity + ", compressedWeight="
+                + compressedWeight + ", compressedEntries="
+                + compressed.size() + ", hits=" + hits + ", compressedHits="
+                + compressedHits + ", misses=" + misses + "]";
+    }
+}
@@ -11,6 +11,7 @@ import ome.io.nio.DimensionsOutOfBoundsException;
 import ome.io.nio.PixelBuffer;
 import ome.model.core.Pixels;
 import ome.model.enums.PixelsType;
+import ome.util.PixelData;
 
 /**
  * 
@@ -173,6 +174,58 @@ public class PlaneFactory {
      */
     public static Plane2D createPlane(PlaneDef planeDef, int channel,
             Pixels pixels, PixelBuffer buffer) {
+        return createPlane(planeDef, channel, pixels, buffer, null);
+    }
+
+    /**
+     * Factory method to fetch plane data and create an object to access it.
+     * The data is first looked up in the specified cache and only read from
+     * the buffer if not cached, in which case it is added to the cache.
+     *
+     * @param planeDef
+     *            Defines the plane to be retrieved. Must not be null.
+     * @param channel
+     *            The wavelength at which data is to be fetched.
+     * @param pixels
+     *            The pixels from which the data is to be fetched.
+     * @param buffer
+     *            The pixels buffer from which the data is to be fetched.
+     * @param cache
+     *            The cache of the data or <code>null</code> to always read
+     *            the data from the buffer.
+     * @return A plane 2D object that encapsulates the actual plane pixels.
+     */
+    public static Plane2D createPlane(PlaneDef planeDef, int channel,
+            Pixels pixels, PixelBuffer buffer, PlaneCache cache) {
+        return createPlane(planeDef, channel, pixels, buffer, cache, null);
+    }
+
+    /**
+     * Factory method to fetch plane data and create an object to access it.
+     * The data is first looked up in the specified cache and only read from
+     * the buffer if not cached, in which case it is added to the cache. The
+     * data binned by the specified pyramid, if any, is not cached.
+     *
+     * @param planeDef
+     *            Defines the plane to be retrieved. Must not be null.
+     * @param channel
+     *            The wavelength at which data is to be fetched.
+     * @param pixels
+     *            The pixels from which the data is to be fetched.
+     * @param buffer
+     *            The pixels buffer from which the data is to be fetched.
+     * @param cache
+     *            The cache of the data or <code>null</code> to always read
+     *            the data from the buffer.
+     * @param pyramid
+     *            Bins the downsampled <i>XY</i> planes of the buffers
+     *            without resolution levels or <code>null</code> to decimate
+     *            them.
+     * @return A plane 2D object that encapsulates the actual plane pixels.
+     */
+    public static Plane2D createPlane(PlaneDef planeDef, int channel,
+            Pixels pixels, PixelBuffer buffer, PlaneCache cache,
+            PlanePyramid pyramid) {
         if (planeDef == null) {
             throw new NullPointerException("Expecting not null planeDef");
         } else if (pixels == null) {
@@ -181,6 +234,75 @@ public class PlaneFactory {
             throw new NullPointerException("Expecting not null buffer");
         }
 
+        // The binned data is not cached as the decimated data would be under
+        // the same key. Pixels sets not yet saved cannot be identified.
+        boolean binned = pyramid != null
+                && isBinned(planeDef, pixels, buffer);
+        PlaneCache.Key key = null;
+        if (cache != null && !binned && pixels.getId() != null) {
+            key = new PlaneCache.Key(pixels.getId(),
+                    buffer.getResolutionLevel(), planeDef, channel);
+            PixelData data = cache.get(key);
+            if (data != null) {
+                return new Plane2D(planeDef, pixels, data);
+            }
+        }
+        PixelData data;
+        if (binned && planeDef.getRegion() == null) {
+            data = pyramid.read(planeDef, channel, pixels, buffer);
+        } else {
+            data = readData(planeDef, channel, pixels, buffer,
+                    binned ? pyramid : null);
+        }
+        if (data == null) {
+            return null;
+        }
+        if (key != null) {
+            data = cache.put(key, data);
+        }
+        return new Plane2D(planeDef, pixels, data);
+    }
+
+    /**
+     * Returns <code>true</code> if the data of the specified plane can be
+     * computed by binning the data of the whole plane or region,
+     * <code>false</code> otherwise. This is the case of the downsampled
+     * <i>XY</i> planes of the buffers without resolution levels, apart from
+     * the bit masks.
+     *
+     * @param planeDef The plane.
+     * @param pixels The pixels set.
+     * @param buffer The pixels buffer.
+     * @return See above.
+     */
+    private static boolean isBinned(PlaneDef planeDef, Pixels pixels,
+            PixelBuffer buffer) {
+        return planeDef.getSlice() == PlaneDef.XY
+                && planeDef.getStride() > 0
+                && buffer.getResolutionLevels() == 1
+                && !PixelsType.VALUE_BIT.equals(
+                        pixels.getPixelsType().getValue());
+    }
+
+    /**
+     * Reads the data of the specified plane from the buffer.
+     *
+     * @param planeDef
+     *            Defines the plane to be retrieved.
+     * @param channel
+     *            The wavelength at which data is to be fetched.
+     * @param pixels
+     *            The pixels from which the data is to be fetched.
+     * @param buffer
+     *            The pixels buffer from which the data is to be fetched.
+     * @param pyramid
+     *            Bins the downsampled region or <code>null</code> to
+     *            decimate it.
+     * @return See above or <code>null</code> if the type of plane is not
+     *         supported.
+     */
+    private static PixelData readData(PlaneDef planeDef, int channel,
+            Pixels pixels, PixelBuffer buffer, PlanePyramid pyramid) {
         Integer z = Integer.valueOf(planeDef.getZ());
         Integer c = Integer.valueOf(channel);
         Integer t = Integer.valueOf(planeDef.getT());
@@ -190,33 +312,37 @@ public class PlaneFactory {
             if (region != null) {
                 switch (planeDef.getSlice()) {
                     case PlaneDef.XY:
-                        return new Plane2D(planeDef, pixels, buffer.getTile(
-                                z, c, t, region.getX(), region.getY(),
-                                region.getWidth(), region.getHeight()));
+                        if (stride == null || stride <= 0)
+                            return buffer.getTile(z, c, t, region.getX(),
+                                    region.getY(), region.getWidth(),
+                                    region.getHeight());
+                        // Downsampled as the whole plane would be.
+                        if (pyramid != null)
+                            return pyramid.bin(buffer.getTile(z, c, t,
+                                    region.getX(), region.getY(),
+                                    region.getWidth(), region.getHeight()),
+                                    region.getWidth(), region.getHeight(),
+                                    stride + 1);
+                        return buffer.getPlaneRegion(region.getX(),
+                                region.getY(), region.getWidth(),
+                                region.getHeight(), z, c, t, stride);
                     case PlaneDef.XZ: //TODO
-                        return new Plane2D(planeDef, pixels,
-                                buffer.getStack(c, t));
+                        return buffer.getStack(c, t);
                     case PlaneDef.ZY: //TODO
-                        return new Plane2D(planeDef, pixels,
-                                buffer.getStack(c, t));
+                        return buffer.getStack(c, t);
                 }
             } else {
                 switch (planeDef.getSlice()) {
                     case PlaneDef.XY:
                         if (stride == null || stride <= 0)
-                            return new Plane2D(planeDef, pixels,
-                                    buffer.getPlane(z, c, t));
-                        return new Plane2D(planeDef, pixels,
-                                buffer.getPlaneRegion(0, 0,
-                                        pixels.getSizeX(),
-                                        pixels.getSizeY(), z, c, t,
-                                        stride));
+                            return buffer.getPlane(z, c, t);
+                        return buffer.getPlaneRegion(0, 0,
+                                pixels.getSizeX(), pixels.getSizeY(),
+                                z, c, t, stride);
                     case PlaneDef.XZ:
-                        return new Plane2D(planeDef, pixels,
-                                buffer.getStack(c, t));
+                        return buffer.getStack(c, t);
                     case PlaneDef.ZY:
-                        return new Plane2D(planeDef, pixels,
-                                buffer.getStack(c, t));
+                        return buffer.getStack(c, t);
                 }
             }
         } catch (IOException e) {
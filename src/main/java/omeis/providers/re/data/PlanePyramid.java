@@ -0,0 +1,202 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+package omeis.providers.re.data;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import ome.io.nio.DimensionsOutOfBoundsException;
+import ome.io.nio.PixelBuffer;
+import ome.model.core.Pixels;
+import ome.util.PixelData;
+
+/**
+ * Computes the downsampled <i>XY</i> planes of the pixel buffers without
+ * resolution levels by mean {@link PlaneBinning binning} instead of
+ * decimation, and keeps the levels of the pyramids of binned data
+ * downsampled by the powers of two, so that the other downsampled planes
+ * are computed from the coarsest level available instead of reading the
+ * whole plane again.
+ * <p>
+ * The levels are kept as the exact means of the pixels, in doubles, so that
+ * the values of the integer types are only rounded once, when the requested
+ * plane is computed from a level; a level therefore costs eight bytes per
+ * binned pixel. The least recently used levels are evicted once the total
+ * number of bytes kept exceeds the capacity. The levels of the pixels sets
+ * not saved yet, which cannot be identified, are not kept.
+ * </p>
+ * <p>
+ * As the {@link PlaneCache}, the pyramid is not notified when pixels are
+ * written: whoever modifies the pixels of a set must
+ * {@link #invalidate(long) invalidate} its levels.
+ * </p>
+ *
+ * @since 5.5
+ */
+public class PlanePyramid {
+
+    /** The levels kept. */
+    private final PlaneCache levels;
+
+    /** Bins the rows in parallel or <code>null</code>. */
+    private final Executor executor;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The maximum number of bytes of the levels kept.
+     *                 <code>0</code> bins every plane from the whole plane.
+     * @param executor Bins the rows in parallel, usually the executor
+     *                 rendering the images, or <code>null</code> to bin them
+     *                 in the calling thread.
+     */
+    public PlanePyramid(long capacity, Executor executor)
+    {
+        levels = new PlaneCache(capacity);
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the plane of the pyramid for the specified downsampling
+     * factor.
+     *
+     * @param planeDef The plane.
+     * @param factor The downsampling factor.
+     * @return See above.
+     */
+    private static PlaneDef getLevelPlane(PlaneDef planeDef, int factor)
+    {
+        PlaneDef def = new PlaneDef(PlaneDef.XY, planeDef.getT());
+        def.setZ(planeDef.getZ());
+        def.setStride(factor - 1);
+        return def;
+    }
+
+    /**
+     * Computes the data of a downsampled plane, its stride selecting the
+     * downsampling factor.
+     *
+     * @param planeDef
+     *            Defines the plane to be retrieved.
+     * @param channel
+     *            The wavelength at which data is to be fetched.
+     * @param pixels
+     *            The pixels from which the data is to be fetched.
+     * @param buffer
+     *            The pixels buffer from which the data is to be fetched.
+     * @return See above, in the type of the pixels.
+     */
+    PixelData read(PlaneDef planeDef, int channel, Pixels pixels,
+            PixelBuffer buffer)
+    {
+        int factor = planeDef.getStride() + 1;
+        int sizeX = pixels.getSizeX();
+        int sizeY = pixels.getSizeY();
+        int level = buffer.getResolutionLevel();
+        Long id = pixels.getId();
+        // The finest level of the pyramid the plane can be computed from.
+        int base = Integer.lowestOneBit(factor);
+        int finest = base == factor ? base >> 1 : base;
+        int f = finest;
+        PixelData data = null;
+        for (; id != null && f > 1; f >>= 1) {
+            data = levels.get(new PlaneCache.Key(id, level,
+                    getLevelPlane(planeDef, f), channel));
+            if (data != null) break;
+        }
+        if (data == null) {
+            f = 1;
+            try {
+                data = buffer.getPlane(planeDef.getZ(), channel,
+                        planeDef.getT());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } catch (DimensionsOutOfBoundsException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        while (f < finest) {
+            data = PlaneBinning.bin(data, sizeX / f, sizeY / f, 2,
+                    PlaneBinning.EXACT_TYPE, executor);
+            f *= 2;
+            if (id != null) {
+                data = levels.put(new PlaneCache.Key(id, level,
+                        getLevelPlane(planeDef, f), channel), data);
+            }
+        }
+        return PlaneBinning.bin(data, sizeX / f, sizeY / f, factor / f,
+                pixels.getPixelsType().getValue(), executor);
+    }
+
+    /**
+     * Bins the specified data, e.g. the data of a region, without keeping
+     * it.
+     *
+     * @param data The data to bin.
+     * @param sizeX The number of pixels along the <i>X</i>-axis.
+     * @param sizeY The number of pixels along the <i>Y</i>-axis.
+     * @param factor The downsampling factor.
+     * @return See above, in the type of the data.
+     */
+    PixelData bin(PixelData data, int sizeX, int sizeY, int factor)
+    {
+        return PlaneBinning.bin(data, sizeX, sizeY, factor,
+                data.getPixelsType(), executor);
+    }
+
+    /**
+     * Removes all the levels kept for the specified pixels set. To be called
+     * when the pixels of the set are modified.
+     *
+     * @param pixelsId The identifier of the pixels set.
+     */
+    public void invalidate(long pixelsId)
+    {
+        levels.invalidate(pixelsId);
+    }
+
+    /** Removes all the levels kept. */
+    public void clear()
+    {
+        levels.clear();
+    }
+
+    /**
+     * Returns the maximum number of bytes of the levels kept.
+     *
+     * @return See above.
+     */
+    public long getCapacity()
+    {
+        return levels.getCapacity();
+    }
+
+    /**
+     * Returns the number of bytes of the levels kept.
+     *
+     * @return See above.
+     */
+    public long getWeight()
+    {
+        return levels.getWeight();
+    }
+
+    /**
+     * Returns the number of levels kept.
+     *
+     * @return See above.
+     */
+    public int size()
+    {
+        return levels.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PlanePyramid[capacity=" + getCapacity() + ", weight="
+                + getWeight() + ", levels=" + size() + "]";
+    }
+}
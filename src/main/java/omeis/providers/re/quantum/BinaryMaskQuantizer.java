@@ -8,6 +8,7 @@ package omeis.providers.re.quantum;
 import ome.model.core.Pixels;
 import ome.model.display.QuantumDef;
 import ome.model.enums.PixelsType;
+import ome.util.PixelData;
 
 /**
  * Quantization process for binary masks.
@@ -59,4 +60,56 @@ public class BinaryMaskQuantizer extends QuantumStrategy
 		// No-op.
 	}
 
+	/**
+	 * Overridden to map the bits without converting them to
+	 * <code>double</code>.
+	 * 
+	 * @see QuantumStrategy#quantize(PixelData, int, int, byte[], int)
+	 */
+	@Override
+	public void quantize(PixelData data, int offset, int length, byte[] dst,
+			int dstOffset) throws QuantizationException
+	{
+		for (int i = 0; i < length; i++)
+		{
+			dst[dstOffset + i] = mask(data.getPixelValue(offset + i));
+		}
+	}
+
+	/**
+	 * Overridden to map the bits without a virtual call per value.
+	 * 
+	 * @see QuantumStrategy#quantize(double[], int, int, byte[], int)
+	 */
+	@Override
+	public void quantize(double[] src, int offset, int length, byte[] dst,
+			int dstOffset) throws QuantizationException
+	{
+		for (int i = 0; i < length; i++)
+		{
+			dst[dstOffset + i] = mask(src[offset + i]);
+		}
+	}
+
+	/**
+	 * Maps a bit onto the codomain.
+	 * 
+	 * @param value The value to handle.
+	 * @return <code>0</code> or <code>(byte) 255</code>.
+	 * @throws QuantizationException If the value is not a bit.
+	 */
+	private static byte mask(double value) throws QuantizationException
+	{
+		if (value == 0.0)
+		{
+			return 0;
+		}
+		if (value == 1.0)
+		{
+			return (byte) 255;
+		}
+		throw new QuantizationException(
+				"The value " + value + " is not 0.0 or 1.0.");
+	}
+
 }
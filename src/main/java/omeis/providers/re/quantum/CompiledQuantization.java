@@ -0,0 +1,314 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.quantum;
+
+import java.util.Arrays;
+
+/**
+ * Immutable mapping of the pixel intensity values onto the codomain, used by
+ * the strategies handling 32-bit integer and floating point values.
+ * <p>
+ * Those strategies map a value through the middle of the bin it belongs to,
+ * the input window being divided into as many bins as the codomain interval
+ * has values (see {@link QuantumStrategy#getMiddleRange(double)}). So there
+ * are only a few hundred distinct outputs; they are all computed when the
+ * mapping is compiled. Quantizing a value then only requires finding its bin:
+ * no boxing, no hashing and no shared mutable state, so an instance can be
+ * used by concurrent rendering tasks.
+ * </p>
+ *
+ * @since 5.5
+ */
+final class CompiledQuantization {
+
+    /** The lower bound of the input window. */
+    private final double windowStart;
+
+    /** The upper bound of the input window. */
+    private final double windowEnd;
+
+    /** The width of a bin. */
+    private final double step;
+
+    /** The value mapped by the values below the input window. */
+    private final int below;
+
+    /** The value mapped by the values above the input window. */
+    private final int above;
+
+    /** The value mapped by the lower bound of the input window. */
+    private final int first;
+
+    /** The values mapped by the bins, indexed by bin. */
+    private final int[] bins;
+
+    /** The curve coefficient. */
+    private final double k;
+
+    /** The map selected by the user. */
+    private final QuantumMap valueMapper;
+
+    /** The input start normalized value. */
+    private final double ysNormalized;
+
+    /** The slope of the normalized map. */
+    private final double aNormalized;
+
+    /** The slope of the map onto the codomain interval. */
+    private final double a1;
+
+    /** The lower bound of the codomain interval. */
+    private final int qdStart;
+
+    /** The lower bound of the decile interval. */
+    private double Q1;
+
+    /** The upper bound of the decile interval. */
+    private double Q9;
+
+    /**
+     * The mapping parameters from the sub-interval of [Q1, Q9] to the device
+     * space.
+     */
+    private double aDecile, bDecile;
+
+    /**
+     * The device space sub-interval. The values aren't the ones stored in
+     * the quantum definition if the noise reduction flag is
+     * <code>true</code>.
+     */
+    private int cdStart, cdEnd;
+
+    /**
+     * Compiles the current settings of the specified strategy.
+     *
+     * @param strategy The strategy to handle.
+     * @param min The lowest pixel intensity value.
+     * @param max The uppest pixel intensity value.
+     */
+    CompiledQuantization(QuantumStrategy strategy, int min, int max)
+    {
+        windowStart = strategy.getWindowStart();
+        windowEnd = strategy.getWindowEnd();
+        k = strategy.getCurveCoefficient();
+        valueMapper = strategy.valueMapper;
+        qdStart = strategy.qDef.getCdStart().intValue();
+        int qdEnd = strategy.qDef.getCdEnd().intValue();
+        a1 = (qdEnd - qdStart)
+                / strategy.qDef.getBitResolution().doubleValue();
+
+        // Initializes the normalized map.
+        ysNormalized = valueMapper.transform(QuantumStrategy.MIN, k);
+        double yeNormalized = valueMapper.transform(QuantumStrategy.MAX, k);
+        aNormalized = strategy.qDef.getBitResolution().intValue()
+                / (yeNormalized - ysNormalized);
+        // Initializes the decile map.
+        initDecileMap(qdEnd, min, max, strategy.getNoiseReduction());
+
+        // Maps each bin, see QuantumStrategy#getMiddleRange(double).
+        int n = qdEnd - qdStart + 1;
+        step = Math.abs(windowEnd - windowStart) / n;
+        below = map(windowStart);
+        above = map(windowEnd);
+        first = map(windowStart + step / 2);
+        bins = new int[Math.max(0, n + 1)];
+        for (int v = 0; v < bins.length; v++) {
+            bins[v] = map(middle(v));
+        }
+    }
+
+    /**
+     * Initializes the parameter to map the pixels intensities to the device
+     * space depending on the value of the noise reduction flag.
+     *
+     * @param qdEnd The upper bound of the codomain interval.
+     * @param min The lowest pixel intensity value.
+     * @param max The uppest pixel intensity value.
+     * @param noiseReduction The noise reduction flag.
+     */
+    private void initDecileMap(int qdEnd, int min, int max,
+            boolean noiseReduction)
+    {
+        double dStart = windowStart, dEnd = windowEnd;
+        cdStart = qdStart;
+        cdEnd = qdEnd;
+        double denum = dEnd - dStart, num = QuantumStrategy.MAX;
+
+        double b = dStart;
+        int e = 0;
+        double startMin = min;
+        double startMax = max;
+        Q1 = min;
+        Q9 = max;
+
+        if (dStart <= startMin) {
+            Q1 = dStart;
+        }
+        if (dEnd >= startMax) Q9 = dEnd;
+        double decile = (startMax - startMin) / QuantumStrategy.DECILE;
+        if (noiseReduction) {
+            Q1 += decile;
+            Q9 -= decile;
+            denum = Q9 - Q1;
+            e = QuantumStrategy.DECILE;
+            num = QuantumStrategy.MAX - 2 * QuantumStrategy.DECILE;
+            b = Q1;
+            if (dStart >= Q1 && dEnd > Q9) {
+                denum = Q9 - dStart;
+                b = dStart;
+            } else if (dStart >= Q1 && dEnd <= Q9) {
+                denum = dEnd - dStart;
+                b = dStart;
+            } else if (dStart < Q1 && dEnd <= Q9) {
+                denum = dEnd - Q1;
+            }
+            if (cdStart < QuantumStrategy.DECILE) {
+                cdStart = QuantumStrategy.DECILE;
+            }
+            if (cdEnd > QuantumStrategy.MAX - QuantumStrategy.DECILE) {
+                cdEnd = QuantumStrategy.MAX - QuantumStrategy.DECILE;
+            }
+        }
+        aDecile = num / denum;
+        bDecile = aDecile * b - e;
+    }
+
+    /**
+     * Returns the middle of the specified bin.
+     *
+     * @param v The index of the bin.
+     * @return See above.
+     */
+    private double middle(int v)
+    {
+        double min = windowStart;
+        return (min+(v-1)*step+min+v*step)/2;
+    }
+
+    /**
+     * Maps the specified value onto the codomain.
+     *
+     * @param value The value to handle.
+     * @return See above.
+     */
+    private int map(double value)
+    {
+        double v;
+        if (value > Q1) {
+            if (value <= Q9) {
+                v = aDecile * value - bDecile;
+            } else {
+                v = cdEnd;
+            }
+        } else {
+            v = cdStart;
+        }
+
+        v = aNormalized * (valueMapper.transform(v, k) - ysNormalized);
+        v = Math.round(v);
+        v = Math.round(a1 * v + cdStart);
+        return ((byte) v) & 0xFF;
+    }
+
+    /**
+     * Maps the specified pixel intensity value onto the codomain.
+     *
+     * @param value The value to handle.
+     * @return See above.
+     */
+    int quantize(double value)
+    {
+        if (value < windowStart) return below;
+        if (value > windowEnd) return above;
+        if (value == windowStart) return first;
+        int v = (int) ((value - windowStart) / step);
+        if (v >= 0 && v < bins.length) return bins[v];
+        return map(middle(v));
+    }
+
+    /**
+     * Returns the index of the bin the specified value belongs to, as
+     * computed by {@link #quantize(double)}.
+     *
+     * @param value The value to handle.
+     * @return See above.
+     */
+    private int bin(long value)
+    {
+        return (int) ((value - windowStart) / step);
+    }
+
+    /**
+     * Returns the smallest integer above the lower bound of the input window
+     * which belongs to the specified bin or to a bin after it.
+     *
+     * @param v The index of the bin.
+     * @return See above.
+     */
+    private long binStart(int v)
+    {
+        long lower = (long) Math.floor(windowStart) + 1;
+        long x = Math.max(lower, (long) Math.ceil(windowStart + v * step));
+        while (x > lower && bin(x - 1) >= v) {
+            x--;
+        }
+        while (bin(x) < v) {
+            x++;
+        }
+        return x;
+    }
+
+    /**
+     * Returns the integers at which the mapping of an integer value may
+     * change, in no particular order. The mapping is constant between two
+     * consecutive positions.
+     *
+     * @return See above.
+     */
+    private long[] candidates()
+    {
+        boolean binned = step > 0 && !Double.isInfinite(step);
+        long[] c = new long[3 + (binned ? bins.length : 0)];
+        int n = 0;
+        c[n++] = (long) Math.ceil(windowStart);
+        c[n++] = (long) Math.floor(windowStart) + 1;
+        c[n++] = (long) Math.floor(windowEnd) + 1;
+        if (binned) {
+            for (int v = 1; v < bins.length; v++) {
+                c[n++] = binStart(v);
+            }
+        }
+        return Arrays.copyOf(c, n);
+    }
+
+    /**
+     * Returns the mapping restricted to the integer values, as a table of
+     * breakpoints. The table is exact, i.e. for any integer <code>x</code>
+     * representable as a <code>double</code>,
+     * <code>thresholds().quantize(x) == quantize(x)</code>.
+     *
+     * @return See above.
+     */
+    ThresholdTable thresholds()
+    {
+        long[] c = candidates();
+        Arrays.sort(c);
+        long[] breakpoints = new long[c.length];
+        int[] values = new int[c.length + 1];
+        int n = 0;
+        values[0] = below;
+        for (int i = 0; i < c.length; i++) {
+            if (i > 0 && c[i] == c[i - 1]) continue;
+            int value = quantize((double) c[i]);
+            if (value != values[n]) {
+                breakpoints[n] = c[i];
+                values[++n] = value;
+            }
+        }
+        return new ThresholdTable(Arrays.copyOf(breakpoints, n),
+                Arrays.copyOf(values, n + 1), this);
+    }
+}
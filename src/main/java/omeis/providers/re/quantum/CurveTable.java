@@ -0,0 +1,262 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.quantum;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memoized evaluation of the curve of a family, as used by the
+ * {@link Quantization_8_16_bit} strategy to build its look-up table. The
+ * curve maps a value of the decile map, in <code>[0, 255]</code>, onto the
+ * codomain. It does not depend on the input window, so the breakpoints
+ * between its output values are computed once per family, coefficient and
+ * codomain, and shared by the strategies.
+ * <p>
+ * The curve is non-decreasing over <code>[1, 255]</code>: the maps are
+ * semi-monotonic there and the other operations are monotonic. The
+ * breakpoints are located exactly, so looking up a value gives the same
+ * output as evaluating the curve. The values below <code>1</code>, where the
+ * logarithmic map is not monotonic, are evaluated.
+ * </p>
+ *
+ * @since 5.5
+ */
+final class CurveTable {
+
+    /** The maximum number of tables kept. */
+    private static final int MAX_ENTRIES = 64;
+
+    /** The lower bound of the values covered by a table. */
+    private static final double START = 1;
+
+    /** The upper bound of the values covered by a table. */
+    private static final double END = QuantumStrategy.MAX;
+
+    /** The tables most recently used, in access order. */
+    private static final Map<Key, CurveTable> TABLES =
+            new LinkedHashMap<Key, CurveTable>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CurveTable> e) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** The parameters identifying a curve. */
+    private static final class Key {
+
+        /** The class of the map. */
+        private final Class<?> mapper;
+
+        /** The curve coefficient. */
+        private final double k;
+
+        /** The slope of the normalized map. */
+        private final double aNormalized;
+
+        /** The input start normalized value. */
+        private final double ysNormalized;
+
+        /** The slope of the map onto the codomain interval. */
+        private final double a1;
+
+        /** The lower bound of the device space sub-interval. */
+        private final int cdStart;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param mapper The class of the map.
+         * @param k The curve coefficient.
+         * @param aNormalized The slope of the normalized map.
+         * @param ysNormalized The input start normalized value.
+         * @param a1 The slope of the map onto the codomain interval.
+         * @param cdStart The lower bound of the device space sub-interval.
+         */
+        Key(Class<?> mapper, double k, double aNormalized,
+                double ysNormalized, double a1, int cdStart)
+        {
+            this.mapper = mapper;
+            this.k = k;
+            this.aNormalized = aNormalized;
+            this.ysNormalized = ysNormalized;
+            this.a1 = a1;
+            this.cdStart = cdStart;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return mapper == other.mapper
+                    && Double.compare(k, other.k) == 0
+                    && Double.compare(aNormalized, other.aNormalized) == 0
+                    && Double.compare(ysNormalized, other.ysNormalized) == 0
+                    && Double.compare(a1, other.a1) == 0
+                    && cdStart == other.cdStart;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            long h = mapper.hashCode();
+            h = 31 * h + Double.doubleToLongBits(k);
+            h = 31 * h + Double.doubleToLongBits(aNormalized);
+            h = 31 * h + Double.doubleToLongBits(ysNormalized);
+            h = 31 * h + Double.doubleToLongBits(a1);
+            h = 31 * h + cdStart;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /** The map. */
+    private final QuantumMap mapper;
+
+    /** The parameters of the curve. */
+    private final Key key;
+
+    /**
+     * The breakpoints in increasing order or <code>null</code> if the curve
+     * could not be tabulated.
+     */
+    private final double[] breakpoints;
+
+    /**
+     * The output values. The value at index <code>i</code> is mapped by the
+     * values reaching the first <code>i</code> breakpoints only.
+     */
+    private final int[] values;
+
+    /**
+     * Returns the table of the specified curve, creating it if needed.
+     *
+     * @param mapper The map.
+     * @param k The curve coefficient.
+     * @param aNormalized The slope of the normalized map.
+     * @param ysNormalized The input start normalized value.
+     * @param a1 The slope of the map onto the codomain interval.
+     * @param cdStart The lower bound of the device space sub-interval.
+     * @return See above or <code>null</code> if the parameters do not
+     *         describe a non-decreasing curve.
+     */
+    static CurveTable get(QuantumMap mapper, double k, double aNormalized,
+            double ysNormalized, double a1, int cdStart)
+    {
+        if (!(k > 0) || Double.isInfinite(k) || !(aNormalized >= 0)
+                || !(a1 >= 0)) {
+            return null;
+        }
+        Key key = new Key(mapper.getClass(), k, aNormalized, ysNormalized,
+                a1, cdStart);
+        synchronized (TABLES) {
+            CurveTable table = TABLES.get(key);
+            if (table != null) return table;
+        }
+        CurveTable table = new CurveTable(mapper, key);
+        synchronized (TABLES) {
+            TABLES.put(key, table);
+        }
+        return table;
+    }
+
+    /**
+     * Computes the breakpoints of the curve.
+     *
+     * @param mapper The map.
+     * @param key The parameters of the curve.
+     */
+    private CurveTable(QuantumMap mapper, Key key)
+    {
+        this.mapper = mapper;
+        this.key = key;
+        double[] b = new double[QuantumStrategy.MAX + 1];
+        int[] v = new int[QuantumStrategy.MAX + 2];
+        int n = 0;
+        double from = START;
+        v[0] = evaluate(from);
+        int last = evaluate(END);
+        boolean increasing = v[0] <= last;
+        while (increasing && v[n] != last && n < b.length) {
+            from = next(from, v[n]);
+            b[n] = from;
+            v[n + 1] = evaluate(from);
+            increasing = v[n + 1] > v[n];
+            n++;
+        }
+        if (increasing && v[n] == last) {
+            breakpoints = Arrays.copyOf(b, n);
+            values = Arrays.copyOf(v, n + 1);
+        } else {
+            breakpoints = null;
+            values = null;
+        }
+    }
+
+    /**
+     * Returns the smallest value after <code>from</code> whose output
+     * differs from the specified one.
+     *
+     * @param from A value whose output is <code>value</code>.
+     * @param value The output to leave.
+     * @return See above.
+     */
+    private double next(double from, int value)
+    {
+        // The values are positive so their bits are ordered like them.
+        long lo = Double.doubleToLongBits(from);
+        long hi = Double.doubleToLongBits(END);
+        while (hi - lo > 1) {
+            long mid = lo + (hi - lo) / 2;
+            if (evaluate(Double.longBitsToDouble(mid)) == value) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return Double.longBitsToDouble(hi);
+    }
+
+    /**
+     * Evaluates the curve at the specified value, as done by
+     * {@link Quantization_8_16_bit}.
+     *
+     * @param v The value of the decile map.
+     * @return See above.
+     */
+    int evaluate(double v)
+    {
+        v = key.aNormalized * (mapper.transform(v, key.k) - key.ysNormalized);
+        v = Math.round(v);
+        return (int) Math.round(key.a1 * v + key.cdStart);
+    }
+
+    /**
+     * Maps the specified value of the decile map onto the codomain.
+     *
+     * @param v The value of the decile map.
+     * @return See above.
+     */
+    int map(double v)
+    {
+        if (breakpoints == null || !(v >= START && v <= END)) {
+            return evaluate(v);
+        }
+        int lo = 0, hi = breakpoints.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (breakpoints[mid] <= v) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return values[lo];
+    }
+}
@@ -23,15 +23,12 @@
 
 package omeis.providers.re.quantum;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import java.nio.ByteBuffer;
 
 import ome.model.core.Pixels;
 import ome.model.display.QuantumDef;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
 
 /**
  * Quantization process. In charge of building a look-up table for each active
@@ -55,150 +52,31 @@ public class Quantization_32_bit extends QuantumStrategy {
     /** The uppest pixel intensity value. */
     private int max;
 
-    /** The input start normalized value. */
-    private double ysNormalized;
-
-    /** The input end normalized value. */
-    private double yeNormalized;
-
-    /** The slope of the normalized map. */
-    private double aNormalized;
-
-    /** The lower bound of the decile interval. */
-    private double Q1;
-
-    /** The upper bound of the decile interval. */
-    private double Q9;
-
-    /**
-     * The mapping parameters from the sub-interval of [Q1, Q9] to the device
-     * space.
-     */
-    private double aDecile, bDecile;
-
     /**
-     * The device space sub-interval. The values aren't the ones stored in
-     * {@link QuantumDef} if the noise reduction flag is <code>true</code>.
+     * The mapping compiled from the current settings or <code>null</code> if
+     * it has not been compiled yet.
      */
-    private int cdStart, cdEnd;
-
-    /** The mapped values.*/
-    private LoadingCache<Double, Integer> values;
+    private volatile CompiledQuantization compiled;
 
     /**
-     * Initializes the coefficient of the normalize mapping operation.
+     * Compiles the mapping from the current settings.
      *
-     * @param k
-     *            The coefficient of the selected curve.
-     */
-    private void initNormalizedMap(double k) {
-        ysNormalized = valueMapper.transform(MIN, k);
-        yeNormalized = valueMapper.transform(MAX, k);
-        aNormalized = qDef.getBitResolution().intValue()
-                / (yeNormalized - ysNormalized);
-    }
-
-    /**
-     * Initializes the parameter to map the pixels intensities to the device
-     * space and returned the default initial depending on the value of the
-     * noise reduction flag.
-     *
-     * @param dStart
-     *            The input window start.
-     * @param dEnd
-     *            The input window end.
      * @return See above.
      */
-    private double initDecileMap(double dStart, double dEnd) {
-        cdStart = qDef.getCdStart().intValue();
-        cdEnd = qDef.getCdEnd().intValue();
-        double denum = dEnd - dStart, num = MAX;
-
-        double v = 0, b = dStart;
-        int e = 0;
-        double startMin = min;
-        double startMax = max;
-        Q1 = min;
-        Q9 = max;
-
-        if (dStart <= startMin) {
-            Q1 = dStart;
-        }
-        if (dEnd >= startMax) Q9 = dEnd;
-        if (startMin == startMax) v = 1;
-        double decile = (startMax - startMin) / DECILE;
-        if (getNoiseReduction()) {
-            Q1 += decile;
-            Q9 -= decile;
-            denum = Q9 - Q1;
-            v = DECILE;
-            e = DECILE;
-            num = MAX - 2 * DECILE;
-            b = Q1;
-            if (dStart >= Q1 && dEnd > Q9) {
-                denum = Q9 - dStart;
-                b = dStart;
-            } else if (dStart >= Q1 && dEnd <= Q9) {
-                denum = dEnd - dStart;
-                b = dStart;
-            } else if (dStart < Q1 && dEnd <= Q9) {
-                denum = dEnd - Q1;
-            }
-            if (cdStart < DECILE) {
-                cdStart = DECILE;
-            }
-            if (cdEnd > MAX - DECILE) {
-                cdEnd = MAX - DECILE;
-            }
-        }
-        aDecile = num / denum;
-        bDecile = aDecile * b - e;
-
-        return v;
+    private CompiledQuantization compile() {
+        CompiledQuantization c = new CompiledQuantization(this, min, max);
+        compiled = c;
+        return c;
     }
 
     /** The input window size changed, re-map the values. */
     @Override
     protected void onWindowChange() {
-        values.invalidateAll();
-    }
-
-    /**
-     * Maps the value.
-     *
-     * @param value The value to handle.
-     * @return The mapped value.
-     * @throws QuantizationException Thrown if an error occurred during
-     *                               the mapping.
-     */
-    private int _quantize(double value)
-                throws QuantizationException
-    {
-        double dStart = getWindowStart(), dEnd = getWindowEnd();
-        double k = getCurveCoefficient();
-        double a1 = (qDef.getCdEnd().intValue() - qDef.getCdStart().intValue())
-                / qDef.getBitResolution().doubleValue();
-
-        // Initializes the normalized map.
-        initNormalizedMap(k);
-        // Initializes the decile map.
-        double v = initDecileMap(dStart, dEnd);
-        QuantumMap normalize = new PolynomialMap();
-
-        if (value > Q1) {
-            if (value <= Q9) {
-                v = aDecile * normalize.transform(value, 1) - bDecile;
-            } else {
-                v = cdEnd;
-            }
+        if (valueMapper == null) {
+            compiled = null;
         } else {
-            v = cdStart;
+            compile();
         }
-
-        v = aNormalized * (valueMapper.transform(v, k) - ysNormalized);
-        v = Math.round(v);
-        v = Math.round(a1 * v + cdStart);
-        return ((byte) v) & 0xFF;
     }
 
     /**
@@ -211,13 +89,6 @@ public class Quantization_32_bit extends QuantumStrategy {
      */
     public Quantization_32_bit(QuantumDef qd, Pixels pixels) {
         super(qd, pixels);
-        values = CacheBuilder.newBuilder()
-                .expireAfterWrite(10, TimeUnit.MINUTES)
-                .build(new CacheLoader<Double, Integer>() {
-                    public Integer load(Double key) throws Exception {
-                        return _quantize(key);
-                    }
-                });
     }
 
     /**
@@ -227,10 +98,55 @@ public class Quantization_32_bit extends QuantumStrategy {
      */
     @Override
     public int quantize(double value) throws QuantizationException {
-        try {
-            return values.get(getMiddleRange(value));
-        } catch (ExecutionException e) {
-            throw new QuantizationException(e);
+        return getCompiled().quantize(value);
+    }
+
+    /**
+     * Returns the compiled mapping, compiling it if needed.
+     *
+     * @return See above.
+     */
+    private CompiledQuantization getCompiled() {
+        CompiledQuantization c = compiled;
+        return c == null ? compile() : c;
+    }
+
+    /**
+     * Overridden to read the values as integers and map them with the
+     * compiled mapping.
+     *
+     * @see QuantumStrategy#quantize(PixelData, int, int, byte[], int)
+     */
+    @Override
+    public void quantize(PixelData data, int offset, int length, byte[] dst,
+            int dstOffset) throws QuantizationException {
+        String type = data.getPixelsType();
+        ByteBuffer buf = data.getData();
+        CompiledQuantization c = getCompiled();
+        if (PixelsType.VALUE_INT32.equals(type)) {
+            for (int i = 0; i < length; i++) {
+                dst[dstOffset + i] = (byte) c.quantize(buf.getInt((offset + i) << 2));
+            }
+        } else if (PixelsType.VALUE_UINT32.equals(type)) {
+            for (int i = 0; i < length; i++) {
+                dst[dstOffset + i] = (byte) c.quantize(buf.getInt((offset + i) << 2) & 0xFFFFFFFFL);
+            }
+        } else {
+            super.quantize(data, offset, length, dst, dstOffset);
+        }
+    }
+
+    /**
+     * Overridden to map the values with the compiled mapping.
+     *
+     * @see QuantumStrategy#quantize(double[], int, int, byte[], int)
+     */
+    @Override
+    public void quantize(double[] src, int offset, int length, byte[] dst,
+            int dstOffset) throws QuantizationException {
+        CompiledQuantization c = getCompiled();
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = (byte) c.quantize(src[offset + i]);
         }
     }
 
@@ -7,8 +7,13 @@
 
 package omeis.providers.re.quantum;
 
+import java.nio.ByteBuffer;
+
 import ome.model.core.Pixels;
 import ome.model.display.QuantumDef;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+import ome.util.mem.WeakValueRegistry;
 
 /**
  * Quantization process. In charge of building a look-up table for each active
@@ -31,8 +36,101 @@ import ome.model.display.QuantumDef;
  */
 public class Quantization_8_16_bit extends QuantumStrategy {
 
-    /** The look-up table. */
-    private byte[] LUT;
+    /** The look-up tables shared by the strategies, by settings. */
+    private static final WeakValueRegistry<LutKey, byte[]> LUTS =
+            new WeakValueRegistry<LutKey, byte[]>();
+
+    /**
+     * The settings determining a look-up table. The values of a table only
+     * depend on them, so the strategies with the same settings share their
+     * table.
+     */
+    private static final class LutKey {
+
+        /** The bounds of the table. */
+        private final int lutMin, lutMax;
+
+        /** The lowest and uppest pixel intensity values. */
+        private final int min, max;
+
+        /** The input window. */
+        private final double windowStart, windowEnd;
+
+        /** The class of the map. */
+        private final Class<?> mapper;
+
+        /** The curve coefficient. */
+        private final double k;
+
+        /** The noise reduction flag. */
+        private final boolean noiseReduction;
+
+        /** The codomain interval and the bit resolution. */
+        private final int cdStart, cdEnd, bitResolution;
+
+        /**
+         * Creates a new instance from the current settings of the specified
+         * strategy.
+         *
+         * @param qs The strategy to handle.
+         */
+        LutKey(Quantization_8_16_bit qs)
+        {
+            lutMin = qs.lutMin;
+            lutMax = qs.lutMax;
+            min = qs.min;
+            max = qs.max;
+            windowStart = qs.getWindowStart();
+            windowEnd = qs.getWindowEnd();
+            mapper = qs.valueMapper.getClass();
+            k = qs.getCurveCoefficient();
+            noiseReduction = qs.getNoiseReduction();
+            cdStart = qs.qDef.getCdStart().intValue();
+            cdEnd = qs.qDef.getCdEnd().intValue();
+            bitResolution = qs.qDef.getBitResolution().intValue();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof LutKey)) return false;
+            LutKey other = (LutKey) o;
+            return lutMin == other.lutMin && lutMax == other.lutMax
+                    && min == other.min && max == other.max
+                    && Double.compare(windowStart, other.windowStart) == 0
+                    && Double.compare(windowEnd, other.windowEnd) == 0
+                    && mapper == other.mapper
+                    && Double.compare(k, other.k) == 0
+                    && noiseReduction == other.noiseReduction
+                    && cdStart == other.cdStart && cdEnd == other.cdEnd
+                    && bitResolution == other.bitResolution;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            long h = lutMin;
+            h = 31 * h + lutMax;
+            h = 31 * h + min;
+            h = 31 * h + max;
+            h = 31 * h + Double.doubleToLongBits(windowStart);
+            h = 31 * h + Double.doubleToLongBits(windowEnd);
+            h = 31 * h + mapper.hashCode();
+            h = 31 * h + Double.doubleToLongBits(k);
+            h = 31 * h + (noiseReduction ? 1 : 0);
+            h = 31 * h + cdStart;
+            h = 31 * h + cdEnd;
+            h = 31 * h + bitResolution;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * The look-up table. The table is shared with the other strategies
+     * having the same settings, so it is never modified: a new table is
+     * built when the settings change.
+     */
+    private volatile byte[] LUT;
 
     /** The lowest pixel intensity value. */
     private int min;
@@ -73,11 +171,18 @@ public class Quantization_8_16_bit extends QuantumStrategy {
      */
     private int cdStart, cdEnd;
 
+    /** The input window the table was last built for. */
+    private double builtStart, builtEnd;
+
+    /** The device space sub-interval the table was last built for. */
+    private int builtCdStart, builtCdEnd;
+
     /**
-     * Initializes the LUT. Comparable getGlobalMin and getGlobalMax assumed to
-     * be Integer, QuantumStrategy enforces min &lt; max. QuantumFactory makes
-     * sure 0 &lt; max-min &lt; 2^N where N = 8 or N = 16. LUT size is at most
-     * 256 bytes if N = 8 or 2^16 bytes = 2^6Kb = 64Kb if N = 16.
+     * Initializes the LUT bounds. Comparable getGlobalMin and getGlobalMax
+     * assumed to be Integer, QuantumStrategy enforces min &lt; max.
+     * QuantumFactory makes sure 0 &lt; max-min &lt; 2^N where N = 8 or
+     * N = 16. LUT size is at most 256 bytes if N = 8 or 2^16 bytes = 2^6Kb =
+     * 64Kb if N = 16.
      *
      * @param s The lower bound.
      * @param e The upper bound.
@@ -109,31 +214,31 @@ public class Quantization_8_16_bit extends QuantumStrategy {
                     "Lookup table of size %d greater than supported size %f",
                     range, MAX_SIZE_LUT));
         }
-        LUT = new byte[lutMax-lutMin+1];
     }
 
     /**
-     * Resets the LUT. We rebuild the LUT if and only if the 
+     * Resets the LUT bounds. We extend the LUT if and only if the 
      * pixels type range was not determined at init time.
      *
      * @param s The lower bound.
      * @param e The upper bound.
+     * @return <code>true</code> if the bounds changed, <code>false</code>
+     *         otherwise.
      */
-    private void resetLUT(int s, int e)
+    private boolean resetLUT(int s, int e)
     {
         int pMax = (int) getPixelsTypeMax();
-        if (pMax != 0) return;
-        if (s < lutMin && e > lutMax) {
+        if (pMax != 0) return false;
+        boolean changed = false;
+        if (s < lutMin) {
             lutMin = s;
+            changed = true;
+        }
+        if (e > lutMax) {
             lutMax = e;
-            LUT = new byte[lutMax-lutMin+1];
-        } else if (s < lutMin && e <= lutMax) {
-            lutMin = s;
-            LUT = new byte[lutMax-lutMin+1];
-        } else if (s >= lutMin && e > lutMax) {
-            lutMax = e;
-            LUT = new byte[lutMax-lutMin+1];
+            changed = true;
         }
+        return changed;
     }
 
     /**
@@ -221,10 +326,12 @@ public class Quantization_8_16_bit extends QuantumStrategy {
      */
     private void buildLUT() {
     	double dStart = getWindowStart(), dEnd = getWindowEnd();
-        if (LUT == null) {
+        byte[] previous = LUT;
+        boolean resized = true;
+        if (previous == null) {
             initLUT((int) dStart, (int) dEnd);
         } else {
-            resetLUT((int) dStart, (int) dEnd);
+            resized = resetLUT((int) dStart, (int) dEnd);
         }
         // Comparable assumed to be Integer
         // domain
@@ -238,17 +345,52 @@ public class Quantization_8_16_bit extends QuantumStrategy {
         // Initializes the decile map.
         double v = initDecileMap(dStart, dEnd);
 
+        // The values below both the previous and the current window are
+        // mapped onto cdStart, the ones above both windows onto cdEnd. So
+        // only the span covering the two windows is rebuilt, unless the
+        // table was resized or the device space changed.
+        boolean incremental = !resized && cdStart == builtCdStart
+                && cdEnd == builtCdEnd;
+        double previousStart = builtStart, previousEnd = builtEnd;
+        builtStart = dStart;
+        builtEnd = dEnd;
+        builtCdStart = cdStart;
+        builtCdEnd = cdEnd;
+
+        LutKey key = new LutKey(this);
+        byte[] shared = LUTS.get(key);
+        if (shared != null) {
+            LUT = shared;
+            return;
+        }
+        byte[] lut;
+        int from = lutMin, to = lutMax;
+        if (incremental) {
+            lut = previous.clone();
+            from = Math.max(lutMin,
+                    (int) Math.floor(Math.min(dStart, previousStart)));
+            to = Math.min(lutMax,
+                    (int) Math.ceil(Math.max(dEnd, previousEnd)));
+        } else {
+            lut = new byte[lutMax-lutMin+1];
+        }
+
         // Build the LUT
-        int x = lutMin;
-        for (; x < dStart; ++x) {
-            LUT[x - lutMin] = (byte) cdStart;
+        int x = from;
+        for (; x < dStart && x <= to; ++x) {
+            lut[x - lutMin] = (byte) cdStart;
         }
 
         boolean doTransform = true;
         if (valueMapper instanceof PolynomialMap && k == 1.0) {
             doTransform = false;
         }
-        for (; x < dEnd; ++x) {
+        CurveTable curve = null;
+        if (doTransform) {
+            curve = CurveTable.get(valueMapper, k, aNormalized, ysNormalized,
+                    a1, cdStart);
+        }
+        for (; x < dEnd && x <= to; ++x) {
         	if (x > Q1) {
                 if (x <= Q9) {
                     v = aDecile * x - bDecile;
@@ -258,20 +400,26 @@ public class Quantization_8_16_bit extends QuantumStrategy {
             } else {
                 v = cdStart;
             }
-        	
-            if (doTransform) {
-                v = aNormalized * (valueMapper.transform(v, k) - ysNormalized);
+
+            if (curve != null) {
+                v = curve.map(v);
             } else {
-                v = aNormalized * (v - ysNormalized);
+                if (doTransform) {
+                    v = aNormalized
+                            * (valueMapper.transform(v, k) - ysNormalized);
+                } else {
+                    v = aNormalized * (v - ysNormalized);
+                }
+                v = Math.round(v);
+                v = Math.round(a1 * v + cdStart);
             }
-            v = Math.round(v);
-            v = Math.round(a1 * v + cdStart);
-            LUT[x - lutMin] = (byte) v;
+            lut[x - lutMin] = (byte) v;
         }
 
-        for (; x <= lutMax; ++x) {
-            LUT[x - lutMin] = (byte) cdEnd;
+        for (; x <= to; ++x) {
+            lut[x - lutMin] = (byte) cdEnd;
         }
+        LUT = LUTS.intern(key, lut);
     }
 
     /** The input window size changed, rebuild the LUT. */
@@ -292,6 +440,32 @@ public class Quantization_8_16_bit extends QuantumStrategy {
         super(qd, pixels);
     }
 
+    /**
+     * Overridden to compose the look-up table with the specified values.
+     * 
+     * @see QuantumStrategy#composeTable(int[])
+     */
+    @Override
+    public int[] composeTable(int[] values) {
+        byte[] lut = LUT;
+        if (lut == null) return null;
+        int[] table = new int[lut.length];
+        for (int i = 0; i < lut.length; i++) {
+            table[i] = values[lut[i] & 0xFF];
+        }
+        return table;
+    }
+
+    /**
+     * Overridden to return the lower bound of the look-up table.
+     * 
+     * @see QuantumStrategy#getTableMin()
+     */
+    @Override
+    public int getTableMin() {
+        return lutMin;
+    }
+
     /**
      * Implemented as specified in {@link QuantumStrategy}.
      * 
@@ -321,4 +495,62 @@ public class Quantization_8_16_bit extends QuantumStrategy {
         return i & 0xFF;
     }
 
+    /**
+     * Overridden to read the values as integers and look them up in the
+     * look-up table.
+     * 
+     * @see QuantumStrategy#quantize(PixelData, int, int, byte[], int)
+     */
+    @Override
+    public void quantize(PixelData data, int offset, int length, byte[] dst,
+            int dstOffset) throws QuantizationException {
+        String type = data.getPixelsType();
+        ByteBuffer buf = data.getData();
+        byte[] lut = LUT;
+        int min = lutMin;
+        int x, j;
+        if (PixelsType.VALUE_UINT8.equals(type)
+                || PixelsType.VALUE_INT8.equals(type)) {
+            boolean signed = PixelsType.VALUE_INT8.equals(type);
+            for (int i = 0; i < length; i++) {
+                x = buf.get(offset + i);
+                if (!signed) x &= 0xFF;
+                j = x - min;
+                dst[dstOffset + i] = j >= 0 && j < lut.length ?
+                        lut[j] : (byte) quantize(x);
+            }
+        } else if (PixelsType.VALUE_UINT16.equals(type)
+                || PixelsType.VALUE_INT16.equals(type)) {
+            boolean signed = PixelsType.VALUE_INT16.equals(type);
+            for (int i = 0; i < length; i++) {
+                x = buf.getShort((offset + i) << 1);
+                if (!signed) x &= 0xFFFF;
+                j = x - min;
+                dst[dstOffset + i] = j >= 0 && j < lut.length ?
+                        lut[j] : (byte) quantize(x);
+            }
+        } else {
+            super.quantize(data, offset, length, dst, dstOffset);
+        }
+    }
+
+    /**
+     * Overridden to look the values up in the look-up table.
+     * 
+     * @see QuantumStrategy#quantize(double[], int, int, byte[], int)
+     */
+    @Override
+    public void quantize(double[] src, int offset, int length, byte[] dst,
+            int dstOffset) throws QuantizationException {
+        byte[] lut = LUT;
+        int min = lutMin;
+        int j;
+        for (int i = 0; i < length; i++) {
+            double v = src[offset + i];
+            j = (int) v - min;
+            dst[dstOffset + i] = j >= 0 && j < lut.length ?
+                    lut[j] : (byte) quantize(v);
+        }
+    }
+
 }
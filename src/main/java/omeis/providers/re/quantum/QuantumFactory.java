@@ -98,6 +98,12 @@ public class QuantumFactory {
     
     /** Enumerated list of all families. */
     private List<Family> families;
+
+    /**
+     * Flag indicating to map the <code>int32</code> and <code>uint32</code>
+     * pixels with a {@link ThresholdQuantizer}.
+     */
+    private boolean thresholdQuantization;
     
     /**
      * Default constructor.
@@ -109,6 +115,33 @@ public class QuantumFactory {
     	this.families = families;
     }
     
+    /**
+     * Sets the flag indicating to map the <code>int32</code> and
+     * <code>uint32</code> pixels with a {@link ThresholdQuantizer} instead of
+     * a {@link Quantization_32_bit}. The values mapped are the same.
+     * Turned off by default.
+     * 
+     * @param thresholdQuantization Pass <code>true</code> to turn the
+     *                              threshold quantization on,
+     *                              <code>false</code> otherwise.
+     */
+    public void setThresholdQuantization(boolean thresholdQuantization)
+    {
+        this.thresholdQuantization = thresholdQuantization;
+    }
+
+    /**
+     * Returns <code>true</code> if the <code>int32</code> and
+     * <code>uint32</code> pixels are mapped with a {@link ThresholdQuantizer},
+     * <code>false</code> otherwise.
+     * 
+     * @return See above.
+     */
+    public boolean isThresholdQuantization()
+    {
+        return thresholdQuantization;
+    }
+
     /**
      * Helper method to retrieve a Family enumeration from the database.
      * 
@@ -183,8 +216,11 @@ public class QuantumFactory {
     private QuantumStrategy getQuantization(QuantumDef qd, Pixels pixels) {
         String typeAsString = pixels.getPixelsType().getValue();
         if (PixelsType.VALUE_INT32.equals(typeAsString) ||
-                PixelsType.VALUE_UINT32.equals(typeAsString))
+                PixelsType.VALUE_UINT32.equals(typeAsString)) {
+            if (thresholdQuantization)
+                return new ThresholdQuantizer(qd, pixels);
             return new Quantization_32_bit(qd, pixels);
+        }
         else if (PixelsType.VALUE_FLOAT.equals(typeAsString) ||
                 PixelsType.VALUE_DOUBLE.equals(typeAsString))
             return new Quantization_float(qd, pixels);
@@ -11,6 +11,7 @@ import ome.model.core.Pixels;
 import ome.model.display.QuantumDef;
 import ome.model.enums.Family;
 import ome.model.enums.PixelsType;
+import ome.util.PixelData;
 import omeis.providers.re.data.PlaneFactory;
 import omeis.providers.re.metadata.StatsFactory;
 
@@ -51,6 +52,12 @@ public abstract class QuantumStrategy {
      */
     public static final int DECILE = 10;
 
+    /**
+     * The number of values quantized at once by
+     * {@link #quantize(PixelData, int, int, int[], int)}.
+     */
+    private static final int BULK_CHUNK = 4096;
+
     /** The maximum size for a lookup table. */
     static final double MAX_SIZE_LUT = 0x10000;
     
@@ -103,6 +110,9 @@ public abstract class QuantumStrategy {
     /** Reference to the value mapper. */
     protected QuantumMap valueMapper;
 
+    /** Changed every time the settings change. */
+    private volatile int version;
+
     /**
      * Defines the value mapper corresponding to the specified family.
      * 
@@ -272,6 +282,7 @@ public abstract class QuantumStrategy {
         this.windowStart = globalMin;
         this.windowEnd = globalMax;
         initPixelsRange(true);
+        version++;
     }
 
     /**
@@ -294,6 +305,7 @@ public abstract class QuantumStrategy {
         windowStart = start;
         windowEnd = end;
         onWindowChange();
+        version++;
     }
 
     /**
@@ -321,6 +333,7 @@ public abstract class QuantumStrategy {
         }
         curveCoefficient = k;
         this.noiseReduction = noiseReduction;
+        version++;
     }
 
     /**
@@ -338,6 +351,7 @@ public abstract class QuantumStrategy {
             boolean noiseReduction) {
         setMapping(family, k, noiseReduction);
         onWindowChange();
+        version++;
     }
 
     /**
@@ -347,6 +361,18 @@ public abstract class QuantumStrategy {
      */
     public void setMap(QuantumMap qMap) {
         valueMapper = qMap;
+        version++;
+    }
+
+    /**
+     * Returns a number changed every time the settings of this strategy
+     * change. Callers caching values derived from the mapping compare it to
+     * the number they saw to know if their values are stale.
+     * 
+     * @return See above.
+     */
+    public int getVersion() {
+        return version;
     }
 
     /**
@@ -440,6 +466,33 @@ public abstract class QuantumStrategy {
      */
     public double getWindowEnd() { return windowEnd; }
 
+    /**
+     * Composes the lookup table of the strategy, if any, with the specified
+     * values. The returned table maps each pixel intensity value <code>x</code>
+     * in <code>[getTableMin(), getTableMin()+length-1]</code> onto
+     * <code>values[quantize(x)]</code>. Values outside that range must still
+     * be quantized with {@link #quantize(double)}.
+     * 
+     * @param values
+     *            The values indexed by the quantized values. Must contain 256
+     *            elements.
+     * @return The composed table or <code>null</code> if the strategy has no
+     *         lookup table.
+     */
+    public int[] composeTable(int[] values) {
+        return null;
+    }
+
+    /**
+     * Returns the pixel intensity value mapped by the first element of the
+     * table returned by {@link #composeTable(int[])}.
+     * 
+     * @return See above.
+     */
+    public int getTableMin() {
+        return 0;
+    }
+
     /**
      * Notifies when the input interval has changed or the mapping strategy has
      * changed.
@@ -460,4 +513,83 @@ public abstract class QuantumStrategy {
      */
     public abstract int quantize(double value) throws QuantizationException;
 
+    /**
+     * Maps a run of pixel intensity values to values in the codomain
+     * interval. Subclasses should override this method to read the values
+     * without converting them to <code>double</code> one by one.
+     * 
+     * @param data
+     *            The pixel intensity values.
+     * @param offset
+     *            The index of the first pixel to quantize.
+     * @param length
+     *            The number of pixels to quantize.
+     * @param dst
+     *            The array receiving the quantized values.
+     * @param dstOffset
+     *            The index in <code>dst</code> of the first quantized value.
+     * @throws QuantizationException
+     *             If a value is not in the interval [globalMin, globalMax].
+     */
+    public void quantize(PixelData data, int offset, int length, byte[] dst,
+            int dstOffset) throws QuantizationException {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = (byte) quantize(data.getPixelValue(offset + i));
+        }
+    }
+
+    /**
+     * Maps a run of pixel intensity values to values in the codomain
+     * interval.
+     * 
+     * @param src
+     *            The pixel intensity values.
+     * @param offset
+     *            The index in <code>src</code> of the first value to quantize.
+     * @param length
+     *            The number of values to quantize.
+     * @param dst
+     *            The array receiving the quantized values.
+     * @param dstOffset
+     *            The index in <code>dst</code> of the first quantized value.
+     * @throws QuantizationException
+     *             If a value is not in the interval [globalMin, globalMax].
+     */
+    public void quantize(double[] src, int offset, int length, byte[] dst,
+            int dstOffset) throws QuantizationException {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = (byte) quantize(src[offset + i]);
+        }
+    }
+
+    /**
+     * Maps a run of pixel intensity values to values in the codomain
+     * interval. The values are quantized by chunks with
+     * {@link #quantize(PixelData, int, int, byte[], int)} and widened.
+     * 
+     * @param data
+     *            The pixel intensity values.
+     * @param offset
+     *            The index of the first pixel to quantize.
+     * @param length
+     *            The number of pixels to quantize.
+     * @param dst
+     *            The array receiving the quantized values.
+     * @param dstOffset
+     *            The index in <code>dst</code> of the first quantized value.
+     * @throws QuantizationException
+     *             If a value is not in the interval [globalMin, globalMax].
+     */
+    public void quantize(PixelData data, int offset, int length, int[] dst,
+            int dstOffset) throws QuantizationException {
+        byte[] chunk = new byte[Math.min(length, BULK_CHUNK)];
+        for (int done = 0; done < length; done += chunk.length) {
+            int n = Math.min(chunk.length, length - done);
+            quantize(data, offset + done, n, chunk, 0);
+            for (int i = 0; i < n; i++) {
+                dst[dstOffset + done + i] = chunk[i] & 0xFF;
+            }
+        }
+    }
+
 }
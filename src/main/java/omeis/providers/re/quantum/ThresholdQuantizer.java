@@ -0,0 +1,141 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.quantum;
+
+import java.nio.ByteBuffer;
+
+import ome.model.core.Pixels;
+import ome.model.display.QuantumDef;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+
+/**
+ * Quantization process for wide-range integer pixels types, i.e.
+ * <code>int32</code> and <code>uint32</code>. The range of those types is too
+ * wide for a look-up table indexed by the pixel intensity value, but the
+ * codomain has at most 256 values. When the window, the family or the
+ * coefficient changes, the breakpoints between the codomain values are
+ * computed once, then a value is mapped by searching its position among the
+ * breakpoints (see {@link ThresholdTable}).
+ * <p>
+ * The values mapped are exactly the ones mapped by a
+ * {@link Quantization_32_bit} strategy with the same settings. The memory used
+ * does not depend on the window. This strategy is selected by the
+ * {@link QuantumFactory} if the threshold quantization is turned on.
+ * </p>
+ *
+ * @since 5.5
+ */
+public class ThresholdQuantizer extends QuantumStrategy {
+
+    /** The lowest pixel intensity value. */
+    private int min;
+
+    /** The uppest pixel intensity value. */
+    private int max;
+
+    /**
+     * The breakpoints computed from the current settings or
+     * <code>null</code> if they have not been computed yet.
+     */
+    private volatile ThresholdTable table;
+
+    /**
+     * Computes the breakpoints from the current settings.
+     *
+     * @return See above.
+     */
+    private ThresholdTable compile() {
+        ThresholdTable t = new CompiledQuantization(this, min, max)
+                .thresholds();
+        table = t;
+        return t;
+    }
+
+    /**
+     * Returns the breakpoints, computing them if needed.
+     *
+     * @return See above.
+     */
+    private ThresholdTable getTable() {
+        ThresholdTable t = table;
+        return t == null ? compile() : t;
+    }
+
+    /** The input window size changed, re-map the values. */
+    @Override
+    protected void onWindowChange() {
+        if (valueMapper == null) {
+            table = null;
+        } else {
+            compile();
+        }
+    }
+
+    /**
+     * Creates a new strategy.
+     *
+     * @param qd
+     *            Quantum definition object, contained mapping data.
+     * @param pixels
+     *            The pixels
+     */
+    public ThresholdQuantizer(QuantumDef qd, Pixels pixels) {
+        super(qd, pixels);
+    }
+
+    /**
+     * Implemented as specified in {@link QuantumStrategy}.
+     *
+     * @see QuantumStrategy#quantize(double)
+     */
+    @Override
+    public int quantize(double value) throws QuantizationException {
+        return getTable().quantize(value);
+    }
+
+    /**
+     * Overridden to read the values as integers and search them among the
+     * breakpoints.
+     *
+     * @see QuantumStrategy#quantize(PixelData, int, int, byte[], int)
+     */
+    @Override
+    public void quantize(PixelData data, int offset, int length, byte[] dst,
+            int dstOffset) throws QuantizationException {
+        String type = data.getPixelsType();
+        ByteBuffer buf = data.getData();
+        ThresholdTable t = getTable();
+        if (PixelsType.VALUE_INT32.equals(type)) {
+            for (int i = 0; i < length; i++) {
+                dst[dstOffset + i] = (byte) t.quantize(
+                        (long) buf.getInt((offset + i) << 2));
+            }
+        } else if (PixelsType.VALUE_UINT32.equals(type)) {
+            for (int i = 0; i < length; i++) {
+                dst[dstOffset + i] = (byte) t.quantize(
+                        buf.getInt((offset + i) << 2) & 0xFFFFFFFFL);
+            }
+        } else {
+            super.quantize(data, offset, length, dst, dstOffset);
+        }
+    }
+
+    /**
+     * Overridden to search the values among the breakpoints.
+     *
+     * @see QuantumStrategy#quantize(double[], int, int, byte[], int)
+     */
+    @Override
+    public void quantize(double[] src, int offset, int length, byte[] dst,
+            int dstOffset) throws QuantizationException {
+        ThresholdTable t = getTable();
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = (byte) t.quantize(src[offset + i]);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.quantum;
+
+import java.util.Arrays;
+
+/**
+ * Immutable step function mapping an integer onto the codomain. The function
+ * is described by its breakpoints: a value is mapped onto the value of the
+ * last breakpoint it reaches. As the codomain has at most 256 values, a
+ * quantization window has a few hundred breakpoints whatever the range of
+ * the pixels type, so the table has a constant size.
+ * <p>
+ * The breakpoints are padded to a power of two minus one so that the search
+ * always runs the same number of steps and each step only selects an offset,
+ * which the compiler turns into a conditional move rather than a branch.
+ * </p>
+ *
+ * @since 5.5
+ */
+final class ThresholdTable {
+
+    /** The breakpoints in increasing order, padded with the maximum value. */
+    private final long[] breakpoints;
+
+    /**
+     * The mapped values. The value at index <code>i</code> is mapped by the
+     * integers reaching the first <code>i</code> breakpoints only.
+     */
+    private final int[] values;
+
+    /** Half the number of values, i.e. the first step of the search. */
+    private final int half;
+
+    /** The mapping the table was built from. */
+    private final CompiledQuantization source;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param breakpoints The breakpoints in increasing order.
+     * @param values The mapped values, one more than the breakpoints.
+     * @param source The mapping the table was built from.
+     */
+    ThresholdTable(long[] breakpoints, int[] values,
+            CompiledQuantization source)
+    {
+        this.source = source;
+        int size = Integer.highestOneBit(Math.max(1, breakpoints.length)) << 1;
+        this.breakpoints = Arrays.copyOf(breakpoints, size - 1);
+        Arrays.fill(this.breakpoints, breakpoints.length, size - 1,
+                Long.MAX_VALUE);
+        this.values = Arrays.copyOf(values, size);
+        Arrays.fill(this.values, values.length, size,
+                values[values.length - 1]);
+        half = size >> 1;
+    }
+
+    /**
+     * Maps the specified integer onto the codomain.
+     *
+     * @param value The value to handle.
+     * @return See above.
+     */
+    int quantize(long value)
+    {
+        int pos = 0;
+        for (int step = half; step > 0; step >>= 1) {
+            pos += breakpoints[pos + step - 1] <= value ? step : 0;
+        }
+        return values[pos];
+    }
+
+    /**
+     * Maps the specified value onto the codomain. The integers are looked up
+     * in the table, the other values are mapped by the source mapping.
+     *
+     * @param value The value to handle.
+     * @return See above.
+     */
+    int quantize(double value)
+    {
+        long x = (long) value;
+        if (x == value && x != Long.MAX_VALUE && x != Long.MIN_VALUE) {
+            return quantize(x);
+        }
+        return source.quantize(value);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package ome.util.mem;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link WeakValueRegistry} instances.
+ */
+@Test
+public class TestWeakValueRegistry {
+
+    /**
+     * Waits for the garbage collector to enqueue a discarded value, and
+     * hands the reference over to the registry when it polls the queue.
+     */
+    private static final class DiscardQueue extends ReferenceQueue<int[]> {
+
+        /** The references removed while waiting, not polled yet. */
+        private final Queue<Reference<? extends int[]>> removed =
+                new ConcurrentLinkedQueue<Reference<? extends int[]>>();
+
+        /**
+         * Waits for a value to be discarded.
+         *
+         * @return <code>true</code> if a value was discarded,
+         *         <code>false</code> otherwise.
+         * @throws InterruptedException If interrupted while waiting.
+         */
+        boolean awaitDiscarded() throws InterruptedException {
+            for (int i = 0; i < 50; i++) {
+                System.gc();
+                Reference<? extends int[]> ref = remove(100);
+                if (ref != null) {
+                    removed.add(ref);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Reference<? extends int[]> poll() {
+            Reference<? extends int[]> ref = removed.poll();
+            return ref != null ? ref : super.poll();
+        }
+    }
+
+    public void testInternReturnsRegisteredValue() {
+        WeakValueRegistry<String, int[]> registry =
+                new WeakValueRegistry<String, int[]>();
+        int[] first = new int[] {1, 2, 3};
+        int[] second = new int[] {1, 2, 3};
+        Assert.assertNull(registry.get("a"));
+        Assert.assertSame(registry.intern("a", first), first);
+        Assert.assertSame(registry.intern("a", second), first);
+        Assert.assertSame(registry.get("a"), first);
+        Assert.assertSame(registry.intern("b", second), second);
+        Assert.assertEquals(registry.size(), 2);
+    }
+
+    public void testDiscardedValueIsRemoved() throws Exception {
+        DiscardQueue queue = new DiscardQueue();
+        WeakValueRegistry<String, int[]> registry =
+                new WeakValueRegistry<String, int[]>(queue);
+        int[] kept = new int[1];
+        registry.intern("a", new int[1024]);
+        registry.intern("b", kept);
+        Assert.assertTrue(queue.awaitDiscarded(),
+                "The value was not collected.");
+        Assert.assertEquals(registry.size(), 1);
+        Assert.assertSame(registry.get("b"), kept);
+        Assert.assertNull(registry.get("a"));
+        int[] value = new int[1];
+        Assert.assertSame(registry.intern("a", value), value);
+        Assert.assertEquals(registry.size(), 2);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testInternNull() {
+        new WeakValueRegistry<String, int[]>().intern("a", null);
+    }
+}
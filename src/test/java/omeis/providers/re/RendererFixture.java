@@ -0,0 +1,248 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.awt.Dimension;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ome.io.nio.PixelBuffer;
+import ome.model.core.Channel;
+import ome.model.core.Pixels;
+import ome.model.display.ChannelBinding;
+import ome.model.display.QuantumDef;
+import ome.model.display.RenderingDef;
+import ome.model.enums.Family;
+import ome.model.enums.PixelsType;
+import ome.model.enums.RenderingModel;
+import ome.util.PixelData;
+import omeis.providers.re.quantum.QuantumFactory;
+
+/**
+ * Creates a {@link Renderer} rendering a single 8-bit channel in greyscale
+ * from pixels generated in memory, possibly at several resolution levels,
+ * and records how the pixel buffer is read.
+ */
+class RendererFixture {
+
+    /** The size of each resolution level, <code>{sizeX, sizeY}</code>. */
+    private final int[][] levels;
+
+    /** The tiles read, as <code>level:x,y,width,height</code>. */
+    final List<String> reads =
+            Collections.synchronizedList(new ArrayList<String>());
+
+    /** The threads the buffer was read by. */
+    final List<Thread> readers =
+            Collections.synchronizedList(new ArrayList<Thread>());
+
+    /** The number of times the buffer was closed. */
+    final AtomicInteger closes = new AtomicInteger();
+
+    /** The number of reads in progress. */
+    final AtomicInteger activeReads = new AtomicInteger();
+
+    /** The maximum number of reads in progress at the same time. */
+    final AtomicInteger maxActiveReads = new AtomicInteger();
+
+    /** Counted down when a read starts if not <code>null</code>. */
+    volatile CountDownLatch readStarted;
+
+    /** The reads wait for it to be opened if not <code>null</code>. */
+    volatile CountDownLatch gate;
+
+    /** Thrown by the reads if not <code>null</code>. */
+    volatile RuntimeException failure;
+
+    /** The tile size of the buffer or <code>null</code>. */
+    volatile Dimension tileSize;
+
+    /** The current resolution level. */
+    private volatile int level;
+
+    /** The pixel buffer. */
+    final PixelBuffer buffer;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param levels The size of each resolution level,
+     *               <code>{sizeX, sizeY}</code>, the first one being the
+     *               size of the pixels set.
+     */
+    RendererFixture(int[]... levels) {
+        this.levels = levels;
+        buffer = (PixelBuffer) Proxy.newProxyInstance(
+                PixelBuffer.class.getClassLoader(),
+                new Class<?>[] {PixelBuffer.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                return RendererFixture.this.invoke(method.getName(), args);
+            }
+        });
+    }
+
+    /**
+     * Returns the value of a pixel.
+     *
+     * @param level The resolution level.
+     * @param x The position along the <i>X</i>-axis.
+     * @param y The position along the <i>Y</i>-axis.
+     * @return See above.
+     */
+    static int value(int level, int x, int y) {
+        return (7 * x + 13 * y + 31 * level) & 0xFF;
+    }
+
+    /**
+     * Reads a region of the current resolution level.
+     *
+     * @param x The position of the region along the <i>X</i>-axis.
+     * @param y The position of the region along the <i>Y</i>-axis.
+     * @param width The width of the region.
+     * @param height The height of the region.
+     * @param step The distance between the pixels read, <code>1</code> to
+     *             read every pixel.
+     * @return See above.
+     */
+    private PixelData read(int x, int y, int width, int height, int step) {
+        int l = level;
+        reads.add(l + ":" + x + "," + y + "," + width + "," + height);
+        readers.add(Thread.currentThread());
+        int active = activeReads.incrementAndGet();
+        int max;
+        while ((max = maxActiveReads.get()) < active
+                && !maxActiveReads.compareAndSet(max, active)) {
+            continue;
+        }
+        CountDownLatch started = readStarted;
+        if (started != null) {
+            started.countDown();
+        }
+        try {
+            CountDownLatch g = gate;
+            if (g != null) {
+                g.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            activeReads.decrementAndGet();
+        }
+        RuntimeException e = failure;
+        if (e != null) {
+            throw e;
+        }
+        int w = width / step;
+        int h = height / step;
+        ByteBuffer buf = ByteBuffer.allocate(w * h);
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                buf.put(j * w + i,
+                        (byte) value(l, x + i * step, y + j * step));
+            }
+        }
+        return new PixelData(PixelsType.VALUE_UINT8, buf);
+    }
+
+    /**
+     * Implements the methods of the pixel buffer used by the renderer.
+     *
+     * @param name The name of the method.
+     * @param args The arguments.
+     * @return The value returned by the method.
+     */
+    private Object invoke(String name, Object[] args) {
+        int[] size = levels[level];
+        if ("getTile".equals(name)) {
+            return read((Integer) args[3], (Integer) args[4],
+                    (Integer) args[5], (Integer) args[6], 1);
+        } else if ("getPlaneRegion".equals(name)) {
+            return read((Integer) args[0], (Integer) args[1],
+                    (Integer) args[2], (Integer) args[3],
+                    (Integer) args[7] + 1);
+        } else if ("getPlane".equals(name)) {
+            return read(0, 0, size[0], size[1], 1);
+        } else if ("getSizeX".equals(name)) {
+            return size[0];
+        } else if ("getSizeY".equals(name)) {
+            return size[1];
+        } else if ("getSizeZ".equals(name) || "getSizeC".equals(name)
+                || "getSizeT".equals(name)) {
+            return 1;
+        } else if ("getResolutionLevel".equals(name)) {
+            return level;
+        } else if ("setResolutionLevel".equals(name)) {
+            level = (Integer) args[0];
+            return null;
+        } else if ("getResolutionLevels".equals(name)) {
+            return levels.length;
+        } else if ("getTileSize".equals(name)) {
+            return tileSize;
+        } else if ("close".equals(name)) {
+            closes.incrementAndGet();
+            return null;
+        } else if ("hashCode".equals(name)) {
+            return System.identityHashCode(this);
+        } else if ("equals".equals(name)) {
+            return args[0] == buffer;
+        } else if ("toString".equals(name)) {
+            return "RendererFixture" + Arrays.deepToString(levels);
+        }
+        throw new UnsupportedOperationException(name);
+    }
+
+    /**
+     * Creates a renderer reading the buffer of the fixture.
+     *
+     * @param executor The threads used to render concurrently.
+     * @return See above.
+     */
+    Renderer createRenderer(RenderingExecutor executor) {
+        Pixels pixels = new Pixels();
+        pixels.setId(1L);
+        PixelsType type = new PixelsType(PixelsType.VALUE_UINT8);
+        type.setBitSize(8);
+        pixels.setPixelsType(type);
+        pixels.setSizeX(levels[0][0]);
+        pixels.setSizeY(levels[0][1]);
+        pixels.setSizeZ(1);
+        pixels.setSizeC(1);
+        pixels.setSizeT(1);
+        pixels.addChannel(new Channel());
+        QuantumDef qDef = new QuantumDef();
+        qDef.setCdStart(0);
+        qDef.setCdEnd(255);
+        qDef.setBitResolution(255);
+        ChannelBinding cb = new ChannelBinding();
+        cb.setActive(true);
+        cb.setFamily(new Family(Family.VALUE_LINEAR));
+        cb.setCoefficient(1.0);
+        cb.setNoiseReduction(false);
+        cb.setInputStart(0.0);
+        cb.setInputEnd(255.0);
+        cb.setRed(255);
+        cb.setGreen(255);
+        cb.setBlue(255);
+        cb.setAlpha(255);
+        RenderingDef def = new RenderingDef();
+        def.setQuantization(qDef);
+        def.setModel(new RenderingModel(Renderer.MODEL_GREYSCALE));
+        def.addChannelBinding(cb);
+        QuantumFactory factory = new QuantumFactory(
+                Arrays.asList(new Family(Family.VALUE_LINEAR)));
+        return new Renderer(factory, Collections.<RenderingModel>emptyList(),
+                pixels, def, buffer, null, executor);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link CancellationToken} instances.
+ */
+@Test
+public class TestCancellationToken {
+
+    public void testCancel() {
+        CancellationToken token = new CancellationToken();
+        Assert.assertFalse(token.isCancelled());
+        token.check();
+        token.cancel();
+        Assert.assertTrue(token.isCancelled());
+        try {
+            token.check();
+            Assert.fail("Exception expected.");
+        } catch (RenderingCancelledException e) {
+            Assert.assertEquals(e.getMessage(), "Rendering cancelled.");
+        }
+    }
+
+    public void testDeadline() throws Exception {
+        CancellationToken token = new CancellationToken(1, TimeUnit.HOURS);
+        Assert.assertFalse(token.isCancelled());
+        token = new CancellationToken(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(token.isCancelled());
+        try {
+            token.check();
+            Assert.fail("Exception expected.");
+        } catch (RenderingCancelledException e) {
+            Assert.assertEquals(e.getMessage(),
+                    "Rendering deadline exceeded.");
+        }
+    }
+}
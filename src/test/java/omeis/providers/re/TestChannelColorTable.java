@@ -0,0 +1,102 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.util.Random;
+
+import ome.model.core.Pixels;
+import ome.model.display.QuantumDef;
+import ome.model.enums.Family;
+import ome.model.enums.PixelsType;
+import omeis.providers.re.codomain.CodomainChain;
+import omeis.providers.re.quantum.Quantization_8_16_bit;
+import omeis.providers.re.quantum.QuantumStrategy;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link ChannelColorTable} instances.
+ */
+@Test
+public class TestChannelColorTable {
+
+    /**
+     * Creates a strategy for unsigned 16-bit data.
+     *
+     * @param start The start of the input window.
+     * @param end The end of the input window.
+     * @return See above.
+     */
+    private QuantumStrategy createStrategy(double start, double end) {
+        QuantumDef qDef = new QuantumDef();
+        qDef.setCdStart(0);
+        qDef.setCdEnd(255);
+        qDef.setBitResolution(255);
+        Pixels pixels = new Pixels();
+        PixelsType type = new PixelsType(PixelsType.VALUE_UINT16);
+        type.setBitSize(16);
+        pixels.setPixelsType(type);
+        QuantumStrategy qs = new Quantization_8_16_bit(qDef, pixels);
+        qs.setExtent(0, 65535);
+        qs.setQuantizationMap(new Family(Family.VALUE_LINEAR), 1.0, false);
+        qs.setWindow(start, end);
+        return qs;
+    }
+
+    public void testAddSaturatesEachComponent() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            int a = random.nextInt() & 0xFFFFFF;
+            int b = random.nextInt() & 0xFFFFFF;
+            int expected = 0;
+            for (int shift = 0; shift < 24; shift += 8) {
+                int v = ((a >> shift) & 0xFF) + ((b >> shift) & 0xFF);
+                expected |= Math.min(v, 255) << shift;
+            }
+            Assert.assertEquals(ChannelColorTable.add(a, b), expected);
+        }
+    }
+
+    public void testGetMatchesQuantize() throws Exception {
+        QuantumStrategy qs = createStrategy(100, 3000);
+        Optimizations optimizations = new Optimizations();
+        ChannelColorTable table = new ChannelColorTable(
+                new ChannelMapping(qs, null), new int[] {255, 0, 128, 255},
+                null, optimizations, ChannelColorTable.PACKED_ARGB);
+        for (int x = 0; x <= 65535; x += 7) {
+            int v = qs.quantize(x);
+            int expected = v << 16 | (int) (128 / 255.0 * v);
+            Assert.assertEquals(table.get(x), expected);
+        }
+    }
+
+    public void testPrimaryColor() throws Exception {
+        QuantumStrategy qs = createStrategy(0, 255);
+        Optimizations optimizations = new Optimizations();
+        optimizations.setPrimaryColorEnabled(true);
+        optimizations.setAlphalessRendering(true);
+        ChannelColorTable table = new ChannelColorTable(
+                new ChannelMapping(qs, null), new int[] {0, 255, 0, 255},
+                null, optimizations, ChannelColorTable.PACKED_RGBA);
+        Assert.assertEquals(table.get(255), 255 << 8);
+        Assert.assertEquals(table.get(0), 0);
+    }
+
+    public void testMappingTracksSettings() throws Exception {
+        QuantumStrategy qs = createStrategy(0, 255);
+        CodomainChain cc = new CodomainChain(0, 255);
+        ChannelMapping mapping = new ChannelMapping(qs, cc);
+        Assert.assertTrue(mapping.isCurrent(qs, cc));
+        Assert.assertEquals(mapping.map(100), qs.quantize(100));
+        qs.setWindow(0, 1000);
+        Assert.assertFalse(mapping.isCurrent(qs, cc));
+        mapping = new ChannelMapping(qs, cc);
+        cc.setInterval(10, 200);
+        Assert.assertFalse(mapping.isCurrent(qs, cc));
+        Assert.assertFalse(mapping.isCurrent(qs, null));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import omeis.providers.re.data.PlaneCache;
+import omeis.providers.re.data.RegionDef;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for the tiles exported by {@link PyramidExporter}.
+ */
+@Test
+public class TestPyramidExporter {
+
+    private RenderingExecutor executor;
+
+    private ExecutorService ioExecutor;
+
+    private RendererFixture fixture;
+
+    private Renderer renderer;
+
+    private PyramidExporter exporter;
+
+    /** The levels started, as <code>level:sizeX,sizeY,width,height</code>. */
+    private List<String> levels;
+
+    /** The tiles written, as <code>level:column,row:x,y,width,height</code>. */
+    private List<String> tiles;
+
+    /** Records the levels and the tiles. */
+    private TileSink sink;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = new RenderingExecutor(2, 2, "test");
+        ioExecutor = Executors.newFixedThreadPool(2);
+        // The full resolution level is not the last one.
+        fixture = new RendererFixture(new int[] {40, 30}, new int[] {10, 8},
+                new int[] {20, 15});
+        renderer = fixture.createRenderer(executor);
+        renderer.setPlaneCache(null);
+        renderer.setIOExecutor(ioExecutor);
+        exporter = new PyramidExporter(renderer);
+        levels = new ArrayList<String>();
+        tiles = new ArrayList<String>();
+        sink = new TileSink() {
+            public void startLevel(int level, int sizeX, int sizeY,
+                    int tileWidth, int tileHeight) {
+                levels.add(level + ":" + sizeX + "," + sizeY + ","
+                        + tileWidth + "," + tileHeight);
+            }
+
+            public void writeTile(int level, int column, int row,
+                    RegionDef region, int[] argb) {
+                tiles.add(level + ":" + column + "," + row + ":"
+                        + region.getX() + "," + region.getY() + ","
+                        + region.getWidth() + "," + region.getHeight());
+                for (int y = 0; y < region.getHeight(); y++) {
+                    for (int x = 0; x < region.getWidth(); x++) {
+                        int v = RendererFixture.value(level,
+                                region.getX() + x, region.getY() + y);
+                        Assert.assertEquals(argb[y * region.getWidth() + x],
+                                0xFF000000 | v << 16 | v << 8 | v);
+                    }
+                }
+            }
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+        executor.shutdown();
+    }
+
+    public void testSmallestLevelFirst() throws Exception {
+        exporter.setTileSize(new Dimension(16, 16));
+        exporter.export(0, 0, sink);
+        Assert.assertEquals(levels, Arrays.asList("1:10,8,16,16",
+                "2:20,15,16,16", "0:40,30,16,16"));
+        Assert.assertEquals(renderer.getResolutionLevel(), 0);
+    }
+
+    public void testEdgeTiles() throws Exception {
+        exporter.setTileSize(new Dimension(16, 16));
+        exporter.export(0, 0, sink);
+        Assert.assertEquals(tiles, Arrays.asList(
+                "1:0,0:0,0,10,8",
+                "2:0,0:0,0,16,15", "2:1,0:16,0,4,15",
+                "0:0,0:0,0,16,16", "0:1,0:16,0,16,16", "0:2,0:32,0,8,16",
+                "0:0,1:0,16,16,14", "0:1,1:16,16,16,14",
+                "0:2,1:32,16,8,14"));
+        Assert.assertEquals(exporter.getTileCount(), 9);
+        Assert.assertEquals(exporter.getTilesWritten(), 9);
+        Assert.assertEquals(exporter.getPixelsWritten(),
+                40 * 30 + 10 * 8 + 20 * 15);
+        Assert.assertEquals(exporter.getProgress(), 1.0);
+    }
+
+    public void testTileSizeOfBuffer() throws Exception {
+        fixture.tileSize = new Dimension(32, 8);
+        exporter.export(0, 0, sink);
+        // 1 + 1 * 2 + 2 * 4 tiles.
+        Assert.assertEquals(exporter.getTileCount(), 11);
+        Assert.assertEquals(tiles.size(), 11);
+        Assert.assertEquals(levels.get(2), "0:40,30,32,8");
+        Assert.assertEquals(tiles.get(tiles.size() - 1), "0:1,3:32,24,8,6");
+    }
+
+    public void testCachesBypassed() throws Exception {
+        RenderedImageCache resultCache = new RenderedImageCache(1 << 20);
+        PlaneCache planeCache = new PlaneCache(1 << 20);
+        renderer.setResultCache(resultCache);
+        renderer.setPlaneCache(planeCache);
+        exporter.setTileSize(new Dimension(16, 16));
+        exporter.export(0, 0, sink);
+        Assert.assertEquals(resultCache.size(), 0);
+        Assert.assertEquals(planeCache.size(), 0);
+        Assert.assertSame(renderer.getResultCache(), resultCache);
+        Assert.assertSame(renderer.getPlaneCache(), planeCache);
+    }
+
+    public void testRendererIsDedicatedToExport() throws Exception {
+        renderer.setResolutionLevel(2);
+        final RenderedImageCache resultCache = new RenderedImageCache(1 << 20);
+        renderer.setResultCache(resultCache);
+        final List<String> states = new ArrayList<String>();
+        final List<Exception> failures = new ArrayList<Exception>();
+        exporter.setTileSize(new Dimension(16, 16));
+        exporter.export(0, 0, new TileSink() {
+            public void startLevel(int level, int sizeX, int sizeY,
+                    int tileWidth, int tileHeight) {}
+
+            public void writeTile(int level, int column, int row,
+                    RegionDef region, int[] argb) throws IOException {
+                // The renderer is at the level exported, without caches.
+                states.add(level + ":" + renderer.getResolutionLevel() + ","
+                        + renderer.getResultCache() + ","
+                        + renderer.getPlaneCache());
+                try {
+                    new PyramidExporter(renderer).export(0, 0, sink);
+                } catch (Exception e) {
+                    failures.add(e);
+                }
+            }
+        });
+        Assert.assertEquals(states.size(), 9);
+        Assert.assertEquals(states.get(0), "1:1,null,null");
+        Assert.assertEquals(states.get(8), "0:0,null,null");
+        Assert.assertEquals(failures.size(), 9);
+        for (Exception e : failures) {
+            Assert.assertTrue(e instanceof IllegalStateException);
+        }
+        Assert.assertTrue(tiles.isEmpty());
+        Assert.assertEquals(renderer.getResolutionLevel(), 2);
+        Assert.assertSame(renderer.getResultCache(), resultCache);
+    }
+
+    public void testRendererRestoredAfterFailure() throws Exception {
+        renderer.setResolutionLevel(2);
+        exporter.setTileSize(new Dimension(16, 16));
+        final IOException failure = new IOException("full");
+        try {
+            exporter.export(0, 0, new TileSink() {
+                public void startLevel(int level, int sizeX, int sizeY,
+                        int tileWidth, int tileHeight) {}
+
+                public void writeTile(int level, int column, int row,
+                        RegionDef region, int[] argb) throws IOException {
+                    if (level == 2) {
+                        throw failure;
+                    }
+                }
+            });
+            Assert.fail("The failure of the sink is not thrown.");
+        } catch (IOException e) {
+            Assert.assertSame(e, failure);
+        }
+        Assert.assertEquals(renderer.getResolutionLevel(), 2);
+        // The renderer can be exported again.
+        exporter.export(0, 0, sink);
+        Assert.assertEquals(tiles.size(), 9);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import ome.model.core.Pixels;
+import ome.model.display.QuantumDef;
+import ome.model.enums.Family;
+import ome.model.enums.PixelsType;
+import omeis.providers.re.data.PlaneCache;
+import omeis.providers.re.data.PlaneDef;
+import omeis.providers.re.quantum.Quantization_8_16_bit;
+import omeis.providers.re.quantum.QuantumStrategy;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link QuantizedPlaneCache} instances.
+ */
+@Test
+public class TestQuantizedPlaneCache {
+
+    /**
+     * Creates a strategy for unsigned 8-bit data.
+     *
+     * @return See above.
+     */
+    private QuantumStrategy createStrategy() {
+        QuantumDef qDef = new QuantumDef();
+        qDef.setCdStart(0);
+        qDef.setCdEnd(255);
+        qDef.setBitResolution(255);
+        Pixels pixels = new Pixels();
+        PixelsType type = new PixelsType(PixelsType.VALUE_UINT8);
+        type.setBitSize(8);
+        pixels.setPixelsType(type);
+        QuantumStrategy qs = new Quantization_8_16_bit(qDef, pixels);
+        qs.setExtent(0, 255);
+        qs.setQuantizationMap(new Family(Family.VALUE_LINEAR), 1.0, false);
+        qs.setWindow(0, 255);
+        return qs;
+    }
+
+    private PlaneCache.Key key(int z, int channel) {
+        PlaneDef pDef = new PlaneDef(PlaneDef.XY, 0);
+        pDef.setZ(z);
+        return new PlaneCache.Key(0L, 0, pDef, channel);
+    }
+
+    public void testSettingsChangeDiscardsPlane() {
+        QuantumStrategy qs = createStrategy();
+        QuantizedPlaneCache cache = new QuantizedPlaneCache(2, 1);
+        byte[] data = new byte[16];
+        cache.put(key(0, 0), new ChannelMapping(qs, null), data);
+        Assert.assertSame(cache.get(key(0, 0), new ChannelMapping(qs, null)),
+                data);
+        qs.setWindow(10, 200);
+        Assert.assertNull(cache.get(key(0, 0), new ChannelMapping(qs, null)));
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    public void testKeepsLastPlanesOfEachChannel() {
+        QuantumStrategy qs = createStrategy();
+        ChannelMapping mapping = new ChannelMapping(qs, null);
+        QuantizedPlaneCache cache = new QuantizedPlaneCache(2, 2);
+        for (int z = 0; z < 3; z++) {
+            cache.put(key(z, 0), mapping, new byte[16]);
+            cache.put(key(z, 1), mapping, new byte[16]);
+        }
+        Assert.assertEquals(cache.size(), 4);
+        Assert.assertNull(cache.get(key(0, 0), mapping));
+        Assert.assertNotNull(cache.get(key(2, 1), mapping));
+        cache.invalidate(1);
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertNull(cache.get(key(2, 1), mapping));
+        Assert.assertNotNull(cache.get(key(2, 0), mapping));
+        cache.clear();
+        Assert.assertEquals(cache.size(), 0);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import omeis.providers.re.data.RegionDef;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link RegionCoalescer}.
+ */
+@Test
+public class TestRegionCoalescer {
+
+    private void assertBounds(RegionDef r, int x, int y, int w, int h) {
+        Assert.assertEquals(r.getX(), x);
+        Assert.assertEquals(r.getY(), y);
+        Assert.assertEquals(r.getWidth(), w);
+        Assert.assertEquals(r.getHeight(), h);
+    }
+
+    public void testMergesAdjacentTiles() {
+        List<RegionDef> regions = new ArrayList<RegionDef>();
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 3; x++) {
+                regions.add(new RegionDef(256 * x, 256 * y, 256, 256));
+            }
+        }
+        // Far from the others.
+        regions.add(new RegionDef(2048, 2048, 256, 256));
+        List<RegionCoalescer.Group> groups =
+                RegionCoalescer.coalesce(regions, Long.MAX_VALUE, 1);
+        Assert.assertEquals(groups.size(), 2);
+        Assert.assertEquals(groups.get(0).getIndices(),
+                Arrays.asList(0, 1, 2, 3, 4, 5));
+        assertBounds(groups.get(0).getBounds(), 0, 0, 768, 512);
+        Assert.assertEquals(groups.get(1).getIndices(), Arrays.asList(6));
+        assertBounds(groups.get(1).getBounds(), 2048, 2048, 256, 256);
+    }
+
+    public void testDoesNotMergeDiagonalTiles() {
+        List<RegionDef> regions = Arrays.asList(
+                new RegionDef(0, 0, 10, 10), new RegionDef(10, 10, 10, 10));
+        Assert.assertEquals(
+                RegionCoalescer.coalesce(regions, Long.MAX_VALUE, 1).size(), 2);
+    }
+
+    public void testMaximumSize() {
+        List<RegionDef> regions = Arrays.asList(new RegionDef(0, 0, 10, 10),
+                new RegionDef(10, 0, 10, 10), new RegionDef(20, 0, 10, 10));
+        List<RegionCoalescer.Group> groups =
+                RegionCoalescer.coalesce(regions, 200, 1);
+        Assert.assertEquals(groups.size(), 2);
+        assertBounds(groups.get(0).getBounds(), 0, 0, 20, 10);
+        Assert.assertEquals(RegionCoalescer.coalesce(regions, 0, 1).size(), 3);
+    }
+
+    public void testCrop() {
+        int[] image = new int[4 * 3];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = i;
+        }
+        RegionDef bounds = new RegionDef(10, 20, 4, 3);
+        Assert.assertEquals(RegionCoalescer.crop(image, bounds,
+                new RegionDef(11, 21, 2, 2), 1), new int[] {5, 6, 9, 10});
+    }
+
+    public void testDoesNotMergeMisalignedRegions() {
+        List<RegionDef> regions = Arrays.asList(new RegionDef(0, 0, 10, 10),
+                new RegionDef(10, 0, 10, 10), new RegionDef(19, 0, 10, 10),
+                new RegionDef(0, 9, 20, 10));
+        List<RegionCoalescer.Group> groups =
+                RegionCoalescer.coalesce(regions, Long.MAX_VALUE, 2);
+        Assert.assertEquals(groups.size(), 3);
+        Assert.assertEquals(groups.get(0).getIndices(), Arrays.asList(0, 1));
+        Assert.assertEquals(groups.get(1).getIndices(), Arrays.asList(2));
+        Assert.assertEquals(groups.get(2).getIndices(), Arrays.asList(3));
+    }
+
+    public void testCropDownsampled() {
+        // The image of a region of 8x6 pixels downsampled by 2.
+        int[] image = new int[4 * 3];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = i;
+        }
+        RegionDef bounds = new RegionDef(10, 20, 8, 6);
+        Assert.assertEquals(RegionCoalescer.crop(image, bounds,
+                new RegionDef(12, 22, 5, 4), 2), new int[] {5, 6, 9, 10});
+    }
+}
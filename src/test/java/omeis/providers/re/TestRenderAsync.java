@@ -0,0 +1,190 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import omeis.providers.re.data.PlaneDef;
+import omeis.providers.re.data.RegionDef;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for the asynchronous renders of a {@link Renderer}, the
+ * data they read ahead and the pooled buffers of the renders that fail.
+ */
+@Test
+public class TestRenderAsync {
+
+    private RenderingExecutor executor;
+
+    private ExecutorService ioExecutor;
+
+    private RendererFixture fixture;
+
+    private Renderer renderer;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = new RenderingExecutor(2, 2, "test");
+        ioExecutor = Executors.newFixedThreadPool(2);
+        fixture = new RendererFixture(new int[] {40, 30});
+        renderer = fixture.createRenderer(executor);
+        renderer.setPlaneCache(null);
+        renderer.setIOExecutor(ioExecutor);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+        executor.shutdown();
+    }
+
+    /**
+     * Creates the definition of a tile.
+     *
+     * @param x The position of the tile along the <i>X</i>-axis.
+     * @return See above.
+     */
+    private PlaneDef tile(int x) {
+        PlaneDef pd = new PlaneDef(PlaneDef.XY, 0);
+        pd.setZ(0);
+        pd.setRegion(new RegionDef(x, 0, 20, 30));
+        return pd;
+    }
+
+    public void testReadAheadSkipsCachedImage() throws Exception {
+        renderer.setResultCache(new RenderedImageCache(1 << 20));
+        int[] expected = renderer.renderAsPackedInt(tile(0), null).clone();
+        Assert.assertEquals(fixture.reads.size(), 1);
+        Assert.assertEquals(renderer.renderAsPackedIntAsync(tile(0)).get(),
+                expected);
+        Assert.assertEquals(fixture.reads.size(), 1);
+        // The banded images are cached apart.
+        renderer.renderAsync(tile(0)).get();
+        Assert.assertEquals(fixture.reads.size(), 2);
+    }
+
+    public void testReadAheadSkipsQuantizedChannels() throws Exception {
+        renderer.setQuantizedPlaneCacheSize(2);
+        int[] expected = renderer.renderAsPackedInt(tile(0), null).clone();
+        Assert.assertEquals(fixture.reads.size(), 1);
+        Assert.assertEquals(renderer.renderAsPackedIntAsync(tile(0)).get(),
+                expected);
+        Assert.assertEquals(fixture.reads.size(), 1);
+        renderer.renderAsPackedIntAsync(tile(20)).get();
+        Assert.assertEquals(fixture.reads.size(), 2);
+    }
+
+    public void testBatchSkipsCachedImages() throws Exception {
+        renderer.setResultCache(new RenderedImageCache(1 << 20));
+        int[] first = renderer.renderAsPackedInt(tile(0), null).clone();
+        fixture.reads.clear();
+        List<int[]> images = renderer.renderBatch(
+                Arrays.asList(tile(0), tile(20)));
+        Assert.assertEquals(images.get(0), first);
+        Assert.assertEquals(fixture.reads.size(), 1);
+        Assert.assertTrue(fixture.reads.get(0).startsWith("0:20,"));
+    }
+
+    public void testCancelledRenderIsNotOverlapped() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        fixture.gate = gate;
+        fixture.readStarted = started;
+        CompletableFuture<int[]> first =
+                renderer.renderAsPackedIntAsync(tile(0));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(fixture.activeReads.get(), 1);
+        Assert.assertTrue(first.cancel(true));
+        Assert.assertTrue(first.isCancelled());
+        CompletableFuture<int[]> second =
+                renderer.renderAsPackedIntAsync(tile(20));
+        // The second render cannot end before the read of the first one.
+        Assert.assertFalse(second.isDone());
+        gate.countDown();
+        Assert.assertNotNull(second.get());
+        // A read of the second render overlapping the first one would have
+        // waited on the gate along with it.
+        Assert.assertEquals(fixture.maxActiveReads.get(), 1);
+        Assert.assertEquals(fixture.reads.size(), 2);
+        try {
+            first.get();
+            Assert.fail("The first render was not cancelled.");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    public void testFailedRenderReleasesBuffer() throws Exception {
+        RenderBufferPool pool = new RenderBufferPool(1 << 20);
+        renderer.setBufferPool(pool);
+        fixture.failure = new IllegalStateException("Read failed.");
+        try {
+            renderer.renderAsPackedInt(tile(0), null);
+            Assert.fail("The failure of the read was not reported.");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "Read failed.");
+        }
+        try {
+            renderer.render(tile(0));
+            Assert.fail("The failure of the read was not reported.");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "Read failed.");
+        }
+        Assert.assertEquals(pool.getAllocations(), 2);
+        Assert.assertTrue(pool.getWeight() > 0);
+        fixture.failure = null;
+        renderer.renderAsPackedInt(tile(0), null);
+        renderer.render(tile(0));
+        // The buffers of the failed renders are reused.
+        Assert.assertEquals(pool.getAllocations(), 2);
+        Assert.assertEquals(pool.getWeight(), 0);
+    }
+
+    public void testCancelledRenderReleasesBuffer() throws Exception {
+        RenderBufferPool pool = new RenderBufferPool(1 << 20);
+        renderer.setBufferPool(pool);
+        CancellationToken token = new CancellationToken();
+        renderer.setCancellationToken(token);
+        CountDownLatch gate = new CountDownLatch(1);
+        fixture.gate = gate;
+        final Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    renderer.renderAsPackedInt(tile(0), null);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        thread.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (fixture.activeReads.get() == 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        Assert.assertEquals(fixture.activeReads.get(), 1);
+        // The buffer is leased before the data is read.
+        Assert.assertEquals(pool.getAllocations(), 1);
+        token.cancel();
+        gate.countDown();
+        thread.join(10000);
+        Assert.assertTrue(failure[0] instanceof RenderingCancelledException);
+        Assert.assertTrue(pool.getWeight() > 0);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import omeis.providers.re.data.PlaneCache;
+import omeis.providers.re.data.PlaneDef;
+import omeis.providers.re.data.PlanePyramid;
+import omeis.providers.re.data.RegionDef;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for
+ * {@link Renderer#renderBands(PlaneDef, int, RenderedBandHandler)}.
+ */
+@Test
+public class TestRenderBands {
+
+    /** The number of pixels along the <i>X</i>-axis. */
+    private static final int SIZE_X = 37;
+
+    /** The number of pixels along the <i>Y</i>-axis. */
+    private static final int SIZE_Y = 29;
+
+    private RenderingExecutor executor;
+
+    private RendererFixture fixture;
+
+    private Renderer renderer;
+
+    /** The bands handed over, as <code>x2,sizeX1,sizeX2</code>. */
+    private List<String> bands;
+
+    /** The pixels of the bands handed over. */
+    private List<int[]> images;
+
+    /** Records the bands handed over. */
+    private RenderedBandHandler handler;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = new RenderingExecutor(2, 2, "test");
+        fixture = new RendererFixture(new int[] {SIZE_X, SIZE_Y});
+        renderer = fixture.createRenderer(executor);
+        renderer.setPlaneCache(null);
+        bands = new ArrayList<String>();
+        images = new ArrayList<int[]>();
+        handler = new RenderedBandHandler() {
+            public void handleBand(int x2, int sizeX1, int sizeX2,
+                    int[] argb) {
+                bands.add(x2 + "," + sizeX1 + "," + sizeX2);
+                images.add(Arrays.copyOf(argb, sizeX1 * sizeX2));
+            }
+        };
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Creates the definition of the plane.
+     *
+     * @param stride The stride or <code>0</code>.
+     * @return See above.
+     */
+    private PlaneDef plane(int stride) {
+        PlaneDef pd = new PlaneDef(PlaneDef.XY, 0);
+        pd.setZ(0);
+        pd.setStride(stride);
+        return pd;
+    }
+
+    /**
+     * Returns the greyscale image of a value.
+     *
+     * @param v The value.
+     * @return See above.
+     */
+    private static int grey(int v) {
+        return 0xFF000000 | v << 16 | v << 8 | v;
+    }
+
+    public void testShortLastBand() throws Exception {
+        PlaneDef pd = plane(0);
+        renderer.renderBands(pd, 8, handler);
+        Assert.assertNull(pd.getRegion());
+        Assert.assertEquals(bands, Arrays.asList("0,37,8", "8,37,8",
+                "16,37,8", "24,37,5"));
+        Assert.assertEquals(fixture.reads, Arrays.asList("0:0,0,37,8",
+                "0:0,8,37,8", "0:0,16,37,8", "0:0,24,37,5"));
+        for (int b = 0; b < images.size(); b++) {
+            int[] image = images.get(b);
+            for (int i = 0; i < image.length; i++) {
+                Assert.assertEquals(image[i], grey(RendererFixture.value(0,
+                        i % SIZE_X, 8 * b + i / SIZE_X)));
+            }
+        }
+    }
+
+    public void testStridedBandsAreBinned() throws Exception {
+        renderer.setPlanePyramid(new PlanePyramid(0, executor));
+        PlaneDef pd = plane(1);
+        pd.setRegion(new RegionDef(4, 2, 30, 27));
+        renderer.renderBands(pd, 4, handler);
+        Assert.assertEquals(pd.getRegion().getY(), 2);
+        Assert.assertEquals(pd.getRegion().getHeight(), 27);
+        // 13 rows of 15 pixels, the odd source row is left out.
+        Assert.assertEquals(bands, Arrays.asList("0,15,4", "4,15,4",
+                "8,15,4", "12,15,1"));
+        Assert.assertEquals(fixture.reads, Arrays.asList("0:4,2,30,8",
+                "0:4,10,30,8", "0:4,18,30,8", "0:4,26,30,2"));
+        // The boxes are aligned on those of the whole plane.
+        int[] plane = renderer.renderAsPackedInt(plane(1), null);
+        for (int b = 0; b < images.size(); b++) {
+            int[] image = images.get(b);
+            for (int i = 0; i < image.length; i++) {
+                int x = 4 + 2 * (i % 15);
+                int y = 2 + 2 * (4 * b + i / 15);
+                double sum = RendererFixture.value(0, x, y)
+                        + RendererFixture.value(0, x + 1, y)
+                        + RendererFixture.value(0, x, y + 1)
+                        + RendererFixture.value(0, x + 1, y + 1);
+                Assert.assertEquals(image[i],
+                        grey((int) Math.round(sum / 4)));
+                Assert.assertEquals(image[i],
+                        plane[(y / 2) * (SIZE_X / 2) + x / 2]);
+            }
+        }
+    }
+
+    public void testStridedBandsAreDecimated() throws Exception {
+        PlaneDef pd = plane(2);
+        pd.setRegion(new RegionDef(3, 1, 30, 27));
+        renderer.renderBands(pd, 4, handler);
+        Assert.assertEquals(bands, Arrays.asList("0,10,4", "4,10,4",
+                "8,10,1"));
+        Assert.assertEquals(fixture.reads, Arrays.asList("0:3,1,30,12",
+                "0:3,13,30,12", "0:3,25,30,3"));
+        for (int b = 0; b < images.size(); b++) {
+            int[] image = images.get(b);
+            for (int i = 0; i < image.length; i++) {
+                Assert.assertEquals(image[i], grey(RendererFixture.value(0,
+                        3 + 3 * (i % 10), 1 + 3 * (4 * b + i / 10))));
+            }
+        }
+    }
+
+    public void testBandsAreNotCached() throws Exception {
+        renderer.setPlaneCache(new PlaneCache(1 << 20));
+        renderer.setQuantizedPlaneCacheSize(2);
+        PlaneDef pd = plane(0);
+        pd.setRegion(new RegionDef(0, 0, 20, 10));
+        renderer.renderBands(pd, 10, handler);
+        Assert.assertEquals(fixture.reads.size(), 1);
+        // The region rendered as a single band is read again.
+        renderer.renderAsPackedInt(pd, null);
+        Assert.assertEquals(fixture.reads.size(), 2);
+        renderer.renderAsPackedInt(pd, null);
+        Assert.assertEquals(fixture.reads.size(), 2);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import omeis.providers.re.data.PlaneDef;
+import omeis.providers.re.data.RegionDef;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link Renderer#renderBatch(List)} and
+ * {@link Renderer#renderBatch(List, RenderedPlaneHandler)}.
+ */
+@Test
+public class TestRenderBatch {
+
+    /** The number of pixels along the <i>X</i>-axis. */
+    private static final int SIZE_X = 37;
+
+    /** The number of pixels along the <i>Y</i>-axis. */
+    private static final int SIZE_Y = 29;
+
+    /** The size of the tiles, not a divisor of the size of the image. */
+    private static final int TILE = 16;
+
+    private RenderingExecutor executor;
+
+    private ExecutorService ioExecutor;
+
+    private RendererFixture fixture;
+
+    private Renderer renderer;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = new RenderingExecutor(2, 2, "test");
+        ioExecutor = Executors.newFixedThreadPool(2);
+        fixture = new RendererFixture(new int[] {SIZE_X, SIZE_Y});
+        renderer = fixture.createRenderer(executor);
+        renderer.setPlaneCache(null);
+        renderer.setIOExecutor(ioExecutor);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the tiles of the plane, row after row.
+     *
+     * @return See above.
+     */
+    private List<PlaneDef> getTiles() {
+        List<PlaneDef> planes = new ArrayList<PlaneDef>();
+        for (int y = 0; y < SIZE_Y; y += TILE) {
+            for (int x = 0; x < SIZE_X; x += TILE) {
+                PlaneDef pd = new PlaneDef(PlaneDef.XY, 0);
+                pd.setZ(0);
+                pd.setRegion(new RegionDef(x, y, Math.min(TILE, SIZE_X - x),
+                        Math.min(TILE, SIZE_Y - y)));
+                planes.add(pd);
+            }
+        }
+        return planes;
+    }
+
+    /**
+     * Returns the key of the read of the specified tile.
+     *
+     * @param pd The tile.
+     * @return See above.
+     */
+    private String getRead(PlaneDef pd) {
+        RegionDef r = pd.getRegion();
+        return "0:" + r.getX() + "," + r.getY() + "," + r.getWidth() + ","
+                + r.getHeight();
+    }
+
+    public void testImagesInOrder() throws Exception {
+        List<PlaneDef> planes = getTiles();
+        List<int[]> expected = new ArrayList<int[]>();
+        for (PlaneDef pd : planes) {
+            expected.add(renderer.renderAsPackedInt(pd, null).clone());
+        }
+        // The identity mapping of the 8-bit values.
+        int v = RendererFixture.value(0, 3, 2);
+        Assert.assertEquals(expected.get(0)[2 * TILE + 3],
+                0xFF000000 | v << 16 | v << 8 | v);
+        fixture.reads.clear();
+        List<int[]> images = renderer.renderBatch(planes);
+        Assert.assertEquals(images.size(), planes.size());
+        for (int i = 0; i < planes.size(); i++) {
+            Assert.assertEquals(images.get(i), expected.get(i));
+            Assert.assertEquals(fixture.reads.get(i), getRead(planes.get(i)));
+        }
+    }
+
+    public void testHandlerReceivesPlanesInOrder() throws Exception {
+        final List<PlaneDef> planes = getTiles();
+        final List<Integer> indices = new ArrayList<Integer>();
+        renderer.renderBatch(planes, new RenderedPlaneHandler() {
+            public void handlePlane(int index, PlaneDef pd, int[] argb) {
+                Assert.assertSame(pd, planes.get(index));
+                RegionDef r = pd.getRegion();
+                Assert.assertTrue(argb.length >= r.getWidth() * r.getHeight());
+                indices.add(index);
+            }
+        });
+        for (int i = 0; i < planes.size(); i++) {
+            Assert.assertEquals(indices.get(i).intValue(), i);
+        }
+        Assert.assertEquals(indices.size(), planes.size());
+    }
+
+    public void testNextPlaneReadAhead() throws Exception {
+        final List<PlaneDef> planes = getTiles();
+        final Thread caller = Thread.currentThread();
+        renderer.renderBatch(planes, new RenderedPlaneHandler() {
+            public void handlePlane(int index, PlaneDef pd, int[] argb)
+                throws IOException {
+                if (index + 1 == planes.size()) return;
+                // The read of the next plane was submitted before this one
+                // was rendered.
+                String next = getRead(planes.get(index + 1));
+                long deadline = System.currentTimeMillis() + 10000;
+                while (!fixture.reads.contains(next)
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.yield();
+                }
+                Assert.assertTrue(fixture.reads.contains(next));
+                // The buffer stays open during the batch.
+                Assert.assertEquals(fixture.closes.get(), 0);
+            }
+        });
+        Assert.assertEquals(fixture.reads.size(), planes.size());
+        for (Thread reader : fixture.readers) {
+            Assert.assertNotSame(reader, caller);
+        }
+        Assert.assertEquals(fixture.closes.get(), 1);
+    }
+
+    public void testHandlerFailureStopsBatch() throws Exception {
+        List<PlaneDef> planes = getTiles();
+        final List<Integer> indices = new ArrayList<Integer>();
+        try {
+            renderer.renderBatch(planes, new RenderedPlaneHandler() {
+                public void handlePlane(int index, PlaneDef pd, int[] argb)
+                    throws IOException {
+                    indices.add(index);
+                    if (index == 1) {
+                        throw new IOException("Sink full.");
+                    }
+                }
+            });
+            Assert.fail("The failure of the handler was not reported.");
+        } catch (IOException e) {
+            Assert.assertEquals(e.getMessage(), "Sink full.");
+        }
+        Assert.assertEquals(indices.size(), 2);
+        // The plane read ahead is read before the buffer is closed.
+        Assert.assertTrue(fixture.reads.size() <= 3);
+        Assert.assertEquals(fixture.closes.get(), 1);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link RenderBufferPool} instances.
+ */
+@Test
+public class TestRenderBufferPool {
+
+    public void testReusesReleasedBuffers() {
+        RenderBufferPool pool = new RenderBufferPool(1024);
+        RGBIntBuffer buf = pool.getIntBuffer(4, 4);
+        buf.getDataBuffer()[3] = 42;
+        Assert.assertTrue(pool.release(buf.getDataBuffer()));
+        Assert.assertEquals(pool.getWeight(), 64);
+        // Released once only.
+        Assert.assertFalse(pool.release(buf.getDataBuffer()));
+        RGBIntBuffer again = pool.getIntBuffer(4, 4);
+        Assert.assertSame(again, buf);
+        Assert.assertEquals(again.getDataBuffer()[3], 0);
+        // Other types and sizes are not shared.
+        Assert.assertNotSame(pool.getIntBuffer(4, 2), buf);
+        pool.release(again);
+        Assert.assertNotSame(pool.getRGBAIntBuffer(4, 4), buf);
+        Assert.assertEquals(pool.getHits(), 1);
+        Assert.assertEquals(pool.getAllocations(), 3);
+        Assert.assertFalse(pool.release(new int[16]));
+    }
+
+    public void testCapacity() {
+        RenderBufferPool pool = new RenderBufferPool(100);
+        RGBBuffer a = pool.getRGBBuffer(4, 4);
+        RGBBuffer b = pool.getRGBBuffer(4, 4);
+        RGBBuffer c = pool.getRGBBuffer(2, 2);
+        pool.release(a);
+        pool.release(c);
+        Assert.assertEquals(pool.getWeight(), 60);
+        // The buffers of the least recently used size are dropped first.
+        pool.release(b);
+        Assert.assertEquals(pool.getWeight(), 96);
+        Assert.assertSame(pool.getRGBBuffer(4, 4), b);
+        pool.clear();
+        Assert.assertEquals(pool.getWeight(), 0);
+    }
+}
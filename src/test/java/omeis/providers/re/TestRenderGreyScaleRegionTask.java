@@ -0,0 +1,200 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import ome.model.core.Pixels;
+import ome.model.display.QuantumDef;
+import ome.model.enums.Family;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+import omeis.providers.re.codomain.CodomainChain;
+import omeis.providers.re.data.Plane2D;
+import omeis.providers.re.data.PlaneDef;
+import omeis.providers.re.quantum.QuantizationException;
+import omeis.providers.re.quantum.Quantization_8_16_bit;
+import omeis.providers.re.quantum.QuantumStrategy;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link RenderGreyScaleRegionTask} instances rendered
+ * concurrently by a {@link RenderingExecutor}.
+ */
+@Test
+public class TestRenderGreyScaleRegionTask {
+
+    /** The number of pixels along the <i>X</i>-axis, a prime number. */
+    private static final int SIZE_X = 61;
+
+    /** The number of pixels along the <i>Y</i>-axis, a prime number. */
+    private static final int SIZE_Y = 47;
+
+    /** The alpha component of the channel. */
+    private static final int ALPHA = 200;
+
+    /** Strategy counting the number of times each pixel is quantized. */
+    private static class CountingStrategy extends Quantization_8_16_bit {
+
+        /** The number of times each pixel was quantized in bulk. */
+        final AtomicIntegerArray counts;
+
+        CountingStrategy(QuantumDef qd, Pixels pixels) {
+            super(qd, pixels);
+            counts = new AtomicIntegerArray(SIZE_X * SIZE_Y);
+        }
+
+        @Override
+        public void quantize(PixelData data, int offset, int length,
+                byte[] dst, int dstOffset) throws QuantizationException {
+            for (int i = offset; i < offset + length; i++) {
+                counts.incrementAndGet(i);
+            }
+            super.quantize(data, offset, length, dst, dstOffset);
+        }
+    }
+
+    private RenderingExecutor executor;
+
+    private Pixels pixels;
+
+    private Plane2D plane;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = new RenderingExecutor(4, 4, "test");
+        pixels = new Pixels();
+        PixelsType type = new PixelsType(PixelsType.VALUE_UINT16);
+        type.setBitSize(16);
+        pixels.setPixelsType(type);
+        pixels.setSizeX(SIZE_X);
+        pixels.setSizeY(SIZE_Y);
+        ByteBuffer buf = ByteBuffer.allocate(2 * SIZE_X * SIZE_Y);
+        Random random = new Random(3);
+        for (int i = 0; i < SIZE_X * SIZE_Y; i++) {
+            buf.putShort(2 * i, (short) random.nextInt(65536));
+        }
+        plane = new Plane2D(new PlaneDef(PlaneDef.XY, 0), pixels,
+                new PixelData(PixelsType.VALUE_UINT16, buf));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Configures the specified strategy.
+     *
+     * @param qs The strategy.
+     * @return See above.
+     */
+    private <T extends QuantumStrategy> T configure(T qs) {
+        qs.setExtent(0, 65535);
+        qs.setQuantizationMap(new Family(Family.VALUE_LINEAR), 1.0, false);
+        qs.setWindow(1000, 50000);
+        return qs;
+    }
+
+    /**
+     * Creates a strategy counting the quantized pixels.
+     *
+     * @return See above.
+     */
+    private CountingStrategy createStrategy() {
+        QuantumDef qDef = new QuantumDef();
+        qDef.setCdStart(0);
+        qDef.setCdEnd(255);
+        qDef.setBitResolution(255);
+        return configure(new CountingStrategy(qDef, pixels));
+    }
+
+    /**
+     * Returns the packed <i>ARGB</i> value expected for each pixel.
+     *
+     * @return See above.
+     * @throws QuantizationException Not expected.
+     */
+    private int[] getExpected() throws QuantizationException {
+        QuantumStrategy qs = createStrategy();
+        int[] expected = new int[SIZE_X * SIZE_Y];
+        for (int i = 0; i < expected.length; i++) {
+            int v = qs.quantize(plane.getPixelValue(i));
+            expected[i] = ALPHA << 24 | v << 16 | v << 8 | v;
+        }
+        return expected;
+    }
+
+    /**
+     * Renders the plane into the specified buffer and checks that each
+     * pixel is quantized once.
+     *
+     * @param buf The buffer to render into.
+     * @return The quantized values.
+     * @throws QuantizationException Not expected.
+     */
+    private byte[] render(RGBBuffer buf) throws QuantizationException {
+        CountingStrategy qs = createStrategy();
+        byte[] quantized = new byte[SIZE_X * SIZE_Y];
+        ChannelMapping mapping =
+                new ChannelMapping(qs, new CodomainChain(0, 255));
+        executor.render(new RenderGreyScaleRegionTask(RenderTarget.of(buf),
+                plane, quantized, mapping, ALPHA, SIZE_X), SIZE_Y, 3);
+        for (int i = 0; i < qs.counts.length(); i++) {
+            Assert.assertEquals(qs.counts.get(i), 1);
+        }
+        return quantized;
+    }
+
+    public void testPackedARGB() throws Exception {
+        RGBIntBuffer buf = new RGBIntBuffer(SIZE_X, SIZE_Y);
+        render(buf);
+        Assert.assertEquals(buf.getDataBuffer(), getExpected());
+    }
+
+    public void testPackedRGBA() throws Exception {
+        RGBAIntBuffer buf = new RGBAIntBuffer(SIZE_X, SIZE_Y);
+        render(buf);
+        int[] expected = getExpected();
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = expected[i] << 8 | expected[i] >>> 24;
+        }
+        Assert.assertEquals(buf.getDataBuffer(), expected);
+    }
+
+    public void testBanded() throws Exception {
+        RGBBuffer buf = new RGBBuffer(SIZE_X, SIZE_Y);
+        render(buf);
+        int[] expected = getExpected();
+        float ratio = (float) ALPHA / 255;
+        byte[] band = new byte[expected.length];
+        for (int i = 0; i < expected.length; i++) {
+            band[i] = (byte) ((expected[i] & 0xFF) * ratio);
+        }
+        Assert.assertEquals(buf.getRedBand(), band);
+        Assert.assertEquals(buf.getGreenBand(), band);
+        Assert.assertEquals(buf.getBlueBand(), band);
+    }
+
+    public void testRenderFromQuantizedValues() throws Exception {
+        byte[] quantized = render(new RGBIntBuffer(SIZE_X, SIZE_Y));
+        CountingStrategy qs = createStrategy();
+        RGBIntBuffer buf = new RGBIntBuffer(SIZE_X, SIZE_Y);
+        executor.render(new RenderGreyScaleRegionTask(RenderTarget.of(buf),
+                null, quantized, new ChannelMapping(qs, null), ALPHA,
+                SIZE_X), SIZE_Y, 5);
+        Assert.assertEquals(buf.getDataBuffer(), getExpected());
+        for (int i = 0; i < qs.counts.length(); i++) {
+            Assert.assertEquals(qs.counts.get(i), 0);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ome.model.core.Pixels;
+import ome.model.display.QuantumDef;
+import ome.model.enums.Family;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+import omeis.providers.re.data.Plane2D;
+import omeis.providers.re.data.PlaneDef;
+import omeis.providers.re.quantum.BinaryMaskQuantizer;
+import omeis.providers.re.quantum.QuantizationException;
+import omeis.providers.re.quantum.Quantization_8_16_bit;
+import omeis.providers.re.quantum.QuantumStrategy;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases checking that {@link RenderHSBRegionTask}, which
+ * composites all the channels of a pixel before storing it, renders the
+ * same image as adding the contribution of the channels one channel after
+ * the other.
+ */
+@Test
+public class TestRenderHSBRegionTask {
+
+    /** The number of pixels along the <i>X</i>-axis, a prime number. */
+    private static final int SIZE_X = 61;
+
+    /** The number of pixels along the <i>Y</i>-axis, a prime number. */
+    private static final int SIZE_Y = 47;
+
+    /**
+     * The colors of the channels. The first two share the red component so
+     * that their sum saturates.
+     */
+    private static final int[][] COLORS = {
+        {255, 0, 0, 255}, {255, 128, 0, 255}, {0, 0, 255, 200}};
+
+    /** The color of the mask. */
+    private static final int[] MASK_COLOR = {10, 250, 40, 255};
+
+    private List<Plane2D> planes;
+
+    private List<ChannelMapping> mappings;
+
+    @BeforeMethod
+    public void setUp() {
+        planes = new ArrayList<Plane2D>();
+        mappings = new ArrayList<ChannelMapping>();
+        Random random = new Random(5);
+        Pixels pixels = createPixels(PixelsType.VALUE_UINT16, 16);
+        for (int c = 0; c < COLORS.length; c++) {
+            ByteBuffer buf = ByteBuffer.allocate(2 * SIZE_X * SIZE_Y);
+            for (int i = 0; i < SIZE_X * SIZE_Y; i++) {
+                buf.putShort(2 * i, (short) random.nextInt(65536));
+            }
+            planes.add(new Plane2D(new PlaneDef(PlaneDef.XY, 0), pixels,
+                    new PixelData(PixelsType.VALUE_UINT16, buf)));
+            QuantumDef qDef = new QuantumDef();
+            qDef.setCdStart(0);
+            qDef.setCdEnd(255);
+            qDef.setBitResolution(255);
+            QuantumStrategy qs = new Quantization_8_16_bit(qDef, pixels);
+            qs.setExtent(0, 65535);
+            qs.setQuantizationMap(new Family(Family.VALUE_LINEAR), 1.0,
+                    false);
+            qs.setWindow(1000 * c, 50000 - 1000 * c);
+            mappings.add(new ChannelMapping(qs, null));
+        }
+        Pixels mask = createPixels(PixelsType.VALUE_BIT, 1);
+        ByteBuffer buf = ByteBuffer.allocate(SIZE_X * SIZE_Y);
+        for (int i = 0; i < SIZE_X * SIZE_Y; i++) {
+            buf.put(i, (byte) random.nextInt(2));
+        }
+        planes.add(new Plane2D(new PlaneDef(PlaneDef.XY, 0), mask,
+                new PixelData(PixelsType.VALUE_BIT, buf)));
+        mappings.add(new ChannelMapping(
+                new BinaryMaskQuantizer(new QuantumDef(), mask), null));
+    }
+
+    /**
+     * Creates the pixels set of a channel.
+     *
+     * @param value The pixels type.
+     * @param bitSize The number of bits per pixel.
+     * @return See above.
+     */
+    private Pixels createPixels(String value, int bitSize) {
+        Pixels pixels = new Pixels();
+        PixelsType type = new PixelsType(value);
+        type.setBitSize(bitSize);
+        pixels.setPixelsType(type);
+        pixels.setSizeX(SIZE_X);
+        pixels.setSizeY(SIZE_Y);
+        return pixels;
+    }
+
+    /**
+     * Creates the contribution of each channel.
+     *
+     * @param type One of the constants defined by {@link ChannelColorTable}.
+     * @return See above.
+     */
+    private List<ChannelColorTable> createTables(int type) {
+        List<ChannelColorTable> tables = new ArrayList<ChannelColorTable>();
+        for (int c = 0; c < mappings.size(); c++) {
+            int[] color = c < COLORS.length ? COLORS[c] : MASK_COLOR;
+            tables.add(new ChannelColorTable(mappings.get(c), color, null,
+                    new Optimizations(), type));
+        }
+        return tables;
+    }
+
+    /**
+     * Composites the channels one after the other, as the channel-major
+     * rendering did: each channel is added to the whole image before the
+     * next one, the mask values replacing the pixels.
+     *
+     * @param tables The contribution of each channel.
+     * @return The packed <code>0x00RRGGBB</code> values.
+     * @throws QuantizationException Not expected.
+     */
+    private int[] getExpected(List<ChannelColorTable> tables)
+        throws QuantizationException {
+        int[] expected = new int[SIZE_X * SIZE_Y];
+        for (int k = 0; k < planes.size(); k++) {
+            Plane2D plane = planes.get(k);
+            ChannelColorTable table = tables.get(k);
+            for (int i = 0; i < expected.length; i++) {
+                int c = table.get(plane.getPixelValue(i));
+                if (c < 0) {
+                    expected[i] = c & 0x00FFFFFF;
+                } else {
+                    expected[i] = ChannelColorTable.add(expected[i], c);
+                }
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Renders the channels into the specified buffer, in two bands, and
+     * checks that the tables saturate the sum of the first two channels.
+     *
+     * @param buf The buffer to render into.
+     * @param tables The contribution of each channel.
+     * @throws QuantizationException Not expected.
+     */
+    private void render(RGBBuffer buf, List<ChannelColorTable> tables)
+        throws QuantizationException {
+        int saturated = 0;
+        for (int i = 0; i < SIZE_X * SIZE_Y; i++) {
+            int r0 = tables.get(0).get(planes.get(0).getPixelValue(i)) >> 16;
+            int r1 = tables.get(1).get(planes.get(1).getPixelValue(i)) >> 16;
+            if ((r0 & 0xFF) + (r1 & 0xFF) > 255) {
+                saturated++;
+            }
+        }
+        Assert.assertTrue(saturated > 0);
+        RenderHSBRegionTask task = new RenderHSBRegionTask(
+                RenderTarget.of(buf), planes, new byte[planes.size()][],
+                tables, 0, SIZE_X, 0, SIZE_Y);
+        task.renderBand(0, 20);
+        task.renderBand(20, SIZE_Y);
+    }
+
+    public void testPackedARGB() throws Exception {
+        List<ChannelColorTable> tables =
+                createTables(ChannelColorTable.PACKED_ARGB);
+        RGBIntBuffer buf = new RGBIntBuffer(SIZE_X, SIZE_Y);
+        render(buf, tables);
+        int[] expected = getExpected(tables);
+        int masked = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (planes.get(COLORS.length).getPixelValue(i) != 0) {
+                // The mask replaces the channels in this buffer type only.
+                Assert.assertEquals(expected[i], 10 << 16 | 250 << 8 | 40);
+                masked++;
+            }
+            expected[i] |= 0xFF000000;
+        }
+        Assert.assertTrue(masked > 0);
+        Assert.assertEquals(buf.getDataBuffer(), expected);
+    }
+
+    public void testPackedRGBA() throws Exception {
+        List<ChannelColorTable> tables =
+                createTables(ChannelColorTable.PACKED_RGBA);
+        RGBAIntBuffer buf = new RGBAIntBuffer(SIZE_X, SIZE_Y);
+        render(buf, tables);
+        int[] expected = getExpected(tables);
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = expected[i] << 8 | 0xFF;
+        }
+        Assert.assertEquals(buf.getDataBuffer(), expected);
+    }
+
+    public void testBanded() throws Exception {
+        List<ChannelColorTable> tables =
+                createTables(ChannelColorTable.BANDED);
+        RGBBuffer buf = new RGBBuffer(SIZE_X, SIZE_Y);
+        render(buf, tables);
+        int[] expected = getExpected(tables);
+        byte[] r = new byte[expected.length];
+        byte[] g = new byte[expected.length];
+        byte[] b = new byte[expected.length];
+        for (int i = 0; i < expected.length; i++) {
+            r[i] = (byte) (expected[i] >> 16);
+            g[i] = (byte) (expected[i] >> 8);
+            b[i] = (byte) expected[i];
+        }
+        Assert.assertEquals(buf.getRedBand(), r);
+        Assert.assertEquals(buf.getGreenBand(), g);
+        Assert.assertEquals(buf.getBlueBand(), b);
+    }
+
+    public void testRenderFromQuantizedValues() throws Exception {
+        List<ChannelColorTable> tables =
+                createTables(ChannelColorTable.PACKED_ARGB);
+        byte[][] quantized = new byte[planes.size()][];
+        for (int k = 0; k < quantized.length; k++) {
+            quantized[k] = new byte[SIZE_X * SIZE_Y];
+        }
+        RGBIntBuffer first = new RGBIntBuffer(SIZE_X, SIZE_Y);
+        new RenderHSBRegionTask(RenderTarget.of(first), planes, quantized,
+                tables, 0, SIZE_X, 0, SIZE_Y).renderBand(0, SIZE_Y);
+        List<Plane2D> none = new ArrayList<Plane2D>();
+        for (int k = 0; k < planes.size(); k++) {
+            none.add(null);
+        }
+        RGBIntBuffer second = new RGBIntBuffer(SIZE_X, SIZE_Y);
+        new RenderHSBRegionTask(RenderTarget.of(second), none, quantized,
+                tables, 0, SIZE_X, 0, SIZE_Y).renderBand(0, SIZE_Y);
+        Assert.assertEquals(second.getDataBuffer(), first.getDataBuffer());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.util.Arrays;
+import java.util.List;
+
+import omeis.providers.re.data.PlaneDef;
+import omeis.providers.re.data.PlanePyramid;
+import omeis.providers.re.data.RegionDef;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link Renderer#renderRegions(PlaneDef, List)}.
+ */
+@Test
+public class TestRenderRegions {
+
+    private RenderingExecutor executor;
+
+    private RendererFixture fixture;
+
+    private Renderer renderer;
+
+    /** The regions, the first two being rendered together. */
+    private List<RegionDef> regions;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = new RenderingExecutor(2, 2, "test");
+        fixture = new RendererFixture(new int[] {37, 29});
+        renderer = fixture.createRenderer(executor);
+        renderer.setPlaneCache(null);
+        // The third region overlaps the second one by an odd number of
+        // columns.
+        regions = Arrays.asList(new RegionDef(2, 2, 10, 8),
+                new RegionDef(12, 2, 10, 8), new RegionDef(21, 2, 10, 8));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Creates the definition of the plane.
+     *
+     * @param stride The stride or <code>0</code>.
+     * @return See above.
+     */
+    private static PlaneDef plane(int stride) {
+        PlaneDef pd = new PlaneDef(PlaneDef.XY, 0);
+        pd.setZ(0);
+        pd.setStride(stride);
+        return pd;
+    }
+
+    /**
+     * Asserts that the images are those of the regions rendered one by one.
+     *
+     * @param images The images to check.
+     * @param stride The stride.
+     * @throws Exception If an error occurred while rendering.
+     */
+    private void assertRenderedAlone(List<int[]> images, int stride)
+        throws Exception {
+        Assert.assertEquals(images.size(), regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            PlaneDef pd = plane(stride);
+            pd.setRegion(regions.get(i));
+            Assert.assertEquals(images.get(i),
+                    renderer.renderAsPackedInt(pd, null));
+        }
+    }
+
+    public void testCoalescedRegions() throws Exception {
+        List<int[]> images = renderer.renderRegions(plane(0), regions);
+        Assert.assertEquals(fixture.reads, Arrays.asList("0:2,2,29,8"));
+        assertRenderedAlone(images, 0);
+    }
+
+    public void testStridedRegions() throws Exception {
+        List<int[]> images = renderer.renderRegions(plane(1), regions);
+        Assert.assertEquals(fixture.reads, Arrays.asList("0:2,2,20,8",
+                "0:21,2,10,8"));
+        for (int r = 0; r < regions.size(); r++) {
+            RegionDef rd = regions.get(r);
+            int[] image = images.get(r);
+            Assert.assertEquals(image.length, 5 * 4);
+            for (int i = 0; i < image.length; i++) {
+                int v = RendererFixture.value(0, rd.getX() + 2 * (i % 5),
+                        rd.getY() + 2 * (i / 5));
+                Assert.assertEquals(image[i],
+                        0xFF000000 | v << 16 | v << 8 | v);
+            }
+        }
+        assertRenderedAlone(images, 1);
+    }
+
+    public void testBinnedRegions() throws Exception {
+        renderer.setPlanePyramid(new PlanePyramid(0, executor));
+        List<int[]> images = renderer.renderRegions(plane(1), regions);
+        Assert.assertEquals(fixture.reads, Arrays.asList("0:2,2,20,8",
+                "0:21,2,10,8"));
+        assertRenderedAlone(images, 1);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for the {@link RenderTarget} implementations.
+ */
+@Test
+public class TestRenderTarget {
+
+    public void testOffsetAndStride() {
+        int[] canvas = new int[4 * 3];
+        RenderTarget target = new RenderTarget.PackedARGB(canvas, 5, 4);
+        target.checkBounds(2, 2);
+        target.setRow(0, new int[] {1, 2}, 2);
+        target.setRow(1, new int[] {3, 4}, 2);
+        Assert.assertEquals(canvas,
+                new int[] {0, 0, 0, 0, 0, 1, 2, 0, 0, 3, 4, 0});
+    }
+
+    public void testPackedRGBA() {
+        int[] data = new int[1];
+        RenderTarget target = new RenderTarget.PackedRGBA(data, 0, 1);
+        target.setRow(0, new int[] {0x80112233}, 1);
+        Assert.assertEquals(data[0], 0x11223380);
+    }
+
+    public void testBandedMultipliesAlpha() {
+        byte[] r = new byte[2], g = new byte[2], b = new byte[2];
+        RenderTarget target = new RenderTarget.Banded(r, g, b, 0, 2);
+        target.setRow(0, new int[] {0xFFC86432, 0x00C86432}, 2);
+        Assert.assertEquals(r, new byte[] {(byte) 200, 0});
+        Assert.assertEquals(g, new byte[] {100, 0});
+        Assert.assertEquals(b, new byte[] {50, 0});
+    }
+
+    public void testBytesLayouts() {
+        int[] row = new int[] {0x80112233};
+        int[] layouts = new int[] {Renderer.BYTES_RGBA, Renderer.BYTES_BGRA,
+                Renderer.BYTES_ARGB, Renderer.BYTES_ABGR};
+        int[] expected = new int[] {0x11223380, 0x33221180, 0x80112233,
+                0x80332211};
+        for (int i = 0; i < layouts.length; i++) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(4);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            new RenderTarget.Bytes(buf, 0, 4, layouts[i]).setRow(0, row, 1);
+            Assert.assertEquals(buf.order(), ByteOrder.LITTLE_ENDIAN);
+            Assert.assertEquals(buf.order(ByteOrder.BIG_ENDIAN).getInt(0),
+                    expected[i]);
+        }
+    }
+
+    public void testBytesOffsetAndStride() {
+        ByteBuffer buf = ByteBuffer.allocate(20);
+        RenderTarget target = new RenderTarget.Bytes(buf, 2, 9,
+                Renderer.BYTES_ARGB);
+        target.checkBounds(2, 2);
+        target.setRow(1, new int[] {0x01020304, 0x05060708}, 2);
+        Assert.assertEquals(buf.getInt(11), 0x01020304);
+        Assert.assertEquals(buf.getInt(15), 0x05060708);
+        Assert.assertEquals(buf.position(), 0);
+    }
+
+    public void testBytesIgnoresLimit() {
+        ByteBuffer buf = ByteBuffer.allocate(20);
+        buf.position(3);
+        buf.limit(8);
+        RenderTarget target = new RenderTarget.Bytes(buf, 2, 9,
+                Renderer.BYTES_ARGB);
+        target.checkBounds(2, 2);
+        target.setRow(0, new int[] {0x01020304, 0x05060708}, 2);
+        target.setRow(1, new int[] {0x090A0B0C, 0x0D0E0F10}, 2);
+        Assert.assertEquals(buf.position(), 3);
+        Assert.assertEquals(buf.limit(), 8);
+        buf.clear();
+        Assert.assertEquals(buf.getInt(2), 0x01020304);
+        Assert.assertEquals(buf.getInt(6), 0x05060708);
+        Assert.assertEquals(buf.getInt(11), 0x090A0B0C);
+        Assert.assertEquals(buf.getInt(15), 0x0D0E0F10);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBytesTooSmall() {
+        new RenderTarget.Bytes(ByteBuffer.allocate(18), 2, 9,
+                Renderer.BYTES_RGBA).checkBounds(2, 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testImageTooLarge() {
+        new RenderTarget.PackedARGB(new int[10], 5, 4).checkBounds(2, 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testStrideTooSmall() {
+        new RenderTarget.PackedARGB(new int[100], 0, 4).checkBounds(5, 2);
+    }
+}
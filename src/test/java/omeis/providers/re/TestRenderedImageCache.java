@@ -0,0 +1,65 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link RenderedImageCache} instances.
+ */
+@Test
+public class TestRenderedImageCache {
+
+    public void testReturnsCopies() {
+        RenderedImageCache cache = new RenderedImageCache(1024);
+        int[] pixels = new int[] {1, 2, 3};
+        cache.putPackedInt("a", pixels);
+        pixels[0] = 42;
+        int[] cached = cache.getPackedInt("a");
+        Assert.assertEquals(cached, new int[] {1, 2, 3});
+        cached[1] = 42;
+        Assert.assertEquals(cache.getPackedInt("a"), new int[] {1, 2, 3});
+        // The banded images are cached apart from the packed ones.
+        Assert.assertNull(cache.getRGBBuffer("a"));
+        RGBBuffer buf = new RGBBuffer(2, 1);
+        buf.getGreenBand()[1] = 7;
+        cache.putRGBBuffer("a", buf);
+        RGBBuffer copy = cache.getRGBBuffer("a");
+        Assert.assertNotSame(copy, buf);
+        Assert.assertEquals(copy.getGreenBand(), new byte[] {0, 7});
+        Assert.assertEquals(cache.getHits(), 3);
+        Assert.assertEquals(cache.getMisses(), 1);
+    }
+
+    public void testContains() {
+        RenderedImageCache cache = new RenderedImageCache(1024);
+        cache.putPackedInt("a", new int[] {1, 2, 3});
+        Assert.assertTrue(cache.containsPackedInt("a"));
+        Assert.assertFalse(cache.containsRGBBuffer("a"));
+        Assert.assertFalse(cache.containsPackedInt("b"));
+        Assert.assertEquals(cache.getHits(), 0);
+        Assert.assertEquals(cache.getMisses(), 0);
+    }
+
+    public void testEvictsLeastRecentlyUsed() {
+        RenderedImageCache cache = new RenderedImageCache(100);
+        cache.putPackedInt("a", new int[10]);
+        cache.putPackedInt("b", new int[10]);
+        Assert.assertNotNull(cache.getPackedInt("a"));
+        cache.putPackedInt("c", new int[10]);
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.getWeight(), 80);
+        Assert.assertNull(cache.getPackedInt("b"));
+        Assert.assertNotNull(cache.getPackedInt("a"));
+        // Too large to be cached.
+        cache.putPackedInt("d", new int[30]);
+        Assert.assertNull(cache.getPackedInt("d"));
+        cache.clear();
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.getWeight(), 0);
+    }
+}
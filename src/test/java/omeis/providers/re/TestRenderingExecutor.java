@@ -0,0 +1,147 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import omeis.providers.re.quantum.QuantizationException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link RenderingExecutor} instances.
+ */
+@Test
+public class TestRenderingExecutor {
+
+    /**
+     * Creates a renderer flagging the rendered rows.
+     *
+     * @param rows The number of times each row has been rendered.
+     * @return See above.
+     */
+    private BandRenderer createRenderer(final AtomicIntegerArray rows) {
+        return new BandRenderer() {
+            public void renderBand(int x2Start, int x2End) {
+                for (int x2 = x2Start; x2 < x2End; x2++) {
+                    rows.incrementAndGet(x2);
+                }
+            }
+        };
+    }
+
+    public void testRenderRendersEveryRowOnce() throws Exception {
+        RenderingExecutor executor = new RenderingExecutor(4, 4, "test");
+        try {
+            // Prime number of rows so that no divisor partitioning applies.
+            AtomicIntegerArray rows = new AtomicIntegerArray(1021);
+            executor.render(createRenderer(rows), rows.length(), 7);
+            for (int x2 = 0; x2 < rows.length(); x2++) {
+                Assert.assertEquals(rows.get(x2), 1);
+            }
+            Assert.assertEquals(executor.getSubmittedTaskCount(), 1L);
+            Assert.assertEquals(executor.getCompletedTaskCount(), 1L);
+            Assert.assertEquals(executor.getRemainingCapacity(), 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testRenderPropagatesQuantizationException()
+            throws Exception {
+        RenderingExecutor executor = new RenderingExecutor(2, 4, "test");
+        try {
+            BandRenderer renderer = new BandRenderer() {
+                public void renderBand(int x2Start, int x2End)
+                        throws QuantizationException {
+                    if (x2Start <= 50 && 50 < x2End) {
+                        throw new QuantizationException("test");
+                    }
+                }
+            };
+            try {
+                executor.render(renderer, 100, 3);
+                Assert.fail("Exception expected.");
+            } catch (QuantizationException e) {
+                Assert.assertEquals(e.getMessage(), "test");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testRenderStopsWhenCancelled() throws Exception {
+        RenderingExecutor executor = new RenderingExecutor(2, 4, "test");
+        try {
+            final CancellationToken token = new CancellationToken();
+            final AtomicIntegerArray rows = new AtomicIntegerArray(100);
+            final BandRenderer renderer = createRenderer(rows);
+            BandRenderer cancelling = new BandRenderer() {
+                public void renderBand(int x2Start, int x2End)
+                        throws QuantizationException {
+                    renderer.renderBand(x2Start, x2End);
+                    token.cancel();
+                }
+            };
+            try {
+                executor.render(cancelling, rows.length(), 1, token);
+                Assert.fail("Exception expected.");
+            } catch (RenderingCancelledException e) {
+                // expected
+            }
+            int rendered = 0;
+            for (int x2 = 0; x2 < rows.length(); x2++) {
+                rendered += rows.get(x2);
+            }
+            Assert.assertTrue(rendered < rows.length());
+            Assert.assertEquals(executor.getRemainingCapacity(), 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testGrainSize() {
+        Assert.assertEquals(RowBandTask.grainSize(1 << 10, 4), 8);
+        Assert.assertEquals(RowBandTask.grainSize(1 << 20, 3), 1);
+    }
+
+    public void testGetParallelism() {
+        RenderingExecutor executor = new RenderingExecutor(3, 4, "test");
+        try {
+            Assert.assertEquals(executor.getParallelism(), 3);
+            Assert.assertEquals(executor.getRemainingCapacity(), 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testExecuteRunsInPool() throws Exception {
+        final RenderingExecutor executor = new RenderingExecutor(2, 4, "test");
+        try {
+            final CountDownLatch done = new CountDownLatch(1);
+            final AtomicBoolean inPool = new AtomicBoolean();
+            executor.execute(new Runnable() {
+                public void run() {
+                    inPool.set(executor.isOwnThread());
+                    done.countDown();
+                }
+            });
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(inPool.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidParallelism() {
+        new RenderingExecutor(0, 4, "test");
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import omeis.providers.re.data.PlaneDef;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for the fingerprints of the {@link Renderer}.
+ */
+@Test
+public class TestRenderingFingerprint {
+
+    private RenderingExecutor executor;
+
+    private Renderer renderer;
+
+    private PlaneDef pd;
+
+    @BeforeMethod
+    public void setUp() {
+        executor = new RenderingExecutor(1, 1, "test");
+        renderer = new RendererFixture(new int[] {8, 8})
+                .createRenderer(executor);
+        pd = new PlaneDef(PlaneDef.XY, 0);
+        pd.setZ(0);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the fingerprint of the plane with the specified overlays.
+     *
+     * @param masks The masks of the overlays, each followed by its colour.
+     * @return See above.
+     */
+    private String fingerprint(Object... masks) {
+        Map<byte[], Integer> overlays = new LinkedHashMap<byte[], Integer>();
+        for (int i = 0; i < masks.length; i += 2) {
+            overlays.put(((byte[]) masks[i]).clone(),
+                    (Integer) masks[i + 1]);
+        }
+        renderer.setOverlays(overlays);
+        return renderer.getFingerprint(pd);
+    }
+
+    public void testOverlaysInAnyOrder() {
+        byte[] a = {1, 2, 3};
+        byte[] b = {1, 2, (byte) 0x80};
+        byte[] c = {1, 2};
+        String f = fingerprint(a, 0xFF0000, b, 0x00FF00, c, 0x0000FF);
+        Assert.assertEquals(
+                fingerprint(c, 0x0000FF, a, 0xFF0000, b, 0x00FF00), f);
+        Assert.assertEquals(
+                fingerprint(b, 0x00FF00, c, 0x0000FF, a, 0xFF0000), f);
+    }
+
+    public void testSameMaskWithTwoColours() {
+        byte[] a = {4, 5};
+        Assert.assertEquals(fingerprint(a, 1, a, 2), fingerprint(a, 2, a, 1));
+    }
+
+    public void testOverlaysDiffer() {
+        byte[] a = {1, 2, 3};
+        byte[] b = {1, 2, 4};
+        String f = fingerprint(a, 0xFF0000);
+        Assert.assertNotEquals(fingerprint(b, 0xFF0000), f);
+        Assert.assertNotEquals(fingerprint(a, 0x00FF00), f);
+        Assert.assertNotEquals(fingerprint(a, 0xFF0000, b, 0xFF0000), f);
+        Assert.assertNotEquals(fingerprint(), f);
+    }
+}
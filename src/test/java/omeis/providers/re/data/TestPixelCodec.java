@@ -0,0 +1,186 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for the {@link PixelCodec}.
+ */
+@Test
+public class TestPixelCodec {
+
+    /**
+     * Creates smooth data, with a few extreme values.
+     *
+     * @param type The type of the pixels.
+     * @param bpp The number of bytes per pixel.
+     * @param order The byte order.
+     * @return See above.
+     */
+    private PixelData createData(String type, int bpp, ByteOrder order) {
+        Random random = new Random(7);
+        int n = 4096;
+        ByteBuffer buf = ByteBuffer.allocate(n * bpp).order(order);
+        int v = 0;
+        for (int i = 0; i < n; i++) {
+            v += random.nextInt(9) - 4;
+            if (i % 1000 == 0) {
+                v = random.nextBoolean() ? Integer.MIN_VALUE : -1;
+            }
+            if (bpp == 1) {
+                buf.put(i, (byte) v);
+            } else {
+                buf.putShort(2 * i, (short) v);
+            }
+        }
+        return new PixelData(type, buf);
+    }
+
+    public void testRoundTrip() {
+        String[] types = {PixelsType.VALUE_INT8, PixelsType.VALUE_UINT8,
+            PixelsType.VALUE_INT16, PixelsType.VALUE_UINT16};
+        int[] bpps = {1, 1, 2, 2};
+        ByteOrder[] orders = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+        for (int t = 0; t < types.length; t++) {
+            for (ByteOrder order : orders) {
+                PixelData data = createData(types[t], bpps[t], order);
+                PixelCodec.Encoded encoded = PixelCodec.encode(data);
+                Assert.assertNotNull(encoded, types[t]);
+                Assert.assertTrue(encoded.getWeight()
+                        < data.getData().capacity(), types[t]);
+                PixelData decoded = PixelCodec.decode(encoded);
+                Assert.assertEquals(decoded.getPixelsType(), types[t]);
+                Assert.assertEquals(decoded.getData().order(), order);
+                Assert.assertEquals(decoded.getData().array(),
+                        data.getData().array(), types[t]);
+            }
+        }
+    }
+
+    public void testUnsupportedType() {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        Assert.assertNull(PixelCodec.encode(
+                new PixelData(PixelsType.VALUE_FLOAT, buf)));
+    }
+
+    /** Runs the compressions when asked to. */
+    private static class QueuedExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            tasks.clear();
+        }
+    }
+
+    public void testCompressedTier() {
+        QueuedExecutor compressor = new QueuedExecutor();
+        PlaneCache cache = new PlaneCache(5000, 100000, compressor);
+        PlaneDef p1 = new PlaneDef(PlaneDef.XY, 0);
+        PlaneDef p2 = new PlaneDef(PlaneDef.XY, 1);
+        PlaneCache.Key k1 = new PlaneCache.Key(1L, 0, p1, 0);
+        PlaneCache.Key k2 = new PlaneCache.Key(1L, 0, p2, 0);
+        PixelData d1 = createData(PixelsType.VALUE_UINT8, 1,
+                ByteOrder.BIG_ENDIAN);
+        cache.put(k1, d1);
+        cache.put(k2, createData(PixelsType.VALUE_UINT8, 1,
+                ByteOrder.BIG_ENDIAN));
+        Assert.assertEquals(cache.size(), 1);
+        Assert.assertEquals(cache.pendingSize(), 1);
+        Assert.assertEquals(cache.compressedSize(), 0);
+        compressor.runAll();
+        Assert.assertEquals(cache.pendingSize(), 0);
+        Assert.assertEquals(cache.compressedSize(), 1);
+        PixelData found = cache.get(k1);
+        Assert.assertEquals(found.getData().array(), d1.getData().array());
+        Assert.assertEquals(cache.getCompressedHits(), 1);
+        Assert.assertEquals(cache.getHits(), 0);
+        // Moved back to the first tier, k2 compressed in turn.
+        Assert.assertSame(cache.get(k1), found);
+        compressor.runAll();
+        Assert.assertEquals(cache.compressedSize(), 1);
+        Assert.assertNotNull(cache.get(k2));
+        cache.invalidate(1L);
+        Assert.assertEquals(cache.compressedSize(), 0);
+        Assert.assertEquals(cache.getCompressedWeight(), 0);
+        Assert.assertNull(cache.get(k2));
+    }
+
+    public void testPendingDataIsFound() {
+        QueuedExecutor compressor = new QueuedExecutor();
+        PlaneCache cache = new PlaneCache(5000, 100000, compressor);
+        PlaneCache.Key k1 = new PlaneCache.Key(1L, 0,
+                new PlaneDef(PlaneDef.XY, 0), 0);
+        PlaneCache.Key k2 = new PlaneCache.Key(1L, 0,
+                new PlaneDef(PlaneDef.XY, 1), 0);
+        PixelData d1 = createData(PixelsType.VALUE_UINT8, 1,
+                ByteOrder.BIG_ENDIAN);
+        cache.put(k1, d1);
+        cache.put(k2, createData(PixelsType.VALUE_UINT8, 1,
+                ByteOrder.BIG_ENDIAN));
+        // Read back before being compressed: the same data, not a copy.
+        Assert.assertSame(cache.get(k1), d1);
+        Assert.assertEquals(cache.getHits(), 1);
+        Assert.assertEquals(cache.getCompressedHits(), 0);
+        // k2 evicted in turn, the compression of k1 is dropped.
+        compressor.runAll();
+        Assert.assertEquals(cache.compressedSize(), 1);
+        Assert.assertEquals(cache.pendingSize(), 0);
+        Assert.assertSame(cache.get(k1), d1);
+    }
+
+    public void testInvalidateDropsPendingData() {
+        QueuedExecutor compressor = new QueuedExecutor();
+        PlaneCache cache = new PlaneCache(5000, 100000, compressor);
+        PlaneCache.Key k1 = new PlaneCache.Key(1L, 0,
+                new PlaneDef(PlaneDef.XY, 0), 0);
+        PlaneCache.Key k2 = new PlaneCache.Key(2L, 0,
+                new PlaneDef(PlaneDef.XY, 0), 0);
+        cache.put(k1, createData(PixelsType.VALUE_UINT8, 1,
+                ByteOrder.BIG_ENDIAN));
+        cache.put(k2, createData(PixelsType.VALUE_UINT8, 1,
+                ByteOrder.BIG_ENDIAN));
+        cache.invalidate(1L);
+        Assert.assertEquals(cache.pendingSize(), 0);
+        // The compression started before the invalidation is discarded.
+        compressor.runAll();
+        Assert.assertEquals(cache.compressedSize(), 0);
+        Assert.assertEquals(cache.getCompressedWeight(), 0);
+        Assert.assertNull(cache.get(k1));
+    }
+
+    public void testCompressedTierNeedsCapacity() {
+        QueuedExecutor compressor = new QueuedExecutor();
+        PlaneCache cache = new PlaneCache(0, 100000, compressor);
+        Assert.assertEquals(cache.getCompressedCapacity(), 0);
+        PlaneCache.Key key = new PlaneCache.Key(1L, 0,
+                new PlaneDef(PlaneDef.XY, 0), 0);
+        cache.put(key, createData(PixelsType.VALUE_UINT8, 1,
+                ByteOrder.BIG_ENDIAN));
+        Assert.assertTrue(compressor.tasks.isEmpty());
+        Assert.assertEquals(cache.pendingSize(), 0);
+        Assert.assertNull(cache.get(key));
+    }
+}
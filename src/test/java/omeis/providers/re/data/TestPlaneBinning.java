@@ -0,0 +1,120 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for the {@link PlaneBinning}.
+ */
+@Test
+public class TestPlaneBinning {
+
+    public void testMeanOfBoxes() {
+        // 5x3 plane, the last column and row are dropped.
+        ByteBuffer buf = ByteBuffer.allocate(2 * 15)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int[] values = {1, 3, 10, 20, 99,
+                        5, 7, 30, 41, 99,
+                        99, 99, 99, 99, 99};
+        for (int i = 0; i < values.length; i++) {
+            buf.putShort(2 * i, (short) values[i]);
+        }
+        PixelData binned = PlaneBinning.bin(
+                new PixelData(PixelsType.VALUE_UINT16, buf), 5, 3, 2,
+                PixelsType.VALUE_UINT16, null);
+        Assert.assertEquals(binned.size(), 2);
+        Assert.assertEquals(binned.getData().order(), ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(binned.getPixelValue(0), 4.0);
+        // 25.25 is rounded.
+        Assert.assertEquals(binned.getPixelValue(1), 25.0);
+    }
+
+    public void testSuccessiveBinning() {
+        int size = 64;
+        ByteBuffer buf = ByteBuffer.allocate(4 * size * size);
+        for (int i = 0; i < size * size; i++) {
+            buf.putFloat(4 * i, (i * 37) % 101);
+        }
+        PixelData data = new PixelData(PixelsType.VALUE_FLOAT, buf);
+        PixelData once = PlaneBinning.bin(data, size, size, 4,
+                PixelsType.VALUE_FLOAT, null);
+        PixelData twice = PlaneBinning.bin(PlaneBinning.bin(data, size, size,
+                2, PlaneBinning.EXACT_TYPE, null), size / 2, size / 2, 2,
+                PixelsType.VALUE_FLOAT, null);
+        Assert.assertEquals(once.size(), 16 * 16);
+        for (int i = 0; i < once.size(); i++) {
+            Assert.assertEquals(twice.getPixelValue(i),
+                    once.getPixelValue(i), 1e-3);
+        }
+    }
+
+    public void testSuccessiveBinningOfIntegers() {
+        // The boxes of 2x2 pixels have the means 0.5, 0.5, 0.5 and 0.
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        byte[] values = {1, 1, 1, 1,
+                         0, 0, 0, 0,
+                         1, 1, 0, 0,
+                         0, 0, 0, 0};
+        buf.put(values);
+        PixelData data = new PixelData(PixelsType.VALUE_UINT8, buf);
+        PixelData once = PlaneBinning.bin(data, 4, 4, 4,
+                PixelsType.VALUE_UINT8, null);
+        Assert.assertEquals(once.getPixelValue(0), 0.0);
+        PixelData exact = PlaneBinning.bin(data, 4, 4, 2,
+                PlaneBinning.EXACT_TYPE, null);
+        Assert.assertEquals(exact.getPixelValue(0), 0.5);
+        PixelData twice = PlaneBinning.bin(exact, 2, 2, 2,
+                PixelsType.VALUE_UINT8, null);
+        Assert.assertEquals(twice.getPixelValue(0), 0.0);
+        // Rounding the intermediate means gives 0.75, rounded to 1.
+        PixelData rounded = PlaneBinning.bin(PlaneBinning.bin(data, 4, 4, 2,
+                PixelsType.VALUE_UINT8, null), 2, 2, 2,
+                PixelsType.VALUE_UINT8, null);
+        Assert.assertEquals(rounded.getPixelValue(0), 1.0);
+    }
+
+    public void testBinningOnExecutor() {
+        int sizeX = 256;
+        int sizeY = 512;
+        ByteBuffer buf = ByteBuffer.allocate(2 * sizeX * sizeY);
+        for (int i = 0; i < sizeX * sizeY; i++) {
+            buf.putShort(2 * i, (short) (i * 31));
+        }
+        PixelData data = new PixelData(PixelsType.VALUE_INT16, buf);
+        final AtomicInteger tasks = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Executor executor = new Executor() {
+                public void execute(Runnable command) {
+                    tasks.incrementAndGet();
+                    pool.execute(command);
+                }
+            };
+            PixelData parallel = PlaneBinning.bin(data, sizeX, sizeY, 2,
+                    PixelsType.VALUE_INT16, executor);
+            PixelData serial = PlaneBinning.bin(data, sizeX, sizeY, 2,
+                    PixelsType.VALUE_INT16, null);
+            Assert.assertEquals(parallel.getData(), serial.getData());
+            if (Runtime.getRuntime().availableProcessors() > 1) {
+                Assert.assertTrue(tasks.get() > 0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
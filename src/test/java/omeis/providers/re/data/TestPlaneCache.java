@@ -0,0 +1,91 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.data;
+
+import java.nio.ByteBuffer;
+
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link PlaneCache} instances.
+ */
+@Test
+public class TestPlaneCache {
+
+    private PlaneDef plane(int z, int t) {
+        PlaneDef pDef = new PlaneDef(PlaneDef.XY, t);
+        pDef.setZ(z);
+        return pDef;
+    }
+
+    private PixelData data(int size) {
+        return new PixelData(PixelsType.VALUE_UINT8, ByteBuffer.allocate(size));
+    }
+
+    public void testKeys() {
+        PlaneCache.Key key = new PlaneCache.Key(1L, 0, plane(2, 3), 4);
+        Assert.assertEquals(new PlaneCache.Key(1L, 0, plane(2, 3), 4), key);
+        Assert.assertEquals(new PlaneCache.Key(1L, 0, plane(2, 3), 4)
+                .hashCode(), key.hashCode());
+        Assert.assertNotEquals(new PlaneCache.Key(2L, 0, plane(2, 3), 4), key);
+        Assert.assertNotEquals(new PlaneCache.Key(1L, 1, plane(2, 3), 4), key);
+        Assert.assertNotEquals(new PlaneCache.Key(1L, 0, plane(1, 3), 4), key);
+        Assert.assertNotEquals(new PlaneCache.Key(1L, 0, plane(2, 3), 3), key);
+        PlaneDef region = plane(2, 3);
+        region.setRegion(new RegionDef(0, 0, 10, 10));
+        Assert.assertNotEquals(new PlaneCache.Key(1L, 0, region, 4), key);
+        // The whole stack is read for the XZ planes.
+        PlaneDef xz1 = new PlaneDef(PlaneDef.XZ, 3);
+        xz1.setZ(1);
+        PlaneDef xz2 = new PlaneDef(PlaneDef.XZ, 3);
+        xz2.setZ(2);
+        Assert.assertEquals(new PlaneCache.Key(1L, 0, xz1, 4),
+                new PlaneCache.Key(1L, 0, xz2, 4));
+    }
+
+    public void testEvictsLeastRecentlyUsed() {
+        PlaneCache cache = new PlaneCache(300);
+        PlaneCache.Key k1 = new PlaneCache.Key(1L, 0, plane(0, 0), 0);
+        PlaneCache.Key k2 = new PlaneCache.Key(1L, 0, plane(1, 0), 0);
+        PlaneCache.Key k3 = new PlaneCache.Key(1L, 0, plane(2, 0), 0);
+        PixelData d1 = data(100);
+        Assert.assertSame(cache.put(k1, d1), d1);
+        Assert.assertSame(cache.put(k1, data(100)), d1);
+        cache.put(k2, data(100));
+        Assert.assertSame(cache.get(k1), d1);
+        cache.put(k3, data(150));
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.getWeight(), 250);
+        Assert.assertSame(cache.get(k1), d1);
+        Assert.assertNull(cache.get(k2));
+        Assert.assertEquals(cache.getHits(), 2);
+        Assert.assertEquals(cache.getMisses(), 1);
+        // Too large to be cached.
+        PlaneCache.Key k4 = new PlaneCache.Key(1L, 0, plane(3, 0), 0);
+        cache.put(k4, data(400));
+        Assert.assertNull(cache.get(k4));
+        Assert.assertEquals(cache.getWeight(), 250);
+    }
+
+    public void testInvalidate() {
+        PlaneCache cache = new PlaneCache(1000);
+        PlaneCache.Key k1 = new PlaneCache.Key(1L, 0, plane(0, 0), 0);
+        PlaneCache.Key k2 = new PlaneCache.Key(2L, 0, plane(0, 0), 0);
+        cache.put(k1, data(100));
+        cache.put(k2, data(100));
+        cache.invalidate(1L);
+        Assert.assertNull(cache.get(k1));
+        Assert.assertNotNull(cache.get(k2));
+        Assert.assertEquals(cache.getWeight(), 100);
+        cache.clear();
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.getWeight(), 0);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ome.io.nio.PixelBuffer;
+import ome.model.core.Pixels;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for the {@link PlanePyramid}.
+ */
+@Test
+public class TestPlanePyramid {
+
+    /** The number of pixels along each axis. */
+    private static final int SIZE = 64;
+
+    /** The data of the plane. */
+    private PixelData plane;
+
+    /** The number of times the plane was read. */
+    private AtomicInteger reads;
+
+    private PixelBuffer buffer;
+
+    private Pixels pixels;
+
+    @BeforeMethod
+    public void setUp() {
+        ByteBuffer buf = ByteBuffer.allocate(2 * SIZE * SIZE);
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            // Odd sums, so that rounding the levels would be visible.
+            buf.putShort(2 * i, (short) ((i * 37) % 1001));
+        }
+        plane = new PixelData(PixelsType.VALUE_UINT16, buf);
+        reads = new AtomicInteger();
+        buffer = (PixelBuffer) Proxy.newProxyInstance(
+                PixelBuffer.class.getClassLoader(),
+                new Class<?>[] {PixelBuffer.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("getPlane".equals(name)) {
+                    reads.incrementAndGet();
+                    return plane;
+                } else if ("getResolutionLevel".equals(name)) {
+                    return 0;
+                } else if ("getResolutionLevels".equals(name)) {
+                    return 1;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+        pixels = new Pixels();
+        pixels.setId(1L);
+        pixels.setSizeX(SIZE);
+        pixels.setSizeY(SIZE);
+        pixels.setPixelsType(new PixelsType(PixelsType.VALUE_UINT16));
+    }
+
+    /**
+     * Creates the definition of the plane.
+     *
+     * @param factor The downsampling factor.
+     * @return See above.
+     */
+    private static PlaneDef plane(int factor) {
+        PlaneDef pd = new PlaneDef(PlaneDef.XY, 0);
+        pd.setZ(0);
+        pd.setStride(factor - 1);
+        return pd;
+    }
+
+    /**
+     * Asserts that the data is the plane binned in one go.
+     *
+     * @param data The data to check.
+     * @param factor The downsampling factor.
+     */
+    private void assertBinned(PixelData data, int factor) {
+        PixelData expected = PlaneBinning.bin(plane, SIZE, SIZE, factor,
+                PixelsType.VALUE_UINT16, null);
+        Assert.assertEquals(data.getPixelsType(), PixelsType.VALUE_UINT16);
+        Assert.assertEquals(data.getData(), expected.getData());
+    }
+
+    public void testLevelsAreReused() {
+        PlanePyramid pyramid = new PlanePyramid(1 << 20, null);
+        assertBinned(pyramid.read(plane(4), 0, pixels, buffer), 4);
+        // The level downsampled by 2.
+        Assert.assertEquals(pyramid.size(), 1);
+        assertBinned(pyramid.read(plane(8), 0, pixels, buffer), 8);
+        assertBinned(pyramid.read(plane(6), 0, pixels, buffer), 6);
+        Assert.assertEquals(reads.get(), 1);
+        Assert.assertEquals(pyramid.size(), 2);
+        Assert.assertEquals(pyramid.getWeight(),
+                8L * (32 * 32 + 16 * 16));
+    }
+
+    public void testIntegerLevelsAreNotRounded() {
+        PlanePyramid pyramid = new PlanePyramid(1 << 20, null);
+        pyramid.read(plane(32), 0, pixels, buffer);
+        // Computed from the kept levels, downsampled by 2 to 16.
+        assertBinned(pyramid.read(plane(64), 0, pixels, buffer), 64);
+        Assert.assertEquals(reads.get(), 1);
+    }
+
+    public void testNoCapacity() {
+        PlanePyramid pyramid = new PlanePyramid(0, null);
+        assertBinned(pyramid.read(plane(4), 0, pixels, buffer), 4);
+        assertBinned(pyramid.read(plane(4), 0, pixels, buffer), 4);
+        Assert.assertEquals(pyramid.size(), 0);
+        Assert.assertEquals(reads.get(), 2);
+    }
+
+    public void testUnsavedPixelsAreNotKept() {
+        pixels.setId(null);
+        PlanePyramid pyramid = new PlanePyramid(1 << 20, null);
+        assertBinned(pyramid.read(plane(4), 0, pixels, buffer), 4);
+        Assert.assertEquals(pyramid.size(), 0);
+    }
+
+    public void testInvalidate() {
+        PlanePyramid pyramid = new PlanePyramid(1 << 20, null);
+        pyramid.read(plane(4), 0, pixels, buffer);
+        pyramid.invalidate(1L);
+        Assert.assertEquals(pyramid.size(), 0);
+        pyramid.read(plane(4), 0, pixels, buffer);
+        Assert.assertEquals(reads.get(), 2);
+    }
+
+    public void testBinnedPlanesAreNotCached() {
+        PlaneCache cache = new PlaneCache(1 << 20);
+        PlanePyramid pyramid = new PlanePyramid(1 << 20, null);
+        Plane2D p = PlaneFactory.createPlane(plane(4), 0, pixels, buffer,
+                cache, pyramid);
+        Assert.assertEquals(p.getPixelValue(1, 2),
+                PlaneBinning.bin(plane, SIZE, SIZE, 4,
+                        PixelsType.VALUE_UINT16, null).getPixelValue(33));
+        Assert.assertEquals(cache.size(), 0);
+    }
+}
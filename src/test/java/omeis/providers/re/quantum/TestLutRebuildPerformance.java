@@ -0,0 +1,90 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.quantum;
+
+import ome.model.core.Pixels;
+import ome.model.display.QuantumDef;
+import ome.model.enums.Family;
+import ome.model.enums.PixelsType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Measures the latency of the look-up table rebuild of a
+ * {@link Quantization_8_16_bit} strategy for <code>uint16</code> data, for
+ * each family, while the input window is dragged as a contrast slider would.
+ * Excluded from the unit suite, run it with the <code>perf</code> group.
+ */
+@Test(groups = "perf")
+public class TestLutRebuildPerformance {
+
+    /** The logger for this particular class */
+    private static Logger log =
+            LoggerFactory.getLogger(TestLutRebuildPerformance.class);
+
+    /** The number of window changes measured per family. */
+    private static final int ITERATIONS = 2000;
+
+    /** The families to measure. */
+    private static final String[] FAMILIES = {Family.VALUE_LINEAR,
+        Family.VALUE_POLYNOMIAL, Family.VALUE_LOGARITHMIC,
+        Family.VALUE_EXPONENTIAL};
+
+    /**
+     * Creates a strategy for unsigned 16-bit data.
+     *
+     * @param family The mapping family.
+     * @return See above.
+     */
+    private QuantumStrategy createStrategy(String family) {
+        QuantumDef qDef = new QuantumDef();
+        qDef.setCdStart(0);
+        qDef.setCdEnd(255);
+        qDef.setBitResolution(255);
+        Pixels pixels = new Pixels();
+        PixelsType type = new PixelsType(PixelsType.VALUE_UINT16);
+        type.setBitSize(16);
+        pixels.setPixelsType(type);
+        QuantumStrategy qs = new Quantization_8_16_bit(qDef, pixels);
+        qs.setExtent(0, 65535);
+        double k = family.equals(Family.VALUE_LINEAR) ? 1.0 : 0.8;
+        qs.setMapping(new Family(family), k, false);
+        return qs;
+    }
+
+    /**
+     * Returns the average time of a window change, in microseconds.
+     *
+     * @param qs The strategy to measure.
+     * @param span The width of the windows.
+     * @param delta The move of the window between two changes.
+     * @return See above.
+     */
+    private double measure(QuantumStrategy qs, int span, int delta) {
+        int start = 1000;
+        long t = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            start = 1000 + (start - 1000 + delta) % (64000 - span);
+            qs.setWindow(start, start + span);
+        }
+        return (System.nanoTime() - t) / 1000.0 / ITERATIONS;
+    }
+
+    public void testRebuildLatency() {
+        for (String family : FAMILIES) {
+            QuantumStrategy qs = createStrategy(family);
+            // Warm up.
+            measure(qs, 4000, 37);
+            double drag = measure(qs, 4000, 37);
+            double jump = measure(qs, 4000, 20011);
+            double wide = measure(qs, 60000, 37);
+            log.info(String.format("%s: drag %.1f us, jump %.1f us, "
+                    + "wide %.1f us", family, drag, jump, wide));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.quantum;
+
+import java.nio.ByteBuffer;
+
+import ome.model.core.Pixels;
+import ome.model.display.QuantumDef;
+import ome.model.enums.Family;
+import ome.model.enums.PixelsType;
+import ome.util.PixelData;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link Quantization_float} instances.
+ */
+@Test
+public class TestQuantization_float {
+
+    /**
+     * Creates a strategy for floating point data.
+     *
+     * @param start The start of the input window.
+     * @param end The end of the input window.
+     * @return See above.
+     */
+    private QuantumStrategy createStrategy(double start, double end) {
+        QuantumDef qDef = new QuantumDef();
+        qDef.setCdStart(0);
+        qDef.setCdEnd(255);
+        qDef.setBitResolution(255);
+        Pixels pixels = new Pixels();
+        PixelsType type = new PixelsType(PixelsType.VALUE_FLOAT);
+        type.setBitSize(32);
+        pixels.setPixelsType(type);
+        QuantumStrategy qs = new Quantization_float(qDef, pixels);
+        qs.setExtent(-1000, 1000);
+        qs.setMapping(new Family(Family.VALUE_LINEAR), 1.0, false);
+        qs.setWindow(start, end);
+        return qs;
+    }
+
+    public void testQuantizeWindowBounds() throws Exception {
+        QuantumStrategy qs = createStrategy(-10.5, 20.25);
+        Assert.assertEquals(qs.quantize(-100), 0);
+        Assert.assertEquals(qs.quantize(-10.5), 0);
+        Assert.assertEquals(qs.quantize(20.25), 255);
+        Assert.assertEquals(qs.quantize(500), 255);
+        int previous = 0;
+        for (double v = -10.5; v <= 20.25; v += 0.01) {
+            int value = qs.quantize(v);
+            Assert.assertTrue(value >= previous);
+            previous = value;
+        }
+    }
+
+    public void testWindowChangeRecompiles() throws Exception {
+        QuantumStrategy qs = createStrategy(0, 100);
+        Assert.assertEquals(qs.quantize(100), 255);
+        qs.setWindow(100, 200);
+        Assert.assertEquals(qs.quantize(100), 0);
+    }
+
+    public void testBulkQuantizeMatchesQuantize() throws Exception {
+        QuantumStrategy qs = createStrategy(-50, 75);
+        int n = 1000;
+        ByteBuffer buf = ByteBuffer.allocate(n * 4);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            float v = (i - n / 2) / 4.0f;
+            buf.putFloat(i * 4, v);
+            values[i] = v;
+        }
+        PixelData data = new PixelData(PixelsType.VALUE_FLOAT, buf);
+        byte[] fromData = new byte[n];
+        byte[] fromArray = new byte[n];
+        qs.quantize(data, 0, n, fromData, 0);
+        qs.quantize(values, 0, n, fromArray, 0);
+        for (int i = 0; i < n; i++) {
+            int expected = qs.quantize(values[i]);
+            Assert.assertEquals(fromData[i] & 0xFF, expected);
+            Assert.assertEquals(fromArray[i] & 0xFF, expected);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *   Copyright 2026 University of Dundee. All rights reserved.
+ *   Use is subject to license terms supplied in LICENSE.txt
+ */
+
+package omeis.providers.re.quantum;
+
+import java.util.Random;
+
+import ome.model.core.Pixels;
+import ome.model.display.QuantumDef;
+import ome.model.enums.Family;
+import ome.model.enums.PixelsType;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test cases for {@link ThresholdQuantizer} instances.
+ */
+@Test
+public class TestThresholdQuantizer {
+
+    /** The families to check. */
+    private static final String[] FAMILIES = {Family.VALUE_LINEAR,
+        Family.VALUE_POLYNOMIAL, Family.VALUE_LOGARITHMIC,
+        Family.VALUE_EXPONENTIAL};
+
+    /**
+     * Creates the pixels of the specified type.
+     *
+     * @param value The pixels type.
+     * @return See above.
+     */
+    private Pixels createPixels(String value) {
+        Pixels pixels = new Pixels();
+        PixelsType type = new PixelsType(value);
+        type.setBitSize(32);
+        pixels.setPixelsType(type);
+        return pixels;
+    }
+
+    /**
+     * Configures the specified strategy.
+     *
+     * @param qs The strategy to configure.
+     * @param family The mapping family.
+     * @param k The curve coefficient.
+     * @param noiseReduction The noise reduction flag.
+     * @param start The start of the input window.
+     * @param end The end of the input window.
+     */
+    private void configure(QuantumStrategy qs, String family, double k,
+            boolean noiseReduction, double start, double end) {
+        qs.setExtent(start, end);
+        qs.setMapping(new Family(family), k, noiseReduction);
+        qs.setWindow(start, end);
+    }
+
+    /**
+     * Checks that the strategies map the values around the specified one
+     * identically.
+     *
+     * @param expected The reference strategy.
+     * @param actual The strategy to check.
+     * @param value The value to check around.
+     * @throws Exception Thrown if an error occurs.
+     */
+    private void assertSameAround(QuantumStrategy expected,
+            QuantumStrategy actual, double value) throws Exception {
+        for (long x = (long) value - 2; x <= (long) value + 2; x++) {
+            Assert.assertEquals(actual.quantize(x), expected.quantize(x),
+                    "value " + x);
+        }
+    }
+
+    /**
+     * Checks that the mapping is the one of {@link Quantization_32_bit} for
+     * random windows and settings of the specified type.
+     *
+     * @param type The pixels type.
+     * @param min The minimum value of the type.
+     * @param max The maximum value of the type.
+     * @throws Exception Thrown if an error occurs.
+     */
+    private void checkRandomWindows(String type, long min, long max)
+            throws Exception {
+        Random random = new Random(7);
+        Pixels pixels = createPixels(type);
+        for (int i = 0; i < 200; i++) {
+            long a = min + (long) (random.nextDouble() * (max - min));
+            long b = a + (long) (random.nextDouble() * (i % 2 == 0 ?
+                    1000 : max - a));
+            String family = FAMILIES[i % FAMILIES.length];
+            double k = family.equals(Family.VALUE_LINEAR) ? 1.0
+                    : 0.5 + random.nextDouble() * 2;
+            boolean noiseReduction = random.nextBoolean();
+            QuantumStrategy expected =
+                    new Quantization_32_bit(new QuantumDef(), pixels);
+            QuantumStrategy actual =
+                    new ThresholdQuantizer(new QuantumDef(), pixels);
+            configure(expected, family, k, noiseReduction, a, b);
+            configure(actual, family, k, noiseReduction, a, b);
+            double step = (b - a) / 256.0;
+            for (int v = -1; v <= 257; v++) {
+                assertSameAround(expected, actual, a + v * step);
+            }
+            for (int j = 0; j < 1000; j++) {
+                long x = a - 10 + (long) (random.nextDouble() * (b - a + 20));
+                Assert.assertEquals(actual.quantize(x), expected.quantize(x));
+            }
+        }
+    }
+
+    public void testInt32MatchesQuantization_32_bit() throws Exception {
+        checkRandomWindows(PixelsType.VALUE_INT32, Integer.MIN_VALUE,
+                Integer.MAX_VALUE);
+    }
+
+    public void testUint32MatchesQuantization_32_bit() throws Exception {
+        checkRandomWindows(PixelsType.VALUE_UINT32, 0, 0xFFFFFFFFL);
+    }
+
+    public void testFactoryFlag() {
+        QuantumFactory factory = new QuantumFactory(null);
+        Pixels pixels = createPixels(PixelsType.VALUE_INT32);
+        QuantumDef qDef = new QuantumDef();
+        qDef.setBitResolution(QuantumFactory.DEPTH_8BIT);
+        Assert.assertTrue(factory.getStrategy(qDef, pixels)
+                instanceof Quantization_32_bit);
+        factory.setThresholdQuantization(true);
+        Assert.assertTrue(factory.getStrategy(qDef, pixels)
+                instanceof ThresholdQuantizer);
+    }
+}